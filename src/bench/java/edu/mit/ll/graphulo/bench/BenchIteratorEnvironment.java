@@ -0,0 +1,66 @@
+package edu.mit.ll.graphulo.bench;
+
+import org.apache.accumulo.core.client.sample.SamplerConfiguration;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.Authorizations;
+
+/**
+ * Minimal environment for running iterators in-process at a given scope.
+ */
+class BenchIteratorEnvironment implements IteratorEnvironment {
+  private final IteratorUtil.IteratorScope scope;
+
+  BenchIteratorEnvironment(IteratorUtil.IteratorScope scope) {
+    this.scope = scope;
+  }
+
+  @Override
+  public SortedKeyValueIterator<Key, Value> reserveMapFileReader(String mapFileName) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public AccumuloConfiguration getConfig() {
+    return null;
+  }
+
+  @Override
+  public IteratorUtil.IteratorScope getIteratorScope() {
+    return scope;
+  }
+
+  @Override
+  public boolean isFullMajorCompaction() {
+    return false;
+  }
+
+  @Override
+  public void registerSideChannel(SortedKeyValueIterator<Key, Value> iter) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Authorizations getAuthorizations() {
+    return Authorizations.EMPTY;
+  }
+
+  @Override
+  public IteratorEnvironment cloneWithSamplingEnabled() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean isSamplingEnabled() {
+    return false;
+  }
+
+  @Override
+  public SamplerConfiguration getSamplerConfiguration() {
+    return null;
+  }
+}
@@ -0,0 +1,53 @@
+package edu.mit.ll.graphulo.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks in this package with the GC profiler and writes the results as JSON.
+ * <p>
+ * Usage: <tt>BenchmarkRunner [label] [JMH options...]</tt>.
+ * Results go to <tt>target/jmh/&lt;label&gt;.json</tt>; the label defaults to <tt>latest</tt>.
+ * Pass the label of the commit being measured, e.g. <tt>$(git rev-parse --short HEAD)</tt>,
+ * to keep results from several commits side by side for diffing.
+ * Other arguments are passed to JMH, e.g. a regular expression selecting benchmarks.
+ * <p>
+ * Throughput is reported per operation and, via {@link EntryCounter}, per entry.
+ * The GC profiler reports <tt>gc.alloc.rate.norm</tt>, bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    String label = "latest";
+    if (args.length > 0 && !args[0].startsWith("-")) {
+      label = args[0];
+      String[] rest = new String[args.length - 1];
+      System.arraycopy(args, 1, rest, 0, rest.length);
+      args = rest;
+    }
+    File out = new File("target" + File.separator + "jmh", label + ".json");
+    if (!out.getParentFile().isDirectory() && !out.getParentFile().mkdirs())
+      throw new RuntimeException("cannot create directory " + out.getParentFile());
+
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    OptionsBuilder builder = new OptionsBuilder();
+    if (cmd.getIncludes().isEmpty())
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+    Options opts = builder
+        .parent(cmd)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(out.getPath())
+        .build();
+    new Runner(opts).run();
+    System.out.println("Results written to " + out);
+  }
+}
@@ -0,0 +1,56 @@
+package edu.mit.ll.graphulo.bench;
+
+import edu.mit.ll.graphulo.util.GraphuloUtil;
+import org.apache.accumulo.core.data.Range;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GraphuloUtil#d4mRowToRanges(String)} parsing a D4M row string, one string per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class D4mRowToRangesBenchmark {
+
+  @Param({"10", "10000"})
+  public int numRows;
+  /** Whether the string holds ranges <tt>a,:,b,</tt> rather than single rows. */
+  @Param({"false", "true"})
+  public boolean ranges;
+
+  private String rowStr;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    // descending, so that parsing also has to sort
+    for (int i = numRows - 1; i >= 0; i--) {
+      sb.append(String.format("v%08d,", 2 * i));
+      if (ranges)
+        sb.append(":,").append(String.format("v%08d,", 2 * i + 1));
+    }
+    rowStr = sb.toString();
+  }
+
+  @Benchmark
+  public SortedSet<Range> parse() {
+    return GraphuloUtil.d4mRowToRanges(rowStr);
+  }
+}
@@ -0,0 +1,44 @@
+package edu.mit.ll.graphulo.bench;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Counts the entries emitted by the iterator under test.
+ * JMH reports the public field as a secondary result, in entries per second.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class EntryCounter {
+  public long entries;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    entries = 0;
+  }
+
+  /** Seek skvi to everything and consume every entry. */
+  public void drain(SortedKeyValueIterator<Key, Value> skvi, Blackhole bh) throws IOException {
+    skvi.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    long n = 0;
+    while (skvi.hasTop()) {
+      bh.consume(skvi.getTopKey());
+      bh.consume(skvi.getTopValue());
+      n++;
+      skvi.next();
+    }
+    entries += n;
+  }
+}
@@ -0,0 +1,67 @@
+package edu.mit.ll.graphulo.bench;
+
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MathTwoScalar#multiply(Value, Value)} on pairs of random values, one pair per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class MathTwoScalarBenchmark {
+  private static final int NUM_VALUES = 1024;
+
+  @Param({"LONG", "DOUBLE", "BIGDECIMAL", "LEX_LONG", "FIXED_LONG", "FIXED_DOUBLE"})
+  public MathTwoScalar.ScalarType scalarType;
+  @Param({"TIMES", "PLUS"})
+  public MathTwoScalar.ScalarOp scalarOp;
+
+  private MathTwoScalar op;
+  private Value[] values;
+  private int pos = 0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    op = new MathTwoScalar();
+    op.init(MathTwoScalar.optionMap(scalarOp, scalarType, null, true), null);
+    Random rand = new Random(42);
+    values = new Value[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      long l = rand.nextInt(1000000);
+      byte[] b;
+      switch (scalarType) {
+        case DOUBLE: case FIXED_DOUBLE: b = MathTwoScalar.encodeDouble(scalarType, l / 8.0); break;
+        case LONG: case LEX_LONG: case FIXED_LONG: b = MathTwoScalar.encodeLong(scalarType, l); break;
+        default: b = Long.toString(l).getBytes(StandardCharsets.UTF_8); break;
+      }
+      values[i] = new Value(b);
+    }
+  }
+
+  @Benchmark
+  public Value multiply() {
+    int i = pos;
+    pos = (i + 2) & (NUM_VALUES - 1);
+    return op.multiply(values[i], values[i + 1]);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.mit.ll.graphulo.bench;
+
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.skvi.MapIterator;
+import edu.mit.ll.graphulo.skvi.SmallLargeRowFilter;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SmallLargeRowFilter} over a synthetic table at scan scope. Each operation reads the whole table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class SmallLargeRowFilterBenchmark {
+
+  @Param({"20000"})
+  public int numVertices;
+  @Param({"8"})
+  public int avgDegree;
+  @Param({"UNIFORM", "POWERLAW"})
+  public SyntheticGraph.Degree degree;
+
+  private SortedMap<Key,Value> table;
+  private Map<String,String> opts;
+  private final IteratorEnvironment env = new BenchIteratorEnvironment(IteratorUtil.IteratorScope.scan);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    table = SyntheticGraph.adjacency(numVertices, avgDegree, degree, MathTwoScalar.ScalarType.LONG, 42);
+    opts = SmallLargeRowFilter.iteratorSetting(1, 2, 4 * avgDegree).getOptions();
+  }
+
+  @Benchmark
+  public void filter(EntryCounter counter, Blackhole bh) throws IOException {
+    MapIterator source = new MapIterator(table);
+    source.init(null, Collections.<String,String>emptyMap(), env);
+    SmallLargeRowFilter filter = new SmallLargeRowFilter();
+    filter.init(source, opts, env);
+    counter.drain(filter, bh);
+  }
+}
@@ -0,0 +1,72 @@
+package edu.mit.ll.graphulo.bench;
+
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Generates sorted adjacency tables for benchmarks.
+ * Row and column names are zero-padded vertex numbers so that they sort numerically.
+ * Values are 1, encoded as the given {@link MathTwoScalar.ScalarType}.
+ */
+public final class SyntheticGraph {
+  private SyntheticGraph() {}
+
+  public enum Degree {
+    /** Every vertex has about the average degree. */
+    UNIFORM,
+    /** Vertex degrees follow a Zipf-like power law with exponent about 2, scaled to the average degree. */
+    POWERLAW
+  }
+
+  /**
+   * @param numVertices Number of rows and potential columns.
+   * @param avgDegree Average number of entries per row.
+   * @param degree Distribution of entries per row.
+   * @param type Encoding of the Values.
+   * @param seed Random seed; the same seed generates the same table.
+   */
+  public static SortedMap<Key,Value> adjacency(int numVertices, int avgDegree, Degree degree,
+                                               MathTwoScalar.ScalarType type, long seed) {
+    Random rand = new Random(seed);
+    Value one = new Value(encodeOne(type));
+    int width = Integer.toString(numVertices - 1).length();
+    String fmt = "%0" + width + "d";
+    String[] names = new String[numVertices];
+    for (int v = 0; v < numVertices; v++)
+      names[v] = String.format(fmt, v);
+
+    // power law: vertex v has weight 1/(v+1); normalize so that the total matches the uniform case
+    double harmonic = 0;
+    for (int v = 0; v < numVertices; v++)
+      harmonic += 1.0 / (v + 1);
+
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int v = 0; v < numVertices; v++) {
+      int deg;
+      switch (degree) {
+        case UNIFORM: deg = avgDegree; break;
+        case POWERLAW: deg = (int) Math.round((double) avgDegree * numVertices / (harmonic * (v + 1))); break;
+        default: throw new AssertionError();
+      }
+      deg = Math.max(1, Math.min(deg, numVertices));
+      for (int i = 0; i < deg; i++)
+        map.put(new Key(names[v], "", names[rand.nextInt(numVertices)]), one);
+    }
+    return Collections.unmodifiableSortedMap(map);
+  }
+
+  /** The Value 1 in the given encoding. */
+  public static byte[] encodeOne(MathTwoScalar.ScalarType type) {
+    switch (type) {
+      case LONG: case LEX_LONG: case FIXED_LONG: return MathTwoScalar.encodeLong(type, 1);
+      case DOUBLE: case FIXED_DOUBLE: return MathTwoScalar.encodeDouble(type, 1);
+      default: return MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.LONG, 1);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package edu.mit.ll.graphulo.bench;
+
+import edu.mit.ll.graphulo.rowmult.CartesianRowMultiply;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.skvi.LruCacheIterator;
+import edu.mit.ll.graphulo.skvi.MapIterator;
+import edu.mit.ll.graphulo.skvi.TwoTableIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TwoTableIterator} multiplying a synthetic table with itself, as in TableMult of A^T and A.
+ * Each operation reads the whole table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class TwoTableIteratorBenchmark {
+
+  @Param({"1000"})
+  public int numVertices;
+  @Param({"8"})
+  public int avgDegree;
+  @Param({"UNIFORM", "POWERLAW"})
+  public SyntheticGraph.Degree degree;
+  @Param({"LONG", "FIXED_LONG"})
+  public MathTwoScalar.ScalarType scalarType;
+
+  private SortedMap<Key,Value> table;
+  private Map<String,String> rowOpts, ewiseOpts, lruOpts;
+  private final IteratorEnvironment env = new BenchIteratorEnvironment(IteratorUtil.IteratorScope.scan);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    table = SyntheticGraph.adjacency(numVertices, avgDegree, degree, scalarType, 42);
+
+    Map<String,String> multOpts = new HashMap<>();
+    multOpts.put("multiplyOp", MathTwoScalar.class.getName());
+    for (Map.Entry<String, String> entry : MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.TIMES, scalarType, null, false).entrySet())
+      multOpts.put("multiplyOp.opt." + entry.getKey(), entry.getValue());
+    rowOpts = TwoTableIterator.optionMapROW(null, null, null, CartesianRowMultiply.class, multOpts);
+
+    ewiseOpts = TwoTableIterator.optionMapEWISE(null, null, null, MathTwoScalar.class,
+        MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.TIMES, scalarType, null, false));
+
+    lruOpts = LruCacheIterator.combinerSetting(1, null, 10000, MathTwoScalar.class,
+        MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.PLUS, scalarType, null, false)).getOptions();
+  }
+
+  private SortedKeyValueIterator<Key,Value> twoTable(Map<String,String> opts) throws IOException {
+    MapIterator source = new MapIterator(table);
+    source.init(null, Collections.<String,String>emptyMap(), env);
+    TwoTableIterator tti = new TwoTableIterator();
+    tti.init(source, opts, env);
+    return tti;
+  }
+
+  /** Row-wise outer product of matching rows, emitting every partial product. */
+  @Benchmark
+  public void rowMultiply(EntryCounter counter, Blackhole bh) throws IOException {
+    counter.drain(twoTable(rowOpts), bh);
+  }
+
+  /** Element-wise multiply of matching entries. */
+  @Benchmark
+  public void ewiseMultiply(EntryCounter counter, Blackhole bh) throws IOException {
+    counter.drain(twoTable(ewiseOpts), bh);
+  }
+
+  /** Row-wise multiply with partial products pre-summed in a {@link LruCacheIterator}. */
+  @Benchmark
+  public void rowMultiplyLruCache(EntryCounter counter, Blackhole bh) throws IOException {
+    LruCacheIterator lru = new LruCacheIterator();
+    lru.init(twoTable(rowOpts), lruOpts, env);
+    counter.drain(lru, bh);
+  }
+}
@@ -44,7 +44,13 @@ public class D4mDataSearch extends D4mParentQuery {
 	public D4mDbResultSet doMatlabQuery(String rows, String cols,
 			String family, String authorizations) throws D4mException {
 		reset();
+		initD4m();
+		D4mDbResultSet testResult = d4m.doMatlabQuery(rows, cols, family, authorizations);
+		setResults();
+		return testResult;
+	}
 
+	private void initD4m() {
 		if(this.d4m == null) {
 			this.d4m = new D4mDbQueryAccumulo();
 			this.d4m.setTableName(super.tableName);
@@ -52,9 +58,22 @@ public class D4mDataSearch extends D4mParentQuery {
 		}
 		this.d4m.setLimit(super.limit);
 		this.d4m.setTableName(super.tableName);
-		D4mDbResultSet testResult = d4m.doMatlabQuery(rows, cols, family, authorizations);
-		setResults();
-		return testResult;
+	}
+
+	@Override
+	public D4mResultPage doMatlabQueryPaged(String rows, String cols,
+			String family, String authorizations, int pageSize) throws D4mException {
+		reset();
+		super.setLimit(pageSize);
+		initD4m();
+		return d4m.doMatlabQueryPaged(rows, cols, family, authorizations, pageSize);
+	}
+
+	@Override
+	public D4mResultPage nextPage() {
+		if(this.d4m == null)
+			throw new IllegalStateException("no paged query in progress");
+		return d4m.nextPage();
 	}
 
 	/* (non-Javadoc)
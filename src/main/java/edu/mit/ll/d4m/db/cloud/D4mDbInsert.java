@@ -46,6 +46,9 @@ public class D4mDbInsert extends D4mParent {
 	private int numThreads = 50;
 
 	private ConnectionProperties connProps = new ConnectionProperties();
+	private int insertWriters = 0; // >0: tokenize, sort and write with this many BatchWriters, one tablet at a time
+	private String bulkImportDir = null; // directory visible to the tablet servers; null disables bulk import
+	private long bulkImportMinEntries = 0; // inserts with at least this many entries use bulk import
 
 	private D4mInsertBase d4mInserter=null;
 
@@ -119,6 +122,8 @@ public class D4mDbInsert extends D4mParent {
 			this.d4mInserter.setConnProps(connProps);
 		}
 		this.d4mInserter.setTableName(this.tableName);
+		this.d4mInserter.setInsertWriters(this.insertWriters);
+		this.d4mInserter.setBulkImport(this.bulkImportDir, this.bulkImportMinEntries);
 
 		long start = System.currentTimeMillis();
 		this.d4mInserter.doProcessing(rows, cols, vals, family, visibility);
@@ -145,6 +150,30 @@ public class D4mDbInsert extends D4mParent {
 //		return map;
 //	}
 
+	/** Tokenize, sort and write inserts with this many BatchWriters, one tablet at a time. 0, the default, uses one BatchWriter. */
+	public void setInsertWriters(int insertWriters) {
+		this.insertWriters = insertWriters;
+	}
+	public int getInsertWriters() {
+		return insertWriters;
+	}
+
+	/**
+	 * Bulk import inserts with at least minEntries entries by writing RFiles under dir and importing them.
+	 * The dir must be on a file system visible to the tablet servers, such as HDFS. A null dir disables bulk import.
+	 * Only used when {@link #setInsertWriters} is positive.
+	 */
+	public void setBulkImport(String dir, long minEntries) {
+		this.bulkImportDir = dir;
+		this.bulkImportMinEntries = minEntries;
+	}
+	public String getBulkImportDir() {
+		return bulkImportDir;
+	}
+	public long getBulkImportMinEntries() {
+		return bulkImportMinEntries;
+	}
+
 	/** calls to D4mDbInfo.getTableList() to retrieve the table list from the connector   */
 	public boolean doesTableExistFromMetadata(String tableName) {
 		boolean exist = false;
@@ -21,6 +21,9 @@ public abstract class D4mInsertBase {
 	protected String visibility = "";
 
 	protected ConnectionProperties connProps = new ConnectionProperties();
+	protected int insertWriters = 0;
+	protected String bulkImportDir = null;
+	protected long bulkImportMinEntries = 0;
 
 	public D4mInsertBase() {
 	    super();
@@ -64,6 +67,17 @@ public abstract class D4mInsertBase {
 		this.connProps = connProps;
 	}
 
+	/** See {@link D4mDbInsert#setInsertWriters}. */
+	public void setInsertWriters(int insertWriters) {
+		this.insertWriters = insertWriters;
+	}
+
+	/** See {@link D4mDbInsert#setBulkImport}. */
+	public void setBulkImport(String dir, long minEntries) {
+		this.bulkImportDir = dir;
+		this.bulkImportMinEntries = minEntries;
+	}
+
 	public String getTableName() {
 		return tableName;
 	}
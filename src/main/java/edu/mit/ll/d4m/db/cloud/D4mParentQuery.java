@@ -17,6 +17,8 @@ public abstract class D4mParentQuery extends D4mParent {
 	protected int limit=0;
 
 	protected String columnFamily = "";
+	/** Page receiving results while a paged query is in progress; null otherwise. */
+	protected D4mResultPage page=null;
 
 	public D4mParentQuery() {
 		super();
@@ -28,6 +30,44 @@ public abstract class D4mParentQuery extends D4mParent {
 	abstract public boolean hasNext();
 	abstract public D4mDataObj getResults();
 	abstract public void reset();
+
+	/**
+	 * Start a streaming query. Instead of accumulating the row, column and value strings,
+	 * results are encoded into pages of at most pageSize triples.
+	 * The first page is returned; fetch the rest with {@link #nextPage()} while {@link D4mResultPage#hasMore()}.
+	 * The query resumes from the last key of the previous page, as {@link #next()} does.
+	 * The returned page object is reused by later calls. Sets the limit to pageSize.
+	 */
+	public D4mResultPage doMatlabQueryPaged(String rows, String cols, String family, String authorizations, int pageSize) throws D4mException {
+		D4mResultPage p = new D4mResultPage(pageSize);
+		setLimit(pageSize);
+		this.page = p;
+		try {
+			doMatlabQuery(rows, cols, family, authorizations);
+		} catch (D4mException | RuntimeException e) {
+			this.page = null;
+			throw e;
+		}
+		return finishPage(p);
+	}
+
+	/** Next page of the query started by {@link #doMatlabQueryPaged}. */
+	public D4mResultPage nextPage() {
+		D4mResultPage p = this.page;
+		if(p == null)
+			throw new IllegalStateException("no paged query in progress");
+		p.clear();
+		next();
+		return finishPage(p);
+	}
+
+	private D4mResultPage finishPage(D4mResultPage p) {
+		p.setHasMore(p.isFull() && hasNext());
+		if(!p.hasMore())
+			this.page = null;
+		return p;
+	}
+
 	//	public void setCloudType(String cloudType) {
 	//		D4mConfig d4mConfig = D4mConfig.getInstance();
 	//		d4mConfig.setCloudType(cloudType);
@@ -0,0 +1,180 @@
+package edu.mit.ll.d4m.db.cloud;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One page of query results in a compact binary triple format.
+ * Produced by {@link D4mParentQuery#doMatlabQueryPaged} and {@link D4mParentQuery#nextPage()}.
+ * <p>
+ * Layout: a 4-byte big-endian entry count, then one (row, column, value) triple per entry.
+ * Rows and columns share a per-page dictionary: each is a varint code,
+ * 0 for a new string followed by its varint length and UTF-8 bytes,
+ * or <tt>i+1</tt> for the <tt>i</tt>th new string of the page.
+ * Values are a varint length followed by UTF-8 bytes.
+ * <p>
+ * A page is reused from one call to the next, so its buffer and dictionary are
+ * bounded by the page size rather than the size of the whole result.
+ */
+public class D4mResultPage {
+
+	/** Receives the triples of a decoded page. */
+	public interface TripleSink {
+		void triple(String row, String column, String value);
+	}
+
+	private final int pageSize;
+	private byte[] buf = new byte[1024];
+	private int len = 4;
+	private int numEntries = 0;
+	private boolean hasMore = false;
+	private final Map<String, Integer> dict = new HashMap<>();
+
+	public D4mResultPage(int pageSize) {
+		if(pageSize <= 0)
+			throw new IllegalArgumentException("bad pageSize "+pageSize);
+		this.pageSize = pageSize;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getNumEntries() {
+		return numEntries;
+	}
+
+	/** Whether the query has more results after this page. */
+	public boolean hasMore() {
+		return hasMore;
+	}
+
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
+	public boolean isFull() {
+		return numEntries >= pageSize;
+	}
+
+	/** Empty the page, keeping its buffer. */
+	public void clear() {
+		len = 4;
+		numEntries = 0;
+		hasMore = false;
+		dict.clear();
+	}
+
+	/** Append a triple. Returns true if the page is now full. */
+	public boolean add(String row, String column, String value) {
+		if(isFull())
+			throw new IllegalStateException("page is full: "+pageSize);
+		putLabel(row);
+		putLabel(column);
+		putString(value.getBytes(StandardCharsets.UTF_8));
+		numEntries++;
+		return isFull();
+	}
+
+	private void putLabel(String s) {
+		Integer code = dict.get(s);
+		if(code != null) {
+			putVarInt(code);
+		} else {
+			dict.put(s, dict.size()+1);
+			putVarInt(0);
+			putString(s.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void putString(byte[] b) {
+		putVarInt(b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, len, b.length);
+		len += b.length;
+	}
+
+	private void putVarInt(int v) {
+		ensure(5);
+		while((v & ~0x7F) != 0) {
+			buf[len++] = (byte)((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[len++] = (byte)v;
+	}
+
+	private void ensure(int n) {
+		if(len + n > buf.length)
+			buf = Arrays.copyOf(buf, Math.max(buf.length*2, len+n));
+	}
+
+	private void putHeader() {
+		buf[0] = (byte)(numEntries >>> 24);
+		buf[1] = (byte)(numEntries >>> 16);
+		buf[2] = (byte)(numEntries >>> 8);
+		buf[3] = (byte)numEntries;
+	}
+
+	/** Number of bytes in the encoded page. */
+	public int getEncodedLength() {
+		return len;
+	}
+
+	/** Copy of the encoded page. */
+	public byte[] toByteArray() {
+		putHeader();
+		return Arrays.copyOf(buf, len);
+	}
+
+	/** Write the encoded page without copying it. */
+	public void writeTo(OutputStream out) throws IOException {
+		putHeader();
+		out.write(buf, 0, len);
+	}
+
+	/** Decode a page produced by {@link #toByteArray()}. Returns the number of triples. */
+	public static int decode(byte[] page, TripleSink sink) {
+		int n = ((page[0] & 0xFF) << 24) | ((page[1] & 0xFF) << 16) | ((page[2] & 0xFF) << 8) | (page[3] & 0xFF);
+		int[] pos = {4};
+		String[] labels = new String[16];
+		int numLabels = 0;
+		for(int i = 0; i < n; i++) {
+			String[] rc = new String[2];
+			for(int j = 0; j < 2; j++) {
+				int code = getVarInt(page, pos);
+				if(code == 0) {
+					rc[j] = getString(page, pos);
+					if(numLabels == labels.length)
+						labels = Arrays.copyOf(labels, numLabels*2);
+					labels[numLabels++] = rc[j];
+				} else
+					rc[j] = labels[code-1];
+			}
+			sink.triple(rc[0], rc[1], getString(page, pos));
+		}
+		return n;
+	}
+
+	private static String getString(byte[] page, int[] pos) {
+		int l = getVarInt(page, pos);
+		String s = new String(page, pos[0], l, StandardCharsets.UTF_8);
+		pos[0] += l;
+		return s;
+	}
+
+	private static int getVarInt(byte[] page, int[] pos) {
+		int v = 0, shift = 0;
+		byte b;
+		do {
+			b = page[pos[0]++];
+			v |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return v;
+	}
+
+}
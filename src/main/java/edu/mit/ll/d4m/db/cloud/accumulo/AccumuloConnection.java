@@ -40,6 +40,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 import org.apache.thrift.transport.TTransportException;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -170,6 +171,9 @@ public class AccumuloConnection {
 	public Collection<Text> getSplits(String tableName) throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
 		return this.connector.tableOperations().listSplits(tableName);
 	}
+	public void importDirectory(String tableName, String dir, String failureDir) throws TableNotFoundException, IOException, AccumuloException, AccumuloSecurityException {
+		this.connector.tableOperations().importDirectory(tableName, dir, failureDir, true);
+	}
 	public SortedSet<String> getTableList() {
 		return this.connector.tableOperations().list();
 	}
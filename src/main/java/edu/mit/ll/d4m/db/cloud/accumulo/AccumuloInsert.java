@@ -12,10 +12,32 @@ import org.apache.log4j.Logger;
 
 import edu.mit.ll.d4m.db.cloud.D4mInsertBase;
 import edu.mit.ll.d4m.db.cloud.util.D4mQueryUtil;
+import edu.mit.ll.d4m.db.cloud.util.D4mTokenizer;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.accumulo.core.client.rfile.RFile;
+import org.apache.accumulo.core.client.rfile.RFileWriter;
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author CHV8091
@@ -49,7 +71,11 @@ public class AccumuloInsert extends D4mInsertBase {
 		//Add mutation
 		//    make connection
 		try {
-			makeAndAddMutations();
+			// the parallel path partitions by the original row bytes, which the int key encoding does not preserve
+			if(super.insertWriters > 0 && !D4mDbInsert.isIntEncodeKeyAndPrependLastByteRev())
+				makeAndAddMutationsParallel(super.insertWriters);
+			else
+				makeAndAddMutations();
 		} catch (MutationsRejectedException | TableNotFoundException e) {
 			log.error(e);
 			throw e;
@@ -112,7 +138,7 @@ public class AccumuloInsert extends D4mInsertBase {
 				m = new Mutation(transformRow(rowsArr[i]));
 			}
 
-			if (D4mDbInsert.isIntEncodeValueAndDropEmpty() && mRow.compareTo(colsArr[i]) >= 0)
+			if (D4mDbInsert.isIntEncodeValueAndDropEmpty() && D4mTokenizer.compareCodePoints(mRow, colsArr[i]) >= 0)
 				continue;
 
 			mCol.set(transformColQ(colsArr[i]));
@@ -129,6 +155,189 @@ public class AccumuloInsert extends D4mInsertBase {
 		bw.close();
 	}
 
+	/**
+	 * High-throughput insert. The D4M strings are tokenized in place, the entries are
+	 * sorted by row with a primitive index sort, and the sorted entries are cut at the table's split points.
+	 * A pool of numWriters threads then writes one tablet's entries at a time, each through its own BatchWriter,
+	 * or as an RFile for bulk import if the insert is at least {@link D4mDbInsert#getBulkImportMinEntries()} entries.
+	 * Like the serial path, IntEncodeValueAndDropEmpty drops entries whose row is not less than their column
+	 * in UTF-8 byte order; see {@link D4mTokenizer#compareCodePoints}.
+	 */
+	private void makeAndAddMutationsParallel(int numWriters) throws TableNotFoundException, MutationsRejectedException, AccumuloException, AccumuloSecurityException {
+		final D4mTokenizer rowsTok = new D4mTokenizer(rows);
+		final int n = rowsTok.size();
+		if (n == 0)
+			return;
+		final D4mTokenizer colsTok = new D4mTokenizer(cols);
+		final D4mTokenizer valsTok = new D4mTokenizer(vals);
+		if (colsTok.size() != n || valsTok.size() != n)
+			throw new IllegalArgumentException("rows, cols and vals have different lengths: "+n+", "+colsTok.size()+", "+valsTok.size());
+
+		final boolean bulk = super.bulkImportDir != null && n >= super.bulkImportMinEntries;
+		// an RFile also needs the columns of a row in order
+		final int[] idx = rowsTok.sortedIndex(bulk ? colsTok : null);
+		final int[] parts = partition(rowsTok, idx, connection.getSplits(tableName));
+		final int numThreads = Math.min(numWriters, parts.length - 1);
+		if (log.isDebugEnabled())
+			log.debug("inserting "+n+" entries in "+(parts.length-1)+" tablets with "+numThreads+" writers"+(bulk ? " by bulk import" : ""));
+
+		final AtomicInteger nextPart = new AtomicInteger(0);
+		final Text colFamily = new Text(super.family);
+		final ColumnVisibility colVisibility = new ColumnVisibility(super.visibility);
+		final int writeThreads = Math.max(1, super.connProps.getMaxNumThreads() / numThreads);
+
+		if (!bulk) {
+			runWriters(numThreads, new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					final BatchWriter bw = connection.createBatchWriter(tableName, AccumuloConnection.maxMemory, AccumuloConnection.maxLatency, writeThreads);
+					try {
+						final Text mCol = new Text();
+						for (int p; (p = nextPart.getAndIncrement()) < parts.length - 1; ) {
+							Mutation m = null;
+							int mRow = -1;
+							for (int k = parts[p]; k < parts[p+1]; k++) {
+								final int i = idx[k];
+								if (m == null || rowsTok.compare(mRow, rowsTok, i) != 0) {
+									if (m != null && m.size() > 0)
+										bw.addMutation(m);
+									mRow = i;
+									m = new Mutation(rowsTok.getData(), rowsTok.start(i), rowsTok.length(i));
+								}
+								if (D4mDbInsert.isIntEncodeValueAndDropEmpty() && rowsTok.compare(i, colsTok, i) >= 0)
+									continue;
+								mCol.set(colsTok.getData(), colsTok.start(i), colsTok.length(i));
+								m.put(colFamily, mCol, colVisibility, new Value(transformVal(valsTok, i)));
+							}
+							if (m != null && m.size() > 0)
+								bw.addMutation(m);
+						}
+					} finally {
+						bw.close();
+					}
+					return null;
+				}
+			});
+			return;
+		}
+
+		final FileSystem fs;
+		final Path base = new Path(super.bulkImportDir, "d4minsert-"+UUID.randomUUID());
+		final Path filesDir = new Path(base, "files"), failDir = new Path(base, "failures");
+		try {
+			fs = base.getFileSystem(new Configuration());
+			fs.mkdirs(filesDir);
+			fs.mkdirs(failDir);
+		} catch (IOException e) {
+			log.error("cannot make bulk import directories in "+base, e);
+			throw new AccumuloException(e);
+		}
+		final byte[] cf = super.family.getBytes(StandardCharsets.UTF_8);
+		final byte[] cv = colVisibility.getExpression();
+		boolean failed = true;
+		try {
+			runWriters(numThreads, new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int p; (p = nextPart.getAndIncrement()) < parts.length - 1; ) {
+						RFileWriter w = RFile.newWriter().to(new Path(filesDir, String.format("part-%05d.rf", p)).toString())
+								.withFileSystem(fs).build();
+						try {
+							w.startDefaultLocalityGroup();
+							for (int k = parts[p]; k < parts[p+1]; k++) {
+								final int i = idx[k];
+								// of equal keys, the last inserted wins, as with a BatchWriter
+								if (k+1 < parts[p+1] && rowsTok.compare(idx[k+1], rowsTok, i) == 0 && colsTok.compare(idx[k+1], colsTok, i) == 0)
+									continue;
+								if (D4mDbInsert.isIntEncodeValueAndDropEmpty() && rowsTok.compare(i, colsTok, i) >= 0)
+									continue;
+								Key key = new Key(rowsTok.getData(), rowsTok.start(i), rowsTok.length(i), cf, 0, cf.length,
+										colsTok.getData(), colsTok.start(i), colsTok.length(i), cv, 0, cv.length, Long.MAX_VALUE);
+								w.append(key, new Value(transformVal(valsTok, i)));
+							}
+						} finally {
+							w.close();
+						}
+					}
+					return null;
+				}
+			});
+			connection.importDirectory(tableName, filesDir.toString(), failDir.toString());
+			FileStatus[] failures = fs.listStatus(failDir);
+			if (failures.length > 0)
+				throw new AccumuloException(failures.length+" RFiles failed to bulk import into "+tableName+"; see "+failDir);
+			failed = false;
+		} catch (IOException e) {
+			log.error("bulk import into "+tableName+" failed", e);
+			throw new AccumuloException(e);
+		} finally {
+			if (!failed) {
+				try {
+					fs.delete(base, true);
+				} catch (IOException e) {
+					log.warn("cannot delete bulk import directory "+base, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Boundaries of the runs of sorted entries that fall in each tablet:
+	 * tablet run r is idx[parts[r]] to idx[parts[r+1]-1]. Tablets without entries are skipped.
+	 */
+	private static int[] partition(D4mTokenizer rowsTok, int[] idx, Collection<Text> splits) {
+		int[] parts = new int[splits.size() + 2];
+		int np = 0;
+		parts[np++] = 0;
+		Iterator<Text> it = splits.iterator();
+		int i = 0;
+		while (it.hasNext() && i < idx.length) {
+			Text split = it.next();
+			// a tablet's end row is inclusive
+			while (i < idx.length && rowsTok.compare(idx[i], split.getBytes(), 0, split.getLength()) <= 0)
+				i++;
+			if (i > parts[np-1] && i < idx.length)
+				parts[np++] = i;
+		}
+		parts[np++] = idx.length;
+		return Arrays.copyOf(parts, np);
+	}
+
+	/** Run numThreads copies of writer and wait for them, rethrowing the first failure. */
+	private static void runWriters(int numThreads, Callable<Void> writer) throws MutationsRejectedException, TableNotFoundException, AccumuloException {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("D4mInsert-%d").build());
+		try {
+			List<Future<Void>> futures = new ArrayList<>(numThreads);
+			for (int t = 0; t < numThreads; t++)
+				futures.add(pool.submit(writer));
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccumuloException(e);
+		} catch (ExecutionException e) {
+			Throwable c = e.getCause();
+			if (c instanceof MutationsRejectedException)
+				throw (MutationsRejectedException) c;
+			if (c instanceof TableNotFoundException)
+				throw (TableNotFoundException) c;
+			if (c instanceof RuntimeException)
+				throw (RuntimeException) c;
+			log.error("insert writer failed", c);
+			throw new AccumuloException(c);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static byte[] transformVal(final D4mTokenizer vals, final int i) {
+		if( D4mDbInsert.isIntEncodeValueAndDropEmpty() )
+			return transformVal(vals.toString(i));
+		else
+			return vals.getBytes(i);
+	}
+
 	private static final Lexicoder<Integer> LEX = new UIntegerLexicoder();
 
 	private static byte[] transformRow(final String str) {
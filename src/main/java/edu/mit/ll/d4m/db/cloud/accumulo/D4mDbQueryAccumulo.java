@@ -9,11 +9,13 @@ import edu.mit.ll.d4m.db.cloud.D4mParentQuery;
 import edu.mit.ll.d4m.db.cloud.util.CompareUtil;
 import edu.mit.ll.d4m.db.cloud.util.D4mDataObj;
 import edu.mit.ll.d4m.db.cloud.util.RegExpUtil;
+import edu.mit.ll.graphulo.util.GraphuloUtil;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.ScannerBase;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -34,7 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.SortedSet;
 import java.util.regex.Pattern;
 
 
@@ -154,7 +156,8 @@ public class D4mDbQueryAccumulo extends D4mParentQuery {
 	}
 
 	/*
-	 * This method build the results of row, column, and value strings
+	 * This method build the results of row, column, and value strings,
+	 *   or encodes them into the page during a paged query.
 	 *   Return false if the count is less than the limit, or if the limit is infinite
 	 *   Return true if the count has reach the limit.
 	 * 
@@ -165,9 +168,14 @@ public class D4mDbQueryAccumulo extends D4mParentQuery {
 		if(super.limit == 0 || this.count < super.limit) {
 			if (log.isDebugEnabled())
 				log.debug("  +++ ROW="+rowKey+",COL="+column+",VAL="+value+" +++");
-			this.sbRowReturn.append(rowKey).append(NEWLINE);
-			this.sbColumnReturn.append(column.replace(this.family, "")).append(NEWLINE);
-			this.sbValueReturn.append(value).append(NEWLINE);
+			if(super.page != null) {
+				// streaming: encode into the bounded page instead of the return strings
+				super.page.add(rowKey, column.replace(this.family, ""), value);
+			} else {
+				this.sbRowReturn.append(rowKey).append(NEWLINE);
+				this.sbColumnReturn.append(column.replace(this.family, "")).append(NEWLINE);
+				this.sbValueReturn.append(value).append(NEWLINE);
+			}
 			this.count++;
 			this.cumCount++;
 			if(super.limit > 0 && this.count == super.limit) {
@@ -724,92 +732,38 @@ public class D4mDbQueryAccumulo extends D4mParentQuery {
 	 *  row   set the range
 	 *  col   set the column qualifier
 	 *  
-	 *  Get batchscanner
+	 *  A query of one row range uses a Scanner, so that entries return in row order.
+	 *  A query of several rows or ranges uses one BatchScanner over all of them;
+	 *  entries of different ranges then return in no particular order.
 	 */
 	public D4mDbResultSet searchByRowAndColumn(String rows, String cols, String family, String authorizations)  {
-		//boolean useBatchSearch=false;
 		clearBuffers();
-		D4mDbResultSet results;
-//		HashMap<String, Object> rowInfo = null;
-		if( this.rowInfo == null) {
-			this.rowInfo = this.processParam(rows);
-//			rowInfo = this.rowInfo;
-		}
-//		else
-//			rowInfo = this.rowInfo;
-		ParsedInfo columnInfo;
-		if(this.colInfo == null) {
-			columnInfo =this.processParam(cols);
-			this.colInfo = columnInfo;
-		} 
-		//else
-			//columnMap = this.colInfo;
-
-		results = searchByRowAndColumn(this.rowInfo, colInfo);
-
-		return results;
-	}
-
-	private D4mDbResultSet searchByRowAndColumn (ParsedInfo rowInfo,ParsedInfo columnInfo) {
 		D4mDbResultSet results = new D4mDbResultSet();
-		HashSet<Range> ranges;
-		Range range;
-		String[] rowArray = rowInfo.getContent();
-		String[] columnArray = columnInfo.getContent();
-		int length=rowArray.length;
-		String rowkey1;
-		String rowkey2;
-		boolean rowArrayGood=false;
-
 		long start = System.currentTimeMillis();
-		if(length == 1) {
-			rowkey1 = rowArray[0];
-			rowkey2 = rowArray[0];
-			range = new Range(rowkey1,true,rowkey2, true);
-			SearchIt(range,columnArray);
-			rowArrayGood=true;
-		} else if(length == 2 & !rowArray[length-1].equals(":")) {
-			// Ex, rowQuery='a,c,'
-			// Query for rows with 'a' and 'c'
-			// Then, we should do use BatchScanner
-			// Set up HashSet<Range> ranges
-			//HashMap<String, String> loadRowMap(HashMap<String, Object> rowInfo)
-			//HashMap<String,String> rowMapString = loadRowMap(rowInfo);
-			ranges = loadRanges(rowArray);
-			SearchIt(ranges,columnArray);
-
-			rowArrayGood = true;
-
-		} else 	if(length == 3) {
-
-			if(rowArray[1].equals(":")) {
-				rowkey1 = rowArray[0];
-				rowkey2 = rowArray[length-1];
-				if (log.isDebugEnabled())
-					log.debug("3__RANGE__"+rowkey1+","+rowkey2);
-				range = new Range(rowkey1,true,rowkey2, true);
-				SearchIt(range,columnArray);
-				rowArrayGood = true;
-
-			} 
-			else {//else if( rowArray[(length-1)].equals(":")) {
-				//rowkey1 = rowArray[0];
-				//rowkey2 = rowArray[1];
-				ranges = loadRanges(rowArray);
-				SearchIt(ranges,columnArray);
-				rowArrayGood = true;
+
+		if(this.scannerIter == null) {
+			SortedSet<Range> ranges = GraphuloUtil.d4mRowToRanges(rows);
+			try {
+				if(ranges.size() == 1) {
+					this.scanner = getScanner();
+					scanner.setRange(ranges.first());
+					applyColumnFilter(scanner, cols);
+					this.scannerIter = scanner.iterator();
+				} else {
+					// all row ranges in one BatchScan
+					this.bscanner = getBatchScanner();
+					bscanner.setRanges(ranges);
+					applyColumnFilter(bscanner, cols);
+					this.scannerIter = bscanner.iterator();
+				}
+			} catch (AccumuloException | TableNotFoundException | AccumuloSecurityException e) {
+				log.warn("cannot scan "+tableName, e);
+				return results;
 			}
 		}
-		if(!rowArrayGood || length > 3) {
-			System.out.println("Currently, we cannot handle more than 3 arguments for row key and column key");
-			System.out.println("The row and column queries must be in any of the following forms:");
-			System.out.println("  *  rowkey (colkey) = \"a,\" ");
-			System.out.println("  *  rowkey (colkey) = \"a,b,\"");
-			System.out.println("  *  rowkey (colkey) = \"a,:,h,\"");
-			System.out.println("  *  rowkey (colkey) = \":\"");
-
-			return results;
-		}
+		iterateOverEntries(this.scannerIter);
+		if(!this.hasNext)
+			close();
 
 		this.setRowReturnString(sbRowReturn.toString());
 		this.setColumnReturnString(sbColumnReturn.toString());
@@ -822,94 +776,51 @@ public class D4mDbQueryAccumulo extends D4mParentQuery {
 		return results;
 	}
 
-	private void SearchIt(Range range, String [] columnArray) {
-		String colRegex = RegExpUtil.makeRegex(columnArray);
-		if(compareUtil == null) {
-			this.compareUtil = new CompareUtil(columnArray);
-		}
-		if(columnArray.length == 3 && columnArray[1].equals(":")) {
-//			String colStart1 = columnArray[0].substring(0, 1);
-//			String colEnd1 = columnArray[2].substring(0,1);
-			//colRegex = RegExpUtil.makeRegex(columnArray);//"^["+colStart1+"-"+colEnd1+"].*";
-			log.debug("COLUMN REGEX="+colRegex);
-			SearchIt(range,colRegex);
-			//SearchIt(range,this.compareUtil);
+	/*
+	 * Select the columns of a D4M column query at the tablet server, in the column family of this query.
+	 *   Lists of columns are fetched, so only they are read;
+	 *   ranges use the same filters as GraphuloUtil.applyGeneralColumnFilter;
+	 *   patterns with a '*' use a RegExFilter on the column qualifier.
+	 *   An empty or null query selects every column, as ":" does.
+	 */
+	private void applyColumnFilter(ScannerBase scanner, String cols) {
+		Text fam = new Text(this.family);
+		if(cols == null || cols.length() <= 1 || cols.substring(0, cols.length() - 1).equals(":")) {
+			scanner.fetchColumnFamily(fam);
+		} else if(cols.indexOf('*') != -1) {
+			scanner.fetchColumnFamily(fam);
+			IteratorSetting itSet = new IteratorSetting(1, "D4mRegEx", RegExFilter.class);
+			RegExFilter.setRegexs(itSet, null, null, columnPatternRegex(cols), null, false);
+			scanner.addScanIterator(itSet);
+		} else if(cols.indexOf(':') == -1) {
+			for(Text col : GraphuloUtil.d4mRowToTexts(cols))
+				scanner.fetchColumn(fam, col);
 		} else {
-
-			if(this.scannerIter == null)
-				this.scannerIter = getIteratorFromScanner(range);
-			Iterator<Entry<Key,Value>> iter = this.scannerIter;
-			Entry<Key, Value> entry;
-			Pattern pat = Pattern.compile(colRegex);
-			while(this.hasNext=iter.hasNext()) {
-				entry = iter.next();
-				Key colkey = entry.getKey();
-
-				//	for(String colKey : columnArray) {
-				//	if(!colKey.equals(":")) {
-				String col = colkey.getColumnQualifier().toString();
-				Matcher match = pat.matcher(col);
-				//	boolean isMatching = Pattern.matches(colKey, col);
-				if(match.matches() && buildReturnString(colkey, entry.getValue())) {
-					break;
-				}
-				//	SearchIt(range,colKey);
-
-				//					}
-				//}
-			}
-		}
-
-		if(!this.hasNext) {
-			close();
+			scanner.fetchColumnFamily(fam);
+			GraphuloUtil.applyGeneralColumnFilter(cols, scanner, 1);
 		}
 	}
 
-	private Iterator <Entry<Key, Value>> getIteratorFromScanner(Range range) {
-		if(this.scannerIter != null)
-			return this.scannerIter;
-		try {
-			this.scanner = getScanner();
-			this.scanner.setRange(range);
-			//Setup regular expression
-			//			String regexName="D4mRegEx";
-			//			this.scanner.setScanIterators(1, RegExIterator.class.getName(), regexName);
-			//			this.scanner.setScanIteratorOption(regexName, RegExFilter.COLQ_REGEX, colRegex);
-			//scanner.setColumnQualifierRegex(colRegex);
-			scanner.fetchColumnFamily(new Text(this.family));
-
-		} catch (Exception e) {
-			e.printStackTrace();
+	/*
+	 * Regex matching a D4M column pattern query such as "a*,b,c*,".
+	 *   Queries mixing ranges and patterns fall back to RegExpUtil.makeRegex.
+	 */
+	private String columnPatternRegex(String cols) {
+		String[] colArray = this.processParam(cols).getContent();
+		if(Arrays.asList(colArray).contains(":"))
+			return RegExpUtil.makeRegex(colArray);
+		StringBuilder sb = new StringBuilder();
+		for(String c : colArray) {
+			if(sb.length() > 0)
+				sb.append('|');
+			if(c.endsWith("*"))
+				sb.append(Pattern.quote(c.substring(0, c.length()-1))).append(".*");
+			else
+				sb.append(Pattern.quote(c));
 		}
-		return this.scanner.iterator();
+		return sb.toString();
 	}
-	private void SearchIt(Range range, String colRegex) {
-		if(this.scanner == null) {
-			try {
-				this.scanner = getScanner();
-				this.scanner.setRange(range);
-				//Setup regular expression
-				//String regexName="D4mRegEx";
-				//this.scanner.setScanIterators(1, RegExIterator.class.getName(), regexName);
-				//this.scanner.setScanIteratorOption(regexName, RegExFilter.COLQ_REGEX, colRegex);
-				//scanner.setColumnQualifierRegex(colRegex);
-				scanner.fetchColumnFamily(new Text(this.family));
 
-			} catch (AccumuloException | TableNotFoundException | AccumuloSecurityException e) {
-				e.printStackTrace();
-			}
-			//catch (IOException e) {
-			//	e.printStackTrace();
-			//}
-		}
-
-		//setup query, set range
-		if(this.scannerIter == null) {
-			this.scannerIter = this.scanner.iterator();
-		}
-
-		iterateOverEntries(this.scannerIter, this.compareUtil);
-	}
 	private  Entry<Key, Value> iterateOverEntries(Iterator<Entry<Key, Value>> scannerIter, CompareUtil compUtil) {
 		Entry<Key, Value> entry =null;
 		String rowKey;
@@ -965,93 +876,6 @@ public class D4mDbQueryAccumulo extends D4mParentQuery {
 		return entry;
 	}
 
-	private void SearchIt(HashSet<Range> ranges, String [] columnArray) {
-		//String colRegex = "";
-		if(compareUtil == null) {
-			this.compareUtil = new CompareUtil(columnArray);
-		}
-
-		if(columnArray.length == 3 && columnArray[1].equals(":")) {
-			//String colStart1 = columnArray[0].substring(0, 1);
-			//String colEnd1 = columnArray[2].substring(0,1);
-			//colRegex = RegExpUtil.makeRegex(columnArray);//"["+colStart1+"-"+colEnd1+"].*";
-			SearchIt(ranges,this.compareUtil);
-		} else {
-			//for(String colKey : columnArray) {
-			String colregex = RegExpUtil.makeRegex(columnArray);
-			Pattern colpat = Pattern.compile(colregex);
-			SearchIt(ranges,colpat);
-			//}
-		}
-
-	}
-
-	private void SearchIt(HashSet<Range> ranges, CompareUtil compUtil) {
-		if(this.scannerIter == null) {
-			try {
-				this.bscanner = getBatchScanner();
-				this.bscanner.setRanges(ranges);
-				bscanner.fetchColumnFamily(new Text(this.family));
-
-				this.scannerIter = bscanner.iterator();
-			} catch (AccumuloException | TableNotFoundException | AccumuloSecurityException e) {
-				e.printStackTrace();
-			}
-
-		}
-		iterateOverEntries(this.scannerIter, compUtil);
-
-
-	}
-
-	private void SearchIt(HashSet<Range> ranges, Pattern col) {
-		//BatchScanner scanner = null;
-		Entry<Key, Value> entry =null;
-		String rowKey = null;
-		try {
-			if(this.scannerIter == null) {
-				if( this.bscanner == null || !this.hasNext) {
-					bscanner = getBatchScanner();
-					bscanner.setRanges(ranges);
-
-					//loop over columns
-					//reset column by scanner.clearColumns()s
-					//set new columns fetchColumn(fam,col)
-					//iterate
-					//fill output buffer
-					//scanner.setColumnQualifierRegex(colRegex);
-					String regexName="D4mRegEx";
-					IteratorSetting itSet  = new IteratorSetting(1, regexName, RegExFilter.class);
-					//IteratorSetting.addOption(option, value)
-					itSet.addOption(RegExFilter.COLQ_REGEX, col.pattern());
-					bscanner.addScanIterator(itSet);
-
-					//bscanner.setScanIterators(1, RegExIterator.class.getName(), regexName);
-					//bscanner.setScanIteratorOption(regexName, RegExFilter.COLQ_REGEX, col.pattern());
-
-					bscanner.fetchColumnFamily(new Text(this.family));
-				}
-				this.scannerIter = bscanner.iterator();
-			}
-
-
-			//int count=0;
-
-			//		    iterateOverEntries(this.scannerIter,col);
-			iterateOverEntries(this.scannerIter);
-
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		finally {
-			setNewRowKeyInMap(rowKey, this.rowInfo);
-			if(!this.hasNext)
-				close();
-		}
-
-	}
-
 	private void saveTestResults(String rowKey, String columnFamily, String finalColumn, String value) {
 		D4mDbRow row = new D4mDbRow();
 		row.setRow(rowKey);
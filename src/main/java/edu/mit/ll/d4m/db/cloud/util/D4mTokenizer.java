@@ -0,0 +1,176 @@
+package edu.mit.ll.d4m.db.cloud.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a D4M string such as "a,bb,c," into tokens without copying them.
+ * The last character is the separator.
+ * The string is encoded to UTF-8 once; each token is an offset and length into those bytes,
+ * compared in unsigned byte order, the same order as Accumulo keys.
+ * Unlike {@link D4mQueryUtil#processParam(String)}, empty tokens are kept so that
+ * parallel row, column and value strings stay aligned.
+ */
+public class D4mTokenizer {
+
+	private final byte[] data;
+	/** Token i is data[starts[i], starts[i+1]-sepLen). */
+	private final int[] starts;
+	private final int sepLen;
+	private final int n;
+
+	public D4mTokenizer(String d4mStr) {
+		if(d4mStr == null || d4mStr.isEmpty()) {
+			data = new byte[0];
+			starts = new int[] {0};
+			sepLen = 0;
+			n = 0;
+			return;
+		}
+		int sepStart = d4mStr.offsetByCodePoints(d4mStr.length(), -1);
+		data = d4mStr.getBytes(StandardCharsets.UTF_8);
+		byte[] sep = d4mStr.substring(sepStart).getBytes(StandardCharsets.UTF_8);
+		sepLen = sep.length;
+
+		int[] st = new int[16];
+		int cnt = 0;
+		st[0] = 0;
+		for(int p = 0; p <= data.length - sepLen; ) {
+			if(matches(sep, p)) {
+				if(++cnt == st.length)
+					st = Arrays.copyOf(st, st.length*2);
+				p += sepLen;
+				st[cnt] = p;
+			} else
+				p++;
+		}
+		n = cnt;
+		starts = st;
+	}
+
+	private boolean matches(byte[] sep, int p) {
+		for(int j = 0; j < sep.length; j++)
+			if(data[p+j] != sep[j])
+				return false;
+		return true;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	/** Backing UTF-8 bytes shared by all tokens. */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int start(int i) {
+		return starts[i];
+	}
+
+	public int length(int i) {
+		return starts[i+1] - sepLen - starts[i];
+	}
+
+	/** Copy of token i's bytes. */
+	public byte[] getBytes(int i) {
+		return Arrays.copyOfRange(data, starts[i], starts[i] + length(i));
+	}
+
+	public String toString(int i) {
+		return new String(data, starts[i], length(i), StandardCharsets.UTF_8);
+	}
+
+	/** Unsigned byte comparison of token i with token j of other. */
+	public int compare(int i, D4mTokenizer other, int j) {
+		int s1 = starts[i], l1 = length(i), s2 = other.starts[j], l2 = other.length(j);
+		byte[] d1 = data, d2 = other.data;
+		int lim = Math.min(l1, l2);
+		for(int k = 0; k < lim; k++) {
+			int c = (d1[s1+k] & 0xFF) - (d2[s2+k] & 0xFF);
+			if(c != 0)
+				return c;
+		}
+		return l1 - l2;
+	}
+
+	/** Unsigned byte comparison of token i with bytes[start, start+len). */
+	public int compare(int i, byte[] bytes, int start, int len) {
+		int s1 = starts[i], l1 = length(i);
+		int lim = Math.min(l1, len);
+		for(int k = 0; k < lim; k++) {
+			int c = (data[s1+k] & 0xFF) - (bytes[start+k] & 0xFF);
+			if(c != 0)
+				return c;
+		}
+		return l1 - len;
+	}
+
+	/**
+	 * Compare Strings by Unicode code point, which is the order of {@link #compare} on their UTF-8 bytes.
+	 * Unlike {@link String#compareTo}, this orders characters outside the Basic Multilingual Plane after all others.
+	 */
+	public static int compareCodePoints(String a, String b) {
+		int i = 0, j = 0;
+		while(i < a.length() && j < b.length()) {
+			int ca = a.codePointAt(i), cb = b.codePointAt(j);
+			if(ca != cb)
+				return ca < cb ? -1 : 1;
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+		if(i < a.length())
+			return 1;
+		return j < b.length() ? -1 : 0;
+	}
+
+	/**
+	 * Indices 0..size()-1 stably sorted by this token, then by the token of secondary if not null.
+	 * Sorts primitive ints rather than boxed Integers.
+	 */
+	public int[] sortedIndex(D4mTokenizer secondary) {
+		int[] idx = new int[n];
+		for(int i = 0; i < n; i++)
+			idx[i] = i;
+		// D4M input is often already sorted
+		boolean sorted = true;
+		for(int i = 1; i < n && sorted; i++)
+			sorted = cmp(idx[i-1], idx[i], secondary) <= 0;
+		if(!sorted)
+			mergeSort(idx, new int[n], 0, n, secondary);
+		return idx;
+	}
+
+	private int cmp(int a, int b, D4mTokenizer secondary) {
+		int c = compare(a, this, b);
+		if(c == 0 && secondary != null)
+			c = secondary.compare(a, secondary, b);
+		return c;
+	}
+
+	private void mergeSort(int[] a, int[] tmp, int lo, int hi, D4mTokenizer secondary) {
+		if(hi - lo < 16) { // insertion sort
+			for(int i = lo+1; i < hi; i++) {
+				int v = a[i], j = i;
+				for(; j > lo && cmp(a[j-1], v, secondary) > 0; j--)
+					a[j] = a[j-1];
+				a[j] = v;
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		mergeSort(a, tmp, lo, mid, secondary);
+		mergeSort(a, tmp, mid, hi, secondary);
+		if(cmp(a[mid-1], a[mid], secondary) <= 0)
+			return;
+		System.arraycopy(a, lo, tmp, lo, hi - lo);
+		int i = lo, j = mid, k = lo;
+		while(i < mid && j < hi)
+			a[k++] = cmp(tmp[j], tmp[i], secondary) < 0 ? tmp[j++] : tmp[i++];
+		while(i < mid)
+			a[k++] = tmp[i++];
+		while(j < hi)
+			a[k++] = tmp[j++];
+	}
+
+}
@@ -1,6 +1,7 @@
 package edu.mit.ll.graphulo;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mit.ll.graphulo.apply.ApplyIterator;
 import edu.mit.ll.graphulo.apply.ConstantColQApply;
 import edu.mit.ll.graphulo.apply.JaccardDegreeApply;
@@ -11,20 +12,24 @@ import edu.mit.ll.graphulo.ewise.EWiseOp;
 import edu.mit.ll.graphulo.reducer.EdgeBFSReducer;
 import edu.mit.ll.graphulo.reducer.GatherReducer;
 import edu.mit.ll.graphulo.reducer.Reducer;
+import edu.mit.ll.graphulo.reducer.ReducerBinary;
 import edu.mit.ll.graphulo.reducer.SingleBFSReducer;
 import edu.mit.ll.graphulo.rowmult.CartesianRowMultiply;
 import edu.mit.ll.graphulo.rowmult.EdgeBFSMultiply;
 import edu.mit.ll.graphulo.rowmult.LineRowMultiply;
 import edu.mit.ll.graphulo.rowmult.MultiplyOp;
+import edu.mit.ll.graphulo.rowmult.NmfErrorRowMultiply;
 import edu.mit.ll.graphulo.rowmult.SelectorRowMultiply;
 import edu.mit.ll.graphulo.rowmult.UpperTriTwoJoin;
 import edu.mit.ll.graphulo.simplemult.ConstantTwoScalar;
 import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
 import edu.mit.ll.graphulo.simplemult.MathTwoScalar.ScalarOp;
 import edu.mit.ll.graphulo.simplemult.MathTwoScalar.ScalarType;
+import edu.mit.ll.graphulo.skvi.BroadcastTable;
 import edu.mit.ll.graphulo.skvi.CountAllIterator;
 import edu.mit.ll.graphulo.skvi.IntCombiner.Type;
 import edu.mit.ll.graphulo.skvi.IntSummingCombiner;
+import edu.mit.ll.graphulo.skvi.IteratorMetrics;
 import edu.mit.ll.graphulo.skvi.InverseMatrixIterator;
 import edu.mit.ll.graphulo.skvi.JaccardMultiplyIterator;
 import edu.mit.ll.graphulo.skvi.LruCacheIterator;
@@ -32,8 +37,10 @@ import edu.mit.ll.graphulo.skvi.MinMaxFilter;
 import edu.mit.ll.graphulo.skvi.OddDivideIntSummingCombiner;
 import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
 import edu.mit.ll.graphulo.skvi.RemoteWriteIterator;
+import edu.mit.ll.graphulo.skvi.RowSampleIterator;
 import edu.mit.ll.graphulo.skvi.SamplingFilter;
 import edu.mit.ll.graphulo.skvi.SingleTransposeIterator;
+import edu.mit.ll.graphulo.skvi.TableStatsIterator;
 import edu.mit.ll.graphulo.skvi.SmallLargeRowFilter;
 import edu.mit.ll.graphulo.skvi.TopColPerRowIterator;
 import edu.mit.ll.graphulo.skvi.TriangularFilter;
@@ -47,18 +54,23 @@ import edu.mit.ll.graphulo.tricount.OneAggReducer;
 import edu.mit.ll.graphulo.tricount.PowerLawDegreeTriangleApply;
 import edu.mit.ll.graphulo.tricount.TriangularFilter_TriCountMagic;
 import edu.mit.ll.graphulo.tricount.UpperTriCountTrianglesAdjEdgeJoin;
+import edu.mit.ll.graphulo.util.CsrMatrix;
 import edu.mit.ll.graphulo.util.DebugUtil;
+import edu.mit.ll.graphulo.util.ExecutionPlanner;
 import edu.mit.ll.graphulo.util.GraphuloUtil;
 import edu.mit.ll.graphulo.util.MTJUtil;
 import edu.mit.ll.graphulo.util.MemMatrixUtil;
+import edu.mit.ll.graphulo.util.EntrySink;
+import edu.mit.ll.graphulo.util.ScanCache;
 import edu.mit.ll.graphulo.util.SerializationUtil;
+import edu.mit.ll.graphulo.util.TableStats;
+import edu.mit.ll.graphulo.util.VertexSet;
 import edu.mit.ll.graphulo_ocean.CartesianDissimilarityIterator;
 import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Matrices;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.MatrixEntry;
-import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.BatchScanner;
@@ -82,6 +94,7 @@ import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.Combiner;
 import org.apache.accumulo.core.iterators.LongCombiner;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.user.ColumnSliceFilter;
@@ -92,11 +105,17 @@ import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.core.trace.DistributedTrace;
 import org.apache.commons.lang.mutable.MutableLong;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.DefaultRealMatrixChangingVisitor;
 import org.apache.commons.math3.linear.DefaultRealMatrixPreservingVisitor;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealMatrixChangingVisitor;
+import org.apache.commons.math3.util.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.htrace.Sampler;
 import org.apache.htrace.Trace;
@@ -105,6 +124,7 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -120,10 +140,18 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.UUID;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static edu.mit.ll.graphulo.skvi.TriangularFilter.TriangularType;
 import static edu.mit.ll.graphulo.util.GraphuloUtil.EMPTY_TEXT;
@@ -146,6 +174,12 @@ public class Graphulo {
             MathTwoScalar.combinerSetting(6, null, ScalarOp.PLUS, ScalarType.LONG, false);
   public static final IteratorSetting PLUS_ITERATOR_DOUBLE =
       MathTwoScalar.combinerSetting(6, null, ScalarOp.PLUS, ScalarType.DOUBLE, false);
+  /** Sums 8-byte binary longs. Pair with a {@link ScalarType#FIXED_LONG} multiply to avoid parsing strings. */
+  public static final IteratorSetting PLUS_ITERATOR_FIXED_LONG =
+      MathTwoScalar.combinerSetting(6, null, ScalarOp.PLUS, ScalarType.FIXED_LONG, false);
+  /** Sums 8-byte binary doubles. Pair with a {@link ScalarType#FIXED_DOUBLE} multiply to avoid parsing strings. */
+  public static final IteratorSetting PLUS_ITERATOR_FIXED_DOUBLE =
+      MathTwoScalar.combinerSetting(6, null, ScalarOp.PLUS, ScalarType.FIXED_DOUBLE, false);
   public static final Lexicoder<Integer> UINTEGER_LEXICODER = new UIntegerLexicoder();
   public static final IntegerEmptyLexicoder INTEGER_EMPTY_LEXICODER = new IntegerEmptyLexicoder();
 
@@ -163,6 +197,140 @@ public class Graphulo {
     return connector;
   }
 
+  /**
+   * Put the entries of table passing filterRowCol on both rows and columns into sink,
+   * from scanCache if not null, otherwise by OneTable.
+   * @return Number of entries put.
+   */
+  private long scanToClient(String table, String filterRowCol, EntrySink sink, ScanCache scanCache) {
+    if (scanCache != null) {
+      long n = scanCache.scan(connector, table, Authorizations.EMPTY, filterRowCol, filterRowCol, sink);
+      if (n >= 0)
+        return n;
+    }
+    return OneTable(table, null, null, sink, -1, null, null, null, filterRowCol, filterRowCol, null, null, Authorizations.EMPTY,
+        null, null, TwoTableOptions.DEFAULT);
+  }
+
+  /** The planner of the *_Auto methods when none is given: one server-side worker per tablet server. */
+  private ExecutionPlanner defaultPlanner() {
+    return new ExecutionPlanner(Math.max(1, connector.instanceOperations().getTabletServers().size()));
+  }
+
+  /** Maximum number of sub-range scans a parallel TwoTable runs at once from the client. */
+  private static final int PARALLEL_SCAN_THREADS = 50;
+
+  /** Rows splitting the B table into about <tt>threads</tt> sub-ranges per tablet, in D4M format. */
+  private String findParallelSplits(String Btable, int threads) {
+    int numTablets;
+    try {
+      numTablets = connector.tableOperations().listSplits(Btable).size() + 1;
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      log.error("problem listing splits of " + Btable, e);
+      throw new RuntimeException(e);
+    }
+    int numSubRanges = numTablets * threads;
+    long numEntries = countEntries(Btable);
+    if (numEntries < numSubRanges)
+      return "";
+    // findEvenSplitsSampled separates with newlines, which is also a valid D4M separator at the end of the string
+    return findEvenSplitsSampled(Btable, numSubRanges - 1, numEntries / numSubRanges, 1.0, 1.0, 0, false);
+  }
+
+  /**
+   * Row ranges covering the table, split at its tablet boundaries and at the given rows,
+   * so that each range falls within one tablet.
+   */
+  private List<Range> splitAtTablets(String table, String splitRows) {
+    SortedSet<Text> splits;
+    try {
+      splits = new TreeSet<>(connector.tableOperations().listSplits(table));
+    } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+      log.error("problem listing splits of " + table, e);
+      throw new RuntimeException(e);
+    }
+    if (splitRows != null && !splitRows.isEmpty())
+      splits.addAll(GraphuloUtil.d4mRowToTexts(splitRows));
+    List<Range> ranges = new ArrayList<>(splits.size() + 1);
+    Text prev = null;
+    for (Text split : splits) {
+      ranges.add(new Range(prev, false, split, true));
+      prev = split;
+    }
+    ranges.add(new Range(prev, false, null, true));
+    return ranges;
+  }
+
+  /**
+   * Scan each range with its own Scanner, up to {@link #PARALLEL_SCAN_THREADS} at once,
+   * so that the tablet servers run a separate scan, and so a separate RemoteWriteIterator, for each range.
+   * The ranges should fall within one tablet each; see {@link #splitAtTablets}.
+   * @param itset Iterators to apply to each scan, ending with RemoteWriteIterator.
+   * @param stats Merges the statistics of the entries written, if the RemoteWriteIterator sends them. May be null.
+   * @return Sum of the number of entries processed reported by each RemoteWriteIterator.
+   */
+  private long scanRangesParallel(final String table, final Authorizations auths, final String colFilter,
+                                  final IteratorSetting itset, List<Range> ranges,
+                                  final Reducer reducer, final IteratorMetrics metrics, final TableStats stats) {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(ranges.size(), PARALLEL_SCAN_THREADS),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("TwoTable-" + table + "-%d").build());
+    List<Future<Long>> futures = new ArrayList<>(ranges.size());
+    try {
+      for (final Range range : ranges)
+        futures.add(pool.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws TableNotFoundException {
+            Scanner scanner = connector.createScanner(table, auths);
+            try {
+              scanner.setRange(range);
+              // fetch the same columns as the serial path; a column range filter, if any, is already in itset
+              GraphuloUtil.applyGeneralColumnFilter(colFilter, scanner, new DynamicIteratorSetting(1, null), true);
+              scanner.addScanIterator(itset);
+              long n = 0;
+              for (Map.Entry<Key, Value> entry : scanner) {
+                long thisEntries;
+                synchronized (metrics) {
+                  thisEntries = RemoteWriteIterator.decodeValue(entry.getValue(), reducer, metrics, stats);
+                }
+                log.debug(entry.getKey().toStringNoTime() + " -> " + thisEntries + " entries processed");
+                n += thisEntries;
+              }
+              return n;
+            } finally {
+              scanner.close();
+            }
+          }
+        }));
+      long numEntries = 0;
+      for (Future<Long> future : futures)
+        numEntries += future.get();
+      return numEntries;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted while scanning " + table, e);
+    } catch (ExecutionException e) {
+      log.error("problem scanning a sub-range of " + table, e.getCause());
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** Whether plusOp can be used to pre-sum partial products before they are written. */
+  private static boolean canPreSum(IteratorSetting plusOp) {
+    if (plusOp == null)
+      return false;
+    Map<String,String> opts = plusOp.getOptions();
+    if (!Boolean.parseBoolean(opts.get("all")))
+      return false;
+    try {
+      return Combiner.class.isAssignableFrom(Class.forName(plusOp.getIteratorClass()));
+    } catch (ClassNotFoundException e) {
+      log.warn("cannot pre-sum with plusOp because its class is not on the client classpath: " + plusOp);
+      return false;
+    }
+  }
+
   /**
    * Check authenticationToken works for this user.
    */
@@ -412,12 +580,37 @@ public class Graphulo {
                         Reducer reducer, Map<String, String> reducerOpts,
                         int numEntriesCheckpoint,
                         Authorizations ATauthorizations, Authorizations Bauthorizations) {
+    return TableMult(ATtable, Btable, Ctable, CTtable, BScanIteratorPriority,
+        multOp, multOpOptions, plusOp, rowFilter, colFilterAT, colFilterB,
+        alsoDoAA, alsoDoBB, alsoEmitA, alsoEmitB,
+        iteratorsBeforeA, iteratorsBeforeB, iteratorsAfterTwoTable,
+        reducer, reducerOpts,
+        numEntriesCheckpoint, ATauthorizations, Bauthorizations, TwoTableOptions.DEFAULT);
+  }
+
+  /**
+   * TableMult with execution settings for this call, such as {@link TwoTableOptions#withBroadcastAT}.
+   * @param options Null means {@link TwoTableOptions#DEFAULT}.
+   */
+  public long TableMult(String ATtable, String Btable, String Ctable, String CTtable,
+                        int BScanIteratorPriority,
+                        Class<? extends MultiplyOp> multOp, Map<String, String> multOpOptions,
+                        IteratorSetting plusOp,
+                        String rowFilter, String colFilterAT, String colFilterB,
+                        boolean alsoDoAA, boolean alsoDoBB,
+                        boolean alsoEmitA, boolean alsoEmitB,
+                        List<IteratorSetting> iteratorsBeforeA, List<IteratorSetting> iteratorsBeforeB,
+                        List<IteratorSetting> iteratorsAfterTwoTable,
+                        Reducer reducer, Map<String, String> reducerOpts,
+                        int numEntriesCheckpoint,
+                        Authorizations ATauthorizations, Authorizations Bauthorizations,
+                        TwoTableOptions options) {
     return TwoTableROWCartesian(ATtable, Btable, Ctable, CTtable, BScanIteratorPriority,
         multOp, multOpOptions, plusOp, rowFilter, colFilterAT, colFilterB,
         alsoDoAA, alsoDoBB, alsoDoAA, alsoDoBB, alsoEmitA, alsoEmitB,
         iteratorsBeforeA, iteratorsBeforeB, iteratorsAfterTwoTable,
         reducer, reducerOpts,
-        numEntriesCheckpoint, ATauthorizations, Bauthorizations);
+        numEntriesCheckpoint, ATauthorizations, Bauthorizations, options);
   }
 
   public long TwoTableROWCartesian(String ATtable, String Btable, String Ctable, String CTtable,
@@ -458,6 +651,34 @@ public class Graphulo {
                                    Reducer reducer, Map<String, String> reducerOpts,
                                    int numEntriesCheckpoint,
                                    Authorizations ATauthorizations, Authorizations Bauthorizations) {
+    return TwoTableROWCartesian(ATtable, Btable, Ctable, CTtable, BScanIteratorPriority,
+        multOp, multOpOptions, plusOp,
+        rowFilter, colFilterAT, colFilterB,
+        emitNoMatchA, emitNoMatchB, alsoDoAA, alsoDoBB, alsoEmitA, alsoEmitB,
+        iteratorsBeforeA, iteratorsBeforeB, iteratorsAfterTwoTable,
+        reducer, reducerOpts,
+        numEntriesCheckpoint, ATauthorizations, Bauthorizations, TwoTableOptions.DEFAULT);
+  }
+
+  /**
+   * TwoTableROWCartesian with execution settings for this call.
+   * @param options Null means {@link TwoTableOptions#DEFAULT}.
+   */
+  public long TwoTableROWCartesian(String ATtable, String Btable, String Ctable, String CTtable,
+                                   int BScanIteratorPriority,
+                                   Class<? extends MultiplyOp> multOp, Map<String, String> multOpOptions,
+                                   IteratorSetting plusOp,
+                                   String rowFilter,
+                                   String colFilterAT, String colFilterB,
+                                   boolean emitNoMatchA, boolean emitNoMatchB,
+                                   boolean alsoDoAA, boolean alsoDoBB,
+                                   boolean alsoEmitA, boolean alsoEmitB,
+                                   List<IteratorSetting> iteratorsBeforeA, List<IteratorSetting> iteratorsBeforeB,
+                                   List<IteratorSetting> iteratorsAfterTwoTable,
+                                   Reducer reducer, Map<String, String> reducerOpts,
+                                   int numEntriesCheckpoint,
+                                   Authorizations ATauthorizations, Authorizations Bauthorizations,
+                                   TwoTableOptions options) {
     if (multOp == null)
       multOp = MathTwoScalar.class;
     Map<String,String> opt = new HashMap<>();
@@ -485,7 +706,7 @@ public class Graphulo {
         rowFilter, colFilterAT, colFilterB,
         emitNoMatchA, emitNoMatchB, iteratorsBeforeA, iteratorsBeforeB, iteratorsAfterTwoTable,
         reducer, reducerOpts,
-        numEntriesCheckpoint, ATauthorizations, Bauthorizations);
+        numEntriesCheckpoint, ATauthorizations, Bauthorizations, -1, options);
   }
 
   public long TwoTableROWSelector(
@@ -599,6 +820,31 @@ public class Graphulo {
                        int numEntriesCheckpoint,
                        Authorizations ATauthorizations, Authorizations Bauthorizations,
                        int batchWriterThreads) {
+    return TwoTable(ATtable, Btable, Ctable, CTtable, BScanIteratorPriority,
+        dotmode, optsTT, plusOp, rowFilter, colFilterAT, colFilterB, emitNoMatchA, emitNoMatchB,
+        iteratorsBeforeA, iteratorsBeforeB, iteratorsAfterTwoTable, reducer, reducerOpts, numEntriesCheckpoint,
+        ATauthorizations, Bauthorizations, batchWriterThreads, TwoTableOptions.DEFAULT);
+  }
+
+  /**
+   * TwoTable with execution settings for this call.
+   * @param options Pre-summing, parallelism, read-ahead, bulk output and broadcast settings. Null means {@link TwoTableOptions#DEFAULT}.
+   */
+  public long TwoTable(String ATtable, String Btable, String Ctable, String CTtable,
+                       int BScanIteratorPriority,
+                       TwoTableIterator.DOTMODE dotmode, Map<String, String> optsTT,
+                       IteratorSetting plusOp, // priority matters
+                       String rowFilter,
+                       String colFilterAT, String colFilterB,
+                       boolean emitNoMatchA, boolean emitNoMatchB,
+                       List<IteratorSetting> iteratorsBeforeA, List<IteratorSetting> iteratorsBeforeB,
+                       List<IteratorSetting> iteratorsAfterTwoTable,
+                       Reducer reducer, Map<String, String> reducerOpts,
+                       int numEntriesCheckpoint,
+                       Authorizations ATauthorizations, Authorizations Bauthorizations,
+                       int batchWriterThreads, TwoTableOptions options) {
+    if (options == null)
+      options = TwoTableOptions.DEFAULT;
     if (ATtable == null || ATtable.isEmpty())
       throw new IllegalArgumentException("Please specify table AT. Given: " + ATtable);
     if (Btable == null || Btable.isEmpty())
@@ -649,6 +895,26 @@ public class Graphulo {
     if (!tops.exists(Btable))
       throw new IllegalArgumentException("Table B does not exist. Given: " + Btable);
 
+    // reject tables marked with a Value encoding the operation cannot read
+    ScalarType multType = GraphuloUtil.findScalarType(optsTT),
+        plusType = plusOp == null ? null : GraphuloUtil.findScalarType(plusOp.getOptions()),
+        outType = plusType != null ? plusType : multType;
+    if (!ATtable.equals(TwoTableIterator.CLONESOURCE_TABLENAME))
+      GraphuloUtil.checkValueEncoding(tops, ATtable, multType);
+    GraphuloUtil.checkValueEncoding(tops, Btable, multType);
+    boolean markC = false, markCT = false;
+    // An element-wise product writes each key at most once, so the sketches of the entries written
+    // are the exact statistics of a new Ctable. Cache them instead of scanning Ctable later.
+    boolean sketchC = useRWI && Ctable != null && dotmode == TwoTableIterator.DOTMODE.EWISE && !tops.exists(Ctable);
+    if (Ctable != null && tops.exists(Ctable))
+      GraphuloUtil.checkValueEncoding(tops, Ctable, outType);
+    else
+      markC = Ctable != null && outType != null && outType.isBinary();
+    if (CTtable != null && tops.exists(CTtable))
+      GraphuloUtil.checkValueEncoding(tops, CTtable, outType);
+    else
+      markCT = CTtable != null && outType != null && outType.isBinary();
+
     if (Ctable != null && !tops.exists(Ctable))
       try {
         tops.create(Ctable);
@@ -670,11 +936,22 @@ public class Graphulo {
         log.error("crazy", e);
         throw new RuntimeException(e);
       }
+    if (markC)
+      GraphuloUtil.setValueEncoding(tops, Ctable, outType);
+    if (markCT)
+      GraphuloUtil.setValueEncoding(tops, CTtable, outType);
 
     Map<String, String>
         optTT = basicRemoteOpts("AT.", ATtable, null, ATauthorizations),
         optRWI = (useRWI) ? basicRemoteOpts("", Ctable, CTtable, null) : null;
 //    optTT.put("trace", String.valueOf(Trace.isTracing())); // logs timing on server
+    Map<String, String> optRSI = RemoteSourceIterator.prefetchOptionMap(null, options.getPrefetchDepth(),
+        options.getPrefetchDepth() > 0 ? options.getPrefetchBatchSize() : -1);
+    RemoteSourceIterator.scanModeOptionMap(optRSI, options.getRemoteScanMode(), -1, -1, -1);
+    for (Map.Entry<String, String> entry : optRSI.entrySet())
+      optTT.put("AT." + entry.getKey(), entry.getValue());
+    if (options.isBroadcastAT() && !ATtable.equals(TwoTableIterator.CLONESOURCE_TABLENAME))
+      optTT.put("AT." + BroadcastTable.SNAPSHOT, BroadcastTable.newSnapshot()); // fresh copy for this call
     optTT.put("dotmode", dotmode.name());
     optTT.putAll(optsTT);
     if (colFilterAT != null)
@@ -698,6 +975,22 @@ public class Graphulo {
 
     if (batchWriterThreads > 0)
       optRWI.put(RemoteWriteIterator.OPT_BATCHWRITERTHREADS, Integer.toString(batchWriterThreads));
+    if (options.getPreSumBytes() > 0 && (Ctable != null || CTtable != null) && canPreSum(plusOp))
+      RemoteWriteIterator.preSumOptionMap(optRWI, options.getPreSumBytes(), plusOp, -1, null);
+    if (sketchC)
+      RemoteWriteIterator.statsOptionMap(optRWI);
+    List<Range> parallelRanges = null;
+    if (useRWI && options.getParallelism() > 1) {
+      int threads = options.getParallelism();
+      String splits = options.getParallelSplits() != null ? options.getParallelSplits() : findParallelSplits(Btable, threads);
+      parallelRanges = splitAtTablets(Btable, splits);
+      log.debug("TwoTable scanning " + Btable + " in " + parallelRanges.size() + " sub-ranges; splits " + splits);
+    }
+    Path bulkDir = null;
+    if (useRWI && options.getBulkOutputDir() != null && (Ctable != null || CTtable != null)) {
+      bulkDir = new Path(options.getBulkOutputDir(), "graphulo-" + UUID.randomUUID());
+      RemoteWriteIterator.bulkOptionMap(optRWI, bulkDir.toString(), options.getBulkBufferBytes());
+    }
 
     // scan B with TableMultIterator
     BatchScanner bs;
@@ -762,17 +1055,24 @@ public class Graphulo {
 
     // Do the BatchScan on B
     long numEntries = 0, thisEntries;
+    IteratorMetrics metrics = new IteratorMetrics();
+    TableStats statsC = sketchC ? new TableStats() : null;
+    long startMillis = System.currentTimeMillis();
     try {
-      for (Map.Entry<Key, Value> entry : bs) {
-        if (useRWI) {
-//          log.debug(entry.getKey() + " -> " + entry.getValue() + " AS " + Key.toPrintableString(entry.getValue().get(), 0, entry.getValue().get().length, 40) + " RAW "+ Arrays.toString(entry.getValue().get()));
-          thisEntries = RemoteWriteIterator.decodeValue(entry.getValue(), reducer);
-          log.debug(entry.getKey().toStringNoTime() + " -> " + thisEntries + " entries processed");
-          numEntries += thisEntries;
-        } else {
-          log.debug(entry.getKey() + " -> " + entry.getValue());
+      if (parallelRanges != null)
+        numEntries = scanRangesParallel(Btable, Bauthorizations, colFilterB, dis.toIteratorSetting(),
+            parallelRanges, reducer, metrics, statsC);
+      else
+        for (Map.Entry<Key, Value> entry : bs) {
+          if (useRWI) {
+//            log.debug(entry.getKey() + " -> " + entry.getValue() + " AS " + Key.toPrintableString(entry.getValue().get(), 0, entry.getValue().get().length, 40) + " RAW "+ Arrays.toString(entry.getValue().get()));
+            thisEntries = RemoteWriteIterator.decodeValue(entry.getValue(), reducer, metrics, statsC);
+            log.debug(entry.getKey().toStringNoTime() + " -> " + thisEntries + " entries processed");
+            numEntries += thisEntries;
+          } else {
+            log.debug(entry.getKey() + " -> " + entry.getValue());
+          }
         }
-      }
     } finally {
       bs.close();
       if (prevPropTableScanMaxMem != null) {
@@ -783,6 +1083,16 @@ public class Graphulo {
         }
       }
     }
+    if (options.getMetrics() != null)
+      options.getMetrics().merge(metrics);
+    if (useRWI)
+      log.debug("TwoTable " + ATtable + " " + Btable + " phases: " + metrics);
+    if (bulkDir != null)
+      importBulkDir(bulkDir, Ctable, CTtable);
+    if (statsC != null) {
+      statsC.setComputedMillis(startMillis);
+      putTableStats(Ctable, statsC);
+    }
 
     return numEntries;
 
@@ -852,7 +1162,50 @@ public class Graphulo {
                        BatchScanner bs,                                   // Optimization: re-use BatchScanner
                        Authorizations authorizations
   ) {
-    boolean useRWI = clientResultMap == null;
+    return OneTable(Atable, Rtable, RTtable, GraphuloUtil.mapSink(clientResultMap), AScanIteratorPriority, reducer, reducerOpts, plusOp,
+        rowFilter, colFilter, midIterator, bs, authorizations, null, null, TwoTableOptions.DEFAULT);
+  }
+
+  /**
+   * Like the OneTable above, with per-call options.
+   * Of these, OneTable uses {@link TwoTableOptions#withMetrics}.
+   */
+  public long OneTable(String Atable, String Rtable, String RTtable,
+                       Map<Key, Value> clientResultMap,
+                       int AScanIteratorPriority,
+                       Reducer reducer, Map<String, String> reducerOpts,
+                       IteratorSetting plusOp,
+                       String rowFilter,
+                       String colFilter,
+                       List<IteratorSetting> midIterator,
+                       BatchScanner bs,
+                       Authorizations authorizations,
+                       TwoTableOptions options
+  ) {
+    return OneTable(Atable, Rtable, RTtable, GraphuloUtil.mapSink(clientResultMap), AScanIteratorPriority, reducer, reducerOpts, plusOp,
+        rowFilter, colFilter, midIterator, bs, authorizations, null, null, options);
+  }
+
+  /**
+   * Like the public OneTable, gathering entries at the client into clientResultSink instead of a Map,
+   * and additionally reading only the rows in rowSet if not null. Requires writing or reducing at the server.
+   * If rowSetSep is not null, also reads the rows that start with a row in rowSet followed by rowSetSep.
+   */
+  private long OneTable(String Atable, String Rtable, String RTtable,
+                        EntrySink clientResultSink,
+                        int AScanIteratorPriority,
+                        Reducer reducer, Map<String, String> reducerOpts,
+                        IteratorSetting plusOp,
+                        String rowFilter,
+                        String colFilter,
+                        List<IteratorSetting> midIterator,
+                        BatchScanner bs,
+                        Authorizations authorizations,
+                        VertexSet rowSet, String rowSetSep,
+                        TwoTableOptions options
+  ) {
+    boolean useRWI = clientResultSink == null;
+    Preconditions.checkArgument(rowSet == null || useRWI, "rowSet requires a RemoteWriteIterator");
     if (Atable == null || Atable.isEmpty())
       throw new IllegalArgumentException("Please specify table A. Given: " + Atable);
     // Prevent possibility for infinite loop:
@@ -870,7 +1223,7 @@ public class Graphulo {
     Rtable = emptyToNull(Rtable);
     RTtable = emptyToNull(RTtable);
     Preconditions.checkArgument(useRWI || (Rtable == null && RTtable == null),
-        "clientResultMap must be null if given an Rtable or RTtable");
+        "clientResultSink must be null if given an Rtable or RTtable");
 //    if (!useRWI) {
 //      log.warn("Experimental: Streaming back result of multiplication to client." +
 //          "If Accumulo destroys, re-inits and re-seeks an iterator stack, the stack may not recover.");
@@ -953,6 +1306,11 @@ public class Graphulo {
 //      else
 //        dis.append(new IteratorSetting(4, SeekFilterIterator.class, rowFilterOpt));
     }
+    if (rowSet != null) {
+      optRWI.put(RemoteWriteIterator.ROWSET, rowSet.encodeBase64());
+      if (rowSetSep != null)
+        optRWI.put(RemoteWriteIterator.ROWSETSEP, rowSetSep);
+    }
 
     if (colFilter != null)
       GraphuloUtil.applyGeneralColumnFilter(colFilter, bs, dis, true);
@@ -971,6 +1329,7 @@ public class Graphulo {
     dis.addToScanner(bs);
 
     long numEntries = 0, thisEntries;
+    IteratorMetrics metrics = new IteratorMetrics();
     try {
       BatchScanner THISBS = bs;
       if (!useRWI) {
@@ -983,12 +1342,12 @@ public class Graphulo {
         if (useRWI) {
 //          log.debug(entry.getKey() + " -> " + entry.getValue() + " AS " + Key.toPrintableString(entry.getValue().get(), 0, entry.getValue().get().length, 40) + " RAW "+ Arrays.toString(entry.getValue().get()));
           // mutates reducer if not null:
-          thisEntries = RemoteWriteIterator.decodeValue(entry.getValue(), reducer);
+          thisEntries = RemoteWriteIterator.decodeValue(entry.getValue(), reducer, metrics);
           log.debug(entry.getKey().toStringNoTime() + " -> " + thisEntries + " entries processed");
           numEntries += thisEntries;
         } else {
 //          log.debug(entry.getKey() + " -> " + entry.getValue());
-          clientResultMap.put(entry.getKey(), entry.getValue());
+          clientResultSink.put(entry.getKey(), entry.getValue());
           if (reducer != null)
             reducer.update(entry.getKey(), entry.getValue());
           numEntries++;
@@ -1002,11 +1361,43 @@ public class Graphulo {
         bs.clearColumns();
       }
     }
+    if (options != null && options.getMetrics() != null)
+      options.getMetrics().merge(metrics);
 
     return numEntries;
   }
 
 
+  /**
+   * Bulk import the RFiles written by RemoteWriteIterator under bulkDir/table for each table, then delete bulkDir.
+   * Tables may be null or repeated. Keeps bulkDir if any RFile fails to import.
+   */
+  private void importBulkDir(Path bulkDir, String... tables) {
+    try {
+      FileSystem fs = bulkDir.getFileSystem(new Configuration());
+      Set<String> done = new HashSet<>();
+      for (String table : tables) {
+        if (table == null || !done.add(table))
+          continue;
+        Path dir = new Path(bulkDir, table);
+        if (!fs.exists(dir))
+          continue; // nothing written
+        Path failDir = new Path(bulkDir, "_failures/" + table);
+        fs.mkdirs(failDir);
+        long t = System.currentTimeMillis();
+        connector.tableOperations().importDirectory(table, dir.toString(), failDir.toString(), true);
+        FileStatus[] failed = fs.listStatus(failDir);
+        if (failed != null && failed.length > 0)
+          throw new RuntimeException(failed.length + " RFiles failed to import into " + table + "; see " + failDir);
+        log.debug("bulk import into " + table + " time: " + (System.currentTimeMillis() - t) + " ms");
+      }
+      fs.delete(bulkDir, true);
+    } catch (IOException | AccumuloException | AccumuloSecurityException | TableNotFoundException e) {
+      log.error("problem bulk importing " + bulkDir + " into " + Arrays.toString(tables), e);
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Use LongCombiner to sum.
    */
@@ -1084,14 +1475,34 @@ public class Graphulo {
    *                          Whatever value is inside a passed non-null object is overwritten.
    * @return  The nodes reachable in EXACTLY k steps from v0, unless outputUnion is true.
    */
-  @SuppressWarnings("unchecked")
   public String AdjBFS(String Atable, String v0, int k, String Rtable, String RTtable,
                        Map<Key, Value> clientResultMap, int AScanIteratorPriority,
                        String ADegtable, String degColumn, boolean degInColQ, int minDegree, int maxDegree,
                        IteratorSetting plusOp, Authorizations Aauthorizations, Authorizations ADegauthorizations,
                        boolean outputUnion, MutableLong numEntriesWritten) {
+    return AdjBFS(Atable, v0, k, Rtable, RTtable, clientResultMap, AScanIteratorPriority, ADegtable, degColumn, degInColQ,
+        minDegree, maxDegree, plusOp, Aauthorizations, ADegauthorizations, outputUnion, numEntriesWritten, null);
+  }
+
+  /**
+   * Adjacency table Breadth First Search, as {@link #AdjBFS(String, String, int, String, String, Map, int, String, String, boolean, int, int, IteratorSetting, Authorizations, Authorizations, boolean, MutableLong)},
+   * with execution settings.
+   * <p>
+   * Each step scans Atable locally at the tablet servers, so no {@link RemoteSourceIterator} is involved
+   * and the read-ahead settings of {@link TwoTableOptions#withRemotePrefetch} do not apply.
+   *
+   * @param options Execution settings. Only the metrics of {@link TwoTableOptions#withMetrics} are used. Null means {@link TwoTableOptions#DEFAULT}.
+   */
+  @SuppressWarnings("unchecked")
+  public String AdjBFS(String Atable, String v0, int k, String Rtable, String RTtable,
+                       Map<Key, Value> clientResultMap, int AScanIteratorPriority,
+                       String ADegtable, String degColumn, boolean degInColQ, int minDegree, int maxDegree,
+                       IteratorSetting plusOp, Authorizations Aauthorizations, Authorizations ADegauthorizations,
+                       boolean outputUnion, MutableLong numEntriesWritten, TwoTableOptions options) {
     boolean needDegreeFiltering = minDegree > 1 || maxDegree < Integer.MAX_VALUE;
     boolean useRWI = clientResultMap == null;
+    if (options == null)
+      options = TwoTableOptions.DEFAULT;
     checkGiven(true, "Atable", Atable);
     if (minDegree < 1)
       minDegree = 1;
@@ -1186,10 +1597,10 @@ public class Graphulo {
         reducer.init(reducerOpts, null);
 
         long t2 = System.currentTimeMillis(), dur;
-        long c = OneTable(Atable, Rtable, RTtable, clientResultMap, AScanIteratorPriority,
+        long c = OneTable(Atable, Rtable, RTtable, GraphuloUtil.mapSink(clientResultMap), AScanIteratorPriority,
             reducer, reducerOpts, plusOp,
             rowFilter, null, // no column filter
-            iteratorSettingList, bs, Aauthorizations
+            iteratorSettingList, bs, Aauthorizations, null, null, options
         );
         if (numEntriesWritten != null)
           numEntriesWritten.add(c);
@@ -1199,7 +1610,7 @@ public class Graphulo {
         scanTime += dur;
 
         vk.clear();
-        vk.addAll(reducer.getSerializableForClient());
+        vk.addAll(reducer.getStrings());
         if (allReachedNodes != null)
           allReachedNodes.addAll(vk);
         if (Trace.isTracing())
@@ -1221,6 +1632,224 @@ public class Graphulo {
     return GraphuloUtil.stringsToD4mString(outputUnion ? allReachedNodes : vk, sep);
   }
 
+  /** Scans of AdjBFS_Fused in flight at once. */
+  private static final int ADJBFS_FUSED_THREADS = 4;
+  /** Number of frontier nodes AdjBFS_Fused gathers before starting a scan to expand them, unless no more can arrive. */
+  private static final int ADJBFS_FUSED_BATCH = 1000;
+
+  /** A message from an AdjBFS_Fused scan expanding nodes at one level: some reached nodes, or the end of the scan. */
+  private static final class BFSHop {
+    final int level;
+    final VertexSet reached;
+    final long numEntries;
+    final RuntimeException error;
+
+    BFSHop(int level, VertexSet reached, long numEntries, RuntimeException error) {
+      this.level = level;
+      this.reached = reached;
+      this.numEntries = numEntries;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Adjacency table Breadth First Search that visits each node once, at its shortest distance from v0.
+   * Sums entries into Rtable for the out-edges of every visited node within k-1 steps of v0.
+   * Unlike {@link #AdjBFS}, which follows all walks of length up to k, a node reached again at a later step is not expanded again,
+   * so the nodes reachable in exactly k steps are those at distance k.
+   * <p>
+   * Frontiers pass between the servers and the client in the binary form of {@link VertexSet}, gathered by a {@link GatherReducer}.
+   * The client keeps the set of visited nodes and starts scans expanding the nodes of step k+1
+   * while tablets are still reporting the nodes of step k+1, as soon as all nodes up to step k are known.
+   * Up to {@value #ADJBFS_FUSED_THREADS} scans run at once, each expanding up to about {@value #ADJBFS_FUSED_BATCH} nodes.
+   * Results are not gathered at the client; give an Rtable or RTtable, or neither to only find the reached nodes.
+   * See {@link #AdjBFS} for the other parameters.
+   *
+   * @return The nodes at distance exactly k from v0, or up to k if outputUnion is true, excluding v0.
+   */
+  public String AdjBFS_Fused(String Atable, String v0, final int k, final String Rtable, final String RTtable,
+                             int AScanIteratorPriority,
+                             final String ADegtable, String degColumn, final boolean degInColQ, final int minDegree, final int maxDegree,
+                             final IteratorSetting plusOp, Authorizations Aauthorizations, Authorizations ADegauthorizations,
+                             boolean outputUnion, MutableLong numEntriesWritten) {
+    final boolean needDegreeFiltering = minDegree > 1 || maxDegree < Integer.MAX_VALUE;
+    checkGiven(true, "Atable", Atable);
+    Preconditions.checkArgument(maxDegree >= minDegree, "maxDegree=%s should be >= minDegree=%s", maxDegree, minDegree);
+    final String fAtable = Atable, fADegtable = emptyToNull(ADegtable),
+        fRtable = emptyToNull(Rtable), fRTtable = emptyToNull(RTtable);
+    final int priority = AScanIteratorPriority <= 0 ? 4 : AScanIteratorPriority;
+    final Authorizations Aauths = Aauthorizations == null ? Authorizations.EMPTY : Aauthorizations,
+        ADegauths = ADegauthorizations == null ? Authorizations.EMPTY : ADegauthorizations;
+    final Text degColumnText = new Text(degColumn == null ? "" : degColumn);
+    if (numEntriesWritten != null)
+      numEntriesWritten.setValue(0);
+    if (v0 == null || v0.isEmpty())
+      v0 = ":" + GraphuloUtil.DEFAULT_SEP_D4M_STRING;
+    final String fv0 = v0;
+    char sep = v0.charAt(v0.length() - 1);
+    if (k < 1)
+      return "";
+
+    // Create result tables and apply plusOp once, before scans run concurrently.
+    TableOperations tops = connector.tableOperations();
+    for (String table : new String[] {fRtable, fRTtable})
+      if (table != null) {
+        if (!tops.exists(table))
+          try {
+            tops.create(table);
+          } catch (AccumuloException | AccumuloSecurityException | TableExistsException e) {
+            log.error("error trying to create result table " + table, e);
+            throw new RuntimeException(e);
+          }
+        if (plusOp != null)
+          GraphuloUtil.applyIteratorSoft(plusOp, tops, table);
+      }
+    final List<IteratorSetting> midIterator = needDegreeFiltering && fADegtable == null
+        ? Collections.singletonList(SmallLargeRowFilter.iteratorSetting(3, minDegree, maxDegree))
+        : Collections.<IteratorSetting>emptyList();
+    final Map<String, String> reducerOpts = GatherReducer.reducerOptions(GatherReducer.KeyPart.COLQ);
+
+    final BlockingQueue<BFSHop> hops = new LinkedBlockingQueue<>();
+    ExecutorService pool = Executors.newFixedThreadPool(ADJBFS_FUSED_THREADS,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("AdjBFS_Fused-%d").build());
+
+    /** Expands the nodes at level, given as a VertexSet, or as the v0 D4M string for level 0. */
+    class Expand implements Runnable {
+      final int level;
+      final VertexSet nodes;
+
+      Expand(int level, VertexSet nodes) {
+        this.level = level;
+        this.nodes = nodes;
+      }
+
+      @Override
+      public void run() {
+        BatchScanner bs = null, bsDegree = null;
+        try {
+          VertexSet rows = nodes;
+          if (needDegreeFiltering && fADegtable != null) {
+            bsDegree = connector.createBatchScanner(fADegtable, ADegauths, 4);
+            rows = VertexSet.fromStrings(filterTextsDegreeTable(bsDegree, degColumnText, degInColQ, minDegree, maxDegree,
+                rows == null ? GraphuloUtil.d4mRowToRanges(fv0) : rows.toRanges()));
+          }
+          long c = 0;
+          if (rows == null || !rows.isEmpty()) {
+            bs = connector.createBatchScanner(fAtable, Aauths, 50);
+            GatherReducer reducer = new GatherReducer();
+            reducer.init(reducerOpts, null);
+            reducer.setListener(new ReducerBinary.Listener() {
+              @Override
+              public void vertices(VertexSet vertices) {
+                hops.add(new BFSHop(level, vertices, 0, null));
+              }
+            });
+            c = OneTable(fAtable, fRtable, fRTtable, null, priority, reducer, reducerOpts, null, // plusOp applied above
+                rows == null ? fv0 : null, null, midIterator, bs, Aauths, rows, null, TwoTableOptions.DEFAULT);
+          }
+          hops.add(new BFSHop(level, null, c, null));
+        } catch (TableNotFoundException e) {
+          hops.add(new BFSHop(level, null, 0, new RuntimeException(e)));
+        } catch (RuntimeException e) {
+          hops.add(new BFSHop(level, null, 0, e));
+        } finally {
+          if (bs != null)
+            bs.close();
+          if (bsDegree != null)
+            bsDegree.close();
+        }
+      }
+    }
+
+    // Level j holds the nodes at distance j. Level 0 is v0, given as ranges.
+    Collection<Range> v0Ranges = GraphuloUtil.d4mRowToRanges(v0);
+    VertexSet visited = new VertexSet();
+    VertexSet[] levels = new VertexSet[k + 1],  // nodes found at each level
+        waiting = new VertexSet[k + 1],         // nodes reached for a level that cannot be classified yet
+        toExpand = new VertexSet[k];            // nodes found at each level not yet sent to a scan
+    for (int j = 0; j <= k; j++) {
+      levels[j] = new VertexSet();
+      waiting[j] = new VertexSet();
+      if (j < k)
+        toExpand[j] = new VertexSet();
+    }
+    int[] running = new int[k];                 // scans expanding each level
+    // complete[j]: all nodes at level j are known. True when level j-1 is complete and its scans have finished.
+    boolean[] complete = new boolean[k + 1];
+    complete[0] = true;
+    long numEntries = 0;
+    int inFlight = 0;
+    try {
+      pool.execute(new Expand(0, null));
+      running[0]++;
+      inFlight++;
+      while (inFlight > 0) {
+        BFSHop hop;
+        try {
+          hop = hops.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("interrupted during AdjBFS_Fused", e);
+        }
+        if (hop.error != null)
+          throw hop.error;
+        if (hop.reached == null) {
+          running[hop.level]--;
+          inFlight--;
+          numEntries += hop.numEntries;
+        } else
+          waiting[hop.level + 1].addAll(hop.reached);
+
+        // classify reached nodes, start scans, and advance completed levels, from level 0 up
+        for (int j = 0; j < k; j++) {
+          if (!complete[j])
+            break;
+          if (!waiting[j + 1].isEmpty()) {
+            for (byte[] v : waiting[j + 1])
+              if (!visited.contains(v) && !inRanges(v0Ranges, v)) {
+                visited.add(v);
+                levels[j + 1].add(v);
+                if (j + 1 < k)
+                  toExpand[j + 1].add(v);
+              }
+            waiting[j + 1].clear();
+          }
+          complete[j + 1] = running[j] == 0 && toExpand[j].isEmpty();
+          if (j + 1 < k && !toExpand[j + 1].isEmpty()
+              && (toExpand[j + 1].size() >= ADJBFS_FUSED_BATCH || complete[j + 1])) {
+            pool.execute(new Expand(j + 1, toExpand[j + 1]));
+            toExpand[j + 1] = new VertexSet();
+            running[j + 1]++;
+            inFlight++;
+          }
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    if (numEntriesWritten != null)
+      numEntriesWritten.setValue(numEntries);
+    if (Trace.isTracing())
+      for (int j = 1; j <= k; j++)
+        log.debug("AdjBFS_Fused level " + j + ": " + levels[j].size() + " nodes");
+
+    VertexSet result = levels[k];
+    if (outputUnion) {
+      result = new VertexSet();
+      for (int j = 1; j <= k; j++)
+        result.addAll(levels[j]);
+    }
+    return GraphuloUtil.stringsToD4mString(result.toStrings(), sep);
+  }
+
+  private static boolean inRanges(Collection<Range> ranges, byte[] row) {
+    Key key = new Key(new Text(row));
+    for (Range range : ranges)
+      if (range.contains(key))
+        return true;
+    return false;
+  }
+
   /**
    * Modifies texts in place, removing the entries that are out of range.
    * Decodes degrees using {@link LongCombiner#STRING_ENCODER}.
@@ -1504,7 +2133,7 @@ public class Graphulo {
         scanTime += dur;
 
         vk.clear();
-        vk.addAll(reducer.getSerializableForClient());
+        vk.addAll(reducer.getStrings());
         if (allReachedNodes != null)
           allReachedNodes.addAll(vk);
         if (Trace.isTracing())
@@ -1608,6 +2237,91 @@ public class Graphulo {
     return sb.toString();
   }
 
+  /** Default number of samples per split point taken by {@link #findEvenSplitsSampled}. */
+  public static final int DEFAULT_SPLIT_SAMPLES = 64;
+
+  /**
+   * Like {@link #findEvenSplits(String, int, int, double, double)}, without reading the whole table at the client.
+   * Each tablet runs a {@link RowSampleIterator} in parallel through a BatchScanner,
+   * sending back one row per step = numEntriesPerTablet/samplesPerSplit entries with the exact count of entries before it.
+   * The client merges these into a histogram of the table and places each split point within step entries of its target.
+   *
+   * @param numSplitPoints      # of desired tablets = numSplitPoints+1
+   * @param numEntriesPerTablet desired #entries per tablet = (total #entries in table) / (#desired tablets)
+   * @param linearFactor See {@link #findEvenSplits(String, int, int, double, double)}. Factor 1.0 does nothing.
+   * @param expFactor See {@link #findEvenSplits(String, int, int, double, double)}. Factor 1.0 does nothing.
+   * @param samplesPerSplit Number of samples per split point; the error bound is 1/samplesPerSplit of a tablet.
+   *                        <= 0 means {@value #DEFAULT_SPLIT_SAMPLES}.
+   * @param applySplits Whether to add the split points to the table.
+   * @return String with the split points with a newline separator, e.g. "ca\nf\nq\n"
+   */
+  public String findEvenSplitsSampled(String table, int numSplitPoints, long numEntriesPerTablet,
+                                      double linearFactor, double expFactor, int samplesPerSplit, boolean applySplits) {
+    if (numSplitPoints < 0)
+      throw new IllegalArgumentException("numSplitPoints: " + numSplitPoints);
+    if (numSplitPoints == 0)
+      return "";
+    if (samplesPerSplit <= 0)
+      samplesPerSplit = DEFAULT_SPLIT_SAMPLES;
+    long step = Math.max(1, numEntriesPerTablet / samplesPerSplit);
+
+    BatchScanner bs;
+    try {
+      bs = connector.createBatchScanner(table, Authorizations.EMPTY, 50); // todo: 50 threads is arbitrary
+    } catch (TableNotFoundException e) {
+      log.error("Table does not exist: " + table, e);
+      throw new RuntimeException(e);
+    }
+    bs.setRanges(Collections.singleton(new Range()));
+    bs.addScanIterator(RowSampleIterator.iteratorSetting(30, step));
+    // number of entries in each sampled row and the rows since the sampled row before it
+    SortedMap<Text, Long> histogram = new TreeMap<>();
+    try {
+      for (Map.Entry<Key, Value> entry : bs) {
+        Text row = entry.getKey().getRow();
+        long cnt = Long.parseLong(new String(entry.getValue().get(), StandardCharsets.UTF_8));
+        Long prev = histogram.get(row);
+        histogram.put(row, prev == null ? cnt : prev + cnt);
+      }
+    } finally {
+      bs.close();
+    }
+
+    final char sep = '\n';
+    StringBuilder sb = new StringBuilder();
+    SortedSet<Text> splits = new TreeSet<>();
+    Iterator<Map.Entry<Text, Long>> iterator = histogram.entrySet().iterator();
+    long position = 0, target = 0;
+    // same shaping as findEvenSplits
+    final double limitBase = expFactor == 1.0 ? numEntriesPerTablet : numSplitPoints*(expFactor-1)*numEntriesPerTablet / (Math.pow(expFactor, numSplitPoints)-1);
+    for (int sp = 0; sp < numSplitPoints; sp++) {
+      target += (long) (Math.pow(expFactor, sp)*limitBase * linearFactor) + 1;
+      Text split = null;
+      while (split == null && iterator.hasNext()) {
+        Map.Entry<Text, Long> entry = iterator.next();
+        position += entry.getValue();
+        if (position >= target)
+          split = entry.getKey();
+      }
+      if (split == null) {
+        // this could happen due to skew
+        log.warn("not assigning " + (numSplitPoints - sp) + " splits because there are not enough entries in the table");
+        break;
+      }
+      splits.add(split);
+      sb.append(split.toString()).append(sep);
+    }
+
+    if (applySplits && !splits.isEmpty())
+      try {
+        connector.tableOperations().addSplits(table, splits);
+      } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+        log.error("problem adding splits to " + table, e);
+        throw new RuntimeException(e);
+      }
+    return sb.toString();
+  }
+
 
   /**
    * Set uniformly spaced splits across the bytes.
@@ -1724,13 +2438,61 @@ public class Graphulo {
    *                          Whatever value is inside a passed non-null object is overwritten.
    * @return  The nodes reachable in EXACTLY k steps from v0, unless outputUnion is true.
    * */
-  @SuppressWarnings("unchecked")
   public String SingleBFS(String Stable, String edgeColumn, char edgeSep,
                           String v0, int k, String Rtable, String SDegtable, String degColumn,
                           boolean copyOutDegrees, boolean computeInDegrees,
                           ScalarType degSumType, ColumnVisibility newVisibility,
                           int minDegree, int maxDegree, IteratorSetting plusOp,
                           boolean outputUnion, Authorizations Sauthorizations, MutableLong numEntriesWritten) {
+    return SingleBFS(Stable, edgeColumn, edgeSep, v0, k, Rtable, SDegtable, degColumn, copyOutDegrees, computeInDegrees,
+        degSumType, newVisibility, minDegree, maxDegree, plusOp, outputUnion, Sauthorizations, numEntriesWritten, false);
+  }
+
+  /**
+   * Single-table Breadth First Search, as {@link #SingleBFS(String, String, char, String, int, String, String, String, boolean, boolean, ScalarType, ColumnVisibility, int, int, IteratorSetting, boolean, Authorizations, MutableLong)},
+   * with an option to never expand a node twice.
+   * <p>
+   * If skipVisited is true, the frontier of each step is held as a {@link VertexSet} and sent to the tablet servers
+   * as the set of rows to read, so that each step is one BatchScan.
+   * The nodes of the previous and the current step are sent to the {@link SingleBFSReducer}, which does not send them back to the client.
+   * In an undirected graph these are the only visited nodes a step can reach, so the data sent each step is bounded by the frontiers, not by all nodes visited.
+   * The client keeps the whole visited set and removes any other visited nodes reached, such as by back-edges of a directed graph.
+   * Edges to visited nodes are still written to Rtable.
+   * If v0 is a range of nodes, the nodes in it are not known until the first step and may be visited again.
+   * The result with skipVisited is the nodes first reached in EXACTLY k steps, or UP TO k steps if outputUnion is true.
+   *
+   * @param skipVisited Whether to skip nodes already visited.
+   */
+  public String SingleBFS(String Stable, String edgeColumn, char edgeSep,
+                          String v0, int k, String Rtable, String SDegtable, String degColumn,
+                          boolean copyOutDegrees, boolean computeInDegrees,
+                          ScalarType degSumType, ColumnVisibility newVisibility,
+                          int minDegree, int maxDegree, IteratorSetting plusOp,
+                          boolean outputUnion, Authorizations Sauthorizations, MutableLong numEntriesWritten,
+                          boolean skipVisited) {
+    return SingleBFS(Stable, edgeColumn, edgeSep, v0, k, Rtable, SDegtable, degColumn, copyOutDegrees, computeInDegrees,
+        degSumType, newVisibility, minDegree, maxDegree, plusOp, outputUnion, Sauthorizations, numEntriesWritten, skipVisited, null);
+  }
+
+  /**
+   * Single-table Breadth First Search, as {@link #SingleBFS(String, String, char, String, int, String, String, String, boolean, boolean, ScalarType, ColumnVisibility, int, int, IteratorSetting, boolean, Authorizations, MutableLong, boolean)},
+   * with execution settings.
+   * <p>
+   * Each step scans Stable locally at the tablet servers, so no {@link RemoteSourceIterator} is involved
+   * and the read-ahead settings of {@link TwoTableOptions#withRemotePrefetch} do not apply.
+   *
+   * @param options Execution settings. Only the metrics of {@link TwoTableOptions#withMetrics} are used. Null means {@link TwoTableOptions#DEFAULT}.
+   */
+  @SuppressWarnings("unchecked")
+  public String SingleBFS(String Stable, String edgeColumn, char edgeSep,
+                          String v0, int k, String Rtable, String SDegtable, String degColumn,
+                          boolean copyOutDegrees, boolean computeInDegrees,
+                          ScalarType degSumType, ColumnVisibility newVisibility,
+                          int minDegree, int maxDegree, IteratorSetting plusOp,
+                          boolean outputUnion, Authorizations Sauthorizations, MutableLong numEntriesWritten,
+                          boolean skipVisited, TwoTableOptions options) {
+    if (options == null)
+      options = TwoTableOptions.DEFAULT;
     boolean needDegreeFiltering = minDegree > 1 || maxDegree < Integer.MAX_VALUE;
     checkGiven(true, "Stable", Stable);
     if (needDegreeFiltering && (SDegtable == null || SDegtable.isEmpty()))
@@ -1801,6 +2563,17 @@ public class Graphulo {
 
 
 
+    // With skipVisited, the frontier, the frontier of the step before, and the nodes visited so far.
+    // The frontier is null while v0 is a range.
+    VertexSet frontier = null, prevFrontier = null, visited = null;
+    if (skipVisited) {
+      visited = new VertexSet();
+      if (!GraphuloUtil.d4mStringContainsRange(v0)) {
+        frontier = VertexSet.fromStrings(Arrays.asList(GraphuloUtil.splitD4mString(v0)));
+        visited.addAll(frontier);
+      }
+    }
+
     try {
       long degTime = 0, scanTime = 0;
       for (int thisk = 1; thisk <= k; thisk++) {
@@ -1809,10 +2582,29 @@ public class Graphulo {
             log.debug("First step: v0 is " + v0);
           else
             log.debug("k=" + thisk + " before filter" +
-                (vktexts.size() > 5 ? " #=" + String.valueOf(vktexts.size()) : ": " + vktexts.toString()));
+                (frontier != null ? " " + frontier :
+                vktexts.size() > 5 ? " #=" + String.valueOf(vktexts.size()) : ": " + vktexts.toString()));
 
         String rowFilter;
-        if (needDegreeFiltering /*&& SDegtable != null*/) { // use degree table
+        if (frontier != null) { // skipVisited: read the rows of the frontier nodes
+          if (needDegreeFiltering) {
+            long t1 = System.currentTimeMillis(), dur;
+            frontier = VertexSet.fromStrings(filterTextsDegreeTable(bsDegree, degColumnText, false, minDegree, maxDegree,
+                frontier.toRanges()));
+            dur = System.currentTimeMillis() - t1;
+            degTime += dur;
+            if (Trace.isTracing())
+              log.debug("Degree Lookup Time: " + dur + " ms");
+            if (frontier.isEmpty())
+              break;
+          }
+          if (mostAllOutNodes != null && (needDegreeFiltering || thisk > 1))
+            mostAllOutNodes.addAll(frontier.toStrings());
+          rowFilter = null;
+          optSTI.remove(SingleTransposeIterator.STARTNODES);
+          optSTI.put(SingleTransposeIterator.STARTNODESET, frontier.encodeBase64());
+
+        } else if (needDegreeFiltering /*&& SDegtable != null*/) { // use degree table
           long t1 = System.currentTimeMillis(), dur;
           vktexts = filterTextsDegreeTable(bsDegree, degColumnText, false, minDegree, maxDegree,
               thisk == 1 ? GraphuloUtil.d4mRowToRanges(v0) : GraphuloUtil.stringsToRanges(vktexts));
@@ -1855,19 +2647,35 @@ public class Graphulo {
 
         SingleBFSReducer reducer = new SingleBFSReducer();
         reducer.init(optSingleReducer, null);
+        Map<String, String> optServerReducer = optSingleReducer;
+        if (frontier != null) {
+          VertexSet recent = new VertexSet();
+          recent.addAll(frontier);
+          if (prevFrontier != null)
+            recent.addAll(prevFrontier);
+          optServerReducer = new HashMap<>(optSingleReducer);
+          optServerReducer.put(SingleBFSReducer.VISITED, recent.encodeBase64());
+        }
 
         long t2 = System.currentTimeMillis();
         long c = OneTable(Stable, Rtable, null, null, // feature addition: could gather entries at the client
-            4, reducer, optSingleReducer,
+            4, reducer, optServerReducer,
             plusOp, rowFilter, null, // column filter applied through BatchScanner fetchColumn
-            iteratorSettingList, bs, Sauthorizations);
+            iteratorSettingList, bs, Sauthorizations, frontier, frontier == null ? null : edgeSepStr, options);
         if (numEntriesWritten != null)
           numEntriesWritten.add(c);
         long dur = System.currentTimeMillis() - t2;
         scanTime += dur;
 
         vktexts.clear();
-        vktexts.addAll(reducer.getSerializableForClient());
+        if (skipVisited) {
+          prevFrontier = frontier;
+          frontier = reducer.getSet();
+          frontier.removeAll(visited);
+          visited.addAll(frontier);
+          vktexts.addAll(frontier.toStrings());
+        } else
+          vktexts.addAll(reducer.getStrings());
         if (Trace.isTracing())
           log.debug("BatchScan/Iterator Time: " + dur + " ms");
         if (vktexts.isEmpty())
@@ -2036,6 +2844,7 @@ public class Graphulo {
 
   /**
    * Count number of entries in a table using a BatchScanner with {@link CountAllIterator}.
+   * Scans the whole table; see {@link #getTableStats} for cached statistics.
    */
   public long countEntries(String table) {
     Preconditions.checkArgument(table != null && !table.isEmpty());
@@ -2062,6 +2871,222 @@ public class Graphulo {
     return cnt;
   }
 
+  /** Table property caching the {@link TableStats} of a table, in Base64. See {@link #getTableStats}. */
+  public static final String STATS_PROPERTY = "table.custom.graphulo.stats";
+
+  /**
+   * Statistics of a table: nnz, estimated distinct rows and column qualifiers, and a histogram of row degrees.
+   * Returns the statistics cached in the table's {@link #STATS_PROPERTY} if computed within the last maxAgeMillis,
+   * without scanning the table.
+   * Otherwise computes them with a {@link TableStatsIterator} on every tablet in parallel,
+   * merges them at the client, and caches them in the table property.
+   * An element-wise TwoTable operation such as {@link #SpEWiseX} that creates its result table caches its statistics
+   * without a scan, by merging sketches of the entries its RemoteWriteIterators write.
+   * Writes to the table after the statistics are computed are not reflected until they expire or are cleared
+   * with {@link #clearTableStats}.
+   *
+   * @param maxAgeMillis Maximum age of cached statistics in milliseconds.
+   *                     0 means always recompute. Long.MAX_VALUE means use cached statistics of any age.
+   */
+  public TableStats getTableStats(String table, long maxAgeMillis) {
+    checkGiven(true, "table", table);
+    TableStats cached = getCachedTableStats(table, maxAgeMillis);
+    if (cached != null)
+      return cached;
+
+    long now = System.currentTimeMillis();
+    BatchScanner bs;
+    try {
+      bs = connector.createBatchScanner(table, Authorizations.EMPTY, 50); // todo: 50 threads is arbitrary
+    } catch (TableNotFoundException e) {
+      log.error("table " + table + " does not exist", e);
+      throw new RuntimeException(e);
+    }
+    bs.setRanges(Collections.singleton(new Range()));
+    bs.addScanIterator(new IteratorSetting(30, TableStatsIterator.class));
+    TableStats stats = new TableStats();
+    try {
+      for (Map.Entry<Key, Value> entry : bs)
+        stats.merge(TableStats.decode(entry.getValue().get()));
+    } finally {
+      bs.close();
+    }
+    stats.setComputedMillis(now);
+    putTableStats(table, stats);
+    return stats;
+  }
+
+  /**
+   * The statistics cached in the table's {@link #STATS_PROPERTY}, either by {@link #getTableStats}
+   * or by an element-wise TwoTable operation that created the table.
+   * @return null if there are none computed within the last maxAgeMillis.
+   */
+  private TableStats getCachedTableStats(String table, long maxAgeMillis) {
+    if (maxAgeMillis <= 0)
+      return null;
+    try {
+      for (Entry<String, String> prop : connector.tableOperations().getProperties(table))
+        if (prop.getKey().equals(STATS_PROPERTY)) {
+          TableStats stats = TableStats.decodeBase64(prop.getValue());
+          return System.currentTimeMillis() - stats.getComputedMillis() <= maxAgeMillis ? stats : null;
+        }
+    } catch (TableNotFoundException | AccumuloException e) {
+      log.error("problem getting table properties for table " + table, e);
+    } catch (IllegalArgumentException e) {
+      log.warn("ignoring bad " + STATS_PROPERTY + " on table " + table, e);
+    }
+    return null;
+  }
+
+  private void putTableStats(String table, TableStats stats) {
+    try {
+      connector.tableOperations().setProperty(table, STATS_PROPERTY, stats.encodeBase64());
+    } catch (AccumuloException | AccumuloSecurityException e) {
+      log.warn("problem caching table statistics in property " + STATS_PROPERTY + " on table " + table, e);
+    }
+  }
+
+  /** Remove the statistics cached by {@link #getTableStats}, e.g. after writing to the table. */
+  public void clearTableStats(String table) {
+    try {
+      connector.tableOperations().removeProperty(table, STATS_PROPERTY);
+    } catch (AccumuloException | AccumuloSecurityException e) {
+      log.error("problem removing table property " + STATS_PROPERTY + " on table " + table, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Explain how {@link #Jaccard_Auto} would compute Jaccard on Aorig, without running it.
+   * Plans with the statistics of all of Aorig, ignoring any row and column filter.
+   */
+  public ExecutionPlanner.Plan planJaccard(String Aorig) {
+    return planJaccard(Aorig, null);
+  }
+
+  /** @param planner Null means one server-side worker per tablet server. */
+  public ExecutionPlanner.Plan planJaccard(String Aorig, ExecutionPlanner planner) {
+    if (planner == null)
+      planner = defaultPlanner();
+    return planner.planJaccard(getTableStats(Aorig, planner.getStatsMaxAgeMillis()));
+  }
+
+  /**
+   * Explain how {@link #kTrussAdj_Auto} would compute the kTruss of Aorig, without running it.
+   * Plans with the statistics of all of Aorig, ignoring any row and column filter.
+   */
+  public ExecutionPlanner.Plan planKTrussAdj(String Aorig) {
+    return planKTrussAdj(Aorig, null);
+  }
+
+  /** @param planner Null means one server-side worker per tablet server. */
+  public ExecutionPlanner.Plan planKTrussAdj(String Aorig, ExecutionPlanner planner) {
+    if (planner == null)
+      planner = defaultPlanner();
+    return planner.planKTrussAdj(getTableStats(Aorig, planner.getStatsMaxAgeMillis()));
+  }
+
+  /** Explain how {@link #NMF_Auto} would factor Aorig into K topics, without running it. */
+  public ExecutionPlanner.Plan planNMF(String Aorig, int K) {
+    return planNMF(Aorig, K, null);
+  }
+
+  /** @param planner Null means one server-side worker per tablet server. */
+  public ExecutionPlanner.Plan planNMF(String Aorig, int K, ExecutionPlanner planner) {
+    if (planner == null)
+      planner = defaultPlanner();
+    return planner.planNMF(getTableStats(Aorig, planner.getStatsMaxAgeMillis()), K);
+  }
+
+  /**
+   * Jaccard by {@link #Jaccard} or {@link #Jaccard_Client}, whichever {@link #planJaccard} estimates is cheaper.
+   * Logs the plan. Parameters are as in {@link #Jaccard}; ADeg is only used at the server.
+   * @return The return value of the method run.
+   */
+  public long Jaccard_Auto(String Aorig, String ADeg, String Rfinal,
+                           String filterRowCol, Authorizations Aauthorizations, String RNewVisibility) {
+    return Jaccard_Auto(Aorig, ADeg, Rfinal, filterRowCol, Aauthorizations, RNewVisibility, null);
+  }
+
+  /** @param planner Chooses the strategy. Null means one server-side worker per tablet server. */
+  public long Jaccard_Auto(String Aorig, String ADeg, String Rfinal,
+                           String filterRowCol, Authorizations Aauthorizations, String RNewVisibility,
+                           ExecutionPlanner planner) {
+    ExecutionPlanner.Plan plan = planJaccard(Aorig, planner);
+    log.info(plan);
+    if (plan.getStrategy() == ExecutionPlanner.Strategy.ONE_TABLE)
+      return Jaccard(Aorig, ADeg, Rfinal, filterRowCol, Aauthorizations, RNewVisibility);
+    else
+      return Jaccard_Client(Aorig, Rfinal, filterRowCol, Aauthorizations, RNewVisibility);
+  }
+
+  /**
+   * kTruss by {@link #kTrussAdj} or {@link #kTrussAdj_Client} with dense or sparse matrices,
+   * whichever {@link #planKTrussAdj} estimates is cheaper.
+   * Logs the plan. Parameters are as in {@link #kTrussAdj}; forceDelete is only used at the server.
+   * @return The return value of the method run.
+   */
+  public long kTrussAdj_Auto(String Aorig, String Rfinal, int k,
+                             String filterRowCol, boolean forceDelete,
+                             Authorizations Aauthorizations, String RNewVisibility,
+                             int maxiter) {
+    return kTrussAdj_Auto(Aorig, Rfinal, k, filterRowCol, forceDelete, Aauthorizations, RNewVisibility, maxiter, null);
+  }
+
+  /** @param planner Chooses the strategy. Null means one server-side worker per tablet server. */
+  public long kTrussAdj_Auto(String Aorig, String Rfinal, int k,
+                             String filterRowCol, boolean forceDelete,
+                             Authorizations Aauthorizations, String RNewVisibility,
+                             int maxiter, ExecutionPlanner planner) {
+    ExecutionPlanner.Plan plan = planKTrussAdj(Aorig, planner);
+    log.info(plan);
+    switch (plan.getStrategy()) {
+      case CLIENT_DENSE:
+        return kTrussAdj_Client(Aorig, Rfinal, k, filterRowCol, Aauthorizations, RNewVisibility, false, maxiter);
+      case CLIENT_SPARSE:
+        return kTrussAdj_Client(Aorig, Rfinal, k, filterRowCol, Aauthorizations, RNewVisibility, true, maxiter);
+      default:
+        return kTrussAdj(Aorig, Rfinal, k, filterRowCol, forceDelete, Aauthorizations, RNewVisibility, maxiter);
+    }
+  }
+
+  /**
+   * NMF by {@link #NMF} or {@link #NMF_Client}, whichever {@link #planNMF} estimates is cheaper.
+   * Logs the plan. Parameters are as in {@link #NMF}, and both strategies require Aorig and ATorig to exist.
+   * If forceDelete is false, throws an exception if Wfinal, WTfinal, Hfinal or HTfinal exist.
+   * At the client, A is read from Aorig, and WTfinal and HTfinal are written by transposing Wfinal and Hfinal.
+   * @return The plan run, paired with the return value of the method it ran.
+   *         For {@link ExecutionPlanner.Strategy#TWO_TABLE} this is the change in error from {@link #NMF};
+   *         otherwise it is the proportion of changed topics from {@link #NMF_Client}.
+   */
+  public Pair<ExecutionPlanner.Plan, Double> NMF_Auto(String Aorig, String ATorig,
+                                                      String Wfinal, String WTfinal, String Hfinal, String HTfinal,
+                                                      final int K, final int maxiter,
+                                                      boolean forceDelete, double cutoffThreshold, int maxColsPerTopic) {
+    return NMF_Auto(Aorig, ATorig, Wfinal, WTfinal, Hfinal, HTfinal, K, maxiter, forceDelete, cutoffThreshold, maxColsPerTopic, null);
+  }
+
+  /** @param planner Chooses the strategy. Null means one server-side worker per tablet server. */
+  public Pair<ExecutionPlanner.Plan, Double> NMF_Auto(String Aorig, String ATorig,
+                                                      String Wfinal, String WTfinal, String Hfinal, String HTfinal,
+                                                      final int K, final int maxiter,
+                                                      boolean forceDelete, double cutoffThreshold, int maxColsPerTopic,
+                                                      ExecutionPlanner planner) {
+    checkGiven(true, "Aorig, ATorig", Aorig, ATorig);
+    checkGiven(false, "Wfinal, WTfinal, Hfinal, HTfinal", Wfinal, WTfinal, Hfinal, HTfinal);
+    if (!forceDelete)
+      checkNotExist("Wfinal, WTfinal, Hfinal, HTfinal", Wfinal, WTfinal, Hfinal, HTfinal);
+    ExecutionPlanner.Plan plan = planNMF(Aorig, K, planner);
+    log.info(plan);
+    if (plan.getStrategy() == ExecutionPlanner.Strategy.TWO_TABLE)
+      return new Pair<>(plan, NMF(Aorig, ATorig, Wfinal, WTfinal, Hfinal, HTfinal, K, maxiter, forceDelete, cutoffThreshold, maxColsPerTopic));
+    deleteTables(WTfinal, HTfinal);
+    double r = NMF_Client(Aorig, false, Wfinal, false, Hfinal, false, K, maxiter, cutoffThreshold, maxColsPerTopic);
+    OneTable(Wfinal, null, WTfinal, null, -1, null, null, null, null, null, null, null, Authorizations.EMPTY);
+    OneTable(Hfinal, null, HTfinal, null, -1, null, null, null, null, null, null, null, Authorizations.EMPTY);
+    return new Pair<>(plan, r);
+  }
+
   /**
    * From input <b>unweighted, undirected</b> adjacency table Aorig, put the k-Truss
    * of Aorig in Rfinal.
@@ -2137,7 +3162,10 @@ public class Graphulo {
 
 //      if (filterRowCol == null) {
         tops.clone(Aorig, Atmp, true, null, null);
-        nnzAfter = countEntries(Aorig);
+        // nnz from cached statistics instead of scanning Aorig; if unknown, always run the first iteration.
+        // Each iteration's SpEWiseX caches the statistics of its new result table from its RemoteWriteIterators' sketches.
+        TableStats AorigStats = getCachedTableStats(Aorig, ExecutionPlanner.DEFAULT_STATS_MAX_AGE_MILLIS);
+        nnzAfter = AorigStats == null ? Long.MAX_VALUE : AorigStats.getNumEntries();
 //      }
 //      else
 //        nnzAfter = OneTable(Aorig, Atmp, null, null, -1, null, null, null,
@@ -2212,6 +3240,156 @@ public class Graphulo {
     }
   }
 
+  /**
+   * Incremental version of {@link #kTrussAdj}, which recomputes the support of every edge each iteration.
+   * This version computes the support of each edge once, as 1 + (A*A).*A, then maintains it as edges are pruned.
+   * Each iteration moves the edges with too little support into a delta table D and deletes them from A and the support table.
+   * Only triangles with a pruned edge change the support of the remaining edges,
+   * so the support lost is D*A + (D*A)' + D*D, computed from the rows of D and masked to the remaining edges.
+   * Only the edges it touches are checked for the next D.
+   * Work per iteration is proportional to the neighbourhood of the pruned edges rather than the whole graph,
+   * and the temporary tables are reused across iterations.
+   * <p>
+   * Edges are pruned by a client BatchWriter; this suits graphs where few edges are pruned after the first iterations.
+   * Visibility labels are not supported.
+   * From input <b>unweighted, undirected</b> adjacency table Aorig, put the k-Truss of Aorig in Rfinal.
+   * @param Aorig Unweighted, undirected adjacency table.
+   * @param Rfinal Does not have to previously exist. Writes the kTruss into Rfinal if it already exists.
+   *               Use a combiner if you want to sum it in.
+   * @param k Trivial if k <= 2.
+   * @param filterRowCol Filter applied to rows and columns of Aorig
+   *                     (must apply to both rows and cols because A is undirected Adjacency table).
+   * @param forceDelete False means throws exception if the temporary tables used inside the algorithm already exist.
+   *                    True means delete them if they exist.
+   * @param Aauthorizations Authorizations for scanning Atable. Null means use default: Authorizations.EMPTY
+   * @param maxiter A bound on the number of iterations. The algorithm will halt
+   *                either at convergence or after reaching the maximum number of iterations.
+   *                Note that if the algorithm stops before convergence, the result may not be correct.
+   * @return nnz of the kTruss subgraph, which is 2* the number of edges in the kTruss subgraph.
+   *          Returns -1 if k < 2 since there is no point in counting the number of edges.
+   */
+  public long kTrussAdj_Incremental(String Aorig, String Rfinal, int k,
+                                    String filterRowCol, boolean forceDelete,
+                                    Authorizations Aauthorizations, int maxiter) {
+    if (k <= 2)
+      return kTrussAdj(Aorig, Rfinal, k, filterRowCol, forceDelete, Aauthorizations, null, maxiter);
+    checkGiven(true, "Aorig", Aorig);
+    Preconditions.checkArgument(maxiter > 0, "bad maxiter %s", maxiter);
+    Preconditions.checkArgument(Rfinal != null && !Rfinal.isEmpty(), "Output table must be given or operation is useless: Rfinal=%s", Rfinal);
+    if (Aauthorizations == null) Aauthorizations = Authorizations.EMPTY;
+    TableOperations tops = connector.tableOperations();
+    boolean RfinalExists = tops.exists(Rfinal);
+
+    String tmpBaseName = Aorig+"_kTrussAdjInc_";
+    String Atmp = tmpBaseName+"tmpA",     // remaining edges, all with Value 1
+        Stmp = tmpBaseName+"tmpS",        // 1 + support of remaining edges, summed
+        Dtmp = tmpBaseName+"tmpD",        // edges pruned this iteration
+        DeltaTmp = tmpBaseName+"tmpDelta"; // support lost this iteration
+    deleteTables(Atmp, Stmp, Dtmp, DeltaTmp);
+
+    List<IteratorSetting> noDiagFilter = Collections.singletonList(
+        TriangularFilter.iteratorSetting(1, TriangularType.NoDiagonal));
+    // an edge with S <= k-2 has support < k-2
+    List<IteratorSetting> lowSupportFilter = Collections.singletonList(
+        MinMaxFilter.iteratorSetting(1, ScalarType.LONG, null, k - 2));
+    List<IteratorSetting> negate = Collections.singletonList(
+        MathTwoScalar.applyOpLong(1, true, ScalarOp.TIMES, -1, true));
+    Map<String,String> timesOpts = MathTwoScalar.optionMap(ScalarOp.TIMES, ScalarType.LONG, null, true),
+        setLeftOpts = MathTwoScalar.optionMap(ScalarOp.SET_LEFT, ScalarType.LONG, null, true);
+
+    try {
+      long nnz = OneTable(Aorig, Atmp, null, null, -1, null, null, null, filterRowCol, filterRowCol,
+          Collections.singletonList(ConstantTwoScalar.iteratorSetting(1, VALUE_ONE)), null, Aauthorizations);
+      tops.clone(Atmp, Stmp, true, null, null);
+      GraphuloUtil.applyIteratorSoft(PLUS_ITERATOR_LONG, tops, Stmp);
+      // support = (A*A).*A; DeltaTmp holds A*A temporarily
+      TableMult(TwoTableIterator.CLONESOURCE_TABLENAME, Atmp, DeltaTmp, null, -1, ConstantTwoScalar.class,
+          ConstantTwoScalar.optionMap(VALUE_ONE, null),
+          PLUS_ITERATOR_LONG, null, null, null, false, false,
+          null, null, noDiagFilter,
+          null, null, -1, Aauthorizations, Aauthorizations);
+      SpEWiseX(DeltaTmp, Atmp, Stmp, null, -1, MathTwoScalar.class, setLeftOpts,
+          null, null, null, null, null, null, null, null, null, -1, Aauthorizations, Aauthorizations);
+      long numD = OneTable(Stmp, Dtmp, null, null, -1, null, null, null, null, null,
+          lowSupportFilter, null, Aauthorizations);
+
+      int iter = 0;
+      while (numD > 0 && iter < maxiter) {
+        // Prune D from A and S, and clear D. Collect the rows of D.
+        SortedSet<String> Drows = new TreeSet<>();
+        long pruned = 0;
+        BatchScanner bs = connector.createBatchScanner(Dtmp, Aauthorizations, 50);
+        BatchWriterConfig bwc = new BatchWriterConfig();
+        BatchWriter bwA = connector.createBatchWriter(Atmp, bwc),
+            bwS = connector.createBatchWriter(Stmp, bwc),
+            bwD = connector.createBatchWriter(Dtmp, bwc);
+        try {
+          bs.setRanges(Collections.singleton(new Range()));
+          Text row = new Text(), cq = new Text();
+          for (Map.Entry<Key, Value> entry : bs) {
+            Key key = entry.getKey();
+            key.getRow(row);
+            key.getColumnQualifier(cq);
+            Mutation m = new Mutation(row);
+            m.putDelete(key.getColumnFamily(), cq);
+            bwA.addMutation(m);
+            bwS.addMutation(m);
+            bwD.addMutation(m);
+            Drows.add(row.toString());
+            pruned++;
+          }
+        } finally {
+          bs.close();
+          bwA.close();
+          bwS.close();
+          bwD.close();
+        }
+        nnz -= pruned;
+        String rowFilter = GraphuloUtil.stringsToD4mString(Drows);
+
+        // Delta = D*A + (D*A)' + D*D, from the rows of D only. D and A are symmetric.
+        tops.deleteRows(DeltaTmp, null, null);
+        TableMult(Dtmp, Atmp, DeltaTmp, DeltaTmp, -1, ConstantTwoScalar.class,
+            ConstantTwoScalar.optionMap(VALUE_ONE, null),
+            PLUS_ITERATOR_LONG, rowFilter, null, null, false, false,
+            null, null, noDiagFilter,
+            null, null, -1, Aauthorizations, Aauthorizations);
+        TableMult(TwoTableIterator.CLONESOURCE_TABLENAME, Dtmp, DeltaTmp, null, -1, ConstantTwoScalar.class,
+            ConstantTwoScalar.optionMap(VALUE_ONE, null),
+            PLUS_ITERATOR_LONG, rowFilter, null, null, false, false,
+            null, null, noDiagFilter,
+            null, null, -1, Aauthorizations, Aauthorizations);
+        tops.deleteRows(Dtmp, null, null);
+
+        // S -= Delta on the remaining edges. Scans the Delta table, looking up A remotely.
+        TwoTableEWISE(Atmp, DeltaTmp, Stmp, null, -1, MathTwoScalar.class, timesOpts,
+            null, null, null, null, false, false, null, null, negate,
+            null, null, -1, Aauthorizations, Aauthorizations);
+        // Next D: touched edges whose support fell too low
+        numD = TwoTableEWISE(Stmp, DeltaTmp, Dtmp, null, -1, MathTwoScalar.class, setLeftOpts,
+            null, null, null, null, false, false, null, null, lowSupportFilter,
+            null, null, -1, Aauthorizations, Aauthorizations);
+
+        iter++;
+        log.debug("iter "+iter+" pruned "+pruned+" nnz "+nnz+" next pruned "+numD);
+      }
+      // Atmp has the result table. Could be empty.
+
+      if (RfinalExists)  // sum whole graph into existing graph
+        AdjBFS(Atmp, null, 1, Rfinal, null, null, DEFAULT_COMBINER_PRIORITY+2, null, null, false,
+            0, Integer.MAX_VALUE, null, Aauthorizations, Aauthorizations, false, null);
+      else                                           // result is new;
+        tops.clone(Atmp, Rfinal, true, null, null);  // flushes Atmp before cloning
+
+      deleteTables(Atmp, Stmp, Dtmp, DeltaTmp);
+      return nnz;
+
+    } catch (AccumuloException | AccumuloSecurityException | TableExistsException | TableNotFoundException e) {
+      log.error("Exception in kTrussAdj_Incremental", e);
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * This version uses advanced loop fusion to speed up the calculation.
    * <p>
@@ -3103,8 +4281,9 @@ public class Graphulo {
    *                     (must apply to both rows and cols because A is undirected Adjacency table).
    * @param Aauthorizations Authorizations for scanning Atable. Null means use default: Authorizations.EMPTY
    * @param RNewVisibility Visibility label for new entries created. Null means no visibility label.
-   * @param useSparse Use a sparse matrix vs. dense matrix. Sparse matrices hold more data than the dense
-   *                  but are slower for matrix-matrix multiply.
+   * @param useSparse Use the off-heap sparse {@link CsrMatrix} engine vs. MTJ dense matrices.
+   *                  The sparse engine computes the support of each edge with a multi-threaded masked product,
+   *                  so it holds only about three copies of A and scales to far larger graphs than dense matrices.
    * @param maxiter A bound on the number of iterations. The algorithm will halt
    *                either at convergence or after reaching the maximum number of iterations.
    *                Note that if the algorithm stops before convergence, the result may not be correct.
@@ -3115,6 +4294,17 @@ public class Graphulo {
                                String filterRowCol,
                                Authorizations Aauthorizations, String RNewVisibility,
                                boolean useSparse, int maxiter) {
+    return kTrussAdj_Client(Aorig, Rfinal, k, filterRowCol, Aauthorizations, RNewVisibility, useSparse, maxiter, null);
+  }
+
+  /**
+   * @param scanCache Read Aorig from this cache, so that later runs on an unchanged table do not scan it again.
+   *                  Null means scan Aorig.
+   */
+  public long kTrussAdj_Client(String Aorig, String Rfinal, int k,
+                               String filterRowCol,
+                               Authorizations Aauthorizations, String RNewVisibility,
+                               boolean useSparse, int maxiter, ScanCache scanCache) {
     if (!useSparse) { // force disable MTJ native BLAS because it is unstable
       System.setProperty("com.github.fommil.netlib.BLAS", "com.github.fommil.netlib.F2jBLAS");
     }
@@ -3139,18 +4329,20 @@ public class Graphulo {
       return -1;
     }
     // non-trivial case: k is 3 or more.
+    if (useSparse)
+      return kTrussAdj_ClientCsr(Aorig, Rfinal, RfinalExists, k, filterRowCol, RNewVisibility, maxiter, scanCache);
 
     long t1 = System.currentTimeMillis();
     // Scan A into memory
     Map<Key,Value> Aentries = new TreeMap<>(); //GraphuloUtil.scanAll(connector, Aorig);
-    OneTable(Aorig, null, null, Aentries, -1, null, null, null, filterRowCol, filterRowCol, null, null, Authorizations.EMPTY); // returns nnz A
+    scanToClient(Aorig, filterRowCol, GraphuloUtil.mapSink(Aentries), scanCache); // returns nnz A
     log.debug("Scan time: "+(System.currentTimeMillis()-t1));
 
     // Replace row and col labels with integer indexes; create map from indexes to original labels
     // The Maps are used to put the original labels on W and H
     SortedMap<Integer,String> rowColMap = new TreeMap<>();
     // this call removes zero values from A
-    Matrix A = MTJUtil.indexMapAndMatrix_SameRowCol(Aentries, rowColMap, 0, useSparse, false);
+    Matrix A = MTJUtil.indexMapAndMatrix_SameRowCol(Aentries, rowColMap, 0, false, false);
 
 //    DebugUtil.printMapFull(Aentries.entrySet().iterator(), 3);
 //    System.out.println("rowColMap: "+rowColMap);
@@ -3159,7 +4351,7 @@ public class Graphulo {
     long M = A.numColumns();
     long upperBoundOnDim = Math.max(N,M)+1;
 
-    Matrix B = useSparse ? new LinkedSparseMatrix(A) : new DenseMatrix(A);
+    Matrix B = new DenseMatrix(A);
     long nnzBefore, nnzAfter = Aentries.size();
 
     int iter = 0;
@@ -3226,6 +4418,68 @@ public class Graphulo {
     return nnzAfter;
   }
 
+  /** Sparse kTruss at the client on the off-heap {@link CsrMatrix} engine. A k-2 support filter on the edges of A. */
+  private long kTrussAdj_ClientCsr(String Aorig, String Rfinal, boolean RfinalExists, final int k,
+                                   String filterRowCol, String RNewVisibility, int maxiter, ScanCache scanCache) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    long t1 = System.currentTimeMillis();
+    // Stream A into the builder; no on-heap copy of the entries
+    CsrMatrix.Builder builder = new CsrMatrix.Builder(true, 0);
+    scanToClient(Aorig, filterRowCol, builder.asSink(false), scanCache);
+    CsrMatrix A = builder.build();
+    String[] labels = builder.getRowLabels();
+    log.debug("Scan time: "+(System.currentTimeMillis()-t1)+" nnz "+A.nnz()+" N "+A.numRows());
+
+    CsrMatrix.EntryFilter enoughSupport = new CsrMatrix.EntryFilter() {
+      @Override
+      public boolean keep(int row, int col, double value) {
+        return value >= k - 2;
+      }
+    };
+    long nnzBefore, nnzAfter = A.nnz();
+    int iter = 0;
+    do {
+      long t2 = System.currentTimeMillis();
+      nnzBefore = nnzAfter;
+      // support of each edge: (A*A)(i,j) on the pattern of A
+      CsrMatrix support = A.multiplyMasked(A, A, threads);
+      A = A.filterWhere(support, enoughSupport);
+      nnzAfter = A.nnz();
+      iter++;
+      log.debug("iter "+iter+" nnzBefore "+nnzBefore+" nnzAfter "+nnzAfter+" time: "+(System.currentTimeMillis()-t2));
+    } while (nnzBefore != nnzAfter && iter < maxiter);
+
+    long t3 = System.currentTimeMillis();
+    TableOperations tops = connector.tableOperations();
+    if (!RfinalExists) {
+      try {
+        tops.create(Rfinal);
+        GraphuloUtil.copySplits(tops, Aorig, Rfinal);
+      } catch (AccumuloException | TableExistsException | AccumuloSecurityException  e) {
+        log.error("",e);
+      }
+    }
+    BatchWriter bw;
+    try {
+      bw = connector.createBatchWriter(Rfinal, new BatchWriterConfig());
+    } catch (TableNotFoundException e) {
+      log.error("crazy", e);
+      throw new RuntimeException(e);
+    }
+    try {
+      A.write(bw, labels, labels, RNewVisibility, true);
+    } finally {
+      try {
+        bw.close();
+      } catch (MutationsRejectedException e) {
+        log.error("problem writing kTruss to "+Rfinal, e);
+        throw new RuntimeException(e);
+      }
+    }
+    log.debug("Put time: "+(System.currentTimeMillis()-t3));
+    return nnzAfter;
+  }
+
 
   /**
    * From input <b>unweighted, undirected</b> incidence table Eorig, put the k-Truss
@@ -3429,8 +4683,9 @@ public class Graphulo {
     log.debug("Jaccard #partial products " + npp);
 
     // Because JaccardDegreeApply must see all entries, apply JaccardDegreeApply on scan scope after the TableMult.
-    IteratorSetting jda = JaccardDegreeApply.iteratorSetting(
-        DEFAULT_COMBINER_PRIORITY+1, basicRemoteOpts(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX, ADeg, null, Aauthorizations));
+    // The iterator outlives this call, so no SNAPSHOT: each scan of Rfinal loads the current ADeg.
+    Map<String,String> jdaOpts = basicRemoteOpts(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX, ADeg, null, Aauthorizations);
+    IteratorSetting jda = JaccardDegreeApply.iteratorSetting(DEFAULT_COMBINER_PRIORITY+1, jdaOpts);
     jda = GraphuloUtil.addOnScopeOption(jda, EnumSet.of(IteratorUtil.IteratorScope.scan));
     GraphuloUtil.applyIteratorSoft(jda, connector.tableOperations(), Rfinal);
 
@@ -3453,6 +4708,16 @@ public class Graphulo {
    */
   public long Jaccard_Client(String Aorig, String Rfinal,
                       String filterRowCol, Authorizations Aauthorizations, String RNewVisibility) {
+    return Jaccard_Client(Aorig, Rfinal, filterRowCol, Aauthorizations, RNewVisibility, null);
+  }
+
+  /**
+   * @param scanCache Read Aorig from this cache, so that later runs on an unchanged table do not scan it again.
+   *                  Null means scan Aorig.
+   */
+  public long Jaccard_Client(String Aorig, String Rfinal,
+                             String filterRowCol, Authorizations Aauthorizations, String RNewVisibility,
+                             ScanCache scanCache) {
     checkGiven(true, "Aorig", Aorig);
     Preconditions.checkArgument(Rfinal != null && !Rfinal.isEmpty(), "Output table must be given or operation is useless: Rfinal=%s", Rfinal);
 //    Preconditions.checkArgument(!tops.exists(Rfinal), "Output Jaccard table must not exist: Rfinal=%s", Rfinal); // this could be relaxed, at the possibility of peril
@@ -3463,7 +4728,7 @@ public class Graphulo {
     long t1 = System.currentTimeMillis();
     // Scan A into memory
     Map<Key,Value> Aentries = new TreeMap<>(); //GraphuloUtil.scanAll(connector, Aorig);
-    OneTable(Aorig, null, null, Aentries, -1, null, null, null, filterRowCol, filterRowCol, null, null, Authorizations.EMPTY); // returns nnz A
+    scanToClient(Aorig, filterRowCol, GraphuloUtil.mapSink(Aentries), scanCache); // returns nnz A
     log.debug("Scan time: "+(System.currentTimeMillis()-t1));
 
     // Replace row and col labels with integer indexes; create map from indexes to original labels
@@ -3635,7 +4900,7 @@ public class Graphulo {
   }
 
 
-  /** Count the number of unique rows in an existing table. */
+  /** Count the number of unique rows in an existing table. Scans the whole table; see {@link #getTableStats} for an estimate. */
   public long countRows(String table) {
     Preconditions.checkArgument(table != null && !table.isEmpty());
 
@@ -3673,6 +4938,15 @@ public class Graphulo {
     GraphuloUtil.deleteTables(connector, tns);
   }
 
+  /** Ensure the tables named by the arguments do not exist. */
+  private void checkNotExist(String varnames, String... args) {
+    TableOperations tops = connector.tableOperations();
+    String[] varnamesArr = varnames.split(",");
+    assert varnamesArr.length == args.length;
+    for (int i = 0; i < args.length; i++)
+      Preconditions.checkArgument(!tops.exists(args[i]), "%s: %s already exists", varnamesArr[i].trim(), args[i]);
+  }
+
   /** Ensure arugments are not null and not empty. If mustExist, ensures the arguments exist as Accumulo tables. */
   private void checkGiven(boolean mustExist, String varnames, String... args) {
     TableOperations tops = connector.tableOperations();
@@ -3745,8 +5019,8 @@ public class Graphulo {
 //    long N = NK / KMER;
 //    long M = countRows(ATorig);
 
-        // hdiff starts at frobenius norm of A, since H starts at the zero matrix.
-    double hdiff = 0;
+    // error ||A - W*H|| of the previous and current iteration
+    double err = Double.NaN, hdiff = 0;
     int numiter = 0;
     final int reqNumLowHDiff = 3;
     int numLowHDiff = 0;
@@ -3772,11 +5046,12 @@ public class Graphulo {
       if (DBG)
         DebugUtil.printTable(numiter + ": W is NxK:", connector, Wfinal, 5);
 
+      double prevErr = err;
+      try (TraceScope scope = Trace.startSpan("nmfError", Sampler.ALWAYS)) {
+        err = nmfDiffFrobeniusNorm(Aorig, Wfinal, Hfinal);
+      }
       if (numiter > 1) {
-        try (TraceScope scope = Trace.startSpan("nmfHDiff", Sampler.ALWAYS)) {
-          hdiff = nmfHDiff(Hfinal, Hprev);
-//        hdiff = nmfDiffFrobeniusNorm(Aorig, WTfinal, Hfinal, Ttmp1);
-        }
+        hdiff = Math.abs(err - prevErr);
         if (hdiff <= 0.01) {
           numLowHDiff++;
           if (numLowHDiff >= reqNumLowHDiff) // saw enough consecutive low hdiffs-- NMF converged
@@ -3788,7 +5063,7 @@ public class Graphulo {
 //      if (Trace.isTracing())
 //        DebugUtil.printTable(numiter + ": A is NxM --- error is "+hdiff+":", connector, Aorig);
 
-      log.debug("NMF Iteration "+numiter+" to "+Hfinal+": hdiff " + hdiff);
+      log.debug("NMF Iteration "+numiter+" to "+Hfinal+": error " + err + " hdiff " + hdiff);
     } while (numiter < maxiter);
 
     // at end of loop, if numiter is 2, 4, 6, 8, ... no need to swap
@@ -3818,61 +5093,30 @@ public class Graphulo {
   }
 
 
-  private double nmfHDiff(String Hfinal, String Hprev) {
-    List<IteratorSetting> abs0list = Collections.singletonList(
-        ConstantTwoScalar.iteratorSetting(1, new Value("1".getBytes(StandardCharsets.UTF_8))));
-
-    // Step 1: sum(sum(Abs0(H),1),2)
-    MathTwoScalar sumReducer = new MathTwoScalar();
-    Map<String, String> sumOpts = MathTwoScalar.optionMap(ScalarOp.PLUS, ScalarType.LONG, "", false);
-    sumReducer.init(sumOpts, null);
-    OneTable(Hfinal, null, null, null, 50, sumReducer, sumOpts, null, null, null,
-        abs0list, null, null);
-    double hsum = Long.parseLong(new String(sumReducer.getForClient(), StandardCharsets.UTF_8));
-
-    // Step 2: sum(sum( Abs0(Abs0(H)-Abs0(Hprev)) ,1),2)
-    Map<String, String> subtractOpts = MathTwoScalar.optionMap(ScalarOp.MINUS, ScalarType.LONG, "", false);
-    sumReducer.reset();
-    SpEWiseSum(Hfinal, Hprev, null, null, 50, MathTwoScalar.class, subtractOpts, null, null, null, null,
-        abs0list, abs0list, abs0list,
-        sumReducer, sumOpts, -1, null, null);
-    double hdiffsum = sumReducer.hasTopForClient() ? Long.parseLong(new String(sumReducer.getForClient(), StandardCharsets.UTF_8)) : 0;
-
-    return hdiffsum / hsum;
-  }
-
-
-  private double nmfDiffFrobeniusNorm(String Aorig, String WTfinal, String Hfinal, String WHtmp) {
-    // assume WHtmp has no entries / does not exist
-
-    // Step 1: W*H => WHtmp
-    TableMult(WTfinal, Hfinal, WHtmp, null, -1,
-        MathTwoScalar.class, MathTwoScalar.optionMap(ScalarOp.TIMES, ScalarType.DOUBLE, null, false),
-        MathTwoScalar.combinerSetting(PLUS_ITERATOR_BIGDECIMAL.getPriority(), null, ScalarOp.PLUS, ScalarType.DOUBLE, false),
-        null, null, null, false, false, null, null, PRESUMITER, null, null, -1, Authorizations.EMPTY, Authorizations.EMPTY);
-    if (Trace.isTracing())
-      DebugUtil.printTable("WH is NxM:", connector, WHtmp, 5);
-
-    // Step 2: A - WH => ^2 => ((+all)) => Client w/ Reducer => Sq.Root. => newerr return
-    // Prep.
-    List<IteratorSetting> iterAfterMinus = new DynamicIteratorSetting(1,null)
-        .append(MathTwoScalar.applyOpDouble(1, true, ScalarOp.POWER, 2.0, false))
-//        .append(MathTwoScalar.combinerSetting(1, null, ScalarOp.PLUS, ScalarType.DOUBLE))
-        .getIteratorSettingList();
+  /**
+   * Frobenius norm of the error of an NMF, ||A - W*H||, without writing W*H to a table.
+   * An {@link NmfErrorRowMultiply} joins the rows of W and A at the server, computing each row of W*H on the fly
+   * from the small H matrix, which each tablet server loads once as a {@link BroadcastTable}.
+   * The squared error of each row is summed by a reducer and returned to the client.
+   * @param Aorig N x M table that was factored
+   * @param Wfinal N x K table W
+   * @param Hfinal K x M table H
+   */
+  public double nmfDiffFrobeniusNorm(String Aorig, String Wfinal, String Hfinal) {
+    checkGiven(true, "Aorig, Wfinal, Hfinal", Aorig, Wfinal, Hfinal);
+    // each tablet server loads H once for this call
+    String hPrefix = TwoTableIterator.ROWMULTIPLYOP + GraphuloUtil.OPT_SUFFIX + NmfErrorRowMultiply.H;
+    Map<String,String> opt = basicRemoteOpts(hPrefix, Hfinal, null, Authorizations.EMPTY);
+    opt.put(hPrefix + BroadcastTable.SNAPSHOT, BroadcastTable.newSnapshot());
+    opt.put(TwoTableIterator.ROWMULTIPLYOP, NmfErrorRowMultiply.class.getName());
     Map<String,String> sumReducerOpts = MathTwoScalar.optionMap(ScalarOp.PLUS, ScalarType.DOUBLE, null, false);
     MathTwoScalar sumReducer = new MathTwoScalar();
     sumReducer.init(sumReducerOpts, null);
 
-    // Execute. Sum into sumReducer.
-    SpEWiseSum(Aorig, WHtmp, null, null, -1,
-        MathTwoScalar.class, MathTwoScalar.optionMap(ScalarOp.MINUS, ScalarType.DOUBLE, null, false),
-        null, null, null, null, null, null,
-        iterAfterMinus,
-        sumReducer, sumReducerOpts,
-        -1, Authorizations.EMPTY, Authorizations.EMPTY);
-
-    // Delete temporary WH table.
-    deleteTables(WHtmp);
+    // rows only in W or only in A still contribute error
+    TwoTable(Wfinal, Aorig, null, null, -1, TwoTableIterator.DOTMODE.ROW, opt, null,
+        null, null, null, true, true, null, null, null,
+        sumReducer, sumReducerOpts, -1, Authorizations.EMPTY, Authorizations.EMPTY);
 
     if (!sumReducer.hasTopForClient())
       return 0.0; // no error. This will never happen realistically.
@@ -4013,6 +5257,18 @@ public class Graphulo {
                            String Wfinal, boolean transposeW, String Hfinal, boolean transposeH,
                            final int K, final int maxiter, double cutoffThreshold, int maxColsPerTopic,
                            String HstartTopicsTable, int[] HstartTopics) {
+    return NMF_Client(Aorig, transposeA, Wfinal, transposeW, Hfinal, transposeH, K, maxiter, cutoffThreshold, maxColsPerTopic,
+        HstartTopicsTable, HstartTopics, null);
+  }
+
+  /**
+   * @param scanCache Read Aorig from this cache, so that later runs on an unchanged table do not scan it again.
+   *                  Null means scan Aorig.
+   */
+  public double NMF_Client(String Aorig, boolean transposeA,
+                           String Wfinal, boolean transposeW, String Hfinal, boolean transposeH,
+                           final int K, final int maxiter, double cutoffThreshold, int maxColsPerTopic,
+                           String HstartTopicsTable, int[] HstartTopics, ScanCache scanCache) {
     if (HstartTopics != null || HstartTopicsTable != null)
       throw new UnsupportedOperationException("not implemented: using previous topic and incremental topic finding");
     checkGiven(true, "Aorig", Aorig);
@@ -4022,20 +5278,17 @@ public class Graphulo {
     Preconditions.checkArgument(K > 0, "# of topics KMER must be > 0: " + K);
     deleteTables(Wfinal, Hfinal); // WTfinal, HTfinal
 
-    // Scan A into memory
-    Map<Key,Value> Aentries = new TreeMap<>(); //GraphuloUtil.scanAll(connector, Aorig);
-    OneTable(Aorig, null, null, Aentries, -1, null, null, null, null, null, null, null, Authorizations.EMPTY); // returns nnz A
-    if (transposeA)
-      Aentries = GraphuloUtil.transposeMap(Aentries);
-
-    // Replace row and col labels with integer indexes; create map from indexes to original labels
-    // The Maps are used to put the original labels on W and H
-    SortedMap<Integer,String> rowMap = new TreeMap<>(), colMap = new TreeMap<>();
-    RealMatrix Amatrix = MemMatrixUtil.indexMapAndMatrix(Aentries, rowMap, colMap);
-    RealMatrix ATmatrix = Amatrix.transpose();
-
-    int N = Amatrix.getRowDimension();
-    int M = Amatrix.getColumnDimension();
+    // Stream A into a sparse off-heap matrix, replacing row and col labels with integer indexes.
+    // The label maps are used to put the original labels on W and H
+    CsrMatrix.Builder builder = new CsrMatrix.Builder(false, 0);
+    scanToClient(Aorig, null, builder.asSink(transposeA), scanCache); // returns nnz A
+    CsrMatrix Amatrix = builder.build();
+    CsrMatrix ATmatrix = Amatrix.transpose();
+    SortedMap<Integer,String> rowMap = CsrMatrix.Builder.toLabelMap(builder.getRowLabels()),
+        colMap = CsrMatrix.Builder.toLabelMap(builder.getColLabels());
+
+    int N = Amatrix.numRows();
+    int M = Amatrix.numCols();
     if (maxColsPerTopic >= M)
       maxColsPerTopic = -1;
 
@@ -4203,9 +5456,10 @@ public class Graphulo {
   /**
    * @param threshold Entries below this are set to 0. */
   @SuppressWarnings("unchecked")
-  private RealMatrix nmfStep_Client(RealMatrix M1, RealMatrix M2, RealMatrix MA,
+  private RealMatrix nmfStep_Client(RealMatrix M1, RealMatrix M2, CsrMatrix MA,
                                     final double threshold, final int maxColsPerTopic) {
-    RealMatrix MR = MemMatrixUtil.doInverse(M1.multiply(M2), 50).multiply(M1.multiply(MA));
+    RealMatrix M1MA = new Array2DRowRealMatrix(MA.leftMultiplyDense(M1.getData(), Runtime.getRuntime().availableProcessors()), false);
+    RealMatrix MR = MemMatrixUtil.doInverse(M1.multiply(M2), 50).multiply(M1MA);
 
     // only keep positive entries
     if (maxColsPerTopic <= 0) {
@@ -4364,10 +5618,11 @@ public class Graphulo {
     if (numDocs <= 0)
       numDocs = countRows(TedgeDeg);
 
+    Map<String,String> degOpts = basicRemoteOpts(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX, TedgeDeg, null, null);
+    degOpts.put(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX + BroadcastTable.SNAPSHOT, BroadcastTable.newSnapshot());
     List<IteratorSetting> midlist = new DynamicIteratorSetting(1, null)
       .append(new IteratorSetting(1, WholeRowIterator.class))
-      .append(TfidfDegreeApply.iteratorSetting(1, numDocs,
-        basicRemoteOpts(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX, TedgeDeg, null, null)))
+      .append(TfidfDegreeApply.iteratorSetting(1, numDocs, degOpts))
         .getIteratorSettingList();
 
     return OneTable(TedgeT, RtableT, Rtable, null, -1, null, null, null, null, null, midlist, null, null);
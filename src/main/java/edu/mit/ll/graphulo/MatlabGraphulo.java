@@ -191,7 +191,7 @@ public class MatlabGraphulo extends Graphulo {
   /**
    * MATLAB/Octave-friendly bridge to {@link Graphulo#SingleBFS}.
    * @param edgeSep String version of a char. Pass a length-1 string. Used to workaround Octave which does not understand char.
-   * @param degSumType String version of ScalarType. Choices: LONG, DOUBLE, BIGDECIMAL, LONG_OR_DOUBLE, LEX_LONG.
+   * @param degSumType String version of ScalarType. Choices: LONG, DOUBLE, BIGDECIMAL, LONG_OR_DOUBLE, LEX_LONG, FIXED_LONG, FIXED_DOUBLE.
    */
   public String SingleBFS(String Stable, String edgeColumn, String edgeSep,
                           String v0, int k, String Rtable, String SDegtable, String degColumn,
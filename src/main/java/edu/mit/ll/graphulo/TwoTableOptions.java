@@ -0,0 +1,177 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.skvi.IteratorMetrics;
+import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+
+/**
+ * Optional execution settings for one call of a TwoTable operation such as {@link Graphulo#TableMult}.
+ * None of them changes the result; they trade memory and threads for speed, or report where time goes.
+ * Immutable: each <tt>with</tt> method returns a modified copy, so one instance can be shared between callers and threads.
+ * Only the {@link IteratorMetrics} given to {@link #withMetrics} changes, as calls add to it.
+ * Start from {@link #DEFAULT}.
+ */
+public final class TwoTableOptions {
+
+  /** Every setting off. */
+  public static final TwoTableOptions DEFAULT = new TwoTableOptions(-1, 1, null, 0, -1, null, null, -1, false, null);
+
+  private final long preSumBytes;
+  private final int parallelism;
+  private final String parallelSplits;
+  private final int prefetchDepth, prefetchBatchSize;
+  private final RemoteSourceIterator.ScanMode remoteScanMode;
+  private final String bulkOutputDir;
+  private final long bulkBufferBytes;
+  private final boolean broadcastAT;
+  private final IteratorMetrics metrics;
+
+  private TwoTableOptions(long preSumBytes, int parallelism, String parallelSplits,
+                          int prefetchDepth, int prefetchBatchSize, RemoteSourceIterator.ScanMode remoteScanMode,
+                          String bulkOutputDir, long bulkBufferBytes, boolean broadcastAT, IteratorMetrics metrics) {
+    this.preSumBytes = preSumBytes;
+    this.parallelism = parallelism;
+    this.parallelSplits = parallelSplits;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchBatchSize = prefetchBatchSize;
+    this.remoteScanMode = remoteScanMode;
+    this.bulkOutputDir = bulkOutputDir;
+    this.bulkBufferBytes = bulkBufferBytes;
+    this.broadcastAT = broadcastAT;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Pre-sum partial products in memory at the server before writing them to the result table(s),
+   * using the class and options of the plusOp Combiner.
+   * Held entries are written when the budget is exceeded, at every monitoring checkpoint, and at the end of every tablet.
+   * Only used when plusOp is a Combiner that applies to all columns.
+   * @param preSumBytes Estimated bytes of entries to hold in memory at each tablet server scan. <= 0 turns pre-summing off (default).
+   */
+  public TwoTableOptions withPreSumBytes(long preSumBytes) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        prefetchDepth, prefetchBatchSize, remoteScanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Split each tablet of the B table into sub-ranges, and scan every sub-range as its own tablet server scan
+   * from a client thread pool, so that the tablet servers run one RemoteWriteIterator per sub-range at once.
+   * Useful when B has few tablets relative to the cores on the tablet servers.
+   * Only used when writing to a result table or reducing at the server.
+   * @param threads Number of sub-ranges per tablet. <= 1 turns parallel scanning off (default).
+   * @param splitRows Rows at which to split, in D4M format, e.g. "b,f,q,".
+   *                  Null means find <tt>threads</tt> sub-ranges per tablet of B with {@link Graphulo#findEvenSplitsSampled},
+   *                  which scans B once to count entries and once to find splits.
+   */
+  public TwoTableOptions withParallelism(int threads, String splitRows) {
+    return new TwoTableOptions(preSumBytes, threads, splitRows,
+        prefetchDepth, prefetchBatchSize, remoteScanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Read ahead from the remote AT table on a background thread, so that fetching overlaps with multiplying.
+   * @param queueDepth Number of batches to read ahead. <= 0 turns read-ahead off (default).
+   * @param batchSize Number of entries per batch. <= 0 means default.
+   */
+  public TwoTableOptions withRemotePrefetch(int queueDepth, int batchSize) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        queueDepth, batchSize, remoteScanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Choose how to scan the row ranges of the remote AT table, e.g., when AT.rowRanges
+   * holds many disjoint rows. See {@link RemoteSourceIterator.ScanMode}.
+   * @param scanMode SERIAL, BATCH or AUTO. Null means default SERIAL.
+   */
+  public TwoTableOptions withRemoteScanMode(RemoteSourceIterator.ScanMode scanMode) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        prefetchDepth, prefetchBatchSize, scanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Write the results as sorted RFiles, one per tablet of the result table,
+   * and bulk import them when the operation finishes, instead of sending Mutations through BatchWriters.
+   * Results are not visible until the operation finishes.
+   * Partial products with the same key are summed by the result table's Combiner at scan and compaction time.
+   * @param dir Directory on a file system visible to the client and tablet servers, such as HDFS.
+   *            Each operation uses and then deletes a fresh subdirectory. Null turns bulk output off (default).
+   * @param bufferBytes Estimated bytes of entries to hold in memory at each tablet server scan before writing RFiles. <= 0 means default.
+   */
+  public TwoTableOptions withBulkOutput(String dir, long bufferBytes) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        prefetchDepth, prefetchBatchSize, remoteScanMode, dir, bufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Load the AT table once per tablet server into a {@link edu.mit.ll.graphulo.skvi.BroadcastTable}
+   * shared by the scans of every tablet of B, instead of scanning AT remotely from every tablet.
+   * In ROW mode the rows of AT are found by hash lookup.
+   * Use this when AT is small enough to fit in tablet server memory.
+   * @param broadcastAT True to broadcast AT. False reads AT with a RemoteSourceIterator (default).
+   */
+  public TwoTableOptions withBroadcastAT(boolean broadcastAT) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        prefetchDepth, prefetchBatchSize, remoteScanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  /**
+   * Add the per-phase breakdown of the operation, summed over all tablet server scans, to metrics:
+   * counts and estimated time of reading AT and B, multiplying, pre-summing and writing.
+   * Nothing is added if the operation does not write or reduce at the server.
+   * Give the same metrics to several calls, such as those of a composite algorithm, to sum their breakdowns.
+   * @param metrics Receives the breakdown. Null turns reporting off (default).
+   */
+  public TwoTableOptions withMetrics(IteratorMetrics metrics) {
+    return new TwoTableOptions(preSumBytes, parallelism, parallelSplits,
+        prefetchDepth, prefetchBatchSize, remoteScanMode, bulkOutputDir, bulkBufferBytes, broadcastAT, metrics);
+  }
+
+  public long getPreSumBytes() {
+    return preSumBytes;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public String getParallelSplits() {
+    return parallelSplits;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  public int getPrefetchBatchSize() {
+    return prefetchBatchSize;
+  }
+
+  public RemoteSourceIterator.ScanMode getRemoteScanMode() {
+    return remoteScanMode;
+  }
+
+  public String getBulkOutputDir() {
+    return bulkOutputDir;
+  }
+
+  public long getBulkBufferBytes() {
+    return bulkBufferBytes;
+  }
+
+  public boolean isBroadcastAT() {
+    return broadcastAT;
+  }
+
+  public IteratorMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public String toString() {
+    return "TwoTableOptions{preSumBytes=" + preSumBytes +
+        ", parallelism=" + parallelism + (parallelSplits == null ? "" : ", parallelSplits=" + parallelSplits) +
+        ", prefetchDepth=" + prefetchDepth + ", prefetchBatchSize=" + prefetchBatchSize +
+        ", remoteScanMode=" + remoteScanMode +
+        ", bulkOutputDir=" + bulkOutputDir + ", bulkBufferBytes=" + bulkBufferBytes +
+        ", broadcastAT=" + broadcastAT + (metrics == null ? "" : ", metrics") + '}';
+  }
+}
@@ -11,6 +11,7 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
@@ -18,6 +19,8 @@ import java.util.Map;
 
 /**
  * Apply an ApplyOp to every entry from the source iterator.
+ * If the ApplyOp is {@link Closeable}, such as one that holds a {@link edu.mit.ll.graphulo.skvi.BroadcastTable},
+ * it is closed whenever the source runs out of entries, and must reopen itself if seeked again.
  */
 public class ApplyIterator implements SortedKeyValueIterator<Key, Value> {
   private static final Logger log = LogManager.getLogger(ApplyIterator.class);
@@ -68,6 +71,7 @@ public class ApplyIterator implements SortedKeyValueIterator<Key, Value> {
 //    log.info("apply seek: "+range);
     if( ignoreSeekExclusiveStart && !range.isStartKeyInclusive() ) {
       topIterator = PeekingIterator1.emptyIterator();
+      closeApplyOp();
       return;
     }
     source.seek(range, columnFamilies, inclusive);
@@ -77,17 +81,26 @@ public class ApplyIterator implements SortedKeyValueIterator<Key, Value> {
       prepNext(false);
     } else {
       topIterator = PeekingIterator1.emptyIterator();
+      closeApplyOp();
     }
   }
 
+  /** Called when the source runs out of entries. */
+  private void closeApplyOp() throws IOException {
+    if (applyOp instanceof Closeable)
+      ((Closeable) applyOp).close();
+  }
+
   private void prepNext(boolean doNext) throws IOException {
     if (doNext)
       topIterator.next();
 
     while (!topIterator.hasNext() /*&& source.hasTop()*/) {
       source.next();
-      if (!source.hasTop())
+      if (!source.hasTop()) {
+        closeApplyOp();
         return;
+      }
       topIterator = new PeekingIterator1<>(applyOp.apply(source.getTopKey(), source.getTopValue()));
     }
   }
@@ -1,7 +1,7 @@
 package edu.mit.ll.graphulo.apply;
 
 import com.google.common.base.Preconditions;
-import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+import edu.mit.ll.graphulo.skvi.BroadcastTable;
 import edu.mit.ll.graphulo.util.GraphuloUtil;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.data.ByteSequence;
@@ -11,14 +11,13 @@ import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.user.WholeRowIterator;
 import org.apache.accumulo.core.security.Authorizations;
-import org.apache.hadoop.io.Text;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -27,14 +26,15 @@ import java.util.SortedMap;
 
 /**
  * Run this after a WholeRowIterator on the transpose of the main table TedgeT
- * with the degree table TedgeDeg of the main table held in memory.
+ * with the degree table TedgeDeg of the main table held in memory as a {@link BroadcastTable}.
  */
-public class TfidfDegreeApply implements ApplyOp {
+public class TfidfDegreeApply implements ApplyOp, Closeable {
   private static final Logger log = LogManager.getLogger(TfidfDegreeApply.class);
 
   /** Setup with {@link edu.mit.ll.graphulo.Graphulo#basicRemoteOpts(String, String, String, Authorizations)}
    * basicRemoteOpts(ApplyIterator.APPLYOP + GraphuloUtil.OPT_SUFFIX, ADeg, null, Aauthorizations)
-   * options for RemoteSourceIterator. */
+   * options for RemoteSourceIterator.
+   * Add a {@link BroadcastTable#SNAPSHOT} option to share one copy of the degree table among the tablets of a tablet server. */
   public static IteratorSetting iteratorSetting(int priority, long numDocs, Map<String,String> remoteOpts) {
     IteratorSetting itset = new IteratorSetting(priority, ApplyIterator.class, remoteOpts);
     itset.addOption(ApplyIterator.APPLYOP, TfidfDegreeApply.class.getName());
@@ -44,8 +44,7 @@ public class TfidfDegreeApply implements ApplyOp {
 
   public static final String NUMDOCS = "numDocs";
 
-  private RemoteSourceIterator remoteDegTable;
-  private Map<String,Double> degMap;
+  private BroadcastTable.Handle degTable;
   private long numDocs;
 
   @Override
@@ -53,21 +52,7 @@ public class TfidfDegreeApply implements ApplyOp {
     Preconditions.checkArgument(optionsOrig.containsKey(NUMDOCS), "Required argument "+NUMDOCS);
     Map<String,String> options = new HashMap<>(optionsOrig);
     numDocs = Long.parseLong(options.remove(NUMDOCS));
-    remoteDegTable = new RemoteSourceIterator();
-    remoteDegTable.init(null, options, env);
-    degMap = new HashMap<>();
-    scanDegreeTable();
-  }
-
-  private void scanDegreeTable() throws IOException {
-    remoteDegTable.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
-    Text rowHolder = new Text();
-    while (remoteDegTable.hasTop()) {
-      degMap.put(remoteDegTable.getTopKey().getRow(rowHolder).toString(),
-          Double.valueOf(remoteDegTable.getTopValue().toString()));
-//      log.debug(remoteDegTable.getTopKey().getRow(rowHolder).toString() +" -> "+remoteDegTable.getTopValue().toString());
-      remoteDegTable.next();
-    }
+    degTable = BroadcastTable.acquire(options, env);
   }
 
   @Override
@@ -78,11 +63,11 @@ public class TfidfDegreeApply implements ApplyOp {
     double idf = Math.log(1 + (((double)numDocs) / (1 + numWords)));
 //    log.debug(String.format("(numDocs, numWords)= %2d, %2d", numDocs, numWords));
 
-    Text wordHolder = new Text();
     Set<Map.Entry<Key, Value>> entrySet = Trow.entrySet();
     for (Map.Entry<Key, Value> entry : entrySet) {
-      String word = entry.getKey().getColumnQualifier(wordHolder).toString();
-      double sumWordsInDoc = degMap.get(word);
+      double sumWordsInDoc = degTable.get().getDouble(entry.getKey().getColumnQualifierData());
+      if (Double.isNaN(sumWordsInDoc))
+        throw new IllegalStateException("Cannot find degree in degree table:" + entry.getKey().getColumnQualifier());
       double oldval = Double.parseDouble(entry.getValue().toString());
       double newval = oldval * (1/sumWordsInDoc) * idf;
 //      log.debug(String.format("(numWords=%2d): %s %.3f * %.3f * %.3f = %.3f",
@@ -97,4 +82,10 @@ public class TfidfDegreeApply implements ApplyOp {
   @Override
   public void seekApplyOp(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
   }
+
+  /** Release the degree table; the next apply acquires it again. */
+  @Override
+  public void close() {
+    degTable.release();
+  }
 }
@@ -1,15 +1,14 @@
 package edu.mit.ll.graphulo.reducer;
 
 import edu.mit.ll.graphulo.util.GraphuloUtil;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
 import java.util.Map;
 
 /**
@@ -17,13 +16,15 @@ import java.util.Map;
  * Stores a set of the columns reached in one step of BFS on the incidence matrix.
  * Pass as an option a D4M string of all acceptable prefixes, e.g., "inA|,inB|,".
  */
-public class EdgeBFSReducer extends ReducerSerializable<HashSet<String>> {
+public class EdgeBFSReducer extends ReducerBinary {
   private static final Logger log = LogManager.getLogger(EdgeBFSReducer.class);
 
   public static final String IN_COLUMN_PREFIX = "inColumnPrefixes";
   private byte[][] inColumnPrefixes;
 
-  private HashSet<String> setNodesReached = new HashSet<>();
+  public EdgeBFSReducer() {
+    super(0);
+  }
 
   private void parseOptions(Map<String, String> options) {
     for (Map.Entry<String, String> optionEntry : options.entrySet()) {
@@ -50,43 +51,26 @@ public class EdgeBFSReducer extends ReducerSerializable<HashSet<String>> {
       parseOptions(options);
   }
 
-  @Override
-  public void reset() throws IOException {
-    setNodesReached.clear();
-  }
-
-  private String findNodeAfter(byte[] cqBytes) {
+  /** Length of the inColumnPrefix that cq starts with, or -1 if none. */
+  private int findPrefix(ByteSequence cq) {
     // sequential/linear search: try every inColumnPrefix.
     // Binary search could speed this but almost always low number of inColumnPrefixes.
-    for (byte[] inColumnPrefix : inColumnPrefixes) {
-      String nodeAfter = GraphuloUtil.stringAfter(inColumnPrefix, cqBytes);
-//      log.debug((nodeAfter==null? "NO : " : "YES: ")+new String(cqBytes));
-      if (nodeAfter != null)
-        return nodeAfter;
+    PREFIX: for (byte[] inColumnPrefix : inColumnPrefixes) {
+      if (inColumnPrefix.length > cq.length())
+        continue;
+      for (int i = 0; i < inColumnPrefix.length; i++)
+        if (inColumnPrefix[i] != cq.byteAt(i))
+          continue PREFIX;
+      return inColumnPrefix.length;
     }
-    return null;
+    return -1;
   }
 
   @Override
   public void update(Key k, Value v) {
-    String nodeAfter = findNodeAfter(k.getColumnQualifierData().toArray());
-    if (nodeAfter != null)
-      setNodesReached.add(nodeAfter);
-//    log.debug("received colQ "+k.getColumnQualifier().toString()+" : now "+setNodesReached.toString());
-  }
-
-  @Override
-  public void combine(HashSet<String> another) {
-    setNodesReached.addAll(another);
-  }
-
-  @Override
-  public boolean hasTopForClient() {
-    return !setNodesReached.isEmpty();
-  }
-
-  @Override
-  public HashSet<String> getSerializableForClient() {
-    return setNodesReached;
+    ByteSequence cq = k.getColumnQualifierData();
+    int prefixLen = findPrefix(cq);
+    if (prefixLen != -1)
+      add(cq.subSequence(prefixLen, cq.length()));
   }
 }
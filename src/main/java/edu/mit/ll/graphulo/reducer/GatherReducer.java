@@ -4,18 +4,15 @@ import com.google.common.base.Preconditions;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
-import org.apache.hadoop.io.Text;
 
-import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 
 /**
  * Gather the unique values of part of a Key into a set.
  */
 // could generalize to have multiply KeyParts
-public class GatherReducer extends ReducerSerializable<HashSet<String>> {
+public class GatherReducer extends ReducerBinary {
 
   public enum KeyPart { ROW, COLF, COLQ, COLVIS, VAL}
 
@@ -28,8 +25,10 @@ public class GatherReducer extends ReducerSerializable<HashSet<String>> {
   }
 
   private KeyPart keyPart;
-  private HashSet<String> set = new HashSet<>();
-  private Text tmpText = new Text();
+
+  public GatherReducer() {
+    super(0);
+  }
 
   @Override
   public void init(Map<String, String> options, IteratorEnvironment env)  {
@@ -37,48 +36,27 @@ public class GatherReducer extends ReducerSerializable<HashSet<String>> {
     keyPart = KeyPart.valueOf(options.get(KEYPART));
   }
 
-  @Override
-  public void reset() throws IOException {
-    set.clear();
-  }
-
   @Override
   public void update(Key k, Value v) {
     switch (keyPart) {
       case ROW:
-        set.add(k.getRow(tmpText).toString());
+        add(k.getRowData());
         break;
       case COLF:
-        set.add(k.getColumnFamily(tmpText).toString());
+        add(k.getColumnFamilyData());
         break;
       case COLQ:
-        set.add(k.getColumnQualifier(tmpText).toString());
+        add(k.getColumnQualifierData());
         break;
       case COLVIS:
-        set.add(k.getColumnVisibility(tmpText).toString());
+        add(k.getColumnVisibilityData());
         break;
       case VAL:
-        set.add(v.toString());
+        add(v.get().clone());
         break;
       default:
         throw new AssertionError("no such KeyPart: "+keyPart);
     }
   }
 
-  @Override
-  public void combine(HashSet<String> another) {
-    set.addAll(another);
-  }
-
-  @Override
-  public boolean hasTopForClient() {
-    return !set.isEmpty();
-  }
-
-
-  @Override
-  public HashSet<String> getSerializableForClient() {
-    return set;
-  }
-
 }
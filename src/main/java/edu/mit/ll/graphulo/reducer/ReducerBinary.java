@@ -0,0 +1,129 @@
+package edu.mit.ll.graphulo.reducer;
+
+import edu.mit.ll.graphulo.util.VertexSet;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * A Reducer that gathers a set of byte strings and a fixed number of long sums,
+ * sent to the client in a compact binary form instead of by Java serialization.
+ * The form is a varint count of sums, each sum as a varint,
+ * then the set as a {@link VertexSet}: sorted and front-coded against the previous string.
+ * {@link #combine(byte[])} merges the strings straight into this reducer's set as it decodes them,
+ * or, if a {@link Listener} is set, passes each decoded set to it instead.
+ * <p>
+ * Subclasses implement {@link #update} by calling {@link #add} and {@link #addToSum}.
+ */
+public abstract class ReducerBinary implements Reducer {
+
+  /** Receives the set of each encoding given to {@link #combine(byte[])}. Called on the thread reading the scan. */
+  public interface Listener {
+    void vertices(VertexSet vertices);
+  }
+
+  private final VertexSet set = new VertexSet();
+  private final long[] sums;
+  private boolean hasSums = false;
+  private Listener listener;
+
+  /** @param numSums Number of long sums held alongside the set. */
+  protected ReducerBinary(int numSums) {
+    sums = new long[numSums];
+  }
+
+  /** Add a copy of the bytes to the set. */
+  protected final void add(ByteSequence bytes) {
+    set.add(bytes);
+  }
+
+  protected final void add(byte[] bytes) {
+    set.add(bytes);
+  }
+
+  protected final void addToSum(int i, long amount) {
+    sums[i] += amount;
+    hasSums = true;
+  }
+
+  /** Pass sets given to {@link #combine(byte[])} to listener instead of holding them. Client side only. */
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /** The set gathered, in unsigned lexicographic order. */
+  public VertexSet getSet() {
+    return set;
+  }
+
+  public long getSum(int i) {
+    return sums[i];
+  }
+
+  /** The set decoded as UTF-8 Strings. The client receives the binary form of {@link #getForClient()}. */
+  public HashSet<String> getStrings() {
+    return new HashSet<>(set.toStrings());
+  }
+
+  /** @deprecated Use {@link #getStrings()}. */
+  @Deprecated
+  public HashSet<String> getSerializableForClient() {
+    return getStrings();
+  }
+
+  @Override
+  public void reset() throws IOException {
+    set.clear();
+    Arrays.fill(sums, 0);
+    hasSums = false;
+  }
+
+  @Override
+  public boolean hasTopForClient() {
+    return !set.isEmpty() || hasSums;
+  }
+
+  @Override
+  public final byte[] getForClient() {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      WritableUtils.writeVInt(out, sums.length);
+      for (long sum : sums)
+        WritableUtils.writeVLong(out, sum);
+      set.write(out);
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeException("cannot happen writing to a byte array", e);
+    }
+    return baos.toByteArray();
+  }
+
+  @Override
+  public final void combine(byte[] another) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(another));
+    try {
+      int n = WritableUtils.readVInt(in);
+      if (n != sums.length)
+        throw new IllegalArgumentException("expected " + sums.length + " sums but got " + n);
+      for (int i = 0; i < n; i++)
+        addToSum(i, WritableUtils.readVLong(in));
+      if (listener == null)
+        set.readFields(in);
+      else {
+        VertexSet vs = new VertexSet();
+        vs.readFields(in);
+        listener.vertices(vs);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("bad " + getClass().getSimpleName() + " encoding", e);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package edu.mit.ll.graphulo.reducer;
 
+import edu.mit.ll.graphulo.util.VertexSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -8,27 +9,33 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Map;
 
 /**
  * Row "v1|v2" ==> "v2".
  * Stores a set of the "in-node" part of rows reached in one step of BFS on a single-table schema.
+ * If given the {@value #VISITED} option, skips nodes already visited so that they are not sent to the client.
  */
-public class SingleBFSReducer extends ReducerSerializable<HashSet<String>> {
+public class SingleBFSReducer extends ReducerBinary {
   private static final Logger log = LogManager.getLogger(SingleBFSReducer.class);
 
-  public static final String EDGE_SEP = "edgeSep";
+  public static final String EDGE_SEP = "edgeSep",
+      VISITED = "visited";
 //      NEG_ONE_IN_DEG = "copyDeg",
 //      DEGCOL = "degCol";
 
-  private char edgeSep;
+  private byte edgeSep;
+  /** Nodes not to gather. Null means none. */
+  private VertexSet visited;
 //  private boolean copyDeg = true;
 //  private String degCol = "";
 
-  private HashSet<String> setNodesReached = new HashSet<>();
 //  private HashMap<String,Integer> setNodesReachedCount = new HashMap<>();
 
+  public SingleBFSReducer() {
+    super(0);
+  }
+
   private void parseOptions(Map<String, String> options) {
     boolean gotFieldSep = false;
     for (Map.Entry<String, String> optionEntry : options.entrySet()) {
@@ -36,11 +43,14 @@ public class SingleBFSReducer extends ReducerSerializable<HashSet<String>> {
       String optionValue = optionEntry.getValue();
       switch (optionKey) {
         case EDGE_SEP:
-          if (optionValue.length() != 1)
+          if (optionValue.length() != 1 || optionValue.charAt(0) > 127)
             throw new IllegalArgumentException("bad "+ EDGE_SEP +": "+optionValue);
-          edgeSep = optionValue.charAt(0);
+          edgeSep = (byte) optionValue.charAt(0);
           gotFieldSep = true;
           break;
+        case VISITED:
+          visited = VertexSet.decodeBase64(optionValue);
+          break;
 //        case NEG_ONE_IN_DEG:
 //          copyDeg = Boolean.parseBoolean(optionValue);
 //          break;
@@ -62,7 +72,7 @@ public class SingleBFSReducer extends ReducerSerializable<HashSet<String>> {
 
   @Override
   public void reset() throws IOException {
-    setNodesReached.clear();
+    super.reset();
 //    setNodesReachedCount.clear();
   }
 
@@ -72,20 +82,16 @@ public class SingleBFSReducer extends ReducerSerializable<HashSet<String>> {
     if (k.getTimestamp() % 2 != 0)
       return;
 
-    String rStr;
-    {
-      ByteSequence rowData = k.getRowData();
-      rStr = new String(rowData.toArray(), rowData.offset(), rowData.length());
-    }
-    int pos = rStr.indexOf(edgeSep);
-    if (pos == -1)
+    ByteSequence rowData = k.getRowData();
+    int pos = 0;
+    while (pos < rowData.length() && rowData.byteAt(pos) != edgeSep)
+      pos++;
+    if (pos == rowData.length())
       return;        // this is a degree row, not an edge row.
 
-//    log.debug("edge row "+rStr+" : now "+setNodesReached.toString());
-
-
-    String toNode = rStr.substring(pos+1);
-    setNodesReached.add(toNode);
+    ByteSequence toNode = rowData.subSequence(pos+1, rowData.length());
+    if (visited == null || !visited.contains(toNode.toArray()))
+      add(toNode);
 
 //    if (copyDeg) {
 //      Integer cnt = setNodesReachedCount.get(toNode);
@@ -96,20 +102,6 @@ public class SingleBFSReducer extends ReducerSerializable<HashSet<String>> {
 
   }
 
-  @Override
-  public void combine(HashSet<String> another) {
-    setNodesReached.addAll(another);
-  }
-
-  @Override
-  public boolean hasTopForClient() {
-    return !setNodesReached.isEmpty();
-  }
-
-  @Override
-  public HashSet<String> getSerializableForClient() {
-    return setNodesReached;
-  }
 
 //  @Override
 //  public Iterator<Map.Entry<Key,Value>> getForWrite() {
@@ -14,6 +14,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -36,8 +37,10 @@ public class CartesianRowMultiply implements RowMultiplyOp {
    * when first called.
    * Postcondition: !skvi.hasTop() || skvi.getTopKey().getRow() has changed.
    *
+   * See {@link RowBuffer} for a flat, reusable alternative that does not create a Key per entry.
+   * The watch arguments are unused; TwoTableIterator counts reads from its sources in {@link edu.mit.ll.graphulo.skvi.IteratorMetrics}.
+   *
    * @return Sorted map of the entries.
-   * Todo P2: replace SortedMap with a list of entries, since sorted order is guaranteed
    */
   public static SortedMap<Key, Value> readRow(SortedKeyValueIterator<Key, Value> skvi,
                                        Watch<Watch.PerfSpan> watch, Watch.PerfSpan watchtype) throws IOException {
@@ -48,12 +51,7 @@ public class CartesianRowMultiply implements RowMultiplyOp {
     SortedMap<Key, Value> map = new TreeMap<>();
     do {
       map.put(new Key(skvi.getTopKey()), new Value(skvi.getTopValue()));
-//      watch.start(watchtype);
-//      try {
-        skvi.next();
-//      } finally {
-//        watch.stop(watchtype);
-//      }
+      skvi.next();
     } while (skvi.hasTop() && skvi.getTopKey().getRow(curRow).equals(thisRow));
     return map;
   }
@@ -76,12 +74,7 @@ public class CartesianRowMultiply implements RowMultiplyOp {
     SortedMap<Text, Value> map = new TreeMap<>();
     do {
       map.put(skvi.getTopKey().getColumnQualifier(), new Value(skvi.getTopValue()));
-//      watch.start(watchtype);
-//      try {
       skvi.next();
-//      } finally {
-//        watch.stop(watchtype);
-//      }
     } while (skvi.hasTop() && skvi.getTopKey().getRow(curRow).equals(thisRow));
     return map;
   }
@@ -94,12 +87,7 @@ public class CartesianRowMultiply implements RowMultiplyOp {
     SortedSet<Text> map = new TreeSet<>();
     do {
       map.add(skvi.getTopKey().getColumnQualifier());
-//      watch.start(watchtype);
-//      try {
       skvi.next();
-//      } finally {
-//        watch.stop(watchtype);
-//      }
     } while (skvi.hasTop() && skvi.getTopKey().getRow(curRow).equals(thisRow));
     return map;
   }
@@ -115,7 +103,8 @@ public class CartesianRowMultiply implements RowMultiplyOp {
   }
 
   public static final String ALSODOAA="alsoDoAA", ALSODOBB="alsoDoBB",
-      ALSOEMITA="alsoEmitA", ALSOEMITB="alsoEmitB";
+      ALSOEMITA="alsoEmitA", ALSOEMITB="alsoEmitB",
+      ROWBUFFER="rowBuffer", ROWBUFFER_SPILLBYTES="rowBufferSpillBytes", ROWBUFFER_SPILLDIR="rowBufferSpillDir";
 
   private MultiplyOp multiplyOp;
   private Map<String, String> multiplyOpOptions = new HashMap<>();
@@ -123,6 +112,12 @@ public class CartesianRowMultiply implements RowMultiplyOp {
   private boolean isRowStartMultiplyOp = false;
   private boolean alsoDoAA = false, alsoDoBB = false,
       alsoEmitA = false, alsoEmitB = false;
+  /** Hold rows in a {@link RowBuffer} instead of a SortedMap. Not applicable to {@link RowStartMultiplyOp}s. */
+  private boolean useRowBuffer = true;
+  private long rowBufferSpillBytes = RowBuffer.DEFAULT_SPILL_BYTES;
+  private File rowBufferSpillDir = null;
+  /** Reused across rows. */
+  private RowBuffer bufA, bufB;
 
 
   private void parseOptions(Map<String, String> options) {
@@ -154,6 +149,15 @@ public class CartesianRowMultiply implements RowMultiplyOp {
           case ALSOEMITB:
             alsoEmitB = Boolean.parseBoolean(optionValue);
             break;
+          case ROWBUFFER:
+            useRowBuffer = Boolean.parseBoolean(optionValue);
+            break;
+          case ROWBUFFER_SPILLBYTES:
+            rowBufferSpillBytes = Long.parseLong(optionValue);
+            break;
+          case ROWBUFFER_SPILLDIR:
+            rowBufferSpillDir = optionValue.isEmpty() ? null : new File(optionValue);
+            break;
           default:
             log.warn("Unrecognized option: " + optionEntry);
             break;
@@ -180,12 +184,20 @@ public class CartesianRowMultiply implements RowMultiplyOp {
   public void init(Map<String, String> options, IteratorEnvironment env) throws IOException {
     parseOptions(options);
     multiplyOp.init(multiplyOpOptions,env);
+    if (isRowStartMultiplyOp)
+      useRowBuffer = false; // RowStartMultiplyOp requires rows as SortedMaps
+    if (useRowBuffer) {
+      bufA = new RowBuffer(rowBufferSpillBytes, rowBufferSpillDir);
+      bufB = new RowBuffer(rowBufferSpillBytes, rowBufferSpillDir);
+    }
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public Iterator<Map.Entry<Key,Value>> multiplyRow(SortedKeyValueIterator<Key, Value> skviA, SortedKeyValueIterator<Key, Value> skviB) throws IOException {
     assert skviA != null || skviB != null;
+    if (useRowBuffer)
+      return multiplyRowBuffered(skviA, skviB);
     Watch<Watch.PerfSpan> watch = null;//Watch.getInstance();
 
     if (skviB == null) { // have row A, no matching row B
@@ -305,4 +317,81 @@ public class CartesianRowMultiply implements RowMultiplyOp {
     
   }
 
-}
\ No newline at end of file
+  /**
+   * Same as the SortedMap-based path of {@link #multiplyRow}, except rows held in memory are
+   * read into the reusable {@link RowBuffer}s instead of TreeMaps.
+   */
+  @SuppressWarnings("unchecked")
+  private Iterator<Map.Entry<Key,Value>> multiplyRowBuffered(SortedKeyValueIterator<Key, Value> skviA,
+                                                             SortedKeyValueIterator<Key, Value> skviB) throws IOException {
+    if (skviB == null) // have row A, no matching row B
+      return multiplyOneSideBuffered(skviA, bufA, alsoEmitA, alsoDoAA);
+    if (skviA == null)
+      return multiplyOneSideBuffered(skviB, bufB, alsoEmitB, alsoDoBB);
+
+    assert skviA.hasTop() && skviB.hasTop() && skviA.getTopKey().equals(skviB.getTopKey(), PartialKey.ROW);
+
+    switch (rowmode) {
+      case TWOROW: {
+        bufA.fill(skviA);
+        bufB.fill(skviB);
+        List<Iterator<Map.Entry<Key,Value>>> all = new LinkedList<>();
+        if (alsoEmitA)
+          all.add(bufA.entryIterator());
+        if (alsoEmitB)
+          all.add(bufB.entryIterator());
+        if (alsoDoAA)
+          all.add(new RowBufferCartesianIterator(bufA.entryIterator(), bufA, multiplyOp, false));
+        if (alsoDoBB)
+          all.add(new RowBufferCartesianIterator(bufB.entryIterator(), bufB, multiplyOp, false));
+        all.add(new RowBufferCartesianIterator(bufA.entryIterator(), bufB, multiplyOp, false));
+        return Iterators.concat(all.iterator());
+      }
+
+      case ONEROWA: {
+        assert !alsoDoBB && !alsoEmitB;
+        bufA.fill(skviA);
+        List<Iterator<Map.Entry<Key,Value>>> all = new LinkedList<>();
+        if (alsoEmitA)
+          all.add(bufA.entryIterator());
+        if (alsoDoAA)
+          all.add(new RowBufferCartesianIterator(bufA.entryIterator(), bufA, multiplyOp, false));
+        all.add(new RowBufferCartesianIterator(new SKVIRowIterator(skviB), bufA, multiplyOp, true));
+        return Iterators.concat(all.iterator());
+      }
+
+      case ONEROWB: {
+        assert !alsoDoAA;
+        Iterator<Map.Entry<Key, Value>> itAonce = new SKVIRowIterator(skviA);
+        bufB.fill(skviB);
+        List<Iterator<Map.Entry<Key,Value>>> all = new LinkedList<>();
+        if (alsoEmitB)
+          all.add(bufB.entryIterator());
+        if (alsoDoBB)
+          all.add(new RowBufferCartesianIterator(bufB.entryIterator(), bufB, multiplyOp, false));
+        all.add(new RowBufferCartesianIterator(itAonce, bufB, multiplyOp, false));
+        return Iterators.concat(all.iterator());
+      }
+
+      default:
+        throw new AssertionError("unknown rowmode: "+rowmode);
+    }
+  }
+
+  /** A row that exists in only one of the two tables. */
+  @SuppressWarnings("unchecked")
+  private Iterator<Map.Entry<Key,Value>> multiplyOneSideBuffered(SortedKeyValueIterator<Key, Value> skvi, RowBuffer buf,
+                                                                 boolean alsoEmit, boolean alsoDo) throws IOException {
+    if (alsoEmit && !alsoDo) {
+      return new SKVIRowIterator(skvi);
+    } else if (alsoDo) {
+      buf.fill(skvi);
+      Iterator<Map.Entry<Key,Value>> it = new RowBufferCartesianIterator(buf.entryIterator(), buf, multiplyOp, false);
+      return alsoEmit ? Iterators.concat(buf.entryIterator(), it) : it;
+    } else {
+      SKVIRowIterator.dumpRow(skvi);
+      return Collections.emptyIterator();
+    }
+  }
+
+}
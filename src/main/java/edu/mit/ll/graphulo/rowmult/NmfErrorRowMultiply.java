@@ -0,0 +1,118 @@
+package edu.mit.ll.graphulo.rowmult;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.skvi.BroadcastTable;
+import edu.mit.ll.graphulo.util.SKVIRowIterator;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Squared error of one row of an NMF: sum_j (A(i,j) - (W*H)(i,j))^2 for row i,
+ * given row i of W as table A and row i of A as table B, with emitNoMatch true for both.
+ * Computes row i of W*H on the fly from the small K x M table H, held as a {@link BroadcastTable}
+ * shared by the tablets of a tablet server, so that W*H is never written.
+ * Emits one entry per row whose Value is the squared error as a {@link MathTwoScalar.ScalarType#DOUBLE}.
+ * Sum the entries with a {@link MathTwoScalar} PLUS reducer for the squared Frobenius norm of A - W*H.
+ */
+public class NmfErrorRowMultiply implements RowMultiplyOp, Closeable {
+  private static final Logger log = LogManager.getLogger(NmfErrorRowMultiply.class);
+
+  /**
+   * Prefix of the {@link edu.mit.ll.graphulo.skvi.RemoteSourceIterator} options that read H,
+   * from {@link edu.mit.ll.graphulo.Graphulo#basicRemoteOpts}, with a {@link BroadcastTable#SNAPSHOT} option.
+   */
+  public static final String H = "H.";
+
+  private BroadcastTable.Handle hTable;
+
+  public NmfErrorRowMultiply() {
+  }
+
+  /** Use the copy of H held by hTable instead of reading it in {@link #init}. */
+  public NmfErrorRowMultiply(BroadcastTable.Handle hTable) {
+    this.hTable = hTable;
+  }
+
+  @Override
+  public void init(Map<String, String> options, IteratorEnvironment env) throws IOException {
+    Map<String, String> hOpts = new HashMap<>();
+    for (Map.Entry<String, String> optionEntry : options.entrySet()) {
+      if (optionEntry.getKey().startsWith(H))
+        hOpts.put(optionEntry.getKey().substring(H.length()), optionEntry.getValue());
+      else
+        log.warn("Unrecognized option: " + optionEntry);
+    }
+    if (hTable == null) {
+      Preconditions.checkArgument(!hOpts.isEmpty(), "no %s options to read H", H);
+      hTable = BroadcastTable.acquire(hOpts, env);
+    }
+  }
+
+  private static double decode(Value v) {
+    return MathTwoScalar.decodeDouble(MathTwoScalar.ScalarType.DOUBLE, v.get());
+  }
+
+  @Override
+  public Iterator<Map.Entry<Key, Value>> multiplyRow(SortedKeyValueIterator<Key, Value> skviA, SortedKeyValueIterator<Key, Value> skviB) throws IOException {
+    assert skviA != null || skviB != null;
+    Key row = new Key((skviA != null ? skviA : skviB).getTopKey().getRow());
+
+    // row i of W*H, by column of H
+    Map<ByteSequence, Double> wh = new HashMap<>();
+    if (skviA != null) {
+      BroadcastTable h = hTable.get();
+      SKVIRowIterator wRow = new SKVIRowIterator(skviA);
+      while (wRow.hasNext()) {
+        Map.Entry<Key, Value> entry = wRow.next();
+        int topic = h.rowIndex(entry.getKey().getColumnQualifierData());
+        if (topic < 0)
+          continue;
+        double w = decode(entry.getValue());
+        for (int i = h.rowStart(topic); i < h.rowStart(topic + 1); i++) {
+          ByteSequence col = h.getKey(i).getColumnQualifierData();
+          Double prev = wh.get(col);
+          wh.put(col, (prev == null ? 0 : prev) + w * decode(h.getValue(i)));
+        }
+      }
+    }
+
+    double err = 0;
+    if (skviB != null) {
+      SKVIRowIterator aRow = new SKVIRowIterator(skviB);
+      while (aRow.hasNext()) {
+        Map.Entry<Key, Value> entry = aRow.next();
+        Double p = wh.remove(entry.getKey().getColumnQualifierData());
+        double d = decode(entry.getValue()) - (p == null ? 0 : p);
+        err += d * d;
+      }
+    }
+    for (double p : wh.values())
+      err += p * p;
+
+    return Iterators.<Map.Entry<Key, Value>>singletonIterator(new AbstractMap.SimpleImmutableEntry<>(
+        row, new Value(Double.toString(err).getBytes(StandardCharsets.UTF_8))));
+  }
+
+  /** Release H; the next row acquires it again. */
+  @Override
+  public void close() {
+    if (hTable != null)
+      hTable.release();
+  }
+
+}
@@ -0,0 +1,392 @@
+package edu.mit.ll.graphulo.rowmult;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds the entries of a single row in a flat, append-only buffer.
+ * Column family, qualifier, visibility and value bytes are packed into one byte array;
+ * an int array holds the offsets of each entry's parts and a long array holds the timestamps.
+ * The arrays are reused across rows, so reading a row allocates nothing once the buffer has grown to fit.
+ * <p>
+ * Entries are kept in the order they are appended, which is sorted order when filled by {@link #fill}
+ * from a {@link SortedKeyValueIterator}. Duplicate keys are not merged.
+ * <p>
+ * If a row grows larger than the spill threshold, the buffered entries are written to a temporary file
+ * in the spill directory and the rest of the row streams through the same file.
+ * A spilled row is read back sequentially by each {@link Cursor}.
+ * The spill file is deleted at the next {@link #clear()}.
+ */
+public class RowBuffer {
+  private static final Logger log = LogManager.getLogger(RowBuffer.class);
+
+  /** Default number of bytes buffered in memory before spilling a row to disk: 64 MB. */
+  public static final long DEFAULT_SPILL_BYTES = 64L << 20;
+
+  /** Number of offsets stored per entry: start of colF, colQ, colVis, value. */
+  private static final int OFFSETS_PER_ENTRY = 4;
+
+  private final long spillBytes;
+  private final File spillDir;
+
+  private byte[] row = new byte[0];
+  private int rowLen = 0;
+  private byte[] data = new byte[1024];
+  private int dataLen = 0;
+  /** offsets[OFFSETS_PER_ENTRY*i + j]; the end of entry i's value is the start of entry i+1, or dataLen. */
+  private int[] offsets = new int[OFFSETS_PER_ENTRY * 16];
+  private long[] timestamps = new long[16];
+  /** Values are created lazily from the packed bytes, at most once per entry per row. */
+  private Value[] values = new Value[16];
+  /** Number of entries held in memory. */
+  private int memSize = 0;
+
+  private File spillFile;
+  private DataOutputStream spillOut;
+  /** Total number of entries in the row, including those spilled to disk. */
+  private int size = 0;
+
+  public RowBuffer() {
+    this(DEFAULT_SPILL_BYTES, null);
+  }
+
+  /**
+   * @param spillBytes Number of packed bytes to hold in memory before spilling the row to disk. <= 0 means never spill.
+   * @param spillDir Directory for spill files. Null means the default temporary-file directory.
+   */
+  public RowBuffer(long spillBytes, File spillDir) {
+    this.spillBytes = spillBytes;
+    this.spillDir = spillDir;
+  }
+
+  /** Reset to an empty row, retaining the allocated arrays. Deletes the spill file, if any. */
+  public void clear() {
+    Arrays.fill(values, 0, memSize, null);
+    rowLen = 0;
+    dataLen = 0;
+    memSize = 0;
+    size = 0;
+    deleteSpill();
+  }
+
+  /**
+   * Clear the buffer and fill it with all the entries in the same row as skvi.getTopKey().getRow().
+   * Postcondition: !skvi.hasTop() || skvi.getTopKey().getRow() has changed.
+   */
+  public void fill(SortedKeyValueIterator<Key, Value> skvi) throws IOException {
+    if (!skvi.hasTop())
+      throw new IllegalStateException(skvi + " should hasTop()");
+    clear();
+    ByteSequence r = skvi.getTopKey().getRowData();
+    setRow(r);
+    do {
+      Key k = skvi.getTopKey();
+      append(k.getColumnFamilyData(), k.getColumnQualifierData(), k.getColumnVisibilityData(),
+          k.getTimestamp(), skvi.getTopValue());
+      skvi.next();
+    } while (skvi.hasTop() && sameRow(skvi.getTopKey().getRowData()));
+    finishSpill();
+  }
+
+  private void setRow(ByteSequence r) {
+    rowLen = r.length();
+    if (row.length < rowLen)
+      row = new byte[rowLen];
+    copyInto(r, row, 0);
+  }
+
+  private boolean sameRow(ByteSequence r) {
+    if (r.length() != rowLen)
+      return false;
+    for (int i = rowLen - 1; i >= 0; i--)
+      if (r.byteAt(i) != row[i])
+        return false;
+    return true;
+  }
+
+  private static void copyInto(ByteSequence bs, byte[] dest, int destPos) {
+    if (bs.isBackedByArray())
+      System.arraycopy(bs.getBackingArray(), bs.offset(), dest, destPos, bs.length());
+    else
+      for (int i = 0; i < bs.length(); i++)
+        dest[destPos + i] = bs.byteAt(i);
+  }
+
+  private void append(ByteSequence cf, ByteSequence cq, ByteSequence cv, long ts, Value v) throws IOException {
+    int need = cf.length() + cq.length() + cv.length() + v.getSize();
+    ensureData(dataLen + need);
+    if (memSize == timestamps.length) {
+      int cap = memSize * 2;
+      offsets = Arrays.copyOf(offsets, OFFSETS_PER_ENTRY * cap);
+      timestamps = Arrays.copyOf(timestamps, cap);
+      values = Arrays.copyOf(values, cap);
+    }
+    int o = OFFSETS_PER_ENTRY * memSize;
+    offsets[o] = dataLen;
+    copyInto(cf, data, dataLen);
+    dataLen += cf.length();
+    offsets[o + 1] = dataLen;
+    copyInto(cq, data, dataLen);
+    dataLen += cq.length();
+    offsets[o + 2] = dataLen;
+    copyInto(cv, data, dataLen);
+    dataLen += cv.length();
+    offsets[o + 3] = dataLen;
+    System.arraycopy(v.get(), 0, data, dataLen, v.getSize());
+    dataLen += v.getSize();
+    timestamps[memSize] = ts;
+    memSize++;
+    size++;
+    if (spillBytes > 0 && dataLen >= spillBytes)
+      spill();
+  }
+
+  private void ensureData(int cap) {
+    if (cap > data.length)
+      data = Arrays.copyOf(data, Math.max(cap, data.length * 2));
+  }
+
+  /** Move the entries held in memory to the spill file. */
+  private void spill() throws IOException {
+    if (spillOut == null) {
+      spillFile = File.createTempFile("graphulo_rowbuffer", ".spill", spillDir);
+      spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), 1 << 16));
+      log.info("Spilling row of " + size + " entries / " + dataLen + " bytes to " + spillFile);
+    }
+    for (int i = 0; i < memSize; i++) {
+      int o = OFFSETS_PER_ENTRY * i;
+      for (int j = 0; j < OFFSETS_PER_ENTRY; j++) {
+        int start = offsets[o + j], end = end(i, j);
+        spillOut.writeInt(end - start);
+        spillOut.write(data, start, end - start);
+      }
+      spillOut.writeLong(timestamps[i]);
+    }
+    Arrays.fill(values, 0, memSize, null);
+    memSize = 0;
+    dataLen = 0;
+  }
+
+  private void finishSpill() throws IOException {
+    if (spillOut == null)
+      return;
+    if (memSize > 0)
+      spill();
+    spillOut.close();
+    spillOut = null;
+  }
+
+  private void deleteSpill() {
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+      } catch (IOException e) {
+        log.warn("problem closing spill file " + spillFile, e);
+      }
+      spillOut = null;
+    }
+    if (spillFile != null) {
+      if (!spillFile.delete())
+        log.warn("could not delete spill file " + spillFile);
+      spillFile = null;
+    }
+  }
+
+  /** End offset of part j of in-memory entry i. */
+  private int end(int i, int j) {
+    if (j < OFFSETS_PER_ENTRY - 1)
+      return offsets[OFFSETS_PER_ENTRY * i + j + 1];
+    return i + 1 < memSize ? offsets[OFFSETS_PER_ENTRY * (i + 1)] : dataLen;
+  }
+
+  /** Number of entries in the row. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Whether the current row was spilled to disk. */
+  public boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  /** Do not modify. Valid until the next {@link #clear()} or {@link #fill}. */
+  public ByteSequence getRowData() {
+    return new ArrayByteSequence(row, 0, rowLen);
+  }
+
+  private Value value(int i) {
+    Value v = values[i];
+    if (v == null) {
+      int start = offsets[OFFSETS_PER_ENTRY * i + 3];
+      v = values[i] = new Value(data, start, end(i, 3) - start);
+    }
+    return v;
+  }
+
+  @Override
+  protected void finalize() throws Throwable {
+    super.finalize();
+    deleteSpill();
+  }
+
+  /** Create a cursor positioned before the first entry. */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Iterates once over the entries in the buffer, exposing each entry's parts as views.
+   * The views are overwritten by the next call to {@link #next()}; copy them to retain them.
+   */
+  public final class Cursor {
+    public final MutableByteSequence colF = new MutableByteSequence(),
+        colQ = new MutableByteSequence(), colVis = new MutableByteSequence();
+    public long timestamp;
+    public Value value;
+    private int pos = -1;
+    private DataInputStream in;
+    private byte[] scratch;
+
+    private Cursor() {}
+
+    /** Reposition before the first entry. */
+    public void reset() {
+      pos = -1;
+      closeIn();
+    }
+
+    public boolean hasNext() {
+      return pos + 1 < size;
+    }
+
+    /** Advance to the next entry. */
+    public void next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      pos++;
+      if (isSpilled())
+        nextSpilled();
+      else {
+        int o = OFFSETS_PER_ENTRY * pos;
+        colF.set(data, offsets[o], end(pos, 0) - offsets[o]);
+        colQ.set(data, offsets[o + 1], end(pos, 1) - offsets[o + 1]);
+        colVis.set(data, offsets[o + 2], end(pos, 2) - offsets[o + 2]);
+        timestamp = timestamps[pos];
+        value = value(pos);
+      }
+    }
+
+    private void nextSpilled() {
+      try {
+        if (in == null) {
+          in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), 1 << 16));
+          if (scratch == null)
+            scratch = new byte[256];
+        }
+        int cfLen = in.readInt();
+        int len = readPart(0, cfLen);
+        int cqLen = in.readInt();
+        len = readPart(len, cqLen);
+        int cvLen = in.readInt();
+        len = readPart(len, cvLen);
+        int valLen = in.readInt();
+        byte[] v = new byte[valLen];
+        in.readFully(v);
+        timestamp = in.readLong();
+        colF.set(scratch, 0, cfLen);
+        colQ.set(scratch, cfLen, cqLen);
+        colVis.set(scratch, cfLen + cqLen, cvLen);
+        value = new Value(v, false);
+        if (pos + 1 == size)
+          closeIn();
+      } catch (IOException e) {
+        throw new RuntimeException("problem reading spill file " + spillFile, e);
+      }
+    }
+
+    private int readPart(int off, int len) throws IOException {
+      if (off + len > scratch.length) // keeps the parts of this entry read so far
+        scratch = Arrays.copyOf(scratch, Math.max(off + len, scratch.length * 2));
+      in.readFully(scratch, off, len);
+      return off + len;
+    }
+
+    private void closeIn() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          log.warn("problem closing spill file " + spillFile, e);
+        }
+        in = null;
+      }
+    }
+
+    /** Copy the current entry into a new Key. */
+    public Key getKey() {
+      return new Key(row, 0, rowLen, colF.getBackingArray(), colF.offset(), colF.length(),
+          colQ.getBackingArray(), colQ.offset(), colQ.length(),
+          colVis.getBackingArray(), colVis.offset(), colVis.length(), timestamp);
+    }
+  }
+
+  /** Iterate over the buffered entries as new Key/Value pairs. Use when entries must be emitted as-is. */
+  public Iterator<Map.Entry<Key, Value>> entryIterator() {
+    final Cursor c = cursor();
+    return new Iterator<Map.Entry<Key, Value>>() {
+      @Override
+      public boolean hasNext() {
+        return c.hasNext();
+      }
+
+      @Override
+      public Map.Entry<Key, Value> next() {
+        c.next();
+        return new AbstractMap.SimpleImmutableEntry<>(c.getKey(), c.value);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /** An {@link ArrayByteSequence} that can be repointed at a different part of a byte array. */
+  public static final class MutableByteSequence extends ArrayByteSequence {
+    private static final long serialVersionUID = 1L;
+
+    MutableByteSequence() {
+      super(new byte[0]);
+    }
+
+    void set(byte[] data, int offset, int length) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
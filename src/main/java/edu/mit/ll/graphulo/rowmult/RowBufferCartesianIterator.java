@@ -0,0 +1,89 @@
+package edu.mit.ll.graphulo.rowmult;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Emits Cartesian product of a stream of entries and the entries held in a {@link RowBuffer},
+ * passing each pair of entries to multiply function.
+ * Same order and semantics as {@link CartesianIterator}:
+ * stream through A once and iterate through the buffer many times.
+ * Pass <tt>switched</tt> as true if the two are switched.
+ * <p>
+ * Entries in the buffer are passed to the multiply function as views into the buffer; no Key is created for them.
+ */
+public class RowBufferCartesianIterator implements Iterator<Map.Entry<Key, Value>> {
+
+  private final RowBuffer.Cursor curB;
+  private final ByteSequence row;
+  private final boolean switched;
+  private final Iterator<Map.Entry<Key, Value>> itAonce;
+  private final MultiplyOp multiplyOp;
+  private Map.Entry<Key, Value> eA;
+  private Iterator<? extends Map.Entry<Key, Value>> multiplyOpIterator = Collections.emptyIterator();
+
+  public RowBufferCartesianIterator(Iterator<Map.Entry<Key, Value>> itAonce, RowBuffer bufBreset,
+                                    MultiplyOp multiplyOp, boolean switched) {
+    this.itAonce = itAonce;
+    this.curB = bufBreset.cursor();
+    this.row = bufBreset.getRowData();
+    this.multiplyOp = multiplyOp;
+    this.switched = switched;
+    if (!bufBreset.isEmpty() && itAonce.hasNext()) {
+      eA = itAonce.next();
+      prepNext();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return multiplyOpIterator.hasNext();
+  }
+
+  @Override
+  public Map.Entry<Key, Value> next() {
+    if (!multiplyOpIterator.hasNext())
+      throw new NoSuchElementException();
+    Map.Entry<Key, Value> ret = multiplyOpIterator.next();
+    if (!multiplyOpIterator.hasNext())
+      prepNext();
+    return ret;
+  }
+
+  private void prepNext() {
+    while (!multiplyOpIterator.hasNext()) {
+      if (!curB.hasNext()) {
+        if (!itAonce.hasNext())
+          return;
+        eA = itAonce.next();
+        curB.reset();
+      }
+      curB.next();
+      multiplyOpIterator = multiplyEntry();
+    }
+  }
+
+  private Iterator<? extends Map.Entry<Key, Value>> multiplyEntry() {
+    Key kA = eA.getKey();
+    if (switched)
+      return multiplyOp.multiply(row, curB.colF, curB.colQ, curB.colVis, curB.timestamp,
+          kA.getColumnFamilyData(), kA.getColumnQualifierData(), kA.getColumnVisibilityData(), kA.getTimestamp(),
+          curB.value, eA.getValue());
+    else
+      return multiplyOp.multiply(row, kA.getColumnFamilyData(), kA.getColumnQualifierData(),
+          kA.getColumnVisibilityData(), kA.getTimestamp(),
+          curB.colF, curB.colQ, curB.colVis, curB.timestamp,
+          eA.getValue(), curB.value);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
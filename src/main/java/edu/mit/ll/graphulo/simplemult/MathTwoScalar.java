@@ -1,6 +1,7 @@
 package edu.mit.ll.graphulo.simplemult;
 
 import edu.mit.ll.graphulo.apply.ApplyIterator;
+import edu.mit.ll.graphulo.skvi.DoubleCombiner;
 import edu.mit.ll.graphulo.util.GraphuloUtil;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.lexicoder.Lexicoder;
@@ -8,6 +9,7 @@ import org.apache.accumulo.core.client.lexicoder.LongLexicoder;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Combiner;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.LongCombiner;
 import org.apache.accumulo.core.iterators.TypedValueCombiner.Encoder;
 import org.apache.accumulo.core.iterators.ValueFormatException;
 import org.apache.log4j.LogManager;
@@ -42,7 +44,17 @@ public class MathTwoScalar extends SimpleTwoScalar {
     /** Parses as long if the input has a decimal point. Otherwise parses as double.
      * Returns as long if both inputs parsed as long. Otherwise returns as double. */
     LONG_OR_DOUBLE,
-    LEX_LONG
+    LEX_LONG,
+    /** 8-byte big-endian two's complement long, as in {@link LongCombiner#FIXED_LEN_ENCODER}. */
+    FIXED_LONG,
+    /** 8-byte big-endian IEEE 754 bits of a double, as in {@link DoubleCombiner#FIXED_LEN_ENCODER}. */
+    FIXED_DOUBLE;
+
+    /** Whether values of this type are binary, as opposed to UTF-8 strings.
+     * String types can read each other's values; binary types cannot. */
+    public boolean isBinary() {
+      return this == LEX_LONG || this == FIXED_LONG || this == FIXED_DOUBLE;
+    }
 
 
     // Core Developer note: I tried to make the encoding and decoding generic,
@@ -183,136 +195,138 @@ public class MathTwoScalar extends SimpleTwoScalar {
     }
   }
 
-  @SuppressWarnings("ConstantConditions")
+  private static final Lexicoder<Long> LEX_LONG_LEXICODER = new LongLexicoder();
+
   @Override
   public Value multiply(Value Aval, Value Bval) {
-    // local copy that may be re-assigned in the case of LONG_OR_DOUBLE
-    ScalarType scalarType = this.scalarType;
-
     if (scalarOp == ScalarOp.SET_LEFT)
       return Aval;
 
-    Number Anum, Bnum;
-    Lexicoder<Long> lex = null;
-    if (scalarType == ScalarType.LEX_LONG)
-      lex = new LongLexicoder();
+    switch (scalarType) {
+      case LONG: case LEX_LONG: case FIXED_LONG:
+        return longOp(scalarType, decodeLong(scalarType, Aval.get()), decodeLong(scalarType, Bval.get()));
+      case DOUBLE: case FIXED_DOUBLE:
+        return doubleOp(scalarType, decodeDouble(scalarType, Aval.get()), decodeDouble(scalarType, Bval.get()));
+      case LONG_OR_DOUBLE: {
+        String Astr = new String(Aval.get(), StandardCharsets.UTF_8), Bstr = new String(Bval.get(), StandardCharsets.UTF_8);
+        return Astr.indexOf('.') == -1 && Bstr.indexOf('.') == -1
+            ? longOp(ScalarType.LONG, Long.parseLong(Astr), Long.parseLong(Bstr))
+            : doubleOp(ScalarType.DOUBLE, Double.parseDouble(Astr), Double.parseDouble(Bstr));
+      }
+      case BIGDECIMAL:
+        return bigDecimalOp(new BigDecimal(new String(Aval.get(), StandardCharsets.UTF_8)),
+            new BigDecimal(new String(Bval.get(), StandardCharsets.UTF_8)));
+      default: throw new AssertionError();
+    }
+  }
+
+  /** Decode a value of a long type. */
+  public static long decodeLong(ScalarType type, byte[] b) {
+    switch (type) {
+      case LONG: return Long.parseLong(new String(b, StandardCharsets.UTF_8));
+      case LEX_LONG: return LEX_LONG_LEXICODER.decode(b);
+      case FIXED_LONG:
+        if (b.length != 8)
+          throw new ValueFormatException("expected 8 bytes for FIXED_LONG but got " + b.length);
+        return readFixed(b);
+      default: throw new IllegalArgumentException("not a long type: " + type);
+    }
+  }
 
-//    System.out.println("multiply("+Aval+","+Bval+")");
-    String Astr=null, Bstr=null;
-    if (scalarType != ScalarType.LEX_LONG) {
-      Astr = new String(Aval.get(), StandardCharsets.UTF_8);
-      Bstr = new String(Bval.get(), StandardCharsets.UTF_8);
+  /** Encode a value of a long type. */
+  public static byte[] encodeLong(ScalarType type, long v) {
+    switch (type) {
+      case LONG: return Long.toString(v).getBytes(StandardCharsets.UTF_8);
+      case LEX_LONG: return LEX_LONG_LEXICODER.encode(v);
+      case FIXED_LONG: return writeFixed(v);
+      default: throw new IllegalArgumentException("not a long type: " + type);
     }
+  }
 
-    switch(scalarType) {
-      case LONG:
-        Anum = Long.valueOf(Astr);
-        Bnum = Long.valueOf(Bstr);
-        break;
-      case DOUBLE:
-        Anum = Double.valueOf(Astr);
-        Bnum = Double.valueOf(Bstr);
-        break;
-      case BIGDECIMAL:
-        Anum = new BigDecimal(Astr);
-        Bnum = new BigDecimal(Bstr);
-        break;
-      case LONG_OR_DOUBLE:
-        boolean Along = Astr.indexOf('.') == -1, Blong = Bstr.indexOf('.') == -1;
-        boolean ABlong = Along && Blong;
-        scalarType = ABlong ? ScalarType.LONG : ScalarType.DOUBLE;
-        Anum = ABlong
-            ? Long.valueOf(Astr)
-            : Double.valueOf(Astr);
-        Bnum = ABlong
-            ? Long.valueOf(Bstr)
-            : Double.valueOf(Bstr);
-        break;
-      case LEX_LONG:
-        Anum = lex.decode(Aval.get());
-        Bnum = lex.decode(Bval.get());
-        break;
-      default: throw new AssertionError();
+  /** Decode a value of a double type. */
+  public static double decodeDouble(ScalarType type, byte[] b) {
+    switch (type) {
+      case DOUBLE: return Double.parseDouble(new String(b, StandardCharsets.UTF_8));
+      case FIXED_DOUBLE:
+        if (b.length != 8)
+          throw new ValueFormatException("expected 8 bytes for FIXED_DOUBLE but got " + b.length);
+        return Double.longBitsToDouble(readFixed(b));
+      default: throw new IllegalArgumentException("not a double type: " + type);
+    }
+  }
+
+  /** Encode a value of a double type. */
+  public static byte[] encodeDouble(ScalarType type, double v) {
+    switch (type) {
+      case DOUBLE: return Double.toString(v).getBytes(StandardCharsets.UTF_8);
+      case FIXED_DOUBLE: return writeFixed(Double.doubleToRawLongBits(v));
+      default: throw new IllegalArgumentException("not a double type: " + type);
     }
-    Number nnew;
+  }
+
+  private static long readFixed(byte[] b) {
+    long v = 0;
+    for (int i = 0; i < 8; i++)
+      v = (v << 8) | (b[i] & 0xFF);
+    return v;
+  }
+
+  private static byte[] writeFixed(long v) {
+    byte[] b = new byte[8];
+    for (int i = 7; i >= 0; i--, v >>>= 8)
+      b[i] = (byte) v;
+    return b;
+  }
+
+  private Value longOp(ScalarType type, long A, long B) {
+    long n;
     switch(scalarOp) {
-      case PLUS:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Anum.longValue() + Bnum.longValue(); break;
-          case DOUBLE: nnew = Anum.doubleValue() + Bnum.doubleValue(); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).add((BigDecimal)Bnum); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case TIMES:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Anum.longValue() * Bnum.longValue(); break;
-          case DOUBLE: nnew = Anum.doubleValue() * Bnum.doubleValue(); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).multiply((BigDecimal)Bnum); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case MINUS:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Anum.longValue() - Bnum.longValue(); break;
-          case DOUBLE: nnew = Anum.doubleValue() - Bnum.doubleValue(); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).subtract((BigDecimal) Bnum); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case DIVIDE:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Anum.longValue() / Bnum.longValue(); break;
-          case DOUBLE: nnew = Anum.doubleValue() / Bnum.doubleValue(); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).divide((BigDecimal) Bnum, BigDecimal.ROUND_HALF_UP); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case POWER:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = (long)Math.pow(Anum.longValue(), Bnum.longValue()); break;
-          case DOUBLE: nnew = Math.pow(Anum.doubleValue(), Bnum.doubleValue()); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).pow(Bnum.intValue()); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case MIN:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Math.min(Anum.longValue(), Bnum.longValue()); break;
-          case DOUBLE: nnew = Math.min(Anum.doubleValue(), Bnum.doubleValue()); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).min((BigDecimal) Bnum); break;
-          default: throw new AssertionError();
-        }
-        break;
-      case MAX:
-        switch(scalarType) {
-          case LONG: case LEX_LONG: nnew = Math.max(Anum.longValue(), Bnum.longValue()); break;
-          case DOUBLE: nnew = Math.max(Anum.doubleValue(), Bnum.doubleValue()); break;
-          case BIGDECIMAL: nnew = ((BigDecimal)Anum).max((BigDecimal) Bnum); break;
-          default: throw new AssertionError();
-        }
-        break;
-      default:
-        throw new AssertionError();
+      case PLUS: n = A + B; break;
+      case TIMES: n = A * B; break;
+      case MINUS: n = A - B; break;
+      case DIVIDE: n = A / B; break;
+      case POWER: n = (long)Math.pow(A, B); break;
+      case MIN: n = Math.min(A, B); break;
+      case MAX: n = Math.max(A, B); break;
+      default: throw new AssertionError();
     }
-    // check for zero
-    if (!keepZero) {
-      switch (scalarType) {
-        case LONG: case LEX_LONG: if (nnew.longValue() == 0) return null; break;
-        case DOUBLE: if (Double.doubleToRawLongBits(nnew.doubleValue()) == 0) return null; break;
-        case BIGDECIMAL: if (nnew.equals(BigDecimal.ZERO)) return null; break;
-      }
+    if (!keepZero && n == 0)
+      return null;
+    return new Value(encodeLong(type, n));
+  }
+
+  private Value doubleOp(ScalarType type, double A, double B) {
+    double n;
+    switch(scalarOp) {
+      case PLUS: n = A + B; break;
+      case TIMES: n = A * B; break;
+      case MINUS: n = A - B; break;
+      case DIVIDE: n = A / B; break;
+      case POWER: n = Math.pow(A, B); break;
+      case MIN: n = Math.min(A, B); break;
+      case MAX: n = Math.max(A, B); break;
+      default: throw new AssertionError();
     }
+    if (!keepZero && Double.doubleToRawLongBits(n) == 0)
+      return null;
+    return new Value(encodeDouble(type, n));
+  }
 
-    byte[] vnew;
-    switch(scalarType) {
-      case LONG: vnew = Long.toString(nnew.longValue()).getBytes(StandardCharsets.UTF_8); break;
-      case DOUBLE: vnew = Double.toString(nnew.doubleValue()).getBytes(StandardCharsets.UTF_8); break;
-      case BIGDECIMAL: vnew = nnew.toString().getBytes(StandardCharsets.UTF_8); break;
-      case LEX_LONG: vnew = lex.encode(nnew.longValue()); break;
+  private Value bigDecimalOp(BigDecimal A, BigDecimal B) {
+    BigDecimal n;
+    switch(scalarOp) {
+      case PLUS: n = A.add(B); break;
+      case TIMES: n = A.multiply(B); break;
+      case MINUS: n = A.subtract(B); break;
+      case DIVIDE: n = A.divide(B, BigDecimal.ROUND_HALF_UP); break;
+      case POWER: n = A.pow(B.intValue()); break;
+      case MIN: n = A.min(B); break;
+      case MAX: n = A.max(B); break;
       default: throw new AssertionError();
     }
-    return new Value(vnew);
+    if (!keepZero && n.equals(BigDecimal.ZERO))
+      return null;
+    return new Value(n.toString().getBytes(StandardCharsets.UTF_8));
   }
 
   @Override
@@ -320,6 +334,7 @@ public class MathTwoScalar extends SimpleTwoScalar {
     MathTwoScalar copy = (MathTwoScalar) super.deepCopy(env);
     copy.scalarOp = scalarOp;
     copy.scalarType = scalarType;
+    copy.keepZero = keepZero;
     return copy;
   }
 
@@ -0,0 +1,565 @@
+package edu.mit.ll.graphulo.skvi;
+
+import com.google.common.hash.Hashing;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * An immutable in-memory copy of a small table, shared by the iterators of a tablet server.
+ * Joins a large table against a small one, such as a degree table, by looking up rows in a hash index
+ * instead of opening a {@link RemoteSourceIterator} on the small table for every tablet.
+ * <p>
+ * Copies are cached by the {@link RemoteSourceIterator} options that read the table, including the principal,
+ * authorizations and a hash of the credentials, and by the {@value #SNAPSHOT} option,
+ * a name the client chooses for one version of the table, usually one per operation from {@link #newSnapshot()}.
+ * Iterators that pass the same options and snapshot share one copy; the first to {@link #acquire} it loads it.
+ * Each {@link Handle} holds a reference until it is {@link Handle#release() released}, which its owner does when it runs out of entries.
+ * The cache of a tablet server holds at most {@value #CACHE_BYTES_PROPERTY} bytes (default {@value #DEFAULT_CACHE_BYTES}),
+ * evicting the least recently used copies with no references first.
+ * A copy with no references is evicted after {@value #LINGER_MILLIS} ms,
+ * so that the tablets of one operation scanned one after another reuse it,
+ * and any copy not acquired for {@value #EXPIRE_MILLIS} ms is evicted, in case its holders were torn down without releasing it.
+ * Without a snapshot, the copy is private to the caller.
+ */
+public final class BroadcastTable {
+  private static final Logger log = LogManager.getLogger(BroadcastTable.class);
+
+  public static final String SNAPSHOT = "broadcastSnapshot";
+  /** Refuse to load tables with more entries than this. */
+  public static final int MAX_ENTRIES = 1 << 24;
+  /** How long a copy with no references stays in the cache. */
+  public static final long LINGER_MILLIS = 60000;
+  /** How long a copy that is not acquired stays in the cache, even if it has references. */
+  public static final long EXPIRE_MILLIS = 10 * 60000;
+  /** System property of the tablet server JVM that sets the byte budget of the cache. */
+  public static final String CACHE_BYTES_PROPERTY = "graphulo.broadcast.cacheBytes";
+  public static final long DEFAULT_CACHE_BYTES = 256L << 20;
+  /** Estimated bytes of object overhead per entry. */
+  private static final int ENTRY_OVERHEAD = 96;
+
+  /** A fresh snapshot name. */
+  public static String newSnapshot() {
+    return UUID.randomUUID().toString();
+  }
+
+  private final Key[] keys;
+  private final Value[] values;
+  /** Index in keys of the first entry of each row, followed by keys.length. */
+  private final int[] rowStart;
+  /** The first value of each row parsed as a double, or NaN if it is not a number. */
+  private final double[] rowDouble;
+  /** Open addressing hash index from row to row index + 1. Zero marks an empty slot. */
+  private final int[] slots;
+  private final long estimatedBytes;
+
+  private BroadcastTable(List<Key> keyList, List<Value> valueList, int[] rowStart, int numRows) {
+    keys = keyList.toArray(new Key[keyList.size()]);
+    values = valueList.toArray(new Value[valueList.size()]);
+    this.rowStart = Arrays.copyOf(rowStart, numRows + 1);
+    this.rowStart[numRows] = keys.length;
+    rowDouble = new double[numRows];
+    slots = new int[Integer.highestOneBit(Math.max(numRows, 1) * 2 + 1) << 1];
+    for (int r = 0; r < numRows; r++) {
+      rowDouble[r] = parseDouble(values[this.rowStart[r]]);
+      ByteSequence row = keys[this.rowStart[r]].getRowData();
+      int s = hash(row.getBackingArray(), row.offset(), row.length()) & (slots.length - 1);
+      while (slots[s] != 0)
+        s = (s + 1) & (slots.length - 1);
+      slots[s] = r + 1;
+    }
+    long bytes = 8L * rowDouble.length + 4L * (slots.length + this.rowStart.length);
+    for (int i = 0; i < keys.length; i++)
+      bytes += keys[i].getSize() + values[i].getSize() + ENTRY_OVERHEAD;
+    estimatedBytes = bytes;
+  }
+
+  private static double parseDouble(Value v) {
+    try {
+      return Double.parseDouble(new String(v.get(), StandardCharsets.UTF_8));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private static int hash(byte[] b, int off, int len) {
+    int h = WritableComparator.hashBytes(b, off, len);
+    return h ^ (h >>> 16);
+  }
+
+  /** Copy all entries from a source. Seeks the source to the whole table. */
+  public static BroadcastTable copyOf(SortedKeyValueIterator<Key, Value> source) throws IOException {
+    source.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    List<Key> keyList = new ArrayList<>();
+    List<Value> valueList = new ArrayList<>();
+    int[] rowStart = new int[16];
+    int numRows = 0;
+    Key prev = null;
+    while (source.hasTop()) {
+      if (keyList.size() >= MAX_ENTRIES)
+        throw new IllegalStateException("table has more than " + MAX_ENTRIES + " entries; too large to broadcast");
+      Key k = new Key(source.getTopKey());
+      if (prev == null || !k.equals(prev, PartialKey.ROW)) {
+        if (numRows + 1 >= rowStart.length)
+          rowStart = Arrays.copyOf(rowStart, rowStart.length * 2);
+        rowStart[numRows++] = keyList.size();
+      }
+      keyList.add(k);
+      valueList.add(new Value(source.getTopValue()));
+      prev = k;
+      source.next();
+    }
+    return new BroadcastTable(keyList, valueList, rowStart, numRows);
+  }
+
+  /** Number of entries. */
+  public int size() {
+    return keys.length;
+  }
+
+  public int numRows() {
+    return rowDouble.length;
+  }
+
+  /** Index of the first entry of row r. The entries of row r end before rowStart(r+1); rowStart(numRows()) is size(). */
+  public int rowStart(int r) {
+    return rowStart[r];
+  }
+
+  /** Key of entry i, in sorted order. Do not modify. */
+  public Key getKey(int i) {
+    return keys[i];
+  }
+
+  /** Value of entry i. Do not modify. */
+  public Value getValue(int i) {
+    return values[i];
+  }
+
+  /** Estimated bytes of memory held by this copy. */
+  public long estimatedBytes() {
+    return estimatedBytes;
+  }
+
+  /** Index of a row, or -1 if the table does not have it. */
+  public int rowIndex(byte[] b, int off, int len) {
+    int s = hash(b, off, len) & (slots.length - 1);
+    for (int r; (r = slots[s]) != 0; s = (s + 1) & (slots.length - 1)) {
+      ByteSequence row = keys[rowStart[r - 1]].getRowData();
+      if (WritableComparator.compareBytes(b, off, len, row.getBackingArray(), row.offset(), row.length()) == 0)
+        return r - 1;
+    }
+    return -1;
+  }
+
+  public int rowIndex(ByteSequence row) {
+    if (!row.isBackedByArray())
+      row = new ArrayByteSequence(row.toArray());
+    return rowIndex(row.getBackingArray(), row.offset(), row.length());
+  }
+
+  public int rowIndex(Text row) {
+    return rowIndex(row.getBytes(), 0, row.getLength());
+  }
+
+  /** The first value of a row as a double, or NaN if the table does not have the row or the value is not a number. */
+  public double getDouble(ByteSequence row) {
+    int r = rowIndex(row);
+    return r < 0 ? Double.NaN : rowDouble[r];
+  }
+
+  public double getDouble(Text row) {
+    int r = rowIndex(row);
+    return r < 0 ? Double.NaN : rowDouble[r];
+  }
+
+  /** Index of the first entry whose key is not less than k. */
+  private int lowerBound(Key k) {
+    int i = Arrays.binarySearch(keys, k);
+    return i < 0 ? -i - 1 : i;
+  }
+
+  /** A new iterator over the table. */
+  public Iter iterator() {
+    Iter it = new Iter();
+    it.table = this;
+    return it;
+  }
+
+
+  /**
+   * Iterates over a BroadcastTable. Seeks by binary search, and skips to a row by the hash index.
+   * As a standalone iterator, init() takes the {@link RemoteSourceIterator} options of the table and optionally {@value #SNAPSHOT},
+   * and ignores its source.
+   */
+  public static final class Iter implements SortedKeyValueIterator<Key, Value> {
+    /** Null if this iterates over a table not managed by a cache. */
+    private Handle handle;
+    /** Null after {@link #release()} until the next seek. */
+    private BroadcastTable table;
+    private Range range = new Range();
+    private Set<ByteSequence> columnFamilies = Collections.emptySet();
+    private boolean inclusive = false;
+    private int pos = 0;
+    private boolean top = false;
+
+    public Iter() {
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+      handle = acquire(options, env);
+      table = handle.get();
+    }
+
+    /** Release the copy until the next seek, e.g., when done with the current seek range. */
+    public void release() {
+      if (handle != null) {
+        handle.release();
+        table = null;
+        top = false;
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+      if (handle != null)
+        table = handle.get();
+      this.range = range;
+      this.columnFamilies = columnFamilies instanceof Set ? (Set<ByteSequence>) columnFamilies : new HashSet<>(columnFamilies);
+      this.inclusive = inclusive;
+      Key start = range.getStartKey();
+      if (start == null)
+        pos = 0;
+      else {
+        pos = table.lowerBound(start);
+        if (!range.isStartKeyInclusive() && pos < table.keys.length && table.keys[pos].equals(start))
+          pos++;
+      }
+      findTop();
+    }
+
+    private void findTop() {
+      for (; pos < table.keys.length; pos++) {
+        Key k = table.keys[pos];
+        if (range.afterEndKey(k))
+          break;
+        if (columnFamilies.contains(k.getColumnFamilyData()) == inclusive) {
+          top = true;
+          return;
+        }
+      }
+      top = false;
+    }
+
+    /**
+     * Advance to the first entry whose row is not less than row, by the hash index if the table has the row.
+     * Never moves backward.
+     * @return Whether there is a top entry.
+     */
+    public boolean skipToRow(ByteSequence row) {
+      if (!top)
+        return false;
+      int r = table.rowIndex(row);
+      int p = r >= 0 ? table.rowStart[r] : table.lowerBound(new Key(new Text(row.toArray())));
+      if (p > pos) {
+        pos = p;
+        findTop();
+      }
+      return top;
+    }
+
+    @Override
+    public boolean hasTop() {
+      return top;
+    }
+
+    @Override
+    public void next() {
+      pos++;
+      findTop();
+    }
+
+    @Override
+    public Key getTopKey() {
+      return table.keys[pos];
+    }
+
+    @Override
+    public Value getTopValue() {
+      return table.values[pos];
+    }
+
+    /** The copy holds its own reference to the same table. */
+    @Override
+    public Iter deepCopy(IteratorEnvironment env) {
+      Iter copy = new Iter();
+      copy.table = table;
+      if (handle != null) {
+        copy.handle = handle.copy();
+        copy.table = null; // acquired at seek
+      }
+      return copy;
+    }
+  }
+
+
+  /** Loads a copy of a table on a cache miss. */
+  public interface Loader {
+    BroadcastTable load() throws IOException;
+  }
+
+  /**
+   * A reference to a copy, acquired from a cache on the first {@link #get()} after creation or {@link #release()}.
+   * Not thread-safe.
+   */
+  public static final class Handle implements Closeable {
+    /** Null for a private copy. */
+    private final Cache cache;
+    private final String cacheKey;
+    private final Loader loader;
+    private Cache.Entry entry;
+    private BroadcastTable table;
+
+    private Handle(Cache cache, String cacheKey, Loader loader) {
+      this.cache = cache;
+      this.cacheKey = cacheKey;
+      this.loader = loader;
+    }
+
+    /** The copy, acquired or loaded if this handle does not hold it. */
+    public BroadcastTable get() throws IOException {
+      if (table == null) {
+        if (cache == null)
+          table = loader.load();
+        else {
+          entry = cache.ref(cacheKey, loader);
+          table = entry.table;
+        }
+      }
+      return table;
+    }
+
+    /** A new iterator over the table that holds it through this handle. */
+    public Iter iterator() throws IOException {
+      Iter it = new Iter();
+      it.handle = this;
+      it.table = get();
+      return it;
+    }
+
+    /** A handle to the same copy that does not hold it yet. */
+    Handle copy() {
+      Handle h = new Handle(cache, cacheKey, loader);
+      if (cache == null)
+        h.table = table;
+      return h;
+    }
+
+    /** Drop the reference to the copy. Idempotent; a later {@link #get()} acquires it again. */
+    public void release() {
+      if (entry != null) {
+        cache.unref(entry);
+        entry = null;
+      }
+      table = null;
+    }
+
+    @Override
+    public void close() {
+      release();
+    }
+  }
+
+
+  /**
+   * A cache of copies within a byte budget.
+   * Evicts copies with no references after lingerMillis, copies not acquired for expireMillis,
+   * and the least recently acquired copies with no references when over budget.
+   * A copy evicted while referenced stays usable by its holders. Thread-safe.
+   */
+  public static final class Cache {
+    private final long maxBytes, lingerMillis, expireMillis;
+    /** In order of least recent acquire. */
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private static final class Entry {
+      final String cacheKey;
+      /** Set by the first acquirer, under this Entry's lock. */
+      volatile BroadcastTable table;
+      long bytes = 0;
+      int refs = 0;
+      long lastUsed;
+
+      Entry(String cacheKey) {
+        this.cacheKey = cacheKey;
+      }
+    }
+
+    public Cache(long maxBytes, long lingerMillis, long expireMillis) {
+      this.maxBytes = maxBytes;
+      this.lingerMillis = lingerMillis;
+      this.expireMillis = expireMillis;
+    }
+
+    /** A handle to the copy cached under cacheKey, loading it with loader if it is not cached. */
+    public Handle acquire(String cacheKey, Loader loader) throws IOException {
+      Handle h = new Handle(this, cacheKey, loader);
+      h.get();
+      return h;
+    }
+
+    private Entry ref(String cacheKey, Loader loader) throws IOException {
+      Entry e;
+      synchronized (this) {
+        expunge(System.currentTimeMillis());
+        e = map.get(cacheKey);
+        if (e == null) {
+          e = new Entry(cacheKey);
+          map.put(cacheKey, e);
+        }
+        e.refs++;
+        e.lastUsed = System.currentTimeMillis();
+      }
+      try {
+        synchronized (e) {
+          if (e.table == null) {
+            BroadcastTable t = loader.load();
+            synchronized (this) {
+              e.table = t;
+              e.bytes = t.estimatedBytes();
+              if (map.get(cacheKey) == e) // not evicted while loading
+                bytes += e.bytes;
+              evictOverBudget();
+            }
+            log.info("loaded broadcast copy " + cacheKey + ": " + t.size() + " entries in " + t.numRows()
+                + " rows, ~" + t.estimatedBytes() + " bytes; cache holds ~" + getBytes() + " bytes");
+          }
+        }
+      } catch (IOException | RuntimeException ex) {
+        unref(e);
+        throw ex;
+      }
+      return e;
+    }
+
+    private synchronized void unref(Entry e) {
+      if (e.refs > 0)
+        e.refs--;
+      e.lastUsed = System.currentTimeMillis();
+      expunge(e.lastUsed);
+    }
+
+    private void expunge(long now) {
+      for (Iterator<Entry> it = map.values().iterator(); it.hasNext(); ) {
+        Entry e = it.next();
+        long idle = now - e.lastUsed;
+        if ((e.refs == 0 && idle > lingerMillis) || (e.table != null && idle > expireMillis))
+          remove(it, e);
+      }
+      evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+      for (Iterator<Entry> it = map.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+        Entry e = it.next();
+        if (e.refs == 0)
+          remove(it, e);
+      }
+    }
+
+    private void remove(Iterator<Entry> it, Entry e) {
+      it.remove();
+      bytes -= e.bytes;
+      log.debug("evicting broadcast copy " + e.cacheKey);
+    }
+
+    /** Estimated bytes of the cached copies. */
+    public synchronized long getBytes() {
+      return bytes;
+    }
+
+    /** Number of cached copies. */
+    public synchronized int size() {
+      return map.size();
+    }
+
+    /** Number of handles holding the copy cached under cacheKey; 0 if it is not cached. */
+    public synchronized int references(String cacheKey) {
+      Entry e = map.get(cacheKey);
+      return e == null ? 0 : e.refs;
+    }
+  }
+
+  /** The cache shared by the iterators of this JVM. */
+  public static final Cache CACHE = new Cache(Long.getLong(CACHE_BYTES_PROPERTY, DEFAULT_CACHE_BYTES), LINGER_MILLIS, EXPIRE_MILLIS);
+
+  /**
+   * The key under which {@link #acquire} caches the copy read with the given options, or null if they have no {@value #SNAPSHOT}.
+   * Holds every option, including the principal and authorizations, with the password or token replaced by its hash.
+   */
+  public static String cacheKey(Map<String, String> options) {
+    String snapshot = options.get(SNAPSHOT);
+    if (snapshot == null || snapshot.isEmpty())
+      return null;
+    Map<String, String> sorted = new TreeMap<>(options);
+    sorted.remove(SNAPSHOT);
+    for (String credential : new String[]{RemoteSourceIterator.PASSWORD, RemoteSourceIterator.AUTHENTICATION_TOKEN})
+      if (sorted.containsKey(credential))
+        sorted.put(credential, Hashing.sha256().hashString(sorted.get(credential), StandardCharsets.UTF_8).toString());
+    return snapshot + sorted;
+  }
+
+  /**
+   * Get the copy of a table read with the given {@link RemoteSourceIterator} options,
+   * loading it if it is not in {@link #CACHE} under the {@value #SNAPSHOT} option in the options.
+   * The caller releases the handle when done with it.
+   */
+  public static Handle acquire(Map<String, String> options, final IteratorEnvironment env) throws IOException {
+    final Map<String, String> remoteOpts = new HashMap<>(options);
+    remoteOpts.remove(SNAPSHOT);
+    Loader loader = new Loader() {
+      @Override
+      public BroadcastTable load() throws IOException {
+        RemoteSourceIterator remote = new RemoteSourceIterator();
+        remote.init(null, remoteOpts, env);
+        return copyOf(remote);
+      }
+    };
+    String cacheKey = cacheKey(options);
+    if (cacheKey == null) {
+      Handle h = new Handle(null, null, loader);
+      h.get();
+      return h;
+    }
+    return CACHE.acquire(cacheKey, loader);
+  }
+}
@@ -4,6 +4,7 @@ import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.LongCombiner;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.TypedValueCombiner;
 import org.apache.accumulo.core.iterators.ValueFormatException;
@@ -26,6 +27,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public abstract class DoubleCombiner extends TypedValueCombiner<Double> {
   public static final Encoder<Double> BYTE_ENCODER = new DoubleLexicoderTemp(); // attempt 1.6 compat
   public static final Encoder<Double> STRING_ENCODER = new StringEncoder();
+  public static final Encoder<Double> FIXED_LEN_ENCODER = new FixedLenEncoder();
 
   protected static final String TYPE = "type";
   protected static final String CLASS_PREFIX = "class:";
@@ -38,7 +40,11 @@ public abstract class DoubleCombiner extends TypedValueCombiner<Double> {
     /**
      * indicates a string representation of a Long using {@link DoubleCombiner.StringEncoder}
      */
-    STRING
+    STRING,
+    /**
+     * indicates a fixed-length (8-byte) encoding of a Double using {@link DoubleCombiner.FixedLenEncoder}
+     */
+    FIXEDLEN
   }
 
   @Override
@@ -62,6 +68,9 @@ public abstract class DoubleCombiner extends TypedValueCombiner<Double> {
         case STRING:
           setEncoder(STRING_ENCODER);
           return;
+        case FIXEDLEN:
+          setEncoder(FIXED_LEN_ENCODER);
+          return;
         default:
           throw new IllegalArgumentException();
       }
@@ -73,7 +82,7 @@ public abstract class DoubleCombiner extends TypedValueCombiner<Double> {
     IteratorOptions io = super.describeOptions();
     io.setName("DoubleCombiner");
     io.setDescription("DoubleCombiner interprets Values as Doubles in byte-wise or string encoding before combining");
-    io.addNamedOption(TYPE, "<BYTE|STRING|fullClassName>");
+    io.addNamedOption(TYPE, "<BYTE|STRING|FIXEDLEN|fullClassName>");
     return io;
   }
 
@@ -114,6 +123,22 @@ public abstract class DoubleCombiner extends TypedValueCombiner<Double> {
     }
   }
 
+  /**
+   * An Encoder that uses the 8-byte big-endian IEEE 754 bits of a Double,
+   * matching {@link org.apache.accumulo.core.iterators.LongCombiner.FixedLenEncoder} on the raw bits.
+   */
+  public static class FixedLenEncoder implements Encoder<Double> {
+    @Override
+    public byte[] encode(Double v) {
+      return LongCombiner.FIXED_LEN_ENCODER.encode(Double.doubleToRawLongBits(v));
+    }
+
+    @Override
+    public Double decode(byte[] b) {
+      return Double.longBitsToDouble(LongCombiner.FIXED_LEN_ENCODER.decode(b));
+    }
+  }
+
   /**
    * A convenience method for setting the long encoding type.
    *
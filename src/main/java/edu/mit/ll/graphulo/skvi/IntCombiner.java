@@ -33,6 +33,7 @@ public abstract class IntCombiner extends TypedValueCombiner<Integer> {
   public static final Encoder<Integer> BYTE_ONE_ENCODER = new IntegerOneLexicoder(); // attempt 1.6 compat
   public static final Encoder<Integer> BYTE_EMPTY_ENCODER = new IntegerEmptyLexicoder(); // attempt 1.6 compat
   public static final Encoder<Integer> STRING_ENCODER = new StringEncoder();
+  public static final Encoder<Integer> FIXED_LEN_ENCODER = new FixedLenEncoder();
 
   protected static final String TYPE = "type";
   protected static final String CLASS_PREFIX = "class:";
@@ -59,7 +60,11 @@ public abstract class IntCombiner extends TypedValueCombiner<Integer> {
     /**
      * indicates a string representation of an Integer using {@link IntCombiner.StringEncoder}
      */
-    STRING
+    STRING,
+    /**
+     * indicates a fixed-length (4-byte) encoding of an Integer using {@link IntCombiner.FixedLenEncoder}
+     */
+    FIXEDLEN
   }
 
   @Override
@@ -92,6 +97,9 @@ public abstract class IntCombiner extends TypedValueCombiner<Integer> {
         case STRING:
           setEncoder(STRING_ENCODER);
           return;
+        case FIXEDLEN:
+          setEncoder(FIXED_LEN_ENCODER);
+          return;
         default:
           throw new IllegalArgumentException();
       }
@@ -103,7 +111,7 @@ public abstract class IntCombiner extends TypedValueCombiner<Integer> {
     IteratorOptions io = super.describeOptions();
     io.setName("IntegerCombiner");
     io.setDescription("IntegerCombiner interprets Values as Integers in byte-wise or string encoding before combining");
-    io.addNamedOption(TYPE, "<BYTE|STRING|fullClassName>");
+    io.addNamedOption(TYPE, "<BYTE|UBYTE|BYTE_ONE|BYTE_EMPTY|STRING|FIXEDLEN|fullClassName>");
     return io;
   }
 
@@ -144,6 +152,24 @@ public abstract class IntCombiner extends TypedValueCombiner<Integer> {
     }
   }
 
+  /**
+   * An Encoder that uses 4-byte big-endian two's complement Integers.
+   */
+  public static class FixedLenEncoder implements Encoder<Integer> {
+    @Override
+    public byte[] encode(Integer v) {
+      int i = v;
+      return new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+    }
+
+    @Override
+    public Integer decode(byte[] b) {
+      if (b == null || b.length != 4)
+        throw new ValueFormatException("trying to convert to int, but byte array isn't length 4");
+      return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+    }
+  }
+
   /**
    * A convenience method for setting the long encoding type.
    *
@@ -0,0 +1,248 @@
+package edu.mit.ll.graphulo.skvi;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always-on counters and sampled timers for the phases of a server-side Graphulo iterator stack.
+ * Every event is counted; one event in {@value #SAMPLE_EVERY} per phase is timed,
+ * and the total time of a phase is estimated from the timed events.
+ * Counters are atomic so that a client may merge monitoring entries from several threads into one IteratorMetrics.
+ * <p>
+ * {@link RemoteWriteIterator} installs its metrics as the thread's {@link #current()} metrics while it writes,
+ * ships them to the client in its monitoring entries, and resets them after each entry.
+ * Iterators beneath it pick up the current metrics when they are seeked.
+ * Spans may nest: Multiply includes reading rows streamed by the multiply,
+ * and Combine includes writing entries evicted by the pre-sum buffer.
+ */
+public final class IteratorMetrics {
+
+  public enum Phase {
+    /** Seek and next on the AT table. */
+    ATnext,
+    /** Seek and next on the B table. */
+    Bnext,
+    /** Emitting entries from the multiply of TwoTableIterator. */
+    Multiply,
+    /** Pre-summing entries in RemoteWriteIterator. */
+    Combine,
+    /** Adding mutations to and flushing the BatchWriters of RemoteWriteIterator. */
+    Write
+  }
+
+  /** Time one event in this many. A power of two. */
+  public static final int SAMPLE_EVERY = 16;
+  private static final Phase[] PHASES = Phase.values();
+  /** count, sampled count, sampled nanos */
+  private static final int FIELDS = 3;
+
+  /** Records nothing. The current metrics of threads not writing for a RemoteWriteIterator. */
+  public static final IteratorMetrics NONE = new IteratorMetrics(false);
+
+  private static final ThreadLocal<IteratorMetrics> CURRENT = new ThreadLocal<>();
+
+  private final boolean enabled;
+  private final AtomicLongArray counters;
+
+  public IteratorMetrics() {
+    this(true);
+  }
+
+  private IteratorMetrics(boolean enabled) {
+    this.enabled = enabled;
+    counters = new AtomicLongArray(enabled ? PHASES.length * FIELDS : 0);
+  }
+
+  /** The metrics installed on this thread by {@link #setCurrent}, or {@link #NONE}. */
+  public static IteratorMetrics current() {
+    IteratorMetrics m = CURRENT.get();
+    return m == null ? NONE : m;
+  }
+
+  /** Install metrics on this thread. Returns the previously installed metrics, to restore afterward. */
+  static IteratorMetrics setCurrent(IteratorMetrics metrics) {
+    IteratorMetrics prev = CURRENT.get();
+    if (metrics == null)
+      CURRENT.remove();
+    else
+      CURRENT.set(metrics);
+    return prev;
+  }
+
+  private static int offset(Phase phase) {
+    return phase.ordinal() * FIELDS;
+  }
+
+  /**
+   * Count an event of phase. Returns the start time to pass to {@link #stop} if this event is sampled, or -1.
+   */
+  public long start(Phase phase) {
+    if (!enabled)
+      return -1;
+    long n = counters.incrementAndGet(offset(phase));
+    return (n & (SAMPLE_EVERY - 1)) == 1 ? System.nanoTime() : -1;
+  }
+
+  /** Finish an event of phase begun by {@link #start}. */
+  public void stop(Phase phase, long startNanos) {
+    if (startNanos < 0)
+      return;
+    long dur = System.nanoTime() - startNanos;
+    int off = offset(phase);
+    counters.incrementAndGet(off + 1);
+    counters.addAndGet(off + 2, dur);
+  }
+
+  private long sum(Phase phase, int field) {
+    return enabled ? counters.get(offset(phase) + field) : 0;
+  }
+
+  /** Number of events of phase. */
+  public long getCount(Phase phase) {
+    return sum(phase, 0);
+  }
+
+  /** Estimated total milliseconds spent in phase, scaling the sampled time up to all events. */
+  public double getEstimatedMillis(Phase phase) {
+    long sampled = sum(phase, 1);
+    return sampled == 0 ? 0 : sum(phase, 2) / 1e6 * getCount(phase) / sampled;
+  }
+
+  public boolean isEmpty() {
+    for (Phase phase : PHASES)
+      if (getCount(phase) != 0)
+        return false;
+    return true;
+  }
+
+  /** Zero all counters. Not atomic with concurrent updates. */
+  public void reset() {
+    for (int i = 0; i < counters.length(); i++)
+      counters.set(i, 0);
+  }
+
+  /** Add the counters of another IteratorMetrics to this one. */
+  public void merge(IteratorMetrics other) {
+    for (Phase phase : PHASES)
+      for (int f = 0; f < FIELDS; f++)
+        add(phase, f, other.sum(phase, f));
+  }
+
+  private void add(Phase phase, int field, long amount) {
+    if (enabled && amount != 0)
+      counters.addAndGet(offset(phase) + field, amount);
+  }
+
+  /** Size of {@link #write}'s output in bytes. */
+  static int serializedSize() {
+    return 1 + PHASES.length * FIELDS * 8;
+  }
+
+  /** Write the summed counters: the number of phases as a byte, then three longs per phase. */
+  void write(ByteBuffer bb) {
+    bb.put((byte) PHASES.length);
+    for (Phase phase : PHASES)
+      for (int f = 0; f < FIELDS; f++)
+        bb.putLong(sum(phase, f));
+  }
+
+  /** Add counters written by {@link #write}. Ignores phases unknown to this version. */
+  void merge(ByteBuffer bb) {
+    int n = bb.get();
+    for (int p = 0; p < n; p++)
+      for (int f = 0; f < FIELDS; f++) {
+        long v = bb.getLong();
+        if (p < PHASES.length)
+          add(PHASES[p], f, v);
+      }
+  }
+
+  /** Skip counters written by {@link #write}. */
+  static void skip(ByteBuffer bb) {
+    int n = bb.get();
+    bb.position(bb.position() + n * FIELDS * 8);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Phase phase : PHASES) {
+      if (sb.length() > 0)
+        sb.append(", ");
+      sb.append(phase).append('=').append(getCount(phase))
+          .append('/').append(String.format("%.1f", getEstimatedMillis(phase))).append("ms");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Counts and samples the time of seek and next on a source as one phase.
+   * Uses the {@link #current()} metrics of the thread that last seeked it.
+   */
+  static final class TimedIterator implements SortedKeyValueIterator<Key, Value> {
+    private final SortedKeyValueIterator<Key, Value> source;
+    private final Phase phase;
+    private IteratorMetrics metrics = NONE;
+
+    TimedIterator(SortedKeyValueIterator<Key, Value> source, Phase phase) {
+      this.source = source;
+      this.phase = phase;
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+      metrics = current();
+      long t = metrics.start(phase);
+      try {
+        source.seek(range, columnFamilies, inclusive);
+      } finally {
+        metrics.stop(phase, t);
+      }
+    }
+
+    @Override
+    public void next() throws IOException {
+      long t = metrics.start(phase);
+      try {
+        source.next();
+      } finally {
+        metrics.stop(phase, t);
+      }
+    }
+
+    @Override
+    public boolean hasTop() {
+      return source.hasTop();
+    }
+
+    @Override
+    public Key getTopKey() {
+      return source.getTopKey();
+    }
+
+    @Override
+    public Value getTopValue() {
+      return source.getTopValue();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+      return new TimedIterator(source.deepCopy(env), phase);
+    }
+  }
+}
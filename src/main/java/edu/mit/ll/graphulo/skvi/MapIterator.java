@@ -40,13 +40,10 @@ public class MapIterator implements SortedKeyValueIterator<Key, Value> {
 
   @Override
   public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
-    MapIterator newInstance;
-    try {
-      newInstance = MapIterator.class.newInstance();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
-    newInstance.inner = new PeekingIterator1<>(allEntriesToInject.tailMap(inner.peek().getKey()).entrySet().iterator());
+    MapIterator newInstance = new MapIterator(allEntriesToInject);
+    newInstance.inner = inner.peek() == null ? PeekingIterator1.<Map.Entry<Key, Value>>emptyIterator()
+        : new PeekingIterator1<>(allEntriesToInject.tailMap(inner.peek().getKey()).entrySet().iterator());
+    newInstance.seekRng = seekRng;
     return newInstance;
   }
 
@@ -69,8 +69,8 @@ public class MinMaxFilter extends Filter {
 
   private Number parseGeneric(String val) {
     switch (scalarType) {
-      case LONG: return Long.parseLong(val);
-      case DOUBLE: return Double.parseDouble(val);
+      case LONG: case LEX_LONG: case FIXED_LONG: return Long.parseLong(val);
+      case DOUBLE: case FIXED_DOUBLE: return Double.parseDouble(val);
       case BIGDECIMAL: return new BigDecimal(val);
       default: throw new IllegalArgumentException("Unrecognized type: "+scalarType);
     }
@@ -81,8 +81,8 @@ public class MinMaxFilter extends Filter {
       minValue = parseGeneric(options.get(MINVALUE));
     } else {
       switch (scalarType) {
-        case LONG:        minValue = 0L; break;
-        case DOUBLE:      minValue = 0.0d; break;
+        case LONG: case LEX_LONG: case FIXED_LONG: minValue = 0L; break;
+        case DOUBLE: case FIXED_DOUBLE: minValue = 0.0d; break;
         case BIGDECIMAL:  minValue = BigDecimal.ZERO; break;
       }
     }
@@ -90,15 +90,15 @@ public class MinMaxFilter extends Filter {
       maxValue = parseGeneric(options.get(MAXVALUE));
     } else {
       switch (scalarType) {
-        case LONG:        maxValue = Long.MAX_VALUE; break;
-        case DOUBLE:      maxValue = Double.MAX_VALUE; break;
+        case LONG: case LEX_LONG: case FIXED_LONG: maxValue = Long.MAX_VALUE; break;
+        case DOUBLE: case FIXED_DOUBLE: maxValue = Double.MAX_VALUE; break;
         case BIGDECIMAL:  maxValue = BigDecimal.valueOf(Double.MAX_VALUE); break;
       }
     }
     boolean bad = false;
     switch (scalarType) {
-      case LONG:        if (maxValue.longValue() < minValue.longValue()) bad = true; break;
-      case DOUBLE:      if (maxValue.doubleValue() < minValue.doubleValue()) bad = true; break;
+      case LONG: case LEX_LONG: case FIXED_LONG: if (maxValue.longValue() < minValue.longValue()) bad = true; break;
+      case DOUBLE: case FIXED_DOUBLE: if (maxValue.doubleValue() < minValue.doubleValue()) bad = true; break;
       case BIGDECIMAL:  if (((BigDecimal)maxValue).compareTo((BigDecimal)minValue) < 0) bad = true; break;
     }
     if (bad)
@@ -128,16 +128,17 @@ public class MinMaxFilter extends Filter {
       num = v.get();
 
     switch (scalarType) {
-      case LONG:
-        long l = Long.parseLong(new String(num, StandardCharsets.UTF_8));
+      case LONG: case LEX_LONG: case FIXED_LONG:
+        // column qualifiers always hold strings
+        long l = MathTwoScalar.decodeLong(useColQ ? MathTwoScalar.ScalarType.LONG : scalarType, num);
 //    if (l >= minValue.longValue() && l <= maxValue.longValue()) // DEBUG
 //      log.info("accept: "+k+" -> "+v+" ("+l+")");
 //    else {
 //      log.info("REJECT: "+k+" -> "+v+" ("+l+")");
 //    }
         return l >= minValue.longValue() && l <= maxValue.longValue();
-      case DOUBLE:
-        double d = Double.parseDouble(new String(num, StandardCharsets.UTF_8));
+      case DOUBLE: case FIXED_DOUBLE:
+        double d = MathTwoScalar.decodeDouble(useColQ ? MathTwoScalar.ScalarType.DOUBLE : scalarType, num);
 //        if (d >= minValue.doubleValue() && d <= maxValue.doubleValue()) // DEBUG
 //          log.info("accept: "+k.toStringNoTime()+" -> "+v);
 //        else {
@@ -4,15 +4,19 @@ import com.google.common.base.Preconditions;
 import edu.mit.ll.graphulo.DynamicIteratorSetting;
 import edu.mit.ll.graphulo.util.GraphuloUtil;
 import edu.mit.ll.graphulo.util.PeekingIterator1;
+import edu.mit.ll.graphulo.util.PrefetchIterator;
+import edu.mit.ll.graphulo.util.ReorderBatchIterator;
 import edu.mit.ll.graphulo.util.SerializationUtil;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.ClientConfiguration;
 import org.apache.accumulo.core.client.ClientSideIteratorScanner;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.Instance;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.ScannerBase;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.ZooKeeperInstance;
 import org.apache.accumulo.core.client.security.tokens.AuthenticationToken;
@@ -30,16 +34,29 @@ import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 /**
  * Reads from a remote Accumulo table.
+ * <p>
+ * If {@value #PREFETCHDEPTH} is positive, a background thread scans ahead through the row ranges after each seek,
+ * filling a bounded queue of batches while the consumer works on the current batch.
+ * Seeking again stops the background thread before the Scanner is reused.
+ * <p>
+ * The {@value #SCANMODE} option chooses how to scan the row ranges within a seek range.
+ * {@link ScanMode#SERIAL} scans them one at a time with a Scanner.
+ * {@link ScanMode#BATCH} scans windows of {@value #BATCHSCANRANGES} ranges at a time with a BatchScanner,
+ * sorting each window in a reorder buffer so that entries are still emitted in order.
+ * {@link ScanMode#AUTO} chooses BATCH when there are many bounded ranges; see {@link #chooseBatchScan}.
  */
 public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/*, OptionDescriber*/ {
   private static final Logger log = LogManager.getLogger(RemoteSourceIterator.class);
@@ -82,6 +99,26 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
    * Buffers one entry from the remote table.
    */
   private PeekingIterator1<Map.Entry<Key, Value>> remoteIterator;
+  /** Number of batches to read ahead; <= 0 means read synchronously. */
+  private int prefetchDepth = 0;
+  private int prefetchBatchSize = DEFAULT_PREFETCH_BATCHSIZE;
+  /** Reading ahead from the scanner since the last seek, if prefetchDepth > 0. */
+  private PrefetchIterator<Map.Entry<Key, Value>> prefetch;
+  public static final int DEFAULT_PREFETCH_BATCHSIZE = 1000;
+
+  public enum ScanMode { SERIAL, BATCH, AUTO }
+  private ScanMode scanMode = ScanMode.SERIAL;
+  private int batchScanThreads = 4, batchScanRanges = 1000, batchScanBufferEntries = 100000;
+  /** Minimum number of ranges for which AUTO mode uses a BatchScanner. */
+  public static final int AUTO_BATCH_MIN_RANGES = 16;
+  /** Created in init(). */
+  private Connector connector;
+  /** Created when first needed. Used for BATCH mode. */
+  private BatchScanner batchScanner;
+  /** Whether remoteIterator covers all the ranges of the current seek, rather than one range at a time. */
+  private boolean remoteIteratorCoversRanges = false;
+  /** Scan-time iterator setting built from the dynamic iterators and column filter, if any. */
+  private IteratorSetting scanIteratorSetting;
 
   public static final String
       ZOOKEEPERHOST = "zookeeperHost",
@@ -99,7 +136,13 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
       ROWRANGES = "rowRanges",
       COLFILTER = "colFilter",
       DOCLIENTSIDEITERATORS = "doClientSideIterators",
-      ITER_PREFIX = "diter.";
+      ITER_PREFIX = "diter.",
+      PREFETCHDEPTH = "prefetchDepth",
+      PREFETCHBATCHSIZE = "prefetchBatchSize",
+      SCANMODE = "scanMode",
+      BATCHSCANTHREADS = "batchScanThreads",
+      BATCHSCANRANGES = "batchScanRanges",
+      BATCHSCANBUFFERENTRIES = "batchScanBufferEntries";
 
   public static IteratorSetting iteratorSetting(
       int priority, String zookeeperHost, int timeout, String instanceName, String tableName, String username,
@@ -223,6 +266,64 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
     return map;
   }
 
+  /**
+   * Add options that read ahead from the remote table on a background thread.
+   * @param map Map to reuse. Pass null to create a new HashMap.
+   * @param queueDepth Number of batches to read ahead. <= 0 means read synchronously.
+   * @param batchSize Number of entries per batch. <= 0 means default {@value #DEFAULT_PREFETCH_BATCHSIZE}.
+   * @return map with options filled in.
+   */
+  public static Map<String,String> prefetchOptionMap(Map<String, String> map, int queueDepth, int batchSize) {
+    if (map == null)
+      map = new HashMap<>();
+    if (queueDepth > 0)
+      map.put(PREFETCHDEPTH, Integer.toString(queueDepth));
+    if (batchSize > 0)
+      map.put(PREFETCHBATCHSIZE, Integer.toString(batchSize));
+    return map;
+  }
+
+  /**
+   * Add options that choose how to scan the row ranges.
+   * @param map Map to reuse. Pass null to create a new HashMap.
+   * @param scanMode SERIAL, BATCH or AUTO. Null means default SERIAL.
+   * @param threads Number of BatchScanner threads. <= 0 means default 4.
+   * @param rangesPerBatch Number of ranges to scan at once with the BatchScanner. <= 0 means default 1000.
+   * @param bufferEntries Maximum number of entries to hold in the reorder buffer. <= 0 means default 100000.
+   * @return map with options filled in.
+   */
+  public static Map<String,String> scanModeOptionMap(Map<String, String> map, ScanMode scanMode,
+                                                     int threads, int rangesPerBatch, int bufferEntries) {
+    if (map == null)
+      map = new HashMap<>();
+    if (scanMode != null)
+      map.put(SCANMODE, scanMode.name());
+    if (threads > 0)
+      map.put(BATCHSCANTHREADS, Integer.toString(threads));
+    if (rangesPerBatch > 0)
+      map.put(BATCHSCANRANGES, Integer.toString(rangesPerBatch));
+    if (bufferEntries > 0)
+      map.put(BATCHSCANBUFFERENTRIES, Integer.toString(bufferEntries));
+    return map;
+  }
+
+  /**
+   * The cost-based choice of {@link ScanMode#AUTO}.
+   * Each Scanner range costs a round trip, while a BatchScanner fetches many ranges at once
+   * but must buffer a window of ranges to put their entries in order.
+   * Use the BatchScanner when there are at least <tt>minRanges</tt> ranges and all of them are bounded,
+   * so that no single range is likely to overflow the reorder buffer.
+   * @param ranges Ranges clipped to the seek range.
+   */
+  public static boolean chooseBatchScan(List<Range> ranges, int minRanges) {
+    if (ranges.size() < minRanges)
+      return false;
+    for (Range range : ranges)
+      if (range.isInfiniteStartKey() || range.isInfiniteStopKey())
+        return false;
+    return true;
+  }
+
   private void parseOptions(Map<String, String> map) {
     Map<String,String> diterMap = new HashMap<>();
     String token = null, tokenClass = null;
@@ -276,6 +377,25 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
           case DOCLIENTSIDEITERATORS:
             doClientSideIterators = Boolean.parseBoolean(optionValue);
             break;
+          case PREFETCHDEPTH:
+            prefetchDepth = Integer.parseInt(optionValue);
+            break;
+          case PREFETCHBATCHSIZE:
+            prefetchBatchSize = Integer.parseInt(optionValue);
+            Preconditions.checkArgument(prefetchBatchSize > 0, "%s must be positive: %s", PREFETCHBATCHSIZE, prefetchBatchSize);
+            break;
+          case SCANMODE:
+            scanMode = ScanMode.valueOf(optionValue);
+            break;
+          case BATCHSCANTHREADS:
+            batchScanThreads = Integer.parseInt(optionValue);
+            break;
+          case BATCHSCANRANGES:
+            batchScanRanges = Integer.parseInt(optionValue);
+            break;
+          case BATCHSCANBUFFERENTRIES:
+            batchScanBufferEntries = Integer.parseInt(optionValue);
+            break;
           default:
             log.warn("Unrecognized option: " + optionEntry);
             break;
@@ -301,6 +421,10 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
         username == null ||
         auth == null)
       throw new IllegalArgumentException("not enough options provided");
+    if (doClientSideIterators && scanMode != ScanMode.SERIAL) {
+      log.warn("Using SERIAL scan mode instead of " + scanMode + " because client-side iterators need a Scanner");
+      scanMode = ScanMode.SERIAL;
+    }
   }
 
   /**
@@ -333,7 +457,6 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
     if (timeout != -1)
       cc = cc.withZkTimeout(timeout);
     Instance instance = new ZooKeeperInstance(cc);
-    Connector connector;
     try {
       connector = instance.getConnector(username, auth);
     } catch (AccumuloException | AccumuloSecurityException e) {
@@ -351,24 +474,47 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
     if (doClientSideIterators)
       scanner = new ClientSideIteratorScanner(scanner);
 
-    if (dynamicIteratorSetting == null)
-      GraphuloUtil.applyGeneralColumnFilter(colFilter,scanner,10);
-    else {
+    if (dynamicIteratorSetting != null) {
       GraphuloUtil.applyGeneralColumnFilter(colFilter, scanner, dynamicIteratorSetting, false); // prepend
-      scanner.addScanIterator(dynamicIteratorSetting.toIteratorSetting());
+      scanIteratorSetting = dynamicIteratorSetting.toIteratorSetting();
     }
+    configureScanner(scanner);
+  }
+
+  /** Apply the column filter and iterators to a Scanner or BatchScanner. */
+  private void configureScanner(ScannerBase scannerBase) {
+    if (scanIteratorSetting == null)
+      GraphuloUtil.applyGeneralColumnFilter(colFilter,scannerBase,10);
+    else
+      scannerBase.addScanIterator(scanIteratorSetting);
 
     if (doWholeRow) { // This is a legacy setting.
       // TODO: make priority dynamic in case 25 is taken; make name dynamic in case iterator name already exists. Or buffer here.
-      scanner.addScanIterator(new IteratorSetting(25, WholeRowIterator.class));
+      scannerBase.addScanIterator(new IteratorSetting(25, WholeRowIterator.class));
     }
+  }
 
+  private BatchScanner getBatchScanner() {
+    if (batchScanner == null) {
+      try {
+        batchScanner = connector.createBatchScanner(tableName, authorizations, batchScanThreads);
+      } catch (TableNotFoundException e) {
+        log.error(tableName + " does not exist in instance " + instanceName, e);
+        throw new RuntimeException(e);
+      }
+      configureScanner(batchScanner);
+    }
+    return batchScanner;
   }
 
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
+    if (prefetch != null)
+      prefetch.close();
     scanner.close();
+    if (batchScanner != null)
+      batchScanner.close();
   }
 
   /**
@@ -390,12 +536,112 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
     /** configure Scanner to the first entry to inject after the start of the range.
      Range comparison: infinite start first, then inclusive start, then exclusive start
      {@link org.apache.accumulo.core.data.Range#compareTo(Range)} */
+    if (prefetch != null) {
+      prefetch.close(); // frees the scanner
+      prefetch = null;
+    }
     seekRange = range;
     rowRangeIterator = getFirstRangeStarting(new PeekingIterator1<>(rowRanges.iterator()), range); //rowRanges.tailSet(range).iterator();
+
+    Iterator<Map.Entry<Key, Value>> allRanges = null;
+    if (scanMode != ScanMode.SERIAL) {
+      List<Range> clipped = new ArrayList<>();
+      while (rowRangeIterator.hasNext()) {
+        Range r = rowRangeIterator.next().clip(seekRange, true);
+        if (r == null)
+          break;
+        clipped.add(r);
+      }
+      if (scanMode == ScanMode.BATCH || chooseBatchScan(clipped, AUTO_BATCH_MIN_RANGES))
+        allRanges = new BatchScanRangesIterator(clipped);
+      else
+        rowRangeIterator = clipped.iterator();
+    }
+    if (allRanges == null && prefetchDepth > 0)
+      allRanges = new ScanRangesIterator(scanner, rowRangeIterator, seekRange);
+
+    remoteIteratorCoversRanges = allRanges != null;
+    if (allRanges != null) {
+      if (prefetchDepth > 0)
+        allRanges = prefetch = new PrefetchIterator<>(allRanges, prefetchDepth, prefetchBatchSize);
+      remoteIterator = new PeekingIterator1<>(allRanges);
+      return;
+    }
     remoteIterator = PeekingIterator1.emptyIterator();
     next();
   }
 
+  /** Scans windows of ranges with the BatchScanner, or with the Scanner if a window overflows the reorder buffer. */
+  private final class BatchScanRangesIterator extends ReorderBatchIterator {
+    BatchScanRangesIterator(List<Range> ranges) {
+      super(ranges, batchScanRanges, batchScanBufferEntries);
+    }
+
+    @Override
+    protected Iterator<Map.Entry<Key, Value>> fetchUnordered(List<Range> ranges) {
+      BatchScanner bs = getBatchScanner();
+      bs.setRanges(ranges);
+      return bs.iterator();
+    }
+
+    @Override
+    protected void abortUnordered() {
+      // the only way to stop a BatchScanner's threads is to close it; create a new one next time
+      batchScanner.close();
+      batchScanner = null;
+    }
+
+    @Override
+    protected Iterator<Map.Entry<Key, Value>> fetchOrdered(Range range) {
+      scanner.setRange(range);
+      return scanner.iterator();
+    }
+  }
+
+  /**
+   * Scans each of the ranges in turn, clipped to the seek range.
+   * Used by the prefetch thread, which is the only user of the scanner until it is closed.
+   */
+  private static final class ScanRangesIterator implements Iterator<Map.Entry<Key, Value>> {
+    private final Scanner scanner;
+    private final Iterator<Range> ranges;
+    private final Range seekRange;
+    private Iterator<Map.Entry<Key, Value>> current = Collections.emptyIterator();
+    private boolean pastSeekRange = false;
+
+    ScanRangesIterator(Scanner scanner, Iterator<Range> ranges, Range seekRange) {
+      this.scanner = scanner;
+      this.ranges = ranges;
+      this.seekRange = seekRange;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext() && !pastSeekRange && ranges.hasNext()) {
+        Range range = ranges.next().clip(seekRange, true);
+        if (range == null) { // empty intersection - no more ranges by design
+          pastSeekRange = true;
+          return false;
+        }
+        scanner.setRange(range);
+        current = scanner.iterator();
+      }
+      return current.hasNext();
+    }
+
+    @Override
+    public Map.Entry<Key, Value> next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      return current.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
 //  /**
 //   * Restrict columns fetched to the ones given. Takes effect on next seek().
 //   *
@@ -424,6 +670,8 @@ public class RemoteSourceIterator implements SortedKeyValueIterator<Key, Value>/
     if (rowRangeIterator == null || remoteIterator == null)
       throw new IllegalStateException("next() called before seek() b/c rowRangeIterator or remoteIterator not set");
     remoteIterator.next(); // does nothing if there is no next (i.e. hasTop()==false)
+    if (remoteIteratorCoversRanges) // e.g., the prefetch thread moves through the ranges
+      return;
     while (!remoteIterator.hasNext() && rowRangeIterator.hasNext()) {
       Range range = rowRangeIterator.next();
       range = range.clip(seekRange, true); // clip to the seek range
@@ -5,12 +5,17 @@ import com.google.common.base.Strings;
 import edu.mit.ll.graphulo.reducer.Reducer;
 import edu.mit.ll.graphulo.util.GraphuloUtil;
 import edu.mit.ll.graphulo.util.PeekingIterator1;
+import edu.mit.ll.graphulo.util.PreSumBuffer;
+import edu.mit.ll.graphulo.util.RFileBatchWriter;
 import edu.mit.ll.graphulo.util.RangeSet;
 import edu.mit.ll.graphulo.util.SerializationUtil;
+import edu.mit.ll.graphulo.util.TableStats;
+import edu.mit.ll.graphulo.util.VertexSet;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.ClientConfiguration;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.Instance;
@@ -31,6 +36,9 @@ import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.core.trace.Trace;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.htrace.TraceScope;
 import org.apache.log4j.LogManager;
@@ -47,6 +55,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -145,13 +154,43 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
   private boolean seekInclusive;
   /** (default 25, limited by # of cores) number of threads to use for sending mutations */
   private int batchWriterThreads = 25;
+  /** Byte budget for pre-summing entries before they are written; <= 0 means no pre-summing. */
+  private long preSumBytes = -1;
+  private String preSumCombiner;
+  private Map<String,String> preSumCombinerOptions = new HashMap<>();
+  private int preSumPartitions = 16;
+  private PreSumBuffer.FlushPolicy preSumFlush = PreSumBuffer.FlushPolicy.LARGEST;
+  /** Created in init() if pre-summing is enabled. Always empty at the end of writeUntilSafeOrFinish(). */
+  private PreSumBuffer preSum;
+  /** Mutations under construction by the pre-sum buffer's sink. */
+  private Mutation preSumM, preSumMT;
+  /** Directory to write RFiles for bulk import instead of writing Mutations; null means write Mutations. */
+  private String bulkDir;
+  /** Byte budget of entries held in memory before writing RFiles; <= 0 means {@link RFileBatchWriter#DEFAULT_BUFFER_BYTES}. */
+  private long bulkBufferBytes = -1;
+  /** Phase counters and timers since the last monitoring entry. Installed on writing threads as {@link IteratorMetrics#current()}. */
+  private final IteratorMetrics metrics = new IteratorMetrics();
+  /** Statistics of the entries written since the last monitoring entry, if {@value #STATS} is set; else null. */
+  private TableStats stats;
+  /** Row of the current run of entries counted in stats, and the number of entries in that run. */
+  private Key statsRow;
+  private long statsRowDegree = 0;
 
   private static final IteratorOptions iteratorOptions;
   public static final String
     TABLENAMETRANSPOSE = "tableNameTranspose",
     NUMENTRIESCHECKPOINT = "numEntriesCheckpoint",
     REDUCER = "reducer",
-    OPT_BATCHWRITERTHREADS = "batchWriterThreads";
+    OPT_BATCHWRITERTHREADS = "batchWriterThreads",
+    PRESUMBYTES = "preSumBytes",
+    PRESUMCOMBINER = "preSumCombiner",
+    PRESUMPARTITIONS = "preSumPartitions",
+    PRESUMFLUSH = "preSumFlush",
+    BULKDIR = "bulkDir",
+    BULKBUFFERBYTES = "bulkBufferBytes",
+    STATS = "stats",
+    ROWSET = "rowSet",
+    ROWSETSEP = "rowSetSep";
 
   static {
     Map<String, String> optDesc = new LinkedHashMap<>();
@@ -164,12 +203,22 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     optDesc.put(RemoteSourceIterator.PASSWORD, "(Anyone who can read the Accumulo table config OR the log files will see your password in plaintext.)");
     optDesc.put(NUMENTRIESCHECKPOINT, "(optional) #entries until sending back a progress monitoring entry, if the source iterator supports it");
     optDesc.put(RemoteSourceIterator.ROWRANGES, "(optional) rows to seek to");
+    optDesc.put(ROWSET, "(optional) exact rows to seek to, as a Base64 VertexSet; alternative to "+RemoteSourceIterator.ROWRANGES);
+    optDesc.put(ROWSETSEP, "(optional) with "+ROWSET+", also seek to the rows starting with each row followed by this separator, as in the single-table schema");
     optDesc.put(REDUCER, "(default does nothing) reducing function");
     optDesc.put(OPT_BATCHWRITERTHREADS, "(default 25, limited by # of cores) number of threads to use for sending mutations");
+    optDesc.put(PRESUMBYTES, "(default off) estimated bytes of entries to pre-sum in memory before writing them; requires "+PRESUMCOMBINER);
+    optDesc.put(PRESUMCOMBINER, "(optional) Combiner class used to pre-sum entries with the same key before writing them");
+    optDesc.put(PRESUMPARTITIONS, "(default 16) number of hash partitions of the pre-sum buffer");
+    optDesc.put(PRESUMFLUSH, "(default LARGEST) which pre-sum partition to write first when over budget: LARGEST or COLDEST");
+    optDesc.put(BULKDIR, "(optional) directory to write RFiles for bulk import into, under a subdirectory named after each table, instead of writing Mutations");
+    optDesc.put(BULKBUFFERBYTES, "(default 64MB) with "+BULKDIR+", estimated bytes of entries to hold in memory before writing RFiles");
+    optDesc.put(STATS, "(default false) send a TableStats sketch of the entries written with every monitoring entry");
     iteratorOptions = new IteratorOptions("RemoteWriteIterator",
         "Write to a remote Accumulo table.",
         optDesc,
-        Collections.singletonList("Reducer Options (preface each with "+REDUCER+GraphuloUtil.OPT_SUFFIX+")"));
+        Arrays.asList("Reducer Options (preface each with "+REDUCER+GraphuloUtil.OPT_SUFFIX+")",
+            "Pre-sum Combiner Options (preface each with "+PRESUMCOMBINER+GraphuloUtil.OPT_SUFFIX+")"));
   }
 
   @Override
@@ -226,15 +275,91 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     return map;
   }
 
+  /**
+   * Add options that pre-sum entries in memory before RemoteWriteIterator writes them,
+   * so that fewer partial products reach the result table.
+   * Held entries are always written before RemoteWriteIterator emits a monitoring entry or finishes a seek.
+   * Only use this when the result table's sum is associative and commutative and applies to every column,
+   * i.e., when pre-summing does not change the final result.
+   *
+   * @param map Map to reuse. Pass null to create a new HashMap.
+   * @param preSumBytes Estimated bytes of entries to hold in memory. <= 0 means no pre-summing.
+   * @param combiner The Combiner setting that sums entries in the result table. Its class and options are used for pre-summing.
+   * @param numPartitions Number of hash partitions. <= 0 means default.
+   * @param flushPolicy Which partitions to write first when over budget. Null means default.
+   * @return map with options filled in.
+   */
+  public static Map<String,String> preSumOptionMap(Map<String, String> map, long preSumBytes, IteratorSetting combiner,
+                                                   int numPartitions, PreSumBuffer.FlushPolicy flushPolicy) {
+    if (map == null)
+      map = new HashMap<>();
+    if (preSumBytes <= 0 || combiner == null)
+      return map;
+    map.put(PRESUMBYTES, Long.toString(preSumBytes));
+    map.put(PRESUMCOMBINER, combiner.getIteratorClass());
+    for (Map.Entry<String, String> entry : combiner.getOptions().entrySet())
+      map.put(PRESUMCOMBINER + GraphuloUtil.OPT_SUFFIX + entry.getKey(), entry.getValue());
+    if (numPartitions > 0)
+      map.put(PRESUMPARTITIONS, Integer.toString(numPartitions));
+    if (flushPolicy != null)
+      map.put(PRESUMFLUSH, flushPolicy.name());
+    return map;
+  }
+
+  /**
+   * Add options that make RemoteWriteIterator write sorted RFiles for bulk import instead of sending Mutations.
+   * RFiles for table T go to <tt>dir/T</tt>; they are published there at each flush, i.e.,
+   * before each monitoring entry and at the end of each seek.
+   * The caller imports them with {@link org.apache.accumulo.core.client.admin.TableOperations#importDirectory}
+   * after the scan finishes. The result tables' Combiners sum duplicate entries at scan and compaction time.
+   * The dir must be on a file system visible to the tablet servers, such as HDFS.
+   *
+   * @param map Map to reuse. Pass null to create a new HashMap.
+   * @param dir Directory to write RFiles into. Null means write Mutations.
+   * @param bufferBytes Estimated bytes of entries to hold in memory before writing RFiles. <= 0 means default.
+   * @return map with options filled in.
+   */
+  public static Map<String,String> bulkOptionMap(Map<String, String> map, String dir, long bufferBytes) {
+    if (map == null)
+      map = new HashMap<>();
+    if (dir == null || dir.isEmpty())
+      return map;
+    map.put(BULKDIR, dir);
+    if (bufferBytes > 0)
+      map.put(BULKBUFFERBYTES, Long.toString(bufferBytes));
+    return map;
+  }
+
+  /**
+   * Add options that make RemoteWriteIterator sketch the entries it writes as a {@link TableStats}:
+   * their number, distinct rows and column qualifiers, and row degrees.
+   * The sketch travels to the client inside every monitoring entry; merge them with
+   * {@link #decodeValue(Value, Reducer, IteratorMetrics, TableStats)}.
+   * Row degrees are exact when the source emits each row in one run, as a tablet scan does.
+   *
+   * @param map Map to reuse. Pass null to create a new HashMap.
+   * @return map with options filled in.
+   */
+  public static Map<String,String> statsOptionMap(Map<String, String> map) {
+    if (map == null)
+      map = new HashMap<>();
+    map.put(STATS, Boolean.TRUE.toString());
+    return map;
+  }
+
   @SuppressWarnings("unchecked")
   private void parseOptions(Map<String, String> map) {
-    String token = null, tokenClass = null;
+    String token = null, tokenClass = null, rowSetSep = null;
+    VertexSet rowSet = null;
     for (Map.Entry<String, String> optionEntry : map.entrySet()) {
       String optionKey = optionEntry.getKey();
       String optionValue = optionEntry.getValue();
       if (optionKey.startsWith(REDUCER+GraphuloUtil.OPT_SUFFIX)) {
         String keyAfterPrefix = optionKey.substring((REDUCER + GraphuloUtil.OPT_SUFFIX).length());
         reducerOptions.put(keyAfterPrefix, optionValue);
+      } else if (optionKey.startsWith(PRESUMCOMBINER+GraphuloUtil.OPT_SUFFIX)) {
+        String keyAfterPrefix = optionKey.substring((PRESUMCOMBINER + GraphuloUtil.OPT_SUFFIX).length());
+        preSumCombinerOptions.put(keyAfterPrefix, optionValue);
       } else {
         switch (optionKey) {
           case RemoteSourceIterator.ZOOKEEPERHOST:
@@ -281,6 +406,12 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
             rowRanges.setTargetRanges(parseRanges(optionValue));
             rowRangesSizeWidth = Integer.toString(rowRanges.size()).length();
             break;
+          case ROWSET:
+            rowSet = VertexSet.decodeBase64(optionValue);
+            break;
+          case ROWSETSEP:
+            rowSetSep = optionValue;
+            break;
 
 //          case "trace":
 //            Watch.enableTrace = Boolean.parseBoolean(optionValue);
@@ -289,12 +420,37 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
           case OPT_BATCHWRITERTHREADS:
             batchWriterThreads = Integer.parseInt(optionValue);
             break;
+          case PRESUMBYTES:
+            preSumBytes = Long.parseLong(optionValue);
+            break;
+          case PRESUMCOMBINER:
+            preSumCombiner = optionValue;
+            break;
+          case PRESUMPARTITIONS:
+            preSumPartitions = Integer.parseInt(optionValue);
+            break;
+          case PRESUMFLUSH:
+            preSumFlush = PreSumBuffer.FlushPolicy.valueOf(optionValue);
+            break;
+          case BULKDIR:
+            bulkDir = optionValue.isEmpty() ? null : optionValue;
+            break;
+          case BULKBUFFERBYTES:
+            bulkBufferBytes = Long.parseLong(optionValue);
+            break;
+          case STATS:
+            stats = Boolean.parseBoolean(optionValue) ? new TableStats() : null;
+            break;
           default:
             log.warn("Unrecognized option: " + optionEntry);
             break;
         }
       }
     }
+    if (rowSet != null) {
+      rowRanges.setTargetRanges(rowSetSep == null ? rowSet.toRanges() : rowSet.toRanges(rowSetSep.getBytes(StandardCharsets.UTF_8)));
+      rowRangesSizeWidth = Integer.toString(rowRanges.size()).length();
+    }
     Preconditions.checkArgument((auth == null && token != null && tokenClass != null) ||
             (token == null && tokenClass == null && auth != null),
         "must specify only one kind of authentication: password=%s, token=%s, tokenClass=%s",
@@ -312,6 +468,8 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
                 username == null ||
                 auth == null)))
       throw new IllegalArgumentException("not enough options provided");
+    if (preSumBytes > 0 && preSumCombiner == null)
+      throw new IllegalArgumentException(PRESUMBYTES + " requires " + PRESUMCOMBINER);
   }
 
   /**
@@ -350,6 +508,7 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     reducer.init(reducerOptions, iteratorEnvironment);
 
     setupConnectorWriter();
+    setupPreSum();
 
 //    log.debug("RemoteWriteIterator on table " + tableName + ": init() succeeded");
   }
@@ -370,6 +529,11 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
       throw new RuntimeException(e);
     }
 
+    if (bulkDir != null) {
+      setupBulkWriter(connector);
+      return;
+    }
+
     BatchWriterConfig bwc = new BatchWriterConfig();
     bwc.setMaxWriteThreads(batchWriterThreads);  // lower reduces variance / increase stability - higher has potentially better performance depending on your machines
     // consider max memory, max latency, timeout, ... on writer
@@ -393,6 +557,57 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     }
   }
 
+  /** Write RFiles partitioned by the result tables' tablets under bulkDir. */
+  private void setupBulkWriter(Connector connector) {
+    writerAll = null;
+    try {
+      Path dir = new Path(bulkDir);
+      FileSystem fs = dir.getFileSystem(new Configuration());
+      Path work = new Path(dir, "_work/" + UUID.randomUUID());
+      if (tableName != null)
+        writer = new RFileBatchWriter(fs, new Path(dir, tableName), new Path(work, "table"),
+            connector.tableOperations().listSplits(tableName), bulkBufferBytes);
+      if (tableNameTranspose != null)
+        writerTranspose = new RFileBatchWriter(fs, new Path(dir, tableNameTranspose), new Path(work, "tableTranspose"),
+            connector.tableOperations().listSplits(tableNameTranspose), bulkBufferBytes);
+    } catch (TableNotFoundException e) {
+      log.error(tableName + " or " + tableNameTranspose + " does not exist in instance " + instanceName, e);
+      throw new RuntimeException(e);
+    } catch (AccumuloSecurityException | AccumuloException | IOException e) {
+      log.error("problem creating RFile writers in " + bulkDir + " for " + tableName + " and " + tableNameTranspose, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void setupPreSum() throws IOException {
+    if (preSumBytes <= 0 || (writer == null && writerTranspose == null))
+      return;
+    preSum = new PreSumBuffer(PreSumBuffer.createCombiner(preSumCombiner, preSumCombinerOptions),
+        preSumBytes, preSumPartitions, preSumFlush, new PreSumBuffer.Sink() {
+      @Override
+      public void write(Key k, Value v) {
+        long t = metrics.start(IteratorMetrics.Phase.Write);
+        preSumM = addToWriter(writer, k, v, false, preSumM);
+        preSumMT = addToWriter(writerTranspose, k, v, true, preSumMT);
+        metrics.stop(IteratorMetrics.Phase.Write, t);
+      }
+    });
+  }
+
+  /** Write all entries held in the pre-sum buffer, including the last Mutations under construction. */
+  private void flushPreSum() {
+    preSum.flushAll();
+    try {
+      if (preSumM != null) writer.addMutation(preSumM);
+      if (preSumMT != null) writerTranspose.addMutation(preSumMT);
+      if (preSumM != null || preSumMT != null) writeCounter++;
+    } catch (MutationsRejectedException e) {
+      rejected("rejected mutations on last pre-summed mutation; last one added is " + preSumM+" and "+preSumMT, e);
+    } finally {
+      preSumM = preSumMT = null;
+    }
+  }
+
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
@@ -460,6 +675,7 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
   private boolean writeWrapper(boolean doSeekNext/*, boolean initialSeek*/) throws IOException {
     boolean stoppedAtSafe = false;
     entriesWritten = 0;
+    IteratorMetrics prevMetrics = IteratorMetrics.setCurrent(metrics);
     try {
       // while we have more ranges to seek
       // seek source to the next one and writeUntilSafeOrFinish()
@@ -491,11 +707,11 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
             new Text(Strings.padStart(Integer.toString(numRowRangesIterated), rowRangesSizeWidth, '0').getBytes(UTF_8)));
       }
     } finally {
+      IteratorMetrics.setCurrent(prevMetrics);
       // send reducer entries, if any present
       // flush anything written
-      if (entriesWritten > 0) {
-//        Watch<Watch.PerfSpan> watch = Watch.getInstance();
-//        watch.start(Watch.PerfSpan.WriteFlush);
+      if (entriesWritten > 0 && (writerAll != null || writer != null || writerTranspose != null)) {
+        long t = metrics.start(IteratorMetrics.Phase.Write);
         try {
           if (writerAll != null)
             writerAll.flush();
@@ -507,11 +723,9 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
           }
         } catch (MutationsRejectedException e) {
           log.warn("ignoring rejected mutations; ", e);
+        } finally {
+          metrics.stop(IteratorMetrics.Phase.Write, t);
         }
-//        finally {
-//          watch.stop(Watch.PerfSpan.WriteFlush);
-//          watch.print();
-//        }
       }
     }
 //    System.out.println(thisInst+" finish writeWrapper with: "+entriesWritten);
@@ -520,6 +734,26 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
 
 //  private Mutation mutation, mutationTranspose;
 
+  /** Count an entry in stats. Rows are counted when their run of entries ends. */
+  private void addToStats(Key k) {
+    if (statsRowDegree > 0 && !k.equals(statsRow, PartialKey.ROW)) {
+      finishStatsRow();
+    }
+    if (statsRowDegree == 0)
+      statsRow = new Key(k.getRowData().toArray());
+    statsRowDegree++;
+    ByteSequence cq = k.getColumnQualifierData();
+    stats.addEntry(cq.getBackingArray(), cq.offset(), cq.length());
+  }
+
+  private void finishStatsRow() {
+    if (statsRowDegree == 0)
+      return;
+    ByteSequence row = statsRow.getRowData();
+    stats.addRow(row.getBackingArray(), row.offset(), row.length(), statsRowDegree);
+    statsRowDegree = 0;
+  }
+
   /**
    * Return true if we stopped at a safe state with more entries to write, or
    * return false if no more entries to write (even if stopped at a safe state).
@@ -537,8 +771,16 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
 
 //      System.out.printf("%s -> %s\n", k.toStringNoTime(), v.toString());
 
-        m = addToWriter(writer, k, v, false, m);
-        mt = addToWriter(writerTranspose, k, v, true, mt);
+        if (preSum != null) {
+          long t = metrics.start(IteratorMetrics.Phase.Combine);
+          preSum.add(k, v);
+          metrics.stop(IteratorMetrics.Phase.Combine, t);
+        } else if (writer != null || writerTranspose != null) {
+          long t = metrics.start(IteratorMetrics.Phase.Write);
+          m = addToWriter(writer, k, v, false, m);
+          mt = addToWriter(writerTranspose, k, v, true, mt);
+          metrics.stop(IteratorMetrics.Phase.Write, t);
+        }
 
         if (numRejects >= REJECT_FAILURE_THRESHOLD) { // declare global failure after 10 rejects
           // last entry emitted declares failure
@@ -549,6 +791,8 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
         }
 
         entriesWritten++;
+        if (stats != null)
+          addToStats(k);
         // check to see if we can save state
         if (numEntriesCheckpoint > 0 && entriesWritten >= numEntriesCheckpoint) {
           Key safeKey = ((SaveStateIterator) source).safeState();
@@ -569,13 +813,14 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
 //      }
       }
     } finally {
+      if (preSum != null)
+        flushPreSum();
       try {
         if (m != null) writer.addMutation(m);
         if (mt != null) writerTranspose.addMutation(mt);
         if (m != null || mt != null) writeCounter++;
       } catch (MutationsRejectedException e) {
-        numRejects++;
-        log.warn("rejected mutations on last mutation #"+numRejects+"; last one added is " + m+" and "+mt, e);
+        rejected("rejected mutations on last mutation; last one added is " + m+" and "+mt, e);
       }
 //      System.out.println("writeCounter "+writeCounter+" / entriesWritten "+entriesWritten+" == "+(((float)writeCounter)/entriesWritten));
     }
@@ -584,6 +829,11 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
 
   private long writeCounter;
 
+  private void rejected(String msg, MutationsRejectedException e) {
+    numRejects++;
+    log.warn(msg + " #" + numRejects, e);
+  }
+
   /**
    * Keeps the same Mutation object as long as the row is the same.
    */
@@ -606,8 +856,7 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
           bw.addMutation(m);
           writeCounter++;
         } catch (MutationsRejectedException e) {
-          numRejects++;
-          log.warn("rejected mutations #" + numRejects + "; last one added is " + m, e);
+          rejected("rejected mutations; last one added is " + m, e);
         }
         m = new Mutation(rowBytes);
 
@@ -650,6 +899,9 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     if (numRejects >= REJECT_FAILURE_THRESHOLD)
       numRejects = -1;
     reducer.reset();
+    metrics.reset();
+    if (stats != null)
+      stats = new TableStats();
     if (entriesWritten > 0 || rowRangeIterator.hasNext()) {
       if (source.hasTop()) {
 //        Watch<Watch.PerfSpan> watch = Watch.getInstance();
@@ -697,10 +949,19 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     } else {
       byte[] orig = //((SaveStateIterator) source).safeState().getValue().get();
           reducer.hasTopForClient() ? reducer.getForClient() : new byte[0];
-      ByteBuffer bb = ByteBuffer.allocate(orig.length + 8 + 2);
+      byte[] statsBytes = null;
+      if (stats != null) {
+        finishStatsRow();
+        statsBytes = stats.encode();
+      }
+      ByteBuffer bb = ByteBuffer.allocate(orig.length + 8 + 2 + IteratorMetrics.serializedSize()
+          + (statsBytes == null ? 0 : 4 + statsBytes.length));
       bb.putLong(entriesWritten)
-          .putChar(',')
-          .put(orig)
+          .putChar(statsBytes == null ? METRICS_SEPARATOR : STATS_SEPARATOR);
+      metrics.write(bb);
+      if (statsBytes != null)
+        bb.putInt(statsBytes.length).put(statsBytes);
+      bb.put(orig)
           .rewind();
       //      log.debug("topValue entriesWritten: "+entriesWritten);
       return new Value(bb);
@@ -720,6 +981,10 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
     return copy;
   }
 
+  /** Separates the entry count from the rest of a monitoring entry that starts with {@link IteratorMetrics}. */
+  static final char METRICS_SEPARATOR = ';';
+  /** Like {@link #METRICS_SEPARATOR}, with a length-prefixed {@link TableStats} after the metrics. */
+  static final char STATS_SEPARATOR = ':';
   static final byte[] REJECT_MESSAGE = "Server_BatchWrite_Entries_Rejected!".getBytes(StandardCharsets.UTF_8);
 
   /**
@@ -732,9 +997,38 @@ public class RemoteWriteIterator implements OptionDescriber, SortedKeyValueItera
    * @return Number of entries seen by the RemoteWriteIterator
    */
   public static long decodeValue(Value v, Reducer reducer) {
+    return decodeValue(v, reducer, null);
+  }
+
+  /**
+   * Like {@link #decodeValue(Value, Reducer)}, and also adds the phase metrics of the RemoteWriteIterator's stack to metrics.
+   * @param metrics Accumulates the metrics inside the Value if present. Pass null to ignore them.
+   */
+  public static long decodeValue(Value v, Reducer reducer, IteratorMetrics metrics) {
+    return decodeValue(v, reducer, metrics, null);
+  }
+
+  /**
+   * Like {@link #decodeValue(Value, Reducer, IteratorMetrics)}, and also merges the statistics of the entries written
+   * into stats, if the RemoteWriteIterator was configured with {@link #statsOptionMap}.
+   * @param stats Accumulates the TableStats inside the Value if present. Pass null to ignore them.
+   */
+  public static long decodeValue(Value v, Reducer reducer, IteratorMetrics metrics, TableStats stats) {
     ByteBuffer bb = ByteBuffer.wrap(v.get());
     long numEntries = bb.getLong();
-    bb.getChar(); // ','
+    char sep = bb.getChar();
+    if (sep == METRICS_SEPARATOR || sep == STATS_SEPARATOR) { // else ','
+      if (metrics != null)
+        metrics.merge(bb);
+      else
+        IteratorMetrics.skip(bb);
+    }
+    if (sep == STATS_SEPARATOR) {
+      byte[] statsBytes = new byte[bb.getInt()];
+      bb.get(statsBytes);
+      if (stats != null)
+        stats.merge(TableStats.decode(statsBytes));
+    }
     if (reducer != null && bb.hasRemaining())  {
       byte[] rest = new byte[bb.remaining()];
       if (Arrays.equals(REJECT_MESSAGE, rest)) {
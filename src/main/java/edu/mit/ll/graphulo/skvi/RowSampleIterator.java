@@ -0,0 +1,114 @@
+package edu.mit.ll.graphulo.skvi;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Emits every <tt>step</tt>-th entry of its source, and the last entry of the seek range,
+ * with a Value holding the number of source entries since the previous emitted entry, encoded as a String.
+ * Since the source is sorted, the sum of the Values of emitted entries up to an entry is its exact position in the range,
+ * so that the emitted entries are an equi-depth histogram of the source.
+ * Used by {@link edu.mit.ll.graphulo.Graphulo#findEvenSplitsSampled} to find split points
+ * from the tablets of a table in parallel, shipping only the histogram to the client.
+ * <p>
+ * Emitted Keys are source Keys, so a re-seek after an emitted Key continues counting from there.
+ */
+public class RowSampleIterator implements SortedKeyValueIterator<Key,Value>, OptionDescriber {
+
+  public static final String STEP = "step";
+
+  public static IteratorSetting iteratorSetting(int priority, long step) {
+    IteratorSetting itset = new IteratorSetting(priority, RowSampleIterator.class);
+    itset.addOption(STEP, Long.toString(step));
+    return itset;
+  }
+
+  private SortedKeyValueIterator<Key,Value> source;
+  private long step;
+  /** Last entry read from source, reused. */
+  private final Key last = new Key();
+  private Key emitKey;
+  private Value emitValue;
+
+  @Override
+  public IteratorOptions describeOptions() {
+    return new IteratorOptions("RowSampleIterator",
+        "Emits every step-th entry with the number of entries since the last emitted entry",
+        Collections.singletonMap(STEP, "Number of source entries per emitted entry; positive"), null);
+  }
+
+  @Override
+  public boolean validateOptions(Map<String, String> options) {
+    if (!options.containsKey(STEP) || Long.parseLong(options.get(STEP)) <= 0)
+      throw new IllegalArgumentException(STEP + " must be given and positive: " + options.get(STEP));
+    return true;
+  }
+
+  @Override
+  public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+    validateOptions(options);
+    this.source = source;
+    step = Long.parseLong(options.get(STEP));
+  }
+
+  @Override
+  public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+    RowSampleIterator copy = new RowSampleIterator();
+    copy.source = source.deepCopy(env);
+    copy.step = step;
+    return copy;
+  }
+
+  @Override
+  public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+    source.seek(range, columnFamilies, inclusive);
+    findTop();
+  }
+
+  private void findTop() throws IOException {
+    emitKey = null;
+    emitValue = null;
+    long cnt = 0;
+    while (source.hasTop() && cnt < step) {
+      cnt++;
+      last.set(source.getTopKey());
+      source.next();
+    }
+    if (cnt > 0) {
+      emitKey = new Key(last);
+      emitValue = new Value(Long.toString(cnt).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Override
+  public boolean hasTop() {
+    return emitKey != null;
+  }
+
+  @Override
+  public void next() throws IOException {
+    findTop();
+  }
+
+  @Override
+  public Key getTopKey() {
+    return emitKey;
+  }
+
+  @Override
+  public Value getTopValue() {
+    return emitValue;
+  }
+}
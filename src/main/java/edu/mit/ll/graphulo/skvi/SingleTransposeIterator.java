@@ -1,6 +1,7 @@
 package edu.mit.ll.graphulo.skvi;
 
 import edu.mit.ll.graphulo.util.GraphuloUtil;
+import edu.mit.ll.graphulo.util.VertexSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
@@ -28,11 +29,14 @@ public class SingleTransposeIterator implements SortedKeyValueIterator<Key,Value
   private static final Logger log = LogManager.getLogger(SingleTransposeIterator.class);
 
   public static final String EDGESEP = "edgeSep", STARTNODES = "startNodes",
+      /** Alternative to STARTNODES: exact start nodes as a Base64 {@link VertexSet}, checked by lookup. */
+      STARTNODESET = "startNodeSet",
       NEG_ONE_IN_DEG = "negOneInDeg",
       DEGCOL = "degCol";
 
   private char edgeSep = '|';
   private SortedSet<Range> startNodes = new TreeSet<>();
+  private VertexSet startNodeSet;
   private boolean negOneInDeg = false; // dangerous option
   private Text degCol = new Text("");
 
@@ -52,6 +56,9 @@ public class SingleTransposeIterator implements SortedKeyValueIterator<Key,Value
         case STARTNODES:
           startNodes = GraphuloUtil.d4mRowToRanges(entryValue);
           break;
+        case STARTNODESET:
+          startNodeSet = VertexSet.decodeBase64(entryValue);
+          break;
         case NEG_ONE_IN_DEG:
           negOneInDeg = Boolean.parseBoolean(entryValue);
           break;
@@ -137,6 +144,8 @@ public class SingleTransposeIterator implements SortedKeyValueIterator<Key,Value
   }
 
   private boolean isInStartNodes(String toNode) {
+    if (startNodeSet != null)
+      return startNodeSet.contains(toNode.getBytes(StandardCharsets.UTF_8));
     Key toKey = new Key(toNode);
     for (Range startNode : startNodes) {
       if (startNode.contains(toKey))
@@ -171,6 +180,7 @@ public class SingleTransposeIterator implements SortedKeyValueIterator<Key,Value
     SingleTransposeIterator copy = new SingleTransposeIterator();
     copy.edgeSep = edgeSep;
     copy.startNodes = startNodes;
+    copy.startNodeSet = startNodeSet;
     copy.source = source.deepCopy(env);
     copy.degCol = degCol;
     copy.negOneInDeg = negOneInDeg;
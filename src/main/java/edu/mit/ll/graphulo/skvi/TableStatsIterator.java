@@ -0,0 +1,92 @@
+package edu.mit.ll.graphulo.skvi;
+
+import edu.mit.ll.graphulo.util.TableStats;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads all entries from its source and emits a single entry holding their {@link TableStats}.
+ * The Key of the emitted entry is the last source entry, so that a re-seek after it finds nothing more.
+ * Rows are not split across seek ranges in practice, since the whole range is read during seek.
+ */
+public class TableStatsIterator implements SortedKeyValueIterator<Key,Value> {
+  private SortedKeyValueIterator<Key,Value> source;
+  private Key emitKey = null;
+  private Value emitValue = null;
+
+  @Override
+  public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+    this.source = source;
+  }
+
+  @Override
+  public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+    TableStatsIterator copy = new TableStatsIterator();
+    copy.source = source.deepCopy(env);
+    return copy;
+  }
+
+  @Override
+  public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+    source.seek(range, columnFamilies, inclusive);
+    emitKey = null;
+    emitValue = null;
+    TableStats stats = new TableStats();
+    Key rowKey = new Key(), last = new Key(); // first entry of the current row and last entry, reused
+    long degree = 0;
+    while (source.hasTop()) {
+      Key k = source.getTopKey();
+      if (degree > 0 && !k.equals(rowKey, PartialKey.ROW)) {
+        addRow(stats, rowKey, degree);
+        degree = 0;
+      }
+      if (degree == 0)
+        rowKey.set(k);
+      degree++;
+      ByteSequence cq = k.getColumnQualifierData();
+      stats.addEntry(cq.getBackingArray(), cq.offset(), cq.length());
+      last.set(k);
+      source.next();
+    }
+    if (degree > 0) {
+      addRow(stats, rowKey, degree);
+      emitKey = new Key(last);
+      emitValue = new Value(stats.encode());
+    }
+  }
+
+  private static void addRow(TableStats stats, Key rowKey, long degree) {
+    ByteSequence row = rowKey.getRowData();
+    stats.addRow(row.getBackingArray(), row.offset(), row.length(), degree);
+  }
+
+  @Override
+  public Key getTopKey() {
+    return emitKey;
+  }
+
+  @Override
+  public Value getTopValue() {
+    return emitValue;
+  }
+
+  @Override
+  public boolean hasTop() {
+    return emitKey != null;
+  }
+
+  @Override
+  public void next() throws IOException {
+    emitKey = null;
+    emitValue = null;
+  }
+}
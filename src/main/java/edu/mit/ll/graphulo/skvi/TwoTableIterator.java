@@ -19,6 +19,7 @@ import org.apache.accumulo.core.security.Authorizations;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
@@ -51,7 +52,11 @@ import java.util.Map;
  * If either the AT or B tableName is "{@value #CLONESOURCE_TABLENAME}",
  * then TwoTableIterator will initalize that table as a deepCopy of the source skvi,
  * setting up rowRanges and colFilters as in the options.
- *
+ * <p/>
+ * If the options for a remote AT or B table include {@value BroadcastTable#SNAPSHOT},
+ * then TwoTableIterator reads that table from a {@link BroadcastTable} shared by the iterators of the tablet server,
+ * and skips through it to the rows of the other table with hash lookups instead of seeks.
+ * Use this when the table is small enough to fit in tablet server memory.
  */
 public class TwoTableIterator implements SaveStateIterator {
   private static final Logger log = LogManager.getLogger(TwoTableIterator.class);
@@ -65,7 +70,11 @@ public class TwoTableIterator implements SaveStateIterator {
   private Map<String, String> multiplyOpOptions = new HashMap<>();
 
   private SortedKeyValueIterator<Key, Value> remoteAT, remoteB;
+  /** Set when table AT or B is a {@link BroadcastTable}; the same iterator as remoteAT or remoteB. */
+  private BroadcastTable.Iter broadcastAT, broadcastB;
   private PeekingIterator2<? extends Map.Entry<Key, Value>> bottomIter;
+  /** Picked up from the thread at seek. */
+  private IteratorMetrics metrics = IteratorMetrics.NONE;
 
   private Range seekRange;
   private Collection<ByteSequence> seekColumnFamilies;
@@ -348,16 +357,13 @@ public class TwoTableIterator implements SaveStateIterator {
       throw new IllegalArgumentException("optAT, optB, and source cannot all be missing");
     if (source == null) {
       if (dorAT) {
-        remoteAT = new RemoteSourceIterator();
-        remoteAT.init(null, optAT, env);
+        remoteAT = openRemote(optAT, env);
         if (dorB) {
-          remoteB = new RemoteSourceIterator(); // A B ~S
-          remoteB.init(null, optB, env);
+          remoteB = openRemote(optB, env);      // A B ~S
         } else                                  // A ~B ~S
           remoteB = remoteAT.deepCopy(env);
       } else {
-        remoteB = new RemoteSourceIterator();   // ~A B ~S
-        remoteB.init(null, optB, env);
+        remoteB = openRemote(optB, env);        // ~A B ~S
         remoteAT = remoteB.deepCopy(env);
       }
     } else { // source != null
@@ -380,6 +386,10 @@ public class TwoTableIterator implements SaveStateIterator {
         remoteAT = setupRemoteSourceOptionsSKVI(remoteAT, optAT, env);
       }
     }
+    broadcastAT = remoteAT instanceof BroadcastTable.Iter ? (BroadcastTable.Iter) remoteAT : null;
+    broadcastB = remoteB instanceof BroadcastTable.Iter ? (BroadcastTable.Iter) remoteB : null;
+    remoteAT = new IteratorMetrics.TimedIterator(remoteAT, IteratorMetrics.Phase.ATnext);
+    remoteB = new IteratorMetrics.TimedIterator(remoteB, IteratorMetrics.Phase.Bnext);
 
     assert !(rowMultiplyOp != null && eWiseOp != null);
     log.debug("rowMultiplyOp=" + rowMultiplyOp + "  rowMultiplyOpOptions: " + rowMultiplyOpOptions);
@@ -402,12 +412,21 @@ public class TwoTableIterator implements SaveStateIterator {
       ret = setupRemoteSourceOptionsSKVI(ret, opts, env);
       log.debug("Setting up "+CLONESOURCE_TABLENAME+": "+ret);
     } else {
-      ret = new RemoteSourceIterator();
-      ret.init(null, opts, env);
+      ret = openRemote(opts, env);
     }
     return ret;
   }
 
+  /** A {@link RemoteSourceIterator}, or an iterator over a {@link BroadcastTable} if the options name a snapshot. */
+  private static SortedKeyValueIterator<Key, Value> openRemote(Map<String,String> opts, IteratorEnvironment env) throws IOException {
+    String snapshot = opts.get(BroadcastTable.SNAPSHOT);
+    if (snapshot != null && !snapshot.isEmpty())
+      return BroadcastTable.acquire(opts, env).iterator();
+    SortedKeyValueIterator<Key, Value> ret = new RemoteSourceIterator();
+    ret.init(null, opts, env);
+    return ret;
+  }
+
   /** This corresponds with the setup for RemoteSourceIterator, except this is applied to a local SKVI instead
    * of a Scanner. */
   private SortedKeyValueIterator<Key, Value> setupRemoteSourceOptionsSKVI(
@@ -494,6 +513,7 @@ public class TwoTableIterator implements SaveStateIterator {
         seekColumnFamilies = columnFamilies;
         seekInclusive = inclusive;
         bottomIter = null;
+        releaseBroadcast();
         log.debug("Weird range; aborting seek. Range is "+range);
         return;
       }
@@ -507,20 +527,9 @@ public class TwoTableIterator implements SaveStateIterator {
 //    System.out.println("DM adj range: " + range);
 
     // Weird results if we start in the middle of a row. Not handling.
-//    Watch<Watch.PerfSpan> watch = Watch.getInstance();
-//    watch.start(Watch.PerfSpan.ATnext);
-//    try {
-      remoteAT.seek(seekRange, columnFamilies, inclusive);
-//    } finally {
-//      watch.stop(Watch.PerfSpan.ATnext);
-//    }
-
-//    watch.start(Watch.PerfSpan.Bnext);
-//    try {
-      remoteB.seek(seekRange, columnFamilies, inclusive);
-//    } finally {
-//      watch.stop(Watch.PerfSpan.Bnext);
-//    }
+    metrics = IteratorMetrics.current();
+    remoteAT.seek(seekRange, columnFamilies, inclusive);
+    remoteB.seek(seekRange, columnFamilies, inclusive);
 
 //    log.debug("remoteAT.hasTop()="+remoteAT.hasTop()+" remoteB.hasTop()="+remoteB.hasTop());
     prepNextRowMatch(/*false*/);
@@ -532,30 +541,12 @@ public class TwoTableIterator implements SaveStateIterator {
   }
 
   private void prepNextRowMatch(/*boolean doNext*/) throws IOException {
+    findNextRowMatch();
+    if (bottomIter == null)
+      releaseBroadcast();
+  }
 
-    /*if (doNext) {
-      watch.start(Watch.PerfSpan.ATnext);
-      try {
-        remoteAT.next();
-      } finally {
-        watch.stop(Watch.PerfSpan.ATnext);
-      }
-      if (!remoteAT.hasTop()) {
-        bottomIter = null;
-        return;
-      }
-      watch.start(Watch.PerfSpan.Bnext);
-      try {
-        remoteB.next();
-      } finally {
-        watch.stop(Watch.PerfSpan.Bnext);
-      }
-      if (!remoteB.hasTop()) {
-        bottomIter = null;
-        return;
-      }
-    }*/
-
+  private void findNextRowMatch() throws IOException {
 
     PartialKey pk = null;
     switch (dotmode) {
@@ -568,8 +559,6 @@ public class TwoTableIterator implements SaveStateIterator {
         break;
     }
 
-
-    Watch<Watch.PerfSpan> watch = null; //Watch.getInstance();
     TOPLOOP:
     do {
       if ((!remoteAT.hasTop() && !remoteB.hasTop())
@@ -620,7 +609,7 @@ public class TwoTableIterator implements SaveStateIterator {
                 return;
             }
           }
-          boolean success = skipUntil(remoteAT, remoteB.getTopKey(), pk, seekRange, seekColumnFamilies, seekInclusive, watch, Watch.PerfSpan.ATnext);
+          boolean success = skip(remoteAT, broadcastAT, remoteB.getTopKey(), pk);
           if (!success) {
             bottomIter = null;
             return;
@@ -648,7 +637,7 @@ public class TwoTableIterator implements SaveStateIterator {
                 return;
             }
           }
-          boolean success = skipUntil(remoteB, remoteAT.getTopKey(), pk, seekRange, seekColumnFamilies, seekInclusive, watch, Watch.PerfSpan.Bnext);
+          boolean success = skip(remoteB, broadcastB, remoteAT.getTopKey(), pk);
           if (!success) {
             bottomIter = null;
             return;
@@ -684,6 +673,27 @@ public class TwoTableIterator implements SaveStateIterator {
     } while (bottomIter != null && !bottomIter.hasNext());
   }
 
+  /**
+   * Done with the seek range: release broadcast tables, including those held by a {@link Closeable} rowMultiplyOp,
+   * so that the tablet server can evict them. The next seek acquires them again.
+   */
+  private void releaseBroadcast() throws IOException {
+    if (broadcastAT != null)
+      broadcastAT.release();
+    if (broadcastB != null)
+      broadcastB.release();
+    if (rowMultiplyOp instanceof Closeable)
+      ((Closeable) rowMultiplyOp).close();
+  }
+
+  /** Skip skvi to keyToSkipTo. Looks up the row in the hash index if skvi is a broadcast table and the match is by row. */
+  private boolean skip(SortedKeyValueIterator<Key, Value> skvi, BroadcastTable.Iter broadcast,
+                       Key keyToSkipTo, PartialKey pk) throws IOException {
+    if (broadcast != null && pk == PartialKey.ROW)
+      return broadcast.skipToRow(keyToSkipTo.getRowData());
+    return skipUntil(skvi, keyToSkipTo, pk, seekRange, seekColumnFamilies, seekInclusive);
+  }
+
   /**
    * Call next() on skvi until getTopKey() advances >= keyToSkipTo (in terms of pk), or until !hasTop().
    * Calls seek() if this takes a while, say greater than 10 next() calls.
@@ -691,22 +701,15 @@ public class TwoTableIterator implements SaveStateIterator {
    * @return True if advanced to a new key; false if !hasTop().
    */
   static boolean skipUntil(SortedKeyValueIterator<Key, Value> skvi, Key keyToSkipTo, PartialKey pk,
-                           Range seekRange, Collection<ByteSequence> columnFamilies, boolean inclusive,
-                           Watch<Watch.PerfSpan> watch, Watch.PerfSpan watchtype) throws IOException {
+                           Range seekRange, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
     assert keyToSkipTo != null;
     /** Call seek() if using this many next() calls does not get us to rowToSkipTo */
     final int MAX_NEXT_ATTEMPT = 10;
     int cnt;
     for (cnt = 0;
          cnt < MAX_NEXT_ATTEMPT && skvi.hasTop() && keyToSkipTo.compareTo(skvi.getTopKey(), pk) > 0;
-         cnt++) {
-//      watch.start(watchtype);
-//      try {
-        skvi.next();
-//      } finally {
-//        watch.stop(watchtype);
-//      }
-    }
+         cnt++)
+      skvi.next();
     if (skvi.hasTop() && keyToSkipTo.compareTo(skvi.getTopKey(), pk) > 0) {
       // set target range to beginning of pk
       Key seekKey = GraphuloUtil.keyCopy(keyToSkipTo, pk);
@@ -717,14 +720,18 @@ public class TwoTableIterator implements SaveStateIterator {
       skvi.seek(skipToRange, columnFamilies, inclusive);
     }
 
-//    watch.increment(Watch.PerfSpan.RowSkipNum, cnt);
     return skvi.hasTop();
   }
 
 
   @Override
   public void next() throws IOException {
-    bottomIter.next();
+    long t = metrics.start(IteratorMetrics.Phase.Multiply);
+    try {
+      bottomIter.next();
+    } finally {
+      metrics.stop(IteratorMetrics.Phase.Multiply, t);
+    }
     if (!bottomIter.hasNext())
       prepNextRowMatch(/*false*/);
   }
@@ -78,7 +78,7 @@ public class Watch<K extends Enum<K>> {
     }
   };
 
-  static class Stats {
+  public static class Stats {
     public long total=0, count=0, min=Long.MAX_VALUE, max=Long.MIN_VALUE;
   }
 
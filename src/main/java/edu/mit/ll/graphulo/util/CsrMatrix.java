@@ -0,0 +1,713 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.mit.ll.graphulo.util.GraphuloUtil.EMPTY_TEXT;
+
+/**
+ * An immutable sparse matrix in compressed sparse row (CSR) form, held off the Java heap in direct buffers:
+ * row pointers, column indexes, and values, 12 bytes per nonzero.
+ * The CSR form of the {@link #transpose} is the compressed sparse column form of this matrix.
+ * Used by the client-side algorithms in place of MTJ and commons-math matrices,
+ * which hold boxed or linked entries on the heap.
+ * <p>
+ * Column indexes are sorted within each row. Matrices built by {@link Builder} have no explicit zeros,
+ * but the results of {@link #multiply} and {@link #multiplyMasked} may hold zeros from cancellation or an empty product.
+ * A matrix holds at most {@link #MAX_NNZ} nonzeros.
+ */
+public final class CsrMatrix {
+
+  /** The largest number of nonzeros: the most doubles a direct buffer holds. */
+  public static final int MAX_NNZ = Integer.MAX_VALUE / 8;
+  /** Rows handed to a thread at a time by the parallel kernels. */
+  private static final int CHUNK_ROWS = 256;
+
+  /** Decides whether to keep an entry. */
+  public interface EntryFilter {
+    boolean keep(int row, int col, double value);
+  }
+
+  /** Combines the values of two entries at the same position. */
+  public interface ValueOp {
+    double apply(double a, double b);
+  }
+
+  public static final ValueOp TIMES = new ValueOp() {
+    @Override
+    public double apply(double a, double b) {
+      return a * b;
+    }
+  };
+  public static final ValueOp PLUS = new ValueOp() {
+    @Override
+    public double apply(double a, double b) {
+      return a + b;
+    }
+  };
+  /** Keep the value of the left matrix. */
+  public static final ValueOp FIRST = new ValueOp() {
+    @Override
+    public double apply(double a, double b) {
+      return a;
+    }
+  };
+
+  private final int numRows, numCols;
+  /** numRows+1 positions; row i occupies [rowPtr[i], rowPtr[i+1]). */
+  private final IntBuffer rowPtr;
+  private final IntBuffer colIdx;
+  private final DoubleBuffer values;
+
+  private CsrMatrix(int numRows, int numCols, IntBuffer rowPtr, IntBuffer colIdx, DoubleBuffer values) {
+    this.numRows = numRows;
+    this.numCols = numCols;
+    this.rowPtr = rowPtr;
+    this.colIdx = colIdx;
+    this.values = values;
+  }
+
+  static IntBuffer allocateInts(long n) {
+    Preconditions.checkArgument(n <= MAX_NNZ, "too many entries for a CsrMatrix: %s", n);
+    return ByteBuffer.allocateDirect((int) n * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  static DoubleBuffer allocateDoubles(long n) {
+    Preconditions.checkArgument(n <= MAX_NNZ, "too many entries for a CsrMatrix: %s", n);
+    return ByteBuffer.allocateDirect((int) n * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+  }
+
+  public int numRows() {
+    return numRows;
+  }
+
+  public int numCols() {
+    return numCols;
+  }
+
+  /** Number of stored entries. */
+  public int nnz() {
+    return rowPtr.get(numRows);
+  }
+
+  /** Position of the first entry of row i. */
+  public int rowStart(int i) {
+    return rowPtr.get(i);
+  }
+
+  /** Position after the last entry of row i. */
+  public int rowEnd(int i) {
+    return rowPtr.get(i + 1);
+  }
+
+  /** Column of the entry at position p. */
+  public int colAt(int p) {
+    return colIdx.get(p);
+  }
+
+  /** Value of the entry at position p. */
+  public double valueAt(int p) {
+    return values.get(p);
+  }
+
+  /** Value at (row, col), or 0 if there is no entry. Binary search within the row. */
+  public double get(int row, int col) {
+    int lo = rowPtr.get(row), hi = rowPtr.get(row + 1) - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = colIdx.get(mid);
+      if (c < col)
+        lo = mid + 1;
+      else if (c > col)
+        hi = mid - 1;
+      else
+        return values.get(mid);
+    }
+    return 0;
+  }
+
+  /** The transpose, by a counting sort on columns. Equivalently, this matrix in compressed sparse column form. */
+  public CsrMatrix transpose() {
+    int nnz = nnz();
+    IntBuffer tPtr = allocateInts(numCols + 1);
+    IntBuffer tCol = allocateInts(nnz);
+    DoubleBuffer tVal = allocateDoubles(nnz);
+    int[] next = new int[numCols + 1];
+    for (int p = 0; p < nnz; p++)
+      next[colIdx.get(p) + 1]++;
+    for (int j = 0; j < numCols; j++)
+      next[j + 1] += next[j];
+    for (int j = 0; j <= numCols; j++)
+      tPtr.put(j, next[j]);
+    for (int i = 0; i < numRows; i++)
+      for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++) {
+        int q = next[colIdx.get(p)]++;
+        tCol.put(q, i);
+        tVal.put(q, values.get(p));
+      }
+    return new CsrMatrix(numCols, numRows, tPtr, tCol, tVal);
+  }
+
+  /** Work on a range of rows, with scratch space private to one thread. */
+  private interface RowWorker {
+    void rows(int begin, int end);
+  }
+
+  private interface RowWorkerFactory {
+    RowWorker newWorker();
+  }
+
+  /** Run workers over all rows in chunks of chunkRows, on up to <tt>threads</tt> threads. */
+  private static void parallelRows(int numRows, int chunkRows, int threads, RowWorkerFactory factory) {
+    final int numChunks = (numRows + chunkRows - 1) / chunkRows;
+    threads = Math.min(threads, numChunks);
+    if (threads <= 1) {
+      factory.newWorker().rows(0, numRows);
+      return;
+    }
+    final AtomicInteger nextChunk = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CsrMatrix-%d").build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for (int t = 0; t < threads; t++) {
+        final RowWorker worker = factory.newWorker();
+        final int total = numRows, chunk = chunkRows;
+        futures.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            int c;
+            while ((c = nextChunk.getAndIncrement()) < numChunks)
+              worker.rows(c * chunk, Math.min(total, (c + 1) * chunk));
+          }
+        }));
+      }
+      for (Future<?> future : futures)
+        future.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException("CsrMatrix kernel failed", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Sparse matrix product this*B by Gustavson's row-by-row algorithm, on up to <tt>threads</tt> threads.
+   * A symbolic pass counts the entries of each result row; a numeric pass fills them.
+   * Each thread holds a dense accumulator the width of B.
+   */
+  public CsrMatrix multiply(final CsrMatrix B, int threads) {
+    Preconditions.checkArgument(numCols == B.numRows, "dimension mismatch: %sx%s * %sx%s", numRows, numCols, B.numRows, B.numCols);
+    final int[] counts = new int[numRows + 1];
+    parallelRows(numRows, CHUNK_ROWS, threads, new RowWorkerFactory() {
+      @Override
+      public RowWorker newWorker() {
+        final int[] marker = new int[B.numCols];
+        return new RowWorker() {
+          @Override
+          public void rows(int begin, int end) {
+            for (int i = begin; i < end; i++) {
+              int cnt = 0;
+              for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++) {
+                int k = colIdx.get(p);
+                for (int q = B.rowPtr.get(k); q < B.rowPtr.get(k + 1); q++) {
+                  int j = B.colIdx.get(q);
+                  if (marker[j] != i + 1) {
+                    marker[j] = i + 1;
+                    cnt++;
+                  }
+                }
+              }
+              counts[i + 1] = cnt;
+            }
+          }
+        };
+      }
+    });
+    long total = 0;
+    for (int i = 0; i < numRows; i++) {
+      total += counts[i + 1];
+      Preconditions.checkArgument(total <= MAX_NNZ, "product has too many entries: more than %s", MAX_NNZ);
+      counts[i + 1] = (int) total;
+    }
+    final IntBuffer cPtr = allocateInts(numRows + 1);
+    for (int i = 0; i <= numRows; i++)
+      cPtr.put(i, counts[i]);
+    final IntBuffer cCol = allocateInts(total);
+    final DoubleBuffer cVal = allocateDoubles(total);
+
+    parallelRows(numRows, CHUNK_ROWS, threads, new RowWorkerFactory() {
+      @Override
+      public RowWorker newWorker() {
+        final int[] marker = new int[B.numCols];
+        final double[] acc = new double[B.numCols];
+        final int[] touched = new int[B.numCols];
+        return new RowWorker() {
+          @Override
+          public void rows(int begin, int end) {
+            for (int i = begin; i < end; i++) {
+              int n = 0;
+              for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++) {
+                int k = colIdx.get(p);
+                double a = values.get(p);
+                for (int q = B.rowPtr.get(k); q < B.rowPtr.get(k + 1); q++) {
+                  int j = B.colIdx.get(q);
+                  if (marker[j] != i + 1) {
+                    marker[j] = i + 1;
+                    acc[j] = 0;
+                    touched[n++] = j;
+                  }
+                  acc[j] += a * B.values.get(q);
+                }
+              }
+              Arrays.sort(touched, 0, n);
+              int out = counts[i];
+              for (int t = 0; t < n; t++, out++) {
+                cCol.put(out, touched[t]);
+                cVal.put(out, acc[touched[t]]);
+              }
+            }
+          }
+        };
+      }
+    });
+    return new CsrMatrix(numRows, B.numCols, cPtr, cCol, cVal);
+  }
+
+  /**
+   * Sparse matrix product this*B computed only at the positions of mask's entries, on up to <tt>threads</tt> threads.
+   * The result has exactly mask's pattern, sharing its row pointers and column indexes:
+   * the entry at position p of the result is at the same row and column as position p of mask.
+   * Positions where the product is empty hold 0.
+   * Computing only the masked entries avoids the memory of the full product, e.g. for the support of each edge in kTruss.
+   */
+  public CsrMatrix multiplyMasked(final CsrMatrix B, final CsrMatrix mask, int threads) {
+    Preconditions.checkArgument(numCols == B.numRows, "dimension mismatch: %sx%s * %sx%s", numRows, numCols, B.numRows, B.numCols);
+    Preconditions.checkArgument(mask.numRows == numRows && mask.numCols == B.numCols, "mask has wrong dimensions: %sx%s", mask.numRows, mask.numCols);
+    final DoubleBuffer cVal = allocateDoubles(mask.nnz());
+    parallelRows(numRows, CHUNK_ROWS, threads, new RowWorkerFactory() {
+      @Override
+      public RowWorker newWorker() {
+        final int[] marker = new int[B.numCols];
+        final int[] pos = new int[B.numCols];
+        return new RowWorker() {
+          @Override
+          public void rows(int begin, int end) {
+            for (int i = begin; i < end; i++) {
+              int mBegin = mask.rowPtr.get(i), mEnd = mask.rowPtr.get(i + 1);
+              if (mBegin == mEnd)
+                continue;
+              for (int m = mBegin; m < mEnd; m++) {
+                int j = mask.colIdx.get(m);
+                marker[j] = i + 1;
+                pos[j] = m;
+                cVal.put(m, 0);
+              }
+              for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++) {
+                int k = colIdx.get(p);
+                double a = values.get(p);
+                for (int q = B.rowPtr.get(k); q < B.rowPtr.get(k + 1); q++) {
+                  int j = B.colIdx.get(q);
+                  if (marker[j] == i + 1)
+                    cVal.put(pos[j], cVal.get(pos[j]) + a * B.values.get(q));
+                }
+              }
+            }
+          }
+        };
+      }
+    });
+    return new CsrMatrix(numRows, B.numCols, mask.rowPtr, mask.colIdx, cVal);
+  }
+
+  /** Element-wise op on the positions where both this and B have an entry, e.g. {@link #TIMES}. */
+  public CsrMatrix ewiseIntersect(CsrMatrix B, ValueOp op) {
+    return ewise(B, op, false);
+  }
+
+  /** Element-wise op on the positions where this or B has an entry, treating a missing entry as 0, e.g. {@link #PLUS}. */
+  public CsrMatrix ewiseUnion(CsrMatrix B, ValueOp op) {
+    return ewise(B, op, true);
+  }
+
+  private CsrMatrix ewise(CsrMatrix B, ValueOp op, boolean union) {
+    Preconditions.checkArgument(numRows == B.numRows && numCols == B.numCols, "dimension mismatch: %sx%s vs %sx%s", numRows, numCols, B.numRows, B.numCols);
+    // count, then fill
+    long total = 0;
+    for (int i = 0; i < numRows; i++)
+      total += ewiseRow(B, op, union, i, null, null, 0);
+    IntBuffer cPtr = allocateInts(numRows + 1);
+    IntBuffer cCol = allocateInts(total);
+    DoubleBuffer cVal = allocateDoubles(total);
+    int out = 0;
+    for (int i = 0; i < numRows; i++) {
+      cPtr.put(i, out);
+      out += ewiseRow(B, op, union, i, cCol, cVal, out);
+    }
+    cPtr.put(numRows, out);
+    return new CsrMatrix(numRows, numCols, cPtr, cCol, cVal);
+  }
+
+  /** Merge row i of this and B, writing at out if cCol is not null. Returns the number of entries. */
+  private int ewiseRow(CsrMatrix B, ValueOp op, boolean union, int i, IntBuffer cCol, DoubleBuffer cVal, int out) {
+    int p = rowPtr.get(i), pEnd = rowPtr.get(i + 1);
+    int q = B.rowPtr.get(i), qEnd = B.rowPtr.get(i + 1);
+    int n = 0;
+    while (p < pEnd || q < qEnd) {
+      int cp = p < pEnd ? colIdx.get(p) : Integer.MAX_VALUE;
+      int cq = q < qEnd ? B.colIdx.get(q) : Integer.MAX_VALUE;
+      int col;
+      double v;
+      if (cp == cq) {
+        col = cp;
+        v = op.apply(values.get(p++), B.values.get(q++));
+      } else if (!union) {
+        if (cp < cq) p++;
+        else q++;
+        continue;
+      } else if (cp < cq) {
+        col = cp;
+        v = op.apply(values.get(p++), 0);
+      } else {
+        col = cq;
+        v = op.apply(0, B.values.get(q++));
+      }
+      if (cCol != null) {
+        cCol.put(out + n, col);
+        cVal.put(out + n, v);
+      }
+      n++;
+    }
+    return n;
+  }
+
+  /** The entries that filter keeps. */
+  public CsrMatrix filter(EntryFilter filter) {
+    return filterWhere(this, filter);
+  }
+
+  /**
+   * The entries of this matrix at positions where filter keeps the entry of <tt>aligned</tt>,
+   * a matrix with the same pattern as this one, such as the result of {@link #multiplyMasked} with this matrix as the mask.
+   */
+  public CsrMatrix filterWhere(CsrMatrix aligned, EntryFilter filter) {
+    Preconditions.checkArgument(aligned.numRows == numRows && aligned.nnz() == nnz(), "matrices do not have the same pattern");
+    int nnz = nnz();
+    boolean[] keep = new boolean[nnz];
+    long total = 0;
+    for (int i = 0; i < numRows; i++)
+      for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++)
+        if (keep[p] = filter.keep(i, colIdx.get(p), aligned.values.get(p)))
+          total++;
+    IntBuffer cPtr = allocateInts(numRows + 1);
+    IntBuffer cCol = allocateInts(total);
+    DoubleBuffer cVal = allocateDoubles(total);
+    int out = 0;
+    for (int i = 0; i < numRows; i++) {
+      cPtr.put(i, out);
+      for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++)
+        if (keep[p]) {
+          cCol.put(out, colIdx.get(p));
+          cVal.put(out, values.get(p));
+          out++;
+        }
+    }
+    cPtr.put(numRows, out);
+    return new CsrMatrix(numRows, numCols, cPtr, cCol, cVal);
+  }
+
+  /**
+   * Dense times sparse: D*this, where D is a dense K x numRows matrix given as K row arrays.
+   * Returns a dense K x numCols matrix. Rows of the result are computed in parallel on up to <tt>threads</tt> threads.
+   */
+  public double[][] leftMultiplyDense(final double[][] D, int threads) {
+    final int K = D.length;
+    final double[][] R = new double[K][numCols];
+    parallelRows(K, 1, threads, new RowWorkerFactory() {
+      @Override
+      public RowWorker newWorker() {
+        return new RowWorker() {
+          @Override
+          public void rows(int begin, int end) {
+            for (int k = begin; k < end; k++) {
+              double[] d = D[k], r = R[k];
+              Preconditions.checkArgument(d.length == numRows, "dimension mismatch: row %s of dense matrix has length %s, not %s", k, d.length, numRows);
+              for (int i = 0; i < numRows; i++) {
+                double a = d[i];
+                if (a == 0)
+                  continue;
+                for (int p = rowPtr.get(i); p < rowPtr.get(i + 1); p++)
+                  r[colIdx.get(p)] += a * values.get(p);
+              }
+            }
+          }
+        };
+      }
+    });
+    return R;
+  }
+
+  /**
+   * Write the entries to bw as one Mutation per row, labelling rows and column qualifiers with the given labels.
+   * @param coerceToLong Write values as longs rather than doubles.
+   * @return Number of entries written.
+   */
+  public long write(BatchWriter bw, String[] rowLabels, String[] colLabels, String visibility, boolean coerceToLong) {
+    ColumnVisibility cv = new ColumnVisibility(visibility == null ? "" : visibility);
+    long n = 0;
+    try {
+      for (int i = 0; i < numRows; i++) {
+        int p = rowPtr.get(i), pEnd = rowPtr.get(i + 1);
+        if (p == pEnd)
+          continue;
+        Mutation m = new Mutation(rowLabels[i]);
+        for (; p < pEnd; p++) {
+          double v = values.get(p);
+          String s = coerceToLong ? Long.toString((long) v) : Double.toString(v);
+          m.put(EMPTY_TEXT, new Text(colLabels[colIdx.get(p)]), cv, new Value(s.getBytes(StandardCharsets.UTF_8)));
+          n++;
+        }
+        bw.addMutation(m);
+      }
+      bw.flush();
+    } catch (MutationsRejectedException e) {
+      throw new RuntimeException("problem writing CsrMatrix", e);
+    }
+    return n;
+  }
+
+  /**
+   * Builds a CsrMatrix from entries in any order, assigning each distinct row and column label an index
+   * in sorted label order. Entries at the same position are summed.
+   * Entries are staged off-heap as (row, col, value) triples, 16 bytes each, until {@link #build}.
+   */
+  public static class Builder {
+    private final double zeroTolerance;
+    private final LabelIndex rowIndex, colIndex;
+    private IntBuffer rows, cols;
+    private DoubleBuffer vals;
+    private int size;
+    private String[] rowLabels, colLabels;
+
+    /**
+     * @param sameRowCol Whether rows and columns share one set of labels, as in an adjacency matrix.
+     * @param zeroTolerance Entries whose absolute value is at most this are dropped.
+     */
+    public Builder(boolean sameRowCol, double zeroTolerance) {
+      this.zeroTolerance = zeroTolerance;
+      rowIndex = new LabelIndex();
+      colIndex = sameRowCol ? rowIndex : new LabelIndex();
+      rows = allocateInts(1024);
+      cols = allocateInts(1024);
+      vals = allocateDoubles(1024);
+    }
+
+    public void add(String row, String col, double val) {
+      Preconditions.checkState(rowLabels == null, "already built");
+      if (val >= -zeroTolerance && val <= zeroTolerance)
+        return;
+      if (size == rows.capacity())
+        grow();
+      rows.put(size, rowIndex.id(row));
+      cols.put(size, colIndex.id(col));
+      vals.put(size, val);
+      size++;
+    }
+
+    /** Add the entry at the row and column qualifier of k, parsing v as a UTF-8 number. */
+    public void add(Key k, Value v, boolean transpose) {
+      String row = k.getRow().toString(), col = k.getColumnQualifier().toString();
+      double val = Double.parseDouble(new String(v.get(), StandardCharsets.UTF_8));
+      if (transpose)
+        add(col, row, val);
+      else
+        add(row, col, val);
+    }
+
+    /** A sink whose put adds the entry to this builder, for gathering entries at the client. */
+    public EntrySink asSink(final boolean transpose) {
+      return new EntrySink() {
+        @Override
+        public void put(Key k, Value v) {
+          add(k, v, transpose);
+        }
+      };
+    }
+
+    private void grow() {
+      long cap = Math.min((long) rows.capacity() * 2, MAX_NNZ);
+      Preconditions.checkState(cap > rows.capacity(), "too many entries for a CsrMatrix: %s", size);
+      IntBuffer r = allocateInts(cap), c = allocateInts(cap);
+      DoubleBuffer v = allocateDoubles(cap);
+      rows.rewind();
+      cols.rewind();
+      vals.rewind();
+      r.put(rows);
+      c.put(cols);
+      v.put(vals);
+      rows = r;
+      cols = c;
+      vals = v;
+    }
+
+    /** Build the matrix. The builder's staging buffers are released. */
+    public CsrMatrix build() {
+      Preconditions.checkState(rowLabels == null, "already built");
+      int[] rowRank = rowIndex.sortedRanks(), colRank = colIndex == rowIndex ? rowRank : colIndex.sortedRanks();
+      rowLabels = rowIndex.sortedLabels();
+      colLabels = colIndex == rowIndex ? rowLabels : colIndex.sortedLabels();
+      int numRows = rowLabels.length, numCols = colLabels.length;
+
+      // counting sort by row
+      int[] next = new int[numRows + 1];
+      for (int t = 0; t < size; t++)
+        next[rowRank[rows.get(t)] + 1]++;
+      int maxDegree = 0;
+      for (int i = 0; i < numRows; i++) {
+        maxDegree = Math.max(maxDegree, next[i + 1]);
+        next[i + 1] += next[i];
+      }
+      int[] start = next.clone();
+      IntBuffer col = allocateInts(size);
+      DoubleBuffer val = allocateDoubles(size);
+      for (int t = 0; t < size; t++) {
+        int q = next[rowRank[rows.get(t)]]++;
+        col.put(q, colRank[cols.get(t)]);
+        val.put(q, vals.get(t));
+      }
+      rows = null;
+      cols = null;
+      vals = null;
+
+      // sort each row by column and sum duplicates, compacting in place
+      IntBuffer ptr = allocateInts(numRows + 1);
+      long[] order = new long[maxDegree];
+      double[] rowVals = new double[maxDegree];
+      int out = 0;
+      for (int i = 0; i < numRows; i++) {
+        int begin = start[i], len = start[i + 1] - begin;
+        for (int t = 0; t < len; t++) {
+          order[t] = ((long) col.get(begin + t) << 32) | t;
+          rowVals[t] = val.get(begin + t);
+        }
+        Arrays.sort(order, 0, len);
+        ptr.put(i, out);
+        int prevCol = -1;
+        for (int t = 0; t < len; t++) {
+          int c = (int) (order[t] >>> 32);
+          double v = rowVals[(int) order[t]];
+          if (c == prevCol)
+            val.put(out - 1, val.get(out - 1) + v);
+          else {
+            col.put(out, c);
+            val.put(out, v);
+            out++;
+            prevCol = c;
+          }
+        }
+      }
+      ptr.put(numRows, out);
+      return new CsrMatrix(numRows, numCols, ptr, col, val);
+    }
+
+    /** Row labels in index order, after {@link #build}. */
+    public String[] getRowLabels() {
+      Preconditions.checkState(rowLabels != null, "not built");
+      return rowLabels;
+    }
+
+    /** Column labels in index order, after {@link #build}. */
+    public String[] getColLabels() {
+      Preconditions.checkState(colLabels != null, "not built");
+      return colLabels;
+    }
+
+    /** Labels as a map from index+1, the form used by {@link MemMatrixUtil} and {@link MTJUtil}. */
+    public static SortedMap<Integer, String> toLabelMap(String[] labels) {
+      SortedMap<Integer, String> map = new TreeMap<>();
+      for (int i = 0; i < labels.length; i++)
+        map.put(i + 1, labels[i]);
+      return map;
+    }
+  }
+
+  /** Assigns ids to labels in order of first appearance, by open addressing on an int table. */
+  private static final class LabelIndex {
+    private String[] labels = new String[64];
+    private int size = 0;
+    /** id+1 of the label hashed to each slot; 0 is empty. Length is a power of two, at least twice size. */
+    private int[] slots = new int[128];
+
+    int id(String label) {
+      int mask = slots.length - 1;
+      int s = mix(label.hashCode()) & mask;
+      while (slots[s] != 0) {
+        if (labels[slots[s] - 1].equals(label))
+          return slots[s] - 1;
+        s = (s + 1) & mask;
+      }
+      if (size == labels.length)
+        labels = Arrays.copyOf(labels, size * 2);
+      labels[size] = label;
+      slots[s] = ++size;
+      if (size * 2 > slots.length)
+        rehash();
+      return size - 1;
+    }
+
+    private static int mix(int h) {
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+      int[] newSlots = new int[slots.length * 2];
+      int mask = newSlots.length - 1;
+      for (int id = 0; id < size; id++) {
+        int s = mix(labels[id].hashCode()) & mask;
+        while (newSlots[s] != 0)
+          s = (s + 1) & mask;
+        newSlots[s] = id + 1;
+      }
+      slots = newSlots;
+    }
+
+    String[] sortedLabels() {
+      String[] sorted = Arrays.copyOf(labels, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+    /** Rank in sorted order of each id. */
+    int[] sortedRanks() {
+      String[] sorted = sortedLabels();
+      int[] rank = new int[size];
+      for (int id = 0; id < size; id++)
+        rank[id] = Arrays.binarySearch(sorted, labels[id]);
+      return rank;
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package edu.mit.ll.graphulo.util;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * Receives entries gathered at the client, such as by OneTable or a {@link ScanCache},
+ * for consumers that do not hold them in a Map.
+ * See {@link GraphuloUtil#mapSink} to gather into a Map.
+ */
+public interface EntrySink {
+  void put(Key k, Value v);
+}
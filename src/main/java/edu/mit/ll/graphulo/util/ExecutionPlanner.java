@@ -0,0 +1,263 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Chooses among the execution strategies Graphulo has for the same computation
+ * by estimating their cost from cheap {@link TableStats}: nnz, distinct rows and columns, and the degree histogram.
+ * <p>
+ * Costs are in units of one entry emitted and written by a server-side iterator stack.
+ * Server strategies divide their partial products among the tablet servers,
+ * except the partial products of the highest-degree row, which one server does alone; this charges for degree skew.
+ * Client strategies scan the operand to the client, compute in memory with MTJ or commons-math,
+ * and write the result back; they are only considered if their matrices fit in the client memory budget.
+ * <p>
+ * Planning does not run anything. The plan* methods of {@link edu.mit.ll.graphulo.Graphulo} return a
+ * {@link Plan} to explain a choice; the *_Auto methods plan, log the plan, and run it.
+ */
+public class ExecutionPlanner {
+
+  public enum Strategy {
+    /** TableMult: a TwoTableIterator on a clone of the operand as AT and the operand as B. */
+    TWO_TABLE,
+    /** OneTable: the multiply fused into one iterator stack on the operand, e.g. JaccardMultiplyIterator. */
+    ONE_TABLE,
+    /** Scan the operand to the client and compute with dense matrices. */
+    CLIENT_DENSE,
+    /** Scan the operand to the client and compute with the off-heap sparse {@link CsrMatrix} engine. */
+    CLIENT_SPARSE
+  }
+
+  /** A chosen strategy, its estimated cost, and the estimated cost of every strategy considered. */
+  public static class Plan {
+    private final String operation;
+    private final Strategy strategy;
+    private final EnumMap<Strategy, Double> costs;
+    private final EnumMap<Strategy, Long> clientBytes;
+    private final long clientMemoryBytes;
+
+    Plan(String operation, EnumMap<Strategy, Double> costs, EnumMap<Strategy, Long> clientBytes, long clientMemoryBytes) {
+      Strategy best = null;
+      for (Map.Entry<Strategy, Double> entry : costs.entrySet()) {
+        Long bytes = clientBytes.get(entry.getKey());
+        if (bytes != null && bytes > clientMemoryBytes)
+          continue;
+        if (best == null || entry.getValue() < costs.get(best))
+          best = entry.getKey();
+      }
+      Preconditions.checkState(best != null, "no feasible strategy for %s", operation);
+      this.operation = operation;
+      this.strategy = best;
+      this.costs = costs;
+      this.clientBytes = clientBytes;
+      this.clientMemoryBytes = clientMemoryBytes;
+    }
+
+    public Strategy getStrategy() {
+      return strategy;
+    }
+
+    /** Estimated cost of the chosen strategy. */
+    public double getCost() {
+      return costs.get(strategy);
+    }
+
+    /** Estimated cost of a strategy, or NaN if it was not considered. */
+    public double getCost(Strategy s) {
+      Double c = costs.get(s);
+      return c == null ? Double.NaN : c;
+    }
+
+    /** Estimated client memory of a client strategy in bytes, or 0 for server strategies. */
+    public long getClientBytes(Strategy s) {
+      Long b = clientBytes.get(s);
+      return b == null ? 0 : b;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(operation).append(": ").append(strategy)
+          .append(String.format(" cost %.3g", getCost())).append(" [");
+      boolean first = true;
+      for (Map.Entry<Strategy, Double> entry : costs.entrySet()) {
+        if (!first)
+          sb.append(", ");
+        first = false;
+        sb.append(entry.getKey()).append(String.format("=%.3g", entry.getValue()));
+        Long bytes = clientBytes.get(entry.getKey());
+        if (bytes != null)
+          sb.append(" (").append(bytes >> 20).append("MB").append(bytes > clientMemoryBytes ? " too big" : "").append(')');
+      }
+      return sb.append(']').toString();
+    }
+  }
+
+  /** Cost of moving one entry between a tablet server and the client, relative to an entry written on the server. */
+  public static final double DEFAULT_CLIENT_ENTRY_COST = 1.0;
+  /** Cost of one floating-point multiply-add at the client. */
+  public static final double DEFAULT_FLOP_COST = 0.002;
+  /** Fixed cost of one server-side table operation: creating tables, configuring iterators, and starting scans. */
+  public static final double DEFAULT_SERVER_SETUP_COST = 20000;
+  /** Maximum age of cached {@link TableStats} to plan with. */
+  public static final long DEFAULT_STATS_MAX_AGE_MILLIS = 60 * 60 * 1000;
+  /** Bytes per entry of a {@link CsrMatrix}. */
+  static final long CSR_ENTRY_BYTES = 12;
+
+  private final int parallelism;
+  private final long clientMemoryBytes;
+  private double clientEntryCost = DEFAULT_CLIENT_ENTRY_COST;
+  private double flopCost = DEFAULT_FLOP_COST;
+  private double serverSetupCost = DEFAULT_SERVER_SETUP_COST;
+  private long statsMaxAgeMillis = DEFAULT_STATS_MAX_AGE_MILLIS;
+
+  /**
+   * @param parallelism Number of tablet servers that share server-side work; must be positive.
+   * @param clientMemoryBytes Memory available at the client for the matrices of client strategies.
+   */
+  public ExecutionPlanner(int parallelism, long clientMemoryBytes) {
+    Preconditions.checkArgument(parallelism > 0, "bad parallelism %s", parallelism);
+    this.parallelism = parallelism;
+    this.clientMemoryBytes = clientMemoryBytes;
+  }
+
+  /** Use half the JVM's maximum heap as the client memory budget. */
+  public ExecutionPlanner(int parallelism) {
+    this(parallelism, Runtime.getRuntime().maxMemory() / 2);
+  }
+
+  public ExecutionPlanner setClientEntryCost(double clientEntryCost) {
+    this.clientEntryCost = clientEntryCost;
+    return this;
+  }
+
+  public ExecutionPlanner setFlopCost(double flopCost) {
+    this.flopCost = flopCost;
+    return this;
+  }
+
+  public ExecutionPlanner setServerSetupCost(double serverSetupCost) {
+    this.serverSetupCost = serverSetupCost;
+    return this;
+  }
+
+  /** Maximum age of the cached table statistics to plan with; see {@link edu.mit.ll.graphulo.Graphulo#getTableStats}. */
+  public ExecutionPlanner setStatsMaxAgeMillis(long statsMaxAgeMillis) {
+    this.statsMaxAgeMillis = statsMaxAgeMillis;
+    return this;
+  }
+
+  public long getStatsMaxAgeMillis() {
+    return statsMaxAgeMillis;
+  }
+
+  /**
+   * Estimated number of partial products of A*A for a symmetric A: the sum of the squared row degrees.
+   * Each row in histogram bucket i is taken to have the middle degree of [2^i, 2^(i+1)).
+   */
+  public static double estimatePartialProducts(TableStats stats) {
+    long[] hist = stats.getDegreeHistogram();
+    double pp = 0;
+    for (int i = 0; i < hist.length; i++) {
+      if (hist[i] == 0)
+        continue;
+      double d = 1.5 * Math.pow(2, i) - 0.5;
+      pp += hist[i] * d * d;
+    }
+    return pp;
+  }
+
+  /** Upper end of the highest nonempty degree bucket, or 0 for an empty table. */
+  public static long estimateMaxDegree(TableStats stats) {
+    long[] hist = stats.getDegreeHistogram();
+    for (int i = hist.length - 1; i >= 0; i--)
+      if (hist[i] != 0)
+        return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+    return 0;
+  }
+
+  /**
+   * Ratio of the maximum row degree to the mean row degree. 1 means uniform degrees.
+   */
+  public static double estimateSkew(TableStats stats) {
+    long rows = Math.max(1, stats.getDistinctRows());
+    double mean = (double) stats.getNumEntries() / rows;
+    return mean == 0 ? 1 : Math.max(1, estimateMaxDegree(stats) / mean);
+  }
+
+  /** Server cost of emitting pp partial products, charging the hottest row to one server. */
+  private double serverCost(double pp, long maxDegree) {
+    double hot = (double) maxDegree * maxDegree;
+    return Math.max(pp - hot, 0) / parallelism + Math.min(hot, pp);
+  }
+
+  /** Client memory estimate computed in double, so that it cannot overflow; saturates at Long.MAX_VALUE. */
+  private static long clientBytes(double bytes) {
+    return (long) Math.ceil(bytes);
+  }
+
+  private Plan plan(String operation, EnumMap<Strategy, Double> costs, EnumMap<Strategy, Long> clientBytes) {
+    return new Plan(operation, costs, clientBytes, clientMemoryBytes);
+  }
+
+  /**
+   * Plan Jaccard on a symmetric adjacency table: OneTable with JaccardMultiplyIterator,
+   * or the client's dense A*A.
+   */
+  public Plan planJaccard(TableStats A) {
+    long n = A.getDistinctRows();
+    double pp = estimatePartialProducts(A);
+    EnumMap<Strategy, Double> costs = new EnumMap<>(Strategy.class);
+    EnumMap<Strategy, Long> bytes = new EnumMap<>(Strategy.class);
+    // about half the partial products survive the upper-triangle restriction; then each is scanned once more to apply degrees
+    costs.put(Strategy.ONE_TABLE, serverSetupCost + serverCost(pp / 2, estimateMaxDegree(A)) + pp / 2 / parallelism);
+    costs.put(Strategy.CLIENT_DENSE, clientEntryCost * (A.getNumEntries() + Math.min(pp / 2, (double) n * n / 2))
+        + flopCost * n * n * n);
+    bytes.put(Strategy.CLIENT_DENSE, clientBytes(2.0 * 8 * n * n));
+    return plan("Jaccard", costs, bytes);
+  }
+
+  /**
+   * Plan kTruss on a symmetric adjacency table: TableMult and SpEWiseX per iteration,
+   * or the client's dense or sparse A*A per iteration. The number of iterations is the same for all,
+   * so the cost is per iteration.
+   */
+  public Plan planKTrussAdj(TableStats A) {
+    long n = A.getDistinctRows();
+    long nnz = A.getNumEntries();
+    double pp = estimatePartialProducts(A);
+    EnumMap<Strategy, Double> costs = new EnumMap<>(Strategy.class);
+    EnumMap<Strategy, Long> bytes = new EnumMap<>(Strategy.class);
+    // A*A written to a temporary table, then A2 .* A read back and written
+    costs.put(Strategy.TWO_TABLE, 2 * serverSetupCost + serverCost(pp, estimateMaxDegree(A)) + 2.0 * nnz / parallelism);
+    costs.put(Strategy.CLIENT_DENSE, clientEntryCost * 2 * nnz + flopCost * n * n * n);
+    bytes.put(Strategy.CLIENT_DENSE, clientBytes(2.0 * 8 * n * n));
+    // the masked product does a few times more work per partial product than dense, but only holds copies of A:
+    // A, its support, the filtered A, and the staging triples of the builder
+    costs.put(Strategy.CLIENT_SPARSE, clientEntryCost * 2 * nnz + flopCost * 8 * pp);
+    bytes.put(Strategy.CLIENT_SPARSE, clientBytes(4.0 * CSR_ENTRY_BYTES * nnz + 8.0 * n));
+    return plan("kTrussAdj", costs, bytes);
+  }
+
+  /**
+   * Plan NMF of A into K topics: TableMult on A and its transpose per iteration,
+   * or the client's factorization with sparse A and dense W and H. The cost is per iteration; the server runs about six table operations each.
+   */
+  public Plan planNMF(TableStats A, int K) {
+    long n = A.getDistinctRows(), m = A.getDistinctColumns();
+    long nnz = A.getNumEntries();
+    EnumMap<Strategy, Double> costs = new EnumMap<>(Strategy.class);
+    EnumMap<Strategy, Long> bytes = new EnumMap<>(Strategy.class);
+    // A^T*W and A*H^T have nnz*K partial products each; the K x K products and inverses are small;
+    // skew does not matter much because rows of W and H are dense and short
+    costs.put(Strategy.TWO_TABLE, 6 * serverSetupCost
+        + 2.0 * nnz * K / parallelism + 4.0 * (n + m) * K * K / parallelism);
+    costs.put(Strategy.CLIENT_SPARSE, clientEntryCost * (nnz + (double) (n + m) * K)
+        + flopCost * (2.0 * nnz * K + 2.0 * (n + m) * K * K));
+    bytes.put(Strategy.CLIENT_SPARSE, clientBytes(3.0 * CSR_ENTRY_BYTES * nnz + 8.0 * 4 * (n + m) * K));
+    return plan("NMF", costs, bytes);
+  }
+}
@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableRangeSet;
 import com.google.common.collect.RangeSet;
 import edu.mit.ll.graphulo.DynamicIteratorSetting;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
 import edu.mit.ll.graphulo.skvi.D4mRangeFilter;
 import edu.mit.ll.graphulo.skvi.RemoteWriteIterator;
 import edu.mit.ll.graphulo.skvi.TwoTableIterator;
@@ -62,6 +63,8 @@ public class GraphuloUtil {
 
   public static final char DEFAULT_SEP_D4M_STRING = '\t';
   public static final String OPT_SUFFIX = ".opt.";
+  /** Table property naming the {@link MathTwoScalar.ScalarType} that a table's Values are encoded in. */
+  public static final String VALUE_ENCODING_PROPERTY = "table.custom.graphulo.valueEncoding";
 
   public static final Text EMPTY_TEXT = new Text();
   public static final Value EMPTY_VALUE = new Value();
@@ -353,6 +356,18 @@ System.out.println(",a,,".split(",",-1).length + Arrays.toString(",a,,".split(",
           + LAST_ONE_BYTE_CHAR;
   }
 
+  /** An {@link EntrySink} that puts entries into map, or null if map is null. */
+  public static EntrySink mapSink(final Map<Key, Value> map) {
+    if (map == null)
+      return null;
+    return new EntrySink() {
+      @Override
+      public void put(Key k, Value v) {
+        map.put(k, v);
+      }
+    };
+  }
+
   /**
    * Convert D4M string representation of individual rows/columns to Text objects.
    * No ':' allowed as an entire row name!
@@ -997,6 +1012,55 @@ System.out.println(",a,,".split(",",-1).length + Arrays.toString(",a,,".split(",
     }
   }
 
+  /** Mark table as holding Values encoded as type; see {@link #VALUE_ENCODING_PROPERTY}. */
+  public static void setValueEncoding(TableOperations tops, String table, MathTwoScalar.ScalarType type) {
+    try {
+      tops.setProperty(table, VALUE_ENCODING_PROPERTY, type.name());
+    } catch (AccumuloException | AccumuloSecurityException e) {
+      log.error("cannot set " + VALUE_ENCODING_PROPERTY + " on " + table, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** The encoding marked on table by {@link #setValueEncoding}, or null if unmarked. */
+  public static MathTwoScalar.ScalarType getValueEncoding(TableOperations tops, String table) {
+    try {
+      for (Map.Entry<String, String> entry : tops.getProperties(table))
+        if (entry.getKey().equals(VALUE_ENCODING_PROPERTY))
+          return MathTwoScalar.ScalarType.valueOf(entry.getValue());
+      return null;
+    } catch (AccumuloException | TableNotFoundException e) {
+      log.error("cannot read properties of " + table, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Throw an IllegalArgumentException if table is marked with a Value encoding that cannot be read as type.
+   * Unmarked tables and a null type always pass. String types can read each other's Values.
+   */
+  public static void checkValueEncoding(TableOperations tops, String table, MathTwoScalar.ScalarType type) {
+    if (type == null)
+      return;
+    MathTwoScalar.ScalarType marked = getValueEncoding(tops, table);
+    if (marked != null && marked != type && (marked.isBinary() || type.isBinary()))
+      throw new IllegalArgumentException("Table " + table + " holds " + marked + " values but the operation uses " + type);
+  }
+
+  /**
+   * Find the {@link MathTwoScalar#SCALAR_TYPE} option in a map of options, possibly nested under
+   * {@link #OPT_SUFFIX} prefixes such as <tt>rowMultiplyOp.opt.multiplyOp.opt.scalarType</tt>.
+   * Returns null if there is none.
+   */
+  public static MathTwoScalar.ScalarType findScalarType(Map<String, String> options) {
+    if (options == null)
+      return null;
+    for (Map.Entry<String, String> entry : options.entrySet())
+      if (entry.getKey().equals(MathTwoScalar.SCALAR_TYPE) || entry.getKey().endsWith(OPT_SUFFIX + MathTwoScalar.SCALAR_TYPE))
+        return MathTwoScalar.ScalarType.valueOf(entry.getValue());
+    return null;
+  }
+
   /** Delete tables. If they already exist, delete and re-create them if forceDelete==true,
    * otherwise throw an IllegalStateException. */
   public static void deleteTables(Connector connector, String... tns) {
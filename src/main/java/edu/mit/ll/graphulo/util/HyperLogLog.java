@@ -0,0 +1,83 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimate of the number of distinct byte strings added, mergeable across tablets.
+ * Uses 2^{@value #P} one-byte registers, for a standard error of about 1.6%,
+ * with linear counting for small cardinalities.
+ */
+public class HyperLogLog {
+  static final int P = 12;
+  private static final int M = 1 << P;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    registers = new byte[M];
+  }
+
+  private HyperLogLog(byte[] registers) {
+    this.registers = registers;
+  }
+
+  public void add(byte[] bytes, int offset, int length) {
+    long h = HASH.hashBytes(bytes, offset, length).asLong();
+    int idx = (int) (h >>> (64 - P));
+    // leading zeros of the remaining 64-P bits, plus one
+    byte rho = (byte) (Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1);
+    if (rho > registers[idx])
+      registers[idx] = rho;
+  }
+
+  public void add(byte[] bytes) {
+    add(bytes, 0, bytes.length);
+  }
+
+  /** Make this the estimate of the union of this and other. */
+  public void merge(HyperLogLog other) {
+    for (int i = 0; i < M; i++)
+      if (other.registers[i] > registers[i])
+        registers[i] = other.registers[i];
+  }
+
+  public long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte r : registers) {
+      sum += 1.0 / (1L << r);
+      if (r == 0)
+        zeros++;
+    }
+    double e = ALPHA * M * M / sum;
+    if (e <= 2.5 * M && zeros > 0)
+      e = M * Math.log((double) M / zeros);
+    return Math.round(e);
+  }
+
+  /** The registers, to serialize. */
+  byte[] toBytes() {
+    return registers;
+  }
+
+  static HyperLogLog fromBytes(byte[] bytes) {
+    if (bytes.length != M)
+      throw new IllegalArgumentException("expected " + M + " registers but got " + bytes.length);
+    return new HyperLogLog(bytes);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || o instanceof HyperLogLog && Arrays.equals(registers, ((HyperLogLog) o).registers);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(registers);
+  }
+}
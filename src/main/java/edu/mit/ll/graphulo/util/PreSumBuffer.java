@@ -0,0 +1,290 @@
+package edu.mit.ll.graphulo.util;
+
+import edu.mit.ll.graphulo.simplemult.KeyTwoScalar;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-bounded hash aggregation of entries, for pre-summing partial products before they are written.
+ * Entries with the same row, column family, column qualifier and column visibility are combined
+ * with a {@link KeyTwoScalar} (use {@link KeyTwoScalar#toKeyTwoScalar} to adapt a Combiner).
+ * The timestamp of the first entry seen for a key is kept.
+ * <p>
+ * Keys are stored as serialized bytes, split into partitions by a hash of the row.
+ * When the estimated size of the buffer exceeds the byte budget, whole partitions are flushed to the {@link Sink}
+ * until the buffer is back under half the budget.
+ * The {@link FlushPolicy} chooses whether the largest or the least recently updated partition goes first.
+ * Flushed partitions are emitted in Key order, which keeps entries with the same row together.
+ * <p>
+ * Call {@link #flushAll()} before relying on every entry having reached the Sink.
+ */
+public class PreSumBuffer {
+  private static final Logger log = LogManager.getLogger(PreSumBuffer.class);
+
+  /** Estimate of the per-entry overhead of the map entry, wrapper and Value objects. */
+  static final int ENTRY_OVERHEAD_BYTES = 96;
+  /** Same as the protected option names in {@link Combiner}. */
+  private static final String ALL_OPTION = "all", COLUMNS_OPTION = "columns";
+
+  public enum FlushPolicy {
+    /** Flush the partition holding the most bytes. */
+    LARGEST,
+    /** Flush the partition updated least recently. */
+    COLDEST
+  }
+
+  /** Receives entries flushed from the buffer. */
+  public interface Sink {
+    void write(Key k, Value v);
+  }
+
+  private final KeyTwoScalar combiner;
+  private final long maxBytes;
+  private final FlushPolicy policy;
+  private final Sink sink;
+  private final Partition[] partitions;
+  private long bytes = 0;
+  /** Logical clock for {@link FlushPolicy#COLDEST}. */
+  private long clock = 0;
+  private long numIn = 0, numOut = 0;
+
+  private static final class Partition {
+    final Map<BytesKey, Agg> map = new HashMap<>();
+    long bytes = 0, lastTouched = 0;
+  }
+
+  private static final class Agg {
+    final long ts;
+    Value value;
+
+    Agg(long ts, Value value) {
+      this.ts = ts;
+      this.value = value;
+    }
+  }
+
+  /** Serialized row, colF, colQ, colVis; each length-prefixed. */
+  private static final class BytesKey implements Comparable<BytesKey> {
+    final byte[] b;
+    final int hash;
+
+    BytesKey(byte[] b) {
+      this.b = b;
+      this.hash = WritableComparator.hashBytes(b, b.length);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof BytesKey && hash == ((BytesKey) o).hash
+          && WritableComparator.compareBytes(b, 0, b.length, ((BytesKey) o).b, 0, ((BytesKey) o).b.length) == 0;
+    }
+
+    /** Same order as {@link Key}, ignoring timestamp. */
+    @Override
+    public int compareTo(BytesKey o) {
+      int pos = 0, opos = 0;
+      for (int i = 0; i < 4; i++) {
+        int len = readInt(b, pos), olen = readInt(o.b, opos);
+        int c = WritableComparator.compareBytes(b, pos + 4, len, o.b, opos + 4, olen);
+        if (c != 0)
+          return c;
+        pos += 4 + len;
+        opos += 4 + olen;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * @param combiner Combines two Values with the same key. Must already be init'ed.
+   * @param maxBytes Estimated size of the buffer in bytes before partitions are flushed.
+   * @param numPartitions Number of partitions; must be positive.
+   * @param policy Which partitions to flush first.
+   * @param sink Receives flushed entries.
+   */
+  public PreSumBuffer(KeyTwoScalar combiner, long maxBytes, int numPartitions, FlushPolicy policy, Sink sink) {
+    if (maxBytes <= 0 || numPartitions <= 0)
+      throw new IllegalArgumentException("maxBytes and numPartitions must be positive: " + maxBytes + ", " + numPartitions);
+    this.combiner = combiner;
+    this.maxBytes = maxBytes;
+    this.policy = policy;
+    this.sink = sink;
+    partitions = new Partition[numPartitions];
+    for (int i = 0; i < numPartitions; i++)
+      partitions[i] = new Partition();
+  }
+
+  /** Add an entry, combining it with any entry already held for the same key. May flush partitions to the Sink. */
+  public void add(Key k, Value v) {
+    numIn++;
+    ByteSequence row = k.getRowData();
+    BytesKey bk = new BytesKey(serialize(row, k.getColumnFamilyData(), k.getColumnQualifierData(), k.getColumnVisibilityData()));
+    Partition p = partitions[partition(row)];
+    p.lastTouched = ++clock;
+    Agg agg = p.map.get(bk);
+    if (agg == null) {
+      Value copy = new Value(v);
+      p.map.put(bk, new Agg(k.getTimestamp(), copy));
+      long sz = bk.b.length + copy.getSize() + ENTRY_OVERHEAD_BYTES;
+      p.bytes += sz;
+      bytes += sz;
+    } else {
+      // a null sum means no entry, as in KeyTwoScalar.reduce
+      Value old = agg.value;
+      agg.value = old == null ? new Value(v) : combiner.multiply(k, old, v);
+      long diff = (agg.value == null ? 0 : agg.value.getSize()) - (old == null ? 0 : old.getSize());
+      p.bytes += diff;
+      bytes += diff;
+    }
+    if (bytes > maxBytes)
+      flushUntil(maxBytes / 2);
+  }
+
+  private int partition(ByteSequence row) {
+    int h = row.isBackedByArray()
+        ? WritableComparator.hashBytes(row.getBackingArray(), row.offset(), row.length())
+        : row.hashCode();
+    return (h & Integer.MAX_VALUE) % partitions.length;
+  }
+
+  private static byte[] serialize(ByteSequence... parts) {
+    int len = 0;
+    for (ByteSequence part : parts)
+      len += 4 + part.length();
+    byte[] b = new byte[len];
+    int pos = 0;
+    for (ByteSequence part : parts) {
+      int l = part.length();
+      b[pos++] = (byte) (l >>> 24);
+      b[pos++] = (byte) (l >>> 16);
+      b[pos++] = (byte) (l >>> 8);
+      b[pos++] = (byte) l;
+      if (part.isBackedByArray())
+        System.arraycopy(part.getBackingArray(), part.offset(), b, pos, l);
+      else
+        System.arraycopy(part.toArray(), 0, b, pos, l);
+      pos += l;
+    }
+    return b;
+  }
+
+  private static int readInt(byte[] b, int pos) {
+    return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+  }
+
+  private static Key deserialize(byte[] b, long ts) {
+    int[] off = new int[4], len = new int[4];
+    int pos = 0;
+    for (int i = 0; i < 4; i++) {
+      len[i] = readInt(b, pos);
+      off[i] = pos + 4;
+      pos = off[i] + len[i];
+    }
+    return new Key(b, off[0], len[0], b, off[1], len[1], b, off[2], len[2], b, off[3], len[3], ts);
+  }
+
+  private void flushUntil(long targetBytes) {
+    while (bytes > targetBytes) {
+      Partition victim = null;
+      for (Partition p : partitions) {
+        if (p.map.isEmpty())
+          continue;
+        if (victim == null
+            || (policy == FlushPolicy.LARGEST && p.bytes > victim.bytes)
+            || (policy == FlushPolicy.COLDEST && p.lastTouched < victim.lastTouched))
+          victim = p;
+      }
+      if (victim == null)
+        break;
+      flush(victim);
+    }
+  }
+
+  private void flush(Partition p) {
+    List<BytesKey> keys = new ArrayList<>(p.map.keySet());
+    Collections.sort(keys);
+    for (BytesKey bk : keys) {
+      Agg agg = p.map.get(bk);
+      if (agg.value != null) {
+        sink.write(deserialize(bk.b, agg.ts), agg.value);
+        numOut++;
+      }
+    }
+    bytes -= p.bytes;
+    p.bytes = 0;
+    p.map.clear();
+  }
+
+  /** Flush every held entry to the Sink. */
+  public void flushAll() {
+    for (Partition p : partitions)
+      if (!p.map.isEmpty())
+        flush(p);
+    bytes = 0;
+  }
+
+  /** Discard every held entry without sending it to the Sink. */
+  public void clear() {
+    for (Partition p : partitions) {
+      p.map.clear();
+      p.bytes = 0;
+    }
+    bytes = 0;
+  }
+
+  /** Estimated size of the held entries in bytes. */
+  public long getBytes() {
+    return bytes;
+  }
+
+  public boolean isEmpty() {
+    return bytes == 0;
+  }
+
+  /** Number of entries added. */
+  public long getNumIn() {
+    return numIn;
+  }
+
+  /** Number of entries sent to the Sink. */
+  public long getNumOut() {
+    return numOut;
+  }
+
+  /** Create a combiner for a PreSumBuffer from a Combiner class name and its options. */
+  public static KeyTwoScalar createCombiner(String combinerClass, Map<String, String> combinerOptions) throws IOException {
+    Combiner c = GraphuloUtil.subclassNewInstance(combinerClass, Combiner.class);
+    Map<String,String> opts = new HashMap<>(combinerOptions);
+    KeyTwoScalar kts;
+    if (c instanceof KeyTwoScalar) {
+      kts = (KeyTwoScalar) c;
+      opts.remove(ALL_OPTION);
+      opts.remove(COLUMNS_OPTION);
+    } else {
+      kts = KeyTwoScalar.toKeyTwoScalar(c);
+      if (!opts.containsKey(COLUMNS_OPTION))
+        opts.put(ALL_OPTION, "true");
+    }
+    kts.init(opts, null);
+    if (log.isDebugEnabled())
+      log.debug("PreSumBuffer combiner " + combinerClass + " with options " + opts);
+    return kts;
+  }
+}
@@ -0,0 +1,153 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ahead from an iterator on a background thread, so that the consumer works on one batch of elements
+ * while the next batches are fetched.
+ * The fetcher fills a bounded queue of batches of at most <tt>batchSize</tt> elements each.
+ * At most <tt>queueDepth</tt> batches wait in the queue, plus one in the hands of the consumer and one being filled.
+ * <p>
+ * The source iterator is only touched by the fetcher thread until {@link #close()} returns.
+ * Call close() before reusing the source's underlying resources, e.g. before re-seeking a Scanner.
+ * An exception thrown by the source is re-thrown to the consumer at the point where it would have been hit.
+ */
+public class PrefetchIterator<E> implements Iterator<E>, AutoCloseable {
+  private static final Logger log = LogManager.getLogger(PrefetchIterator.class);
+
+  /** Shared by all PrefetchIterators in this JVM. Threads are created as needed and die when idle. */
+  private static final ExecutorService FETCH_POOL = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("PrefetchIterator-%d").build());
+
+  /** Marks the end of the source in the queue. */
+  private static final List<Object> END = Collections.emptyList();
+
+  private final BlockingQueue<List<E>> queue;
+  /** Counted down when the fetcher stops touching the source. */
+  private final CountDownLatch fetcherStopped = new CountDownLatch(1);
+  private volatile boolean cancelled = false;
+  private volatile RuntimeException fetchException;
+  private List<E> batch = Collections.emptyList();
+  private int pos = 0;
+  private boolean done = false;
+
+  /**
+   * Starts fetching immediately.
+   * @param source Iterator to read ahead from. Not touched by the calling thread.
+   * @param queueDepth Maximum number of batches waiting in the queue; must be positive.
+   * @param batchSize Maximum number of elements per batch; must be positive.
+   */
+  public PrefetchIterator(final Iterator<E> source, int queueDepth, final int batchSize) {
+    if (queueDepth <= 0 || batchSize <= 0)
+      throw new IllegalArgumentException("queueDepth and batchSize must be positive: " + queueDepth + ", " + batchSize);
+    queue = new ArrayBlockingQueue<>(queueDepth);
+    FETCH_POOL.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          fetch(source, batchSize);
+        } finally {
+          fetcherStopped.countDown();
+        }
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void fetch(Iterator<E> source, int batchSize) {
+    List<E> b = new ArrayList<>(batchSize);
+    try {
+      try {
+        while (!cancelled && source.hasNext()) {
+          do {
+            b.add(source.next());
+          } while (b.size() < batchSize && !cancelled && source.hasNext());
+          queue.put(b);
+          b = new ArrayList<>(batchSize);
+        }
+      } catch (RuntimeException e) {
+        fetchException = e;
+        if (!b.isEmpty()) // elements fetched before the exception
+          queue.put(b);
+      }
+      if (!cancelled)
+        queue.put((List<E>) END);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (pos < batch.size())
+      return true;
+    if (done)
+      return false;
+    try {
+      batch = queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted while waiting for prefetched entries", e);
+    }
+    pos = 0;
+    if (batch == END) {
+      done = true;
+      if (fetchException != null)
+        throw fetchException;
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public E next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return batch.get(pos++);
+  }
+
+  /** The next element without advancing, or null if there is none. */
+  public E peek() {
+    return hasNext() ? batch.get(pos) : null;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Stop the fetcher and wait for it to stop touching the source. Idempotent. */
+  @Override
+  public void close() {
+    if (cancelled)
+      return;
+    cancelled = true;
+    done = true;
+    batch = Collections.emptyList();
+    try {
+      // clearing the queue unblocks a fetcher waiting to put a batch;
+      // a fetcher waiting on the source stops after the source returns
+      do
+        queue.clear();
+      while (!fetcherStopped.await(1, TimeUnit.MILLISECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("interrupted while waiting for the fetcher to stop", e);
+    }
+    queue.clear();
+  }
+}
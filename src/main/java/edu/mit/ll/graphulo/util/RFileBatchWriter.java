@@ -0,0 +1,191 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.base.Preconditions;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.rfile.RFile;
+import org.apache.accumulo.core.client.rfile.RFileWriter;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A BatchWriter that writes RFiles for bulk import instead of sending Mutations to tablet servers.
+ * Entries are held in memory up to a byte budget, then sorted and written as one RFile per tablet of the
+ * destination table into a private work directory.
+ * {@link #flush()} moves the finished RFiles into the output directory, so that the output directory
+ * only holds entries that were flushed. Import it with {@link org.apache.accumulo.core.client.admin.TableOperations#importDirectory}.
+ * <p>
+ * Entries with equal keys are all kept; a Combiner on the destination table sums them at scan and compaction time.
+ * {@link #close()} discards entries not yet flushed, since a torn-down {@link edu.mit.ll.graphulo.skvi.RemoteWriteIterator}
+ * re-writes them after it recovers.
+ * Thread-safe.
+ */
+public class RFileBatchWriter implements BatchWriter {
+  private static final Logger log = LogManager.getLogger(RFileBatchWriter.class);
+
+  /** Default byte budget of entries held in memory. */
+  public static final long DEFAULT_BUFFER_BYTES = 64L << 20;
+  /** Estimated bytes of object overhead per held entry. */
+  private static final int ENTRY_OVERHEAD = 96;
+
+  private static final Comparator<Map.Entry<Key,Value>> KEY_ORDER = new Comparator<Map.Entry<Key, Value>>() {
+    @Override
+    public int compare(Map.Entry<Key, Value> o1, Map.Entry<Key, Value> o2) {
+      return o1.getKey().compareTo(o2.getKey());
+    }
+  };
+
+  private final FileSystem fs;
+  private final Path outDir, workDir;
+  /** Split points of the destination table, sorted. */
+  private final Text[] splits;
+  private final long bufferBytes;
+  private final String prefix = UUID.randomUUID().toString();
+
+  private final List<Map.Entry<Key,Value>> buffer = new ArrayList<>();
+  private long bytes = 0;
+  /** RFiles in workDir written since the last flush. */
+  private final List<Path> finished = new ArrayList<>();
+  private int numFiles = 0;
+  private boolean closed = false;
+
+  /**
+   * @param fs File system of outDir and workDir.
+   * @param outDir Directory to move finished RFiles into at flush(). Created if it does not exist.
+   * @param workDir Directory private to this writer, for RFiles not yet flushed. Deleted at close().
+   * @param splits Split points of the destination table, so that each RFile falls within one tablet. Empty means one tablet.
+   * @param bufferBytes Estimated bytes of entries to hold in memory before writing RFiles. <= 0 means {@link #DEFAULT_BUFFER_BYTES}.
+   */
+  public RFileBatchWriter(FileSystem fs, Path outDir, Path workDir, Collection<Text> splits, long bufferBytes) throws IOException {
+    Preconditions.checkNotNull(fs);
+    this.fs = fs;
+    this.outDir = outDir;
+    this.workDir = workDir;
+    this.splits = splits.toArray(new Text[splits.size()]);
+    java.util.Arrays.sort(this.splits);
+    this.bufferBytes = bufferBytes > 0 ? bufferBytes : DEFAULT_BUFFER_BYTES;
+    fs.mkdirs(workDir);
+  }
+
+  @Override
+  public synchronized void addMutation(Mutation m) throws MutationsRejectedException {
+    Preconditions.checkState(!closed, "closed");
+    byte[] row = m.getRow();
+    for (ColumnUpdate cu : m.getUpdates()) {
+      Key k = new Key(row, cu.getColumnFamily(), cu.getColumnQualifier(), cu.getColumnVisibility(),
+          cu.hasTimestamp() ? cu.getTimestamp() : Long.MAX_VALUE, cu.isDeleted(), false);
+      Value v = new Value(cu.getValue(), false);
+      buffer.add(new AbstractMap.SimpleImmutableEntry<>(k, v));
+      bytes += k.getSize() + v.getSize() + ENTRY_OVERHEAD;
+    }
+    if (bytes > bufferBytes)
+      spill();
+  }
+
+  @Override
+  public void addMutations(Iterable<Mutation> iterable) throws MutationsRejectedException {
+    for (Mutation m : iterable)
+      addMutation(m);
+  }
+
+  /** Number of entries held in memory, not yet written to an RFile. */
+  public synchronized int getNumBuffered() {
+    return buffer.size();
+  }
+
+  /** Sort the held entries and write them as one RFile per destination tablet into the work directory. */
+  private void spill() {
+    if (buffer.isEmpty())
+      return;
+    Collections.sort(buffer, KEY_ORDER); // stable
+    int s = 0;
+    RFileWriter w = null;
+    try {
+      try {
+        Text row = new Text();
+        for (Map.Entry<Key, Value> entry : buffer) {
+          Key k = entry.getKey();
+          // advance to the tablet whose end row is the first split at or after the row
+          if (s < splits.length && k.compareRow(splits[s]) > 0) {
+            k.getRow(row);
+            while (s < splits.length && row.compareTo(splits[s]) > 0)
+              s++;
+            if (w != null) {
+              w.close();
+              w = null;
+            }
+          }
+          if (w == null) {
+            Path p = new Path(workDir, prefix + "-" + (numFiles++) + ".rf");
+            w = RFile.newWriter().to(p.toString()).withFileSystem(fs).build();
+            w.startDefaultLocalityGroup();
+            finished.add(p);
+          }
+          w.append(k, entry.getValue());
+        }
+      } finally {
+        if (w != null)
+          w.close();
+      }
+    } catch (IOException e) {
+      log.error("problem writing RFiles to " + workDir, e);
+      throw new RuntimeException(e);
+    }
+    buffer.clear();
+    bytes = 0;
+  }
+
+  /** Write the held entries to RFiles and move all RFiles written since the last flush into the output directory. */
+  @Override
+  public synchronized void flush() throws MutationsRejectedException {
+    Preconditions.checkState(!closed, "closed");
+    spill();
+    if (finished.isEmpty())
+      return;
+    try {
+      fs.mkdirs(outDir);
+      for (Path p : finished)
+        if (!fs.rename(p, new Path(outDir, p.getName())))
+          throw new IOException("cannot move " + p + " to " + outDir);
+    } catch (IOException e) {
+      log.error("problem moving RFiles to " + outDir, e);
+      throw new RuntimeException(e);
+    }
+    finished.clear();
+  }
+
+  /** Discard entries not yet flushed and delete the work directory. */
+  @Override
+  public synchronized void close() throws MutationsRejectedException {
+    if (closed)
+      return;
+    closed = true;
+    if (!buffer.isEmpty() || !finished.isEmpty())
+      log.warn("discarding " + buffer.size() + " entries and " + finished.size() + " RFiles not flushed to " + outDir);
+    buffer.clear();
+    finished.clear();
+    try {
+      fs.delete(workDir, true);
+    } catch (IOException e) {
+      log.warn("cannot delete " + workDir, e);
+    }
+  }
+
+}
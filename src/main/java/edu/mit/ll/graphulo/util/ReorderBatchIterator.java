@@ -0,0 +1,114 @@
+package edu.mit.ll.graphulo.util;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates in sorted order through the entries in a sorted list of disjoint ranges,
+ * fetching a window of ranges at a time from an unordered source such as a BatchScanner.
+ * Each window is held in a reorder buffer and sorted before it is emitted.
+ * <p>
+ * The buffer holds at most <tt>maxBufferEntries</tt> entries.
+ * If a window has more, the window is fetched again one range at a time from an ordered source such as a Scanner,
+ * and later windows have half as many ranges.
+ */
+public abstract class ReorderBatchIterator implements Iterator<Map.Entry<Key, Value>> {
+  private static final Logger log = LogManager.getLogger(ReorderBatchIterator.class);
+
+  private static final Comparator<Map.Entry<Key, Value>> KEY_COMPARATOR = new Comparator<Map.Entry<Key, Value>>() {
+    @Override
+    public int compare(Map.Entry<Key, Value> o1, Map.Entry<Key, Value> o2) {
+      return o1.getKey().compareTo(o2.getKey());
+    }
+  };
+
+  /** Fetch the entries in the given ranges, in any order. */
+  protected abstract Iterator<Map.Entry<Key, Value>> fetchUnordered(List<Range> ranges);
+
+  /** Stop fetching from the last call to {@link #fetchUnordered}, which may not have been read fully. */
+  protected abstract void abortUnordered();
+
+  /** Fetch the entries in one range, in sorted order. */
+  protected abstract Iterator<Map.Entry<Key, Value>> fetchOrdered(Range range);
+
+  private final List<Range> ranges;
+  private final int maxBufferEntries;
+  private int windowSize;
+  /** Index of the first range not yet fetched. */
+  private int nextRange = 0;
+  private Iterator<Map.Entry<Key, Value>> current = Collections.emptyIterator();
+  /** Ranges of an overflowing window to fetch in order. */
+  private Iterator<Range> orderedRanges = Collections.emptyIterator();
+
+  /**
+   * @param ranges Sorted, disjoint ranges.
+   * @param windowSize Number of ranges to fetch at once; must be positive.
+   * @param maxBufferEntries Maximum number of entries in the reorder buffer; must be positive.
+   */
+  public ReorderBatchIterator(List<Range> ranges, int windowSize, int maxBufferEntries) {
+    if (windowSize <= 0 || maxBufferEntries <= 0)
+      throw new IllegalArgumentException("windowSize and maxBufferEntries must be positive: " + windowSize + ", " + maxBufferEntries);
+    this.ranges = ranges;
+    this.windowSize = windowSize;
+    this.maxBufferEntries = maxBufferEntries;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (orderedRanges.hasNext())
+        current = fetchOrdered(orderedRanges.next());
+      else if (nextRange < ranges.size())
+        fetchWindow();
+      else
+        return false;
+    }
+    return true;
+  }
+
+  private void fetchWindow() {
+    List<Range> window = ranges.subList(nextRange, Math.min(ranges.size(), nextRange + windowSize));
+    nextRange += window.size();
+    if (window.size() == 1) {
+      current = fetchOrdered(window.get(0));
+      return;
+    }
+    List<Map.Entry<Key, Value>> buffer = new ArrayList<>();
+    Iterator<Map.Entry<Key, Value>> it = fetchUnordered(window);
+    while (it.hasNext()) {
+      if (buffer.size() >= maxBufferEntries) {
+        abortUnordered();
+        log.debug("reorder buffer full at " + maxBufferEntries + " entries; fetching " + window.size() + " ranges in order");
+        windowSize = Math.max(1, windowSize / 2);
+        orderedRanges = window.iterator();
+        return;
+      }
+      buffer.add(it.next());
+    }
+    Collections.sort(buffer, KEY_COMPARATOR);
+    current = buffer.iterator();
+  }
+
+  @Override
+  public Map.Entry<Key, Value> next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
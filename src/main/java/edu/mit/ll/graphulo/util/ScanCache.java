@@ -0,0 +1,530 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.base.Preconditions;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.metadata.MetadataTable;
+import org.apache.accumulo.core.metadata.schema.MetadataSchema;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Caches whole-table scans at the client in memory-mapped files, for client-side algorithms such as
+ * kTrussAdj_Client, Jaccard_Client and NMF_Client that are run repeatedly on a table that does not change.
+ * <p>
+ * A cache file is keyed by the instance ID, the table ID, and a fingerprint of what a scan of the table returns:
+ * a hash of the RFiles listed for its tablets in the metadata table, the table's properties,
+ * which include its scan-time iterators such as combiners and filters, and the authorizations of the scan.
+ * Flushes, compactions, bulk imports and configuration changes change the fingerprint, so they invalidate the cached scan.
+ * Entries held in memory by the tablet servers are not in any file, so the scan is not cached while the table has
+ * unflushed writes, seen as write-ahead log entries of its tablets in the metadata table;
+ * for the same reason, it is not cached if the table's durability is none.
+ * Reading the metadata table needs read permission on it. Without it, or while writes are unflushed,
+ * {@link #scan} returns -1 and the caller scans the table as usual.
+ * <p>
+ * The file holds the entries visible with the given authorizations, sorted, in four columns:
+ * distinct rows with their entry counts, column families, column qualifiers, and values, each length-prefixed.
+ * Visibilities and timestamps are not kept.
+ * Row and column filters are applied when the file is read, so one file serves every filter.
+ * <p>
+ * The files hold table data in plaintext. The cache directory is made readable only by its owner,
+ * and a ScanCache refuses a directory it cannot restrict, such as one made by another user;
+ * the files are created owner-only as well.
+ * The total size of the files in the directory is bounded: after writing a file, the least recently used other files
+ * are deleted until the total is within the bound. A single scan larger than the bound is still cached, alone.
+ */
+public class ScanCache {
+  private static final Logger log = LogManager.getLogger(ScanCache.class);
+
+  private static final int MAGIC = 0x47534331; // GSC1
+  private static final String SUFFIX = ".gsc";
+  private static final int NUM_SECTIONS = 4;
+  private static final int HEADER_BYTES = 4 + 8 + 8 * NUM_SECTIONS;
+
+  private static final ByteSequence LOG_FAMILY = new ArrayByteSequence(MetadataSchema.TabletsSection.LogColumnFamily.NAME.copyBytes());
+
+  private static final Set<PosixFilePermission> OWNER_ONLY_DIR = PosixFilePermissions.fromString("rwx------");
+
+  /** Default bound on the total size of the cache files in a directory, 1 GiB. */
+  public static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+  private final File dir;
+  private final long maxBytes;
+
+  /**
+   * @param dir Directory to hold cache files. Created if it does not exist. Restricted to its owner.
+   * @param maxBytes Bound on the total size of the cache files in dir.
+   */
+  public ScanCache(File dir, long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be positive: %s", maxBytes);
+    try {
+      makeOwnerOnlyDir(dir);
+    } catch (IOException e) {
+      log.error("cannot make owner-only scan cache directory " + dir, e);
+      throw new RuntimeException(e);
+    }
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+  }
+
+  /** Cache in dir, up to {@link #DEFAULT_MAX_BYTES}. */
+  public ScanCache(File dir) {
+    this(dir, DEFAULT_MAX_BYTES);
+  }
+
+  /** Cache in graphulo-scan-cache-&lt;user name&gt; in the temporary directory, up to {@link #DEFAULT_MAX_BYTES}. */
+  public ScanCache() {
+    this(new File(System.getProperty("java.io.tmpdir"), "graphulo-scan-cache-" + System.getProperty("user.name")));
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Create dir if it does not exist and allow only its owner to access it.
+   * Fails if the permissions cannot be set, such as when another user owns dir.
+   * On file systems without POSIX permissions, removes the access of others as far as {@link File} allows.
+   */
+  private static void makeOwnerOnlyDir(File dir) throws IOException {
+    Path path = dir.toPath();
+    if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      if (!dir.isDirectory())
+        Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIR));
+      Files.setPosixFilePermissions(path, OWNER_ONLY_DIR); // also narrows an existing directory and undoes the umask
+    } else {
+      if (!dir.isDirectory() && !dir.mkdirs())
+        throw new IOException("cannot create " + dir);
+      if (!(dir.setReadable(false, false) && dir.setReadable(true, true)
+          && dir.setWritable(false, false) && dir.setWritable(true, true)
+          && dir.setExecutable(false, false) && dir.setExecutable(true, true)))
+        log.warn("cannot restrict scan cache directory " + dir + " to its owner");
+    }
+  }
+
+  /**
+   * Put the entries of table visible with authorizations whose rows pass rowFilter and whose column qualifiers pass colFilter into sink,
+   * from the cache file of the table's current data, writing the file first if there is none.
+   * Filters are D4M strings as in OneTable; null means no filter.
+   * @return Number of entries put, or -1 if the table's data cannot be fingerprinted and nothing was put.
+   */
+  public long scan(Connector connector, String table, Authorizations authorizations, String rowFilter, String colFilter, EntrySink sink) {
+    String tableId = connector.tableOperations().tableIdMap().get(table);
+    Preconditions.checkArgument(tableId != null, "table %s does not exist", table);
+    String fingerprint = fingerprint(connector, table, tableId, authorizations);
+    if (fingerprint == null)
+      return -1;
+    String prefix = filePrefix(connector, tableId);
+    File file = new File(dir, prefix + fingerprint + SUFFIX);
+    if (!file.exists()) {
+      long t = System.currentTimeMillis();
+      Scanner scanner;
+      try {
+        scanner = connector.createScanner(table, authorizations);
+      } catch (TableNotFoundException e) {
+        log.error("crazy", e);
+        throw new RuntimeException(e);
+      }
+      try {
+        File tmp = Files.createTempFile(dir.toPath(), prefix, ".tmp").toFile(); // owner-only
+        try {
+          long n = write(scanner.iterator(), tmp);
+          Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          log.debug("cached " + n + " entries of " + table + " in " + file + " in " + (System.currentTimeMillis() - t) + "ms");
+        } finally {
+          if (tmp.exists() && !tmp.delete())
+            log.warn("cannot delete " + tmp);
+        }
+      } catch (IOException e) {
+        log.warn("cannot cache scan of " + table + " in " + dir, e);
+        return -1;
+      } finally {
+        scanner.close();
+      }
+      removeStale(prefix, file);
+      evict(file);
+    } else if (!file.setLastModified(System.currentTimeMillis()))
+      log.debug("cannot mark " + file + " as recently used");
+    try {
+      return read(file, rowFilter, colFilter, sink);
+    } catch (IOException e) {
+      log.error("problem reading scan cache file " + file, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Start of the names of the cache files of tableId in the instance of connector. */
+  private static String filePrefix(Connector connector, String tableId) {
+    return connector.getInstance().getInstanceID() + "-" + tableId + "-";
+  }
+
+  /** Delete cache files starting with prefix other than current. */
+  private void removeStale(String prefix, File current) {
+    File[] files = dir.listFiles();
+    if (files == null)
+      return;
+    for (File f : files)
+      if (f.getName().startsWith(prefix) && f.getName().endsWith(SUFFIX) && !f.equals(current) && !f.delete())
+        log.warn("cannot delete stale scan cache file " + f);
+  }
+
+  /**
+   * Delete the least recently used cache files other than current
+   * until the cache files in the directory total at most maxBytes.
+   */
+  private void evict(File current) {
+    File[] files = dir.listFiles();
+    if (files == null)
+      return;
+    long total = 0;
+    List<File> cacheFiles = new ArrayList<>(files.length);
+    for (File f : files)
+      if (f.getName().endsWith(SUFFIX)) {
+        cacheFiles.add(f);
+        total += f.length();
+      }
+    if (total <= maxBytes)
+      return;
+    final long[] lastUsed = new long[cacheFiles.size()];
+    for (int i = 0; i < lastUsed.length; i++)
+      lastUsed[i] = cacheFiles.get(i).lastModified(); // read once, so the sort is consistent
+    Integer[] idx = new Integer[lastUsed.length];
+    for (int i = 0; i < idx.length; i++)
+      idx[i] = i;
+    Arrays.sort(idx, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Long.compare(lastUsed[a], lastUsed[b]);
+      }
+    });
+    for (int i : idx) {
+      if (total <= maxBytes)
+        break;
+      File f = cacheFiles.get(i);
+      if (f.equals(current))
+        continue;
+      long len = f.length();
+      if (f.delete()) {
+        total -= len;
+        log.debug("evicted scan cache file " + f);
+      } else
+        log.warn("cannot delete scan cache file " + f);
+    }
+  }
+
+  /**
+   * Hash of the instance and table ID, the files and their sizes listed in the metadata table for the tablets of the table,
+   * the table's properties, and the authorizations.
+   * Null if the table has writes not yet flushed to files, if its durability is none so that this cannot be seen,
+   * or if the metadata cannot be read.
+   */
+  static String fingerprint(Connector connector, String table, String tableId, Authorizations authorizations) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      log.error("crazy", e);
+      throw new RuntimeException(e);
+    }
+    digest.update(connector.getInstance().getInstanceID().getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(tableId.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(authorizations.getAuthorizationsArray());
+    digest.update((byte) 0);
+    try {
+      // sorted, so that the same configuration always hashes the same
+      SortedMap<String, String> props = new TreeMap<>();
+      for (Map.Entry<String, String> entry : connector.tableOperations().getProperties(table))
+        if (entry.getKey().startsWith(Property.TABLE_PREFIX.getKey()))
+          props.put(entry.getKey(), entry.getValue());
+      if ("none".equals(props.get(Property.TABLE_DURABILITY.getKey()))) {
+        log.debug("durability of " + table + " is none; cannot tell whether it has unflushed writes; not caching its scan");
+        return null;
+      }
+      for (Map.Entry<String, String> entry : props.entrySet()) {
+        digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      }
+
+      Scanner scanner = connector.createScanner(MetadataTable.NAME, Authorizations.EMPTY);
+      try {
+        scanner.setRange(MetadataSchema.TabletsSection.getRange(tableId));
+        scanner.fetchColumnFamily(MetadataSchema.TabletsSection.DataFileColumnFamily.NAME);
+        scanner.fetchColumnFamily(MetadataSchema.TabletsSection.LogColumnFamily.NAME);
+        for (Map.Entry<Key, Value> entry : scanner) {
+          if (entry.getKey().getColumnFamilyData().equals(LOG_FAMILY)) {
+            log.debug(table + " has writes not yet flushed; not caching its scan");
+            return null;
+          }
+          ByteSequence cq = entry.getKey().getColumnQualifierData();
+          digest.update(cq.getBackingArray(), cq.offset(), cq.length());
+          digest.update((byte) 0);
+          digest.update(entry.getValue().get());
+          digest.update((byte) 0);
+        }
+      } finally {
+        scanner.close();
+      }
+    } catch (AccumuloException | TableNotFoundException | RuntimeException e) {
+      log.warn("cannot fingerprint the data of " + table + "; not caching its scan", e);
+      return null;
+    }
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  /**
+   * Write sorted entries to a cache file.
+   * @return Number of entries written.
+   */
+  public static long write(Iterator<Map.Entry<Key, Value>> sorted, File file) throws IOException {
+    File[] sectionFiles = new File[NUM_SECTIONS];
+    DataOutputStream[] sections = new DataOutputStream[NUM_SECTIONS];
+    long numEntries = 0;
+    try {
+      for (int s = 0; s < NUM_SECTIONS; s++) {
+        sectionFiles[s] = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName() + "-" + s + "-", ".tmp").toFile();
+        sections[s] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sectionFiles[s]), 1 << 16));
+      }
+      ByteSequence row = null;
+      int rowCount = 0;
+      while (sorted.hasNext()) {
+        Map.Entry<Key, Value> entry = sorted.next();
+        Key k = entry.getKey();
+        ByteSequence r = k.getRowData();
+        if (row == null || !row.equals(r)) {
+          if (row != null)
+            writeRow(sections[0], row, rowCount);
+          row = new ArrayByteSequence(r.toArray());
+          rowCount = 0;
+        }
+        rowCount++;
+        writeBytes(sections[1], k.getColumnFamilyData());
+        writeBytes(sections[2], k.getColumnQualifierData());
+        byte[] v = entry.getValue().get();
+        writeVarint(sections[3], v.length);
+        sections[3].write(v);
+        numEntries++;
+      }
+      if (row != null)
+        writeRow(sections[0], row, rowCount);
+      for (DataOutputStream section : sections)
+        section.close();
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeLong(numEntries);
+        for (File f : sectionFiles) {
+          if (f.length() > Integer.MAX_VALUE)
+            throw new IOException("scan cache section too large to map: " + f.length() + " bytes");
+          out.writeLong(f.length());
+        }
+        byte[] buf = new byte[1 << 16];
+        for (File f : sectionFiles)
+          try (FileInputStream in = new FileInputStream(f)) {
+            int n;
+            while ((n = in.read(buf)) > 0)
+              out.write(buf, 0, n);
+          }
+      }
+    } finally {
+      for (int s = 0; s < NUM_SECTIONS; s++) {
+        if (sections[s] != null)
+          sections[s].close();
+        if (sectionFiles[s] != null && sectionFiles[s].exists() && !sectionFiles[s].delete())
+          log.warn("cannot delete " + sectionFiles[s]);
+      }
+    }
+    return numEntries;
+  }
+
+  private static void writeRow(DataOutputStream out, ByteSequence row, int count) throws IOException {
+    writeBytes(out, row);
+    writeVarint(out, count);
+  }
+
+  private static void writeBytes(DataOutputStream out, ByteSequence bs) throws IOException {
+    writeVarint(out, bs.length());
+    out.write(bs.getBackingArray(), bs.offset(), bs.length());
+  }
+
+  private static void writeVarint(OutputStream out, int v) throws IOException {
+    while ((v & ~0x7F) != 0) {
+      out.write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.write(v);
+  }
+
+  private static int readVarint(ByteBuffer bb) {
+    int v = 0, shift = 0;
+    byte b;
+    do {
+      b = bb.get();
+      v |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return v;
+  }
+
+  private static byte[] readBytes(ByteBuffer bb) {
+    byte[] bytes = new byte[readVarint(bb)];
+    bb.get(bytes);
+    return bytes;
+  }
+
+  private static void skipBytes(ByteBuffer bb) {
+    int len = readVarint(bb);
+    bb.position(bb.position() + len);
+  }
+
+  /**
+   * Map a cache file and put its entries that pass the filters into sink.
+   * @return Number of entries put.
+   */
+  public static long read(File file, String rowFilter, String colFilter, EntrySink sink) throws IOException {
+    RangeMatcher rows = rowFilter == null || rowFilter.isEmpty() ? null : new RangeMatcher(GraphuloUtil.d4mRowToRanges(rowFilter));
+    ColumnMatcher cols = colFilter == null || colFilter.isEmpty() ? null : new ColumnMatcher(colFilter);
+    MappedByteBuffer[] sections = new MappedByteBuffer[NUM_SECTIONS];
+    long numEntries;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      if (header.getInt() != MAGIC)
+        throw new IOException("not a scan cache file: " + file);
+      numEntries = header.getLong();
+      long pos = HEADER_BYTES;
+      for (int s = 0; s < NUM_SECTIONS; s++) {
+        long len = header.getLong();
+        sections[s] = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        pos += len;
+      }
+    } // mappings stay valid after the channel is closed
+
+    byte[] empty = new byte[0];
+    long put = 0, seen = 0;
+    ByteBuffer rowSec = sections[0], famSec = sections[1], qualSec = sections[2], valSec = sections[3];
+    while (seen < numEntries) {
+      byte[] row = readBytes(rowSec);
+      int count = readVarint(rowSec);
+      seen += count;
+      if (rows != null && !rows.contains(new Key(row))) {
+        for (int i = 0; i < count; i++) {
+          skipBytes(famSec);
+          skipBytes(qualSec);
+          skipBytes(valSec);
+        }
+        continue;
+      }
+      for (int i = 0; i < count; i++) {
+        byte[] fam = readBytes(famSec), qual = readBytes(qualSec);
+        if (cols != null && !cols.matches(fam, qual)) {
+          skipBytes(valSec);
+          continue;
+        }
+        sink.put(new Key(row, fam, qual, empty, Long.MAX_VALUE, false, false), new Value(readBytes(valSec), false));
+        put++;
+      }
+    }
+    return put;
+  }
+
+  /** Whether a key is in a set of ranges, by binary search on the merged ranges. */
+  private static final class RangeMatcher {
+    private final List<Range> ranges;
+
+    RangeMatcher(Collection<Range> ranges) {
+      this.ranges = new ArrayList<>(Range.mergeOverlapping(ranges));
+      Collections.sort(this.ranges);
+    }
+
+    boolean contains(Key k) {
+      int lo = 0, hi = ranges.size() - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        Range r = ranges.get(mid);
+        if (r.beforeStartKey(k))
+          hi = mid - 1;
+        else if (r.afterEndKey(k))
+          lo = mid + 1;
+        else
+          return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Matches column qualifiers as OneTable's column filter does:
+   * singletons in the empty column family, or ranges of qualifiers in any family.
+   */
+  private static final class ColumnMatcher {
+    private final Set<Text> singletons;
+    private final RangeMatcher ranges;
+
+    ColumnMatcher(String colFilter) {
+      if (colFilter.indexOf(':') == -1) {
+        singletons = new HashSet<>(GraphuloUtil.d4mRowToTexts(colFilter));
+        ranges = null;
+      } else {
+        singletons = null;
+        ranges = new RangeMatcher(GraphuloUtil.d4mRowToRanges(colFilter));
+      }
+    }
+
+    boolean matches(byte[] fam, byte[] qual) {
+      if (singletons != null)
+        return fam.length == 0 && singletons.contains(new Text(qual));
+      return ranges.contains(new Key(qual));
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package edu.mit.ll.graphulo.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable statistics of a table or tablet: the exact number of entries,
+ * {@link HyperLogLog} estimates of the number of distinct rows and column qualifiers,
+ * and a histogram of row degrees (entries per row) in powers of two.
+ * Computed per tablet by {@link edu.mit.ll.graphulo.skvi.TableStatsIterator} and merged at the client;
+ * see {@link edu.mit.ll.graphulo.Graphulo#getTableStats}.
+ */
+public class TableStats {
+  private static final int BUCKETS = 64;
+
+  private long numEntries;
+  private final HyperLogLog rows, cols;
+  /** Bucket i counts rows with degree in [2^i, 2^(i+1)). */
+  private final long[] degreeHistogram;
+  private long computedMillis;
+
+  public TableStats() {
+    this(0, new HyperLogLog(), new HyperLogLog(), new long[BUCKETS], 0);
+  }
+
+  private TableStats(long numEntries, HyperLogLog rows, HyperLogLog cols, long[] degreeHistogram, long computedMillis) {
+    this.numEntries = numEntries;
+    this.rows = rows;
+    this.cols = cols;
+    this.degreeHistogram = degreeHistogram;
+    this.computedMillis = computedMillis;
+  }
+
+  /** Count one entry in column qualifier cq. */
+  public void addEntry(byte[] cq, int offset, int length) {
+    numEntries++;
+    cols.add(cq, offset, length);
+  }
+
+  /** Count a row holding degree entries. The entries themselves are counted by {@link #addEntry}. */
+  public void addRow(byte[] row, int offset, int length, long degree) {
+    rows.add(row, offset, length);
+    if (degree > 0)
+      degreeHistogram[63 - Long.numberOfLeadingZeros(degree)]++;
+  }
+
+  public void merge(TableStats other) {
+    numEntries += other.numEntries;
+    rows.merge(other.rows);
+    cols.merge(other.cols);
+    for (int i = 0; i < BUCKETS; i++)
+      degreeHistogram[i] += other.degreeHistogram[i];
+    computedMillis = Math.min(computedMillis, other.computedMillis);
+  }
+
+  /** Exact number of entries, or nnz. */
+  public long getNumEntries() {
+    return numEntries;
+  }
+
+  public long getDistinctRows() {
+    return rows.estimate();
+  }
+
+  public long getDistinctColumns() {
+    return cols.estimate();
+  }
+
+  /** Copy of the degree histogram, where bucket i counts rows with degree in [2^i, 2^(i+1)). */
+  public long[] getDegreeHistogram() {
+    return degreeHistogram.clone();
+  }
+
+  /** When these statistics were computed, in milliseconds since the epoch; the earliest if merged. 0 if unset. */
+  public long getComputedMillis() {
+    return computedMillis;
+  }
+
+  public void setComputedMillis(long computedMillis) {
+    this.computedMillis = computedMillis;
+  }
+
+  public byte[] encode() {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      WritableUtils.writeVLong(out, computedMillis);
+      WritableUtils.writeVLong(out, numEntries);
+      out.write(rows.toBytes());
+      out.write(cols.toBytes());
+      for (long b : degreeHistogram)
+        WritableUtils.writeVLong(out, b);
+      out.close();
+    } catch (IOException e) {
+      throw new RuntimeException("cannot happen writing to a byte array", e);
+    }
+    return baos.toByteArray();
+  }
+
+  public static TableStats decode(byte[] bytes) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    try {
+      long computedMillis = WritableUtils.readVLong(in);
+      long numEntries = WritableUtils.readVLong(in);
+      byte[] r = new byte[1 << HyperLogLog.P], c = new byte[1 << HyperLogLog.P];
+      in.readFully(r);
+      in.readFully(c);
+      long[] hist = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++)
+        hist[i] = WritableUtils.readVLong(in);
+      return new TableStats(numEntries, HyperLogLog.fromBytes(r), HyperLogLog.fromBytes(c), hist, computedMillis);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("bad TableStats encoding", e);
+    }
+  }
+
+  public String encodeBase64() {
+    return Base64.encodeBase64String(encode());
+  }
+
+  public static TableStats decodeBase64(String str) {
+    return decode(Base64.decodeBase64(str));
+  }
+
+  @Override
+  public String toString() {
+    int last = BUCKETS - 1;
+    while (last > 0 && degreeHistogram[last] == 0)
+      last--;
+    return "TableStats{nnz=" + numEntries + ", rows~" + getDistinctRows() + ", cols~" + getDistinctColumns()
+        + ", degreeHistogram=" + Arrays.toString(Arrays.copyOf(degreeHistogram, last + 1)) + '}';
+  }
+}
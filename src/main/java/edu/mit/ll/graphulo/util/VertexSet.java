@@ -0,0 +1,179 @@
+package edu.mit.ll.graphulo.util;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Range;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A sorted set of vertex ids held as raw bytes, for passing BFS frontiers between the server and client
+ * without converting them to Strings or D4M strings.
+ * The binary encoding sorts the ids and front-codes each against the previous one,
+ * which is compact for the shared prefixes typical of row ids.
+ */
+public class VertexSet implements Iterable<byte[]> {
+
+  private final TreeSet<byte[]> set = new TreeSet<>(UnsignedBytes.lexicographicalComparator());
+
+  public boolean add(byte[] vertex) {
+    return set.add(vertex);
+  }
+
+  /** Adds a copy of the bytes. */
+  public boolean add(ByteSequence vertex) {
+    return set.add(vertex.toArray());
+  }
+
+  public void addAll(VertexSet other) {
+    set.addAll(other.set);
+  }
+
+  public void removeAll(VertexSet other) {
+    set.removeAll(other.set);
+  }
+
+  public boolean contains(byte[] vertex) {
+    return set.contains(vertex);
+  }
+
+  public int size() {
+    return set.size();
+  }
+
+  public boolean isEmpty() {
+    return set.isEmpty();
+  }
+
+  public void clear() {
+    set.clear();
+  }
+
+  /** Iterates in unsigned lexicographic order, the order of Accumulo rows. */
+  @Override
+  public Iterator<byte[]> iterator() {
+    return set.iterator();
+  }
+
+  /** One exact row Range per vertex, in sorted order. */
+  public List<Range> toRanges() {
+    List<Range> ranges = new ArrayList<>(set.size());
+    for (byte[] v : set)
+      ranges.add(Range.exact(new Text(v)));
+    return ranges;
+  }
+
+  /**
+   * The rows of each vertex in the single-table schema:
+   * one exact row Range for the vertex and one prefix Range for the vertex followed by sep.
+   */
+  public SortedSet<Range> toRanges(byte[] sep) {
+    SortedSet<Range> ranges = new TreeSet<>();
+    for (byte[] v : set) {
+      ranges.add(Range.exact(new Text(v)));
+      byte[] prefix = Arrays.copyOf(v, v.length + sep.length);
+      System.arraycopy(sep, 0, prefix, v.length, sep.length);
+      ranges.add(Range.prefix(new Text(prefix)));
+    }
+    return ranges;
+  }
+
+  /** Decodes the vertices as UTF-8. */
+  public List<String> toStrings() {
+    List<String> list = new ArrayList<>(set.size());
+    for (byte[] v : set)
+      list.add(new String(v, StandardCharsets.UTF_8));
+    return list;
+  }
+
+  public static VertexSet fromStrings(Collection<String> vertices) {
+    VertexSet vs = new VertexSet();
+    for (String v : vertices)
+      vs.add(v.getBytes(StandardCharsets.UTF_8));
+    return vs;
+  }
+
+  /** Encode as a count followed by, for each vertex in order, the length of the prefix shared with the previous vertex and the rest. */
+  public byte[] encode() {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      write(out);
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeException("cannot happen writing to a byte array", e);
+    }
+    return baos.toByteArray();
+  }
+
+  /** Write the encoding of {@link #encode()} to out. */
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, set.size());
+    byte[] prev = new byte[0];
+    for (byte[] v : set) {
+      int common = 0, max = Math.min(prev.length, v.length);
+      while (common < max && prev[common] == v[common])
+        common++;
+      WritableUtils.writeVInt(out, common);
+      WritableUtils.writeVInt(out, v.length - common);
+      out.write(v, common, v.length - common);
+      prev = v;
+    }
+  }
+
+  /** Add the vertices of an encoding written by {@link #write} to this set, without building another set. */
+  public void readFields(DataInput in) throws IOException {
+    int n = WritableUtils.readVInt(in);
+    byte[] prev = new byte[0];
+    for (int i = 0; i < n; i++) {
+      int common = WritableUtils.readVInt(in), rest = WritableUtils.readVInt(in);
+      byte[] v = new byte[common + rest];
+      System.arraycopy(prev, 0, v, 0, common);
+      in.readFully(v, common, rest);
+      set.add(v);
+      prev = v;
+    }
+  }
+
+  /** Inverse of {@link #encode()}. */
+  public static VertexSet decode(byte[] bytes) {
+    VertexSet vs = new VertexSet();
+    try {
+      vs.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("bad VertexSet encoding", e);
+    }
+    return vs;
+  }
+
+  /** {@link #encode()} as a Base64 String, for passing in iterator options. */
+  public String encodeBase64() {
+    return Base64.encodeBase64String(encode());
+  }
+
+  public static VertexSet decodeBase64(String str) {
+    return decode(Base64.decodeBase64(str));
+  }
+
+  @Override
+  public String toString() {
+    return set.size() > 5 ? "VertexSet#" + set.size() : toStrings().toString();
+  }
+}
@@ -25,10 +25,12 @@ import org.apache.hadoop.io.WritableComparator;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.SortedMap;
@@ -296,22 +298,11 @@ public abstract class CSVIngesterKmer<T> {
 
   private T map;
 
-  private long ingestLine(String line) {
-//    String[] parts = line.split(",");
-    int comma = line.indexOf(',');
-    if (comma == -1) {
-      log.warn("Bad CSV line: "+line);
-      return 0;
-    }
-
-    // Find the '/' character before the comma.
-    // If the character after it is '2', then take the reverse complement.
-    String header = line.substring(0, comma-1);
-    int slash = header.indexOf('/');
-    boolean reverse = slash != -1 && slash != header.length()-1 && header.charAt(slash+1) == '2';
-
-    String seq = line.substring(comma+1);
-    char[] seqb = seq.toCharArray();
+  /**
+   * Count the k-mers of a sequence held as chars into map, skipping k-mers that contain 'N'.
+   * Subclasses without a byte-level counter can call this from {@link #ingestSeq(Object, ByteBuffer, int, int, boolean)}.
+   */
+  protected final long ingestSeq(T map, char[] seqb, boolean reverse) {
 
     // split seq into kmers
     long num = 0;
@@ -351,6 +342,71 @@ public abstract class CSVIngesterKmer<T> {
 
   public abstract void putInMap(T map, byte[] e);
 
+  /** Count the k-mers of the sequence in buf[start,end) into map. Set reverse to take the reverse complement. */
+  protected abstract long ingestSeq(T map, ByteBuffer buf, int start, int end, boolean reverse);
+
+  /** Bytes of the file to map at once. Lines must be shorter. */
+  private static final int MAP_CHUNK = 1 << 30;
+
+  private static int indexOf(ByteBuffer buf, byte b, int start, int end) {
+    for (int i = start; i < end; i++)
+      if (buf.get(i) == b)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Count the k-mers of the CSV line in buf[start,end) through {@link #ingestSeq}.
+   * If the character after the '/' in the header is '2', then take the reverse complement.
+   */
+  private long ingestLine(ByteBuffer buf, int start, int end) {
+    int comma = indexOf(buf, (byte)',', start, end);
+    if (comma == -1) {
+      byte[] b = new byte[end - start];
+      for (int i = 0; i < b.length; i++)
+        b[i] = buf.get(start + i);
+      log.warn("Bad CSV line: "+new String(b, UTF_8));
+      return 0;
+    }
+    int slash = indexOf(buf, (byte)'/', start, comma-1);
+    boolean reverse = slash != -1 && slash != comma-2 && buf.get(slash+1) == '2';
+    return ingestSeq(map, buf, comma+1, end, reverse);
+  }
+
+  /** Ingest every everyXLines line after the header and startOffset more lines, on a memory-mapped file. */
+  private long ingestFileMapped(File file, int everyXLines, int startOffset, StatusLogger slog, String partialMsg) throws IOException {
+    long entriesProcessed = 0, lineno = 0, linecnt = 0;
+    try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = ch.size(), pos = 0;
+      while (pos < size) {
+        int lim = (int) Math.min(MAP_CHUNK, size - pos);
+        boolean last = pos + lim == size;
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, lim);
+        int s = 0;
+        while (s < lim) {
+          int e = indexOf(buf, (byte)'\n', s, lim);
+          if (e == -1) {
+            if (!last)
+              break; // map the partial line again with the next chunk
+            e = lim;
+          }
+          int lineEnd = e > s && buf.get(e-1) == '\r' ? e-1 : e;
+          // skip header line and offset
+          if (lineno++ > startOffset && lineEnd > s && linecnt++ % everyXLines == 0) {
+            entriesProcessed += ingestLine(buf, s, lineEnd);
+            if (linecnt % 5 == 0)
+              slog.logPeriodic(log, partialMsg+entriesProcessed);
+          }
+          s = e + 1;
+        }
+        if (s == 0)
+          throw new IOException("line longer than "+MAP_CHUNK+" bytes at offset "+pos+" of "+file);
+        pos += Math.min(s, lim);
+      }
+    }
+    return entriesProcessed;
+  }
+
   public abstract T allocateMap();
 
   public abstract void clearMap(T map);
@@ -369,35 +425,13 @@ public abstract class CSVIngesterKmer<T> {
       sampleid0 = sampleid0.substring(0, sampleid0.length()-4);
 
 
-    String line;
-    long entriesProcessed = 0, ingested = 0, totalsum = 0;
-
-    try (BufferedReader fo = new BufferedReader(new FileReader(file))) {
-      // Skip header line
-      fo.readLine();
-      // Offset
-      for (int i = 0; i < startOffset; i++)
-        fo.readLine();
-
-      // log every 2 minutes
-      StatusLogger slog = new StatusLogger();
-      String partialMsg = file.getName()+": entries processed: ";
-
-      clearMap(map);
-
-      long linecnt = 0;
-      while ((line = fo.readLine()) != null)
-        if (!line.isEmpty() && linecnt++ % everyXLines == 0) {
-          entriesProcessed += ingestLine(line);
-          if (linecnt % 5 == 0)
-            slog.logPeriodic(log, partialMsg+entriesProcessed);
-        }
-
-      log.info("Finished putting "+sampleid0+" into an in-memory map");
+    long ingested = 0;
 
-      action.run(sampleid0, map);
-
-    }
+    clearMap(map);
+    ingestFileMapped(file, everyXLines, startOffset,
+        new StatusLogger(), file.getName()+": entries processed: ");
+    log.info("Finished putting "+sampleid0+" into an in-memory map");
+    action.run(sampleid0, map);
     return ingested;
   }
 
@@ -408,6 +442,14 @@ public abstract class CSVIngesterKmer<T> {
       super(K, action);
     }
 
+    @Override
+    protected long ingestSeq(SortedMap<ArrayHolder, Integer> map, ByteBuffer buf, int start, int end, boolean reverse) {
+      char[] seqb = new char[end - start];
+      for (int i = 0; i < seqb.length; i++)
+        seqb[i] = (char) buf.get(start + i);
+      return ingestSeq(map, seqb, reverse);
+    }
+
     @Override
     public void putInMap(SortedMap<ArrayHolder, Integer> map, byte[] e) {
         ArrayHolder ah = new ArrayHolder(e);
@@ -428,9 +470,16 @@ public abstract class CSVIngesterKmer<T> {
   }
 
   public static class IntegerMap extends CSVIngesterKmer<int[]> {
+    private final RollingKmerCounter counter;
 
     public IntegerMap(int K, KmerAction<int[]> action) {
       super(K, action);
+      counter = new RollingKmerCounter(K);
+    }
+
+    @Override
+    protected long ingestSeq(int[] map, ByteBuffer buf, int start, int end, boolean reverse) {
+      return counter.count(buf, start, end, reverse, map);
     }
 
     @Override
@@ -0,0 +1,68 @@
+package edu.mit.ll.graphulo_ocean;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Counts the k-mers of a sequence of raw ASCII bases into an int[] indexed as in {@link CSVIngesterKmer.IntegerMap},
+ * i.e., at <tt>Integer.reverse(bytesToInt(G.encode(kmer)))</tt>.
+ * In that index the i-th base of the k-mer occupies bits 2i and 2i+1, so the forward and reverse complement
+ * indices roll forward by one shift and one or per base instead of re-encoding each k-mer.
+ * Windows containing 'N' are skipped in the same pass.
+ */
+public class RollingKmerCounter {
+
+  /** 2-bit code of each base within the index; -1 for 'N'; -2 for bad bases. The bit-reversal of the {@link GenomicEncoder} code. */
+  private static final byte[] CODE = new byte[256];
+  static {
+    Arrays.fill(CODE, (byte)-2);
+    CODE['A'] = 0b00;
+    CODE['T'] = 0b11;
+    CODE['C'] = 0b10;
+    CODE['G'] = 0b01;
+    CODE['N'] = -1;
+  }
+
+  /** Length of k-mer. */
+  public final int K;
+  private final int shiftTop, mask;
+
+  public RollingKmerCounter(int k) {
+    Preconditions.checkArgument(k > 0 && k <= 15, "bad k ", k);
+    K = k;
+    shiftTop = 2 * (K - 1);
+    mask = (1 << 2 * K) - 1;
+  }
+
+  /**
+   * Increment counts at the index of every k-mer in buf[start,end) that contains no 'N',
+   * or at the index of its reverse complement if reverse is true.
+   * Like {@link CSVIngesterKmer}'s line parsing, the k-mer ending at the last base is not counted.
+   * Reads buf with absolute gets, so its position is unchanged.
+   * @return Number of k-mers counted.
+   */
+  public long count(ByteBuffer buf, int start, int end, boolean reverse, int[] counts) {
+    int fwd = 0, rc = 0, run = 0;
+    long num = 0;
+    for (int p = start; p < end - 1; p++) {
+      int c = CODE[buf.get(p) & 0xFF];
+      if (c < 0) {
+        if (c == -1) {
+          run = 0;
+          continue;
+        }
+        throw new IllegalArgumentException("bad base: " + (char) (buf.get(p) & 0xFF));
+      }
+      fwd = fwd >>> 2 | c << shiftTop;
+      rc = (rc << 2 | 3 - c) & mask;
+      if (++run >= K) {
+        counts[reverse ? rc : fwd]++;
+        num++;
+      }
+    }
+    return num;
+  }
+
+}
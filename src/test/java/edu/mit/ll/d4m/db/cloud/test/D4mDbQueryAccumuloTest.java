@@ -0,0 +1,133 @@
+package edu.mit.ll.d4m.db.cloud.test;
+
+import edu.mit.ll.d4m.db.cloud.D4mException;
+import edu.mit.ll.d4m.db.cloud.accumulo.D4mDbQueryAccumulo;
+import edu.mit.ll.graphulo.util.AccumuloTestBase;
+import edu.mit.ll.graphulo.util.TestUtil;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tests the column selection of {@link D4mDbQueryAccumulo#searchByRowAndColumn} at the tablet server
+ * against the results of the client-side column matching it replaced.
+ * Uses the table of {@link D4mDbQuerySearchRowAndColTest}.
+ */
+public class D4mDbQueryAccumuloTest extends AccumuloTestBase {
+
+	private static final String ROWS = "a,a,a,a,a,a,aa,aa,aaa,aaa,b,b,bb,bb,bbb,bbb,";
+	private static final String COLS = "a,aa,aaa,b,bb,bbb,a,aa,a,aaa,a,b,a,bb,a,bbb,";
+
+	private String table;
+
+	private void createTable() {
+		Connector conn = tester.getConnector();
+		table = getUniqueNames(1)[0];
+		String[] rows = ROWS.split(","), cols = COLS.split(",");
+		Map<Key,Value> input = new HashMap<>();
+		for (int i = 0; i < rows.length; i++)
+			input.put(new Key(rows[i], "", cols[i]), new Value((rows[i]+"-"+cols[i]).getBytes(StandardCharsets.UTF_8)));
+		TestUtil.createTestTable(conn, table, null, input);
+	}
+
+	private D4mDbQueryAccumulo newQuery() {
+		Connector conn = tester.getConnector();
+		return new D4mDbQueryAccumulo(conn.getInstance().getInstanceName(), conn.getInstance().getZooKeepers(), table,
+				tester.getUsername(), new String(tester.getPassword().getPassword(), StandardCharsets.UTF_8));
+	}
+
+	/** Results as "row col" strings in the order returned, after checking each value. */
+	private static List<String> results(D4mDbQueryAccumulo d4m) {
+		List<String> list = new ArrayList<>();
+		if (d4m.getRowReturnString().isEmpty())
+			return list;
+		String[] r = d4m.getRowReturnString().split(D4mDbQueryAccumulo.NEWLINE),
+				c = d4m.getColumnReturnString().split(D4mDbQueryAccumulo.NEWLINE),
+				v = d4m.getValueReturnString().split(D4mDbQueryAccumulo.NEWLINE);
+		Assert.assertEquals(r.length, c.length);
+		Assert.assertEquals(r.length, v.length);
+		for (int i = 0; i < r.length; i++) {
+			Assert.assertEquals(r[i]+"-"+c[i], v[i]);
+			list.add(r[i]+" "+c[i]);
+		}
+		return list;
+	}
+
+	private List<String> query(String rows, String cols) throws D4mException {
+		D4mDbQueryAccumulo d4m = newQuery();
+		try {
+			d4m.doMatlabQuery(rows, cols, "", "");
+			return results(d4m);
+		} finally {
+			d4m.close();
+		}
+	}
+
+	private static void assertUnordered(List<String> actual, String... expect) {
+		Assert.assertEquals(new TreeSet<>(Arrays.asList(expect)), new TreeSet<>(actual));
+		Assert.assertEquals("duplicate results: "+actual, expect.length, actual.size());
+	}
+
+	@Test
+	public void testColumnQueries() throws Exception {
+		createTable();
+		// column list
+		assertUnordered(query("a,:,b,", "a,bb,"),
+				"a a", "a bb", "aa a", "aaa a", "b a");
+		// column range, inclusive
+		assertUnordered(query("a,:,b,", "aa,:,b,"),
+				"a aa", "a aaa", "a b", "aa aa", "aaa aaa", "b b");
+		// pattern
+		assertUnordered(query("a,:,bbb,", "b*,"),
+				"a b", "a bb", "a bbb", "b b", "bb bb", "bbb bbb");
+		// column and pattern
+		assertUnordered(query("a,bb,", "aa,b*,"),
+				"a aa", "a b", "a bb", "a bbb", "bb bb");
+		// range with a pattern: the RegExpUtil.makeRegex match of the old client-side filter
+		assertUnordered(query("a,:,b,", "a*,:,b,"),
+				"a a", "a aa", "a aaa", "a b", "aa a", "aa aa", "aaa a", "aaa aaa", "b a", "b b");
+	}
+
+	@Test
+	public void testAllColumns() throws Exception {
+		createTable();
+		String[] expect = {"b a", "b b", "bb a", "bb bb"};
+		// empty column query
+		assertUnordered(query("b,bb,", ""), expect);
+
+		// ":" is routed to the row query by doMatlabQuery; check that searchByRowAndColumn also selects every column
+		D4mDbQueryAccumulo d4m = newQuery();
+		try {
+			d4m.searchByRowAndColumn("b,bb,", ":", "", "");
+			assertUnordered(results(d4m), expect);
+		} finally {
+			d4m.close();
+		}
+	}
+
+	@Test
+	public void testRowRanges() throws Exception {
+		createTable();
+		// several rows and ranges in one BatchScan
+		assertUnordered(query("a,:,aa,bb,:,bbb,", "a,"),
+				"a a", "aa a", "bb a", "bbb a");
+		assertUnordered(query("aa,b,bbb,", "a,aa,"),
+				"aa a", "aa aa", "b a", "bbb a");
+
+		// one range uses a Scanner: entries return in row order
+		Assert.assertEquals(Arrays.asList("a a", "aa a", "aaa a", "b a", "bb a", "bbb a"),
+				query("a,:,bbb,", "a,"));
+		Assert.assertEquals(Arrays.asList("a a", "a aa", "a aaa"),
+				query("a,", "a*,"));
+	}
+}
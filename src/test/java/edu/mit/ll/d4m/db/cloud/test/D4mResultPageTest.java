@@ -0,0 +1,64 @@
+package edu.mit.ll.d4m.db.cloud.test;
+
+import edu.mit.ll.d4m.db.cloud.D4mResultPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the binary triple format of {@link D4mResultPage}.
+ */
+public class D4mResultPageTest {
+
+	private static List<String> decode(byte[] bytes) {
+		final List<String> out = new ArrayList<>();
+		int n = D4mResultPage.decode(bytes, new D4mResultPage.TripleSink() {
+			@Override
+			public void triple(String row, String column, String value) {
+				out.add(row+"|"+column+"|"+value);
+			}
+		});
+		Assert.assertEquals(out.size(), n);
+		return out;
+	}
+
+	@Test
+	public void testRoundTrip() {
+		D4mResultPage page = new D4mResultPage(500);
+		List<String> expect = new ArrayList<>();
+		int rawBytes = 0;
+		for(int i = 0; i < 500; i++) {
+			String row = "row"+(i/10), col = "col\u00e9"+(i%7), val = Integer.toString(i*i);
+			expect.add(row+"|"+col+"|"+val);
+			rawBytes += (row+col+val).getBytes(StandardCharsets.UTF_8).length + 3;
+			boolean full = page.add(row, col, val);
+			Assert.assertEquals(i == 499, full);
+		}
+		byte[] bytes = page.toByteArray();
+		Assert.assertEquals(page.getEncodedLength(), bytes.length);
+		Assert.assertTrue("dictionary should shrink repeated labels", bytes.length < rawBytes/2);
+		Assert.assertEquals(expect, decode(bytes));
+
+		// reuse after clear
+		page.clear();
+		Assert.assertEquals(0, page.getNumEntries());
+		page.add("", "c", "");
+		page.add("r", "", "v");
+		page.add("c", "r", "v2");
+		List<String> two = decode(page.toByteArray());
+		Assert.assertEquals("|c|", two.get(0));
+		Assert.assertEquals("r||v", two.get(1));
+		Assert.assertEquals("c|r|v2", two.get(2));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFull() {
+		D4mResultPage page = new D4mResultPage(1);
+		page.add("a", "b", "1");
+		page.add("a", "b", "2");
+	}
+
+}
@@ -0,0 +1,83 @@
+package edu.mit.ll.d4m.db.cloud.test;
+
+import edu.mit.ll.d4m.db.cloud.util.D4mTokenizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link D4mTokenizer}.
+ */
+public class D4mTokenizerTest {
+
+	@Test
+	public void testTokens() {
+		D4mTokenizer t = new D4mTokenizer("b,a,,c\u00e9,");
+		Assert.assertEquals(4, t.size());
+		Assert.assertEquals("b", t.toString(0));
+		Assert.assertEquals("", t.toString(2));
+		Assert.assertEquals("c\u00e9", t.toString(3));
+		Assert.assertArrayEquals(new byte[] {'a'}, t.getBytes(1));
+		Assert.assertTrue(t.compare(0, t, 1) > 0);
+		Assert.assertTrue(t.compare(2, t, 1) < 0);
+		Assert.assertEquals(0, new D4mTokenizer("").size());
+
+		// multi-byte separator
+		D4mTokenizer u = new D4mTokenizer("x\u00a7yy\u00a7");
+		Assert.assertEquals(2, u.size());
+		Assert.assertEquals("yy", u.toString(1));
+		Assert.assertEquals(0, u.compare(0, "x".getBytes(), 0, 1));
+	}
+
+	@Test
+	public void testCompareCodePoints() {
+		// U+1F600 is a surrogate pair, which String.compareTo orders before U+FF21
+		String[] s = {"", "a", "ab", "\uff21", "\ud83d\ude00", "a\ud83d\ude00", "a\uff21"};
+		Assert.assertTrue("\ud83d\ude00".compareTo("\uff21") < 0);
+		StringBuilder sb = new StringBuilder();
+		for(String x : s)
+			sb.append(x).append(',');
+		D4mTokenizer t = new D4mTokenizer(sb.toString());
+		for(int i = 0; i < s.length; i++)
+			for(int j = 0; j < s.length; j++)
+				Assert.assertEquals(s[i]+" vs "+s[j], Integer.signum(t.compare(i, t, j)), D4mTokenizer.compareCodePoints(s[i], s[j]));
+	}
+
+	@Test
+	public void testSortedIndex() {
+		Random rand = new Random(5);
+		int n = 1000;
+		StringBuilder rows = new StringBuilder(), cols = new StringBuilder();
+		final String[] r = new String[n], c = new String[n];
+		for(int i = 0; i < n; i++) {
+			r[i] = "r"+rand.nextInt(50);
+			c[i] = "c"+rand.nextInt(5);
+			rows.append(r[i]).append('\n');
+			cols.append(c[i]).append('\n');
+		}
+		D4mTokenizer rt = new D4mTokenizer(rows.toString()), ct = new D4mTokenizer(cols.toString());
+
+		int[] byRow = rt.sortedIndex(null);
+		for(int k = 1; k < n; k++) {
+			int cmp = r[byRow[k-1]].compareTo(r[byRow[k]]);
+			Assert.assertTrue(cmp < 0 || cmp == 0 && byRow[k-1] < byRow[k]); // stable
+		}
+
+		int[] byRowCol = rt.sortedIndex(ct);
+		for(int k = 1; k < n; k++) {
+			int cmp = r[byRowCol[k-1]].compareTo(r[byRowCol[k]]);
+			if(cmp == 0)
+				cmp = c[byRowCol[k-1]].compareTo(c[byRowCol[k]]);
+			Assert.assertTrue(cmp < 0 || cmp == 0 && byRowCol[k-1] < byRowCol[k]);
+		}
+
+		int[] sorted = rt.sortedIndex(null);
+		int[] copy = Arrays.copyOf(sorted, n);
+		Arrays.sort(copy);
+		for(int k = 0; k < n; k++)
+			Assert.assertEquals(k, copy[k]);
+	}
+
+}
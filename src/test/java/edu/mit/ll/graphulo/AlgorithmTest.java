@@ -40,7 +40,7 @@ import static edu.mit.ll.graphulo.util.GraphuloUtil.EMPTY_BYTES;
 public class AlgorithmTest extends AccumuloTestBase {
   private static final Logger log = LogManager.getLogger(AlgorithmTest.class);
 
-  private enum KTrussAdjAlg { Normal, Fused, Client_Sparse, Client_Dense, Smart }
+  private enum KTrussAdjAlg { Normal, Fused, Client_Sparse, Client_Dense, Smart, Incremental }
 
   @Test
   public void testkTrussAdj_Normal() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
@@ -67,6 +67,11 @@ public class AlgorithmTest extends AccumuloTestBase {
     testkTrussAdj_Inner(KTrussAdjAlg.Smart);
   }
 
+  @Test
+  public void testkTrussAdj_Incremental() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+    testkTrussAdj_Inner(KTrussAdjAlg.Incremental);
+  }
+
 
   private void testkTrussAdj_Inner(KTrussAdjAlg alg) throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
     final Connector conn = tester.getConnector();
@@ -113,6 +118,9 @@ public class AlgorithmTest extends AccumuloTestBase {
         case Smart:
           nnzkTruss = graphulo.kTrussAdj_Smart(tA, tR, 3, null, true, Authorizations.EMPTY, "", Integer.MAX_VALUE, null);
           break;
+        case Incremental:
+          nnzkTruss = graphulo.kTrussAdj_Incremental(tA, tR, 3, null, true, Authorizations.EMPTY, Integer.MAX_VALUE);
+          break;
         default: throw new AssertionError();
       }
       log.info("3-Truss has " + nnzkTruss + " nnz");
@@ -123,7 +131,7 @@ public class AlgorithmTest extends AccumuloTestBase {
         actual.put(entry.getKey(), entry.getValue());
       }
       scanner.close();
-      if (alg == KTrussAdjAlg.Normal)
+      if (alg == KTrussAdjAlg.Normal || alg == KTrussAdjAlg.Incremental)
         Assert.assertEquals(10, nnzkTruss);
       Assert.assertEquals(expect, actual);
     }
@@ -157,6 +165,9 @@ public class AlgorithmTest extends AccumuloTestBase {
         case Smart:
           nnzkTruss = graphulo.kTrussAdj_Smart(tA, tR, 4, null, true, Authorizations.EMPTY, "", Integer.MAX_VALUE, null);
           break;
+        case Incremental:
+          nnzkTruss = graphulo.kTrussAdj_Incremental(tA, tR, 4, null, true, Authorizations.EMPTY, Integer.MAX_VALUE);
+          break;
         default: throw new AssertionError();
       }
       log.info("4-Truss has " + nnzkTruss + " nnz");
@@ -167,7 +178,7 @@ public class AlgorithmTest extends AccumuloTestBase {
         actual.put(entry.getKey(), entry.getValue());
       }
       scanner.close();
-      if (alg == KTrussAdjAlg.Normal)
+      if (alg == KTrussAdjAlg.Normal || alg == KTrussAdjAlg.Incremental)
         Assert.assertEquals(12, nnzkTruss);
       Assert.assertEquals(expect, actual);
     }
@@ -194,6 +205,9 @@ public class AlgorithmTest extends AccumuloTestBase {
         case Smart:
           nnzkTruss = graphulo.kTrussAdj_Smart(tA, tR, 4, null, true, Authorizations.EMPTY, "", Integer.MAX_VALUE, null);
           break;
+        case Incremental:
+          nnzkTruss = graphulo.kTrussAdj_Incremental(tA, tR, 4, filterRowCol, true, Authorizations.EMPTY, Integer.MAX_VALUE);
+          break;
         default: throw new AssertionError();
       }
       log.info("4-Truss has " + nnzkTruss + " nnz");
@@ -204,7 +218,7 @@ public class AlgorithmTest extends AccumuloTestBase {
         actual.put(entry.getKey(), entry.getValue());
       }
       scanner.close();
-      if (alg == KTrussAdjAlg.Normal)
+      if (alg == KTrussAdjAlg.Normal || alg == KTrussAdjAlg.Incremental)
         Assert.assertEquals(12, nnzkTruss);
       Assert.assertEquals(expect, actual);
 
@@ -216,7 +230,7 @@ public class AlgorithmTest extends AccumuloTestBase {
         actual.put(entry.getKey(), entry.getValue());
       }
       scanner.close();
-      if (alg == KTrussAdjAlg.Normal)
+      if (alg == KTrussAdjAlg.Normal || alg == KTrussAdjAlg.Incremental)
         Assert.assertEquals(12, nnzkTruss);
       Assert.assertEquals(expect, actual);
     }
@@ -203,6 +203,81 @@ public class BFSTest extends AccumuloTestBase {
     conn.tableOperations().delete(tRT);
   }
 
+  /**
+   * Each node is expanded once, at its shortest distance from v0.
+   *    ->vBig<-
+   *   /   ^    \
+   *  v    v     v
+   * v0--->v1--->v2--v
+   *  ^--<------<----/
+   */
+  @Test
+  public void testAdjBFSFused() throws TableExistsException, AccumuloSecurityException, AccumuloException, TableNotFoundException, IOException {
+    Connector conn = tester.getConnector();
+    final String tA, tADeg, tR, tRT;
+    {
+      String[] names = getUniqueNames(4);
+      tA = names[0];
+      tADeg = names[1];
+      tR = names[2];
+      tRT = names[3];
+    }
+    Map<Key,Value> expect = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ),
+        actual = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ);
+
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("v0", "", "v1"), new Value("5".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1", "", "v2"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2", "", "v0"), new Value("4".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v0", "", "vBig"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1", "", "vBig"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2", "", "vBig"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      expect.putAll(input); // v0, v1, v2 each expanded once
+      input.put(new Key("vBig", "", "v0"), new Value("9".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig", "", "v1"), new Value("9".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig", "", "v2"), new Value("9".getBytes(StandardCharsets.UTF_8)));
+      SortedSet<Text> splits = new TreeSet<>();
+      splits.add(new Text("v15"));
+      TestUtil.createTestTable(conn, tA, splits, input);
+    }
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("v0", "", "2"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1", "", "2"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2", "", "2"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig", "", "3"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      SortedSet<Text> splits = new TreeSet<>();
+      splits.add(new Text("v15"));
+      TestUtil.createTestTable(conn, tADeg, splits, input);
+    }
+
+    String v0 = "v0,";
+    Graphulo graphulo = new Graphulo(conn, tester.getPassword());
+    String u2actual = graphulo.AdjBFS_Fused(tA, v0, 2, null, null, -1, tADeg, "", true, 1, 2, null,
+        null, null, false, null);
+    Assert.assertEquals(GraphuloUtil.d4mRowToTexts("v2,"), GraphuloUtil.d4mRowToTexts(u2actual));
+
+    MutableLong numEntriesWritten = new MutableLong();
+    String u3actual = graphulo.AdjBFS_Fused(tA, v0, 3, tR, tRT, -1, tADeg, "", true, 1, 2, Graphulo.PLUS_ITERATOR_BIGDECIMAL,
+        null, null, true, numEntriesWritten);
+    Assert.assertEquals(GraphuloUtil.d4mRowToTexts("v1,v2,vBig,"), GraphuloUtil.d4mRowToTexts(u3actual));
+    Assert.assertEquals(6l, numEntriesWritten.longValue());
+
+    BatchScanner scanner = conn.createBatchScanner(tR, Authorizations.EMPTY, 2);
+    scanner.setRanges(Collections.singleton(new Range()));
+    for (Map.Entry<Key, Value> entry : scanner) {
+      actual.put(entry.getKey(), entry.getValue());
+    }
+    scanner.close();
+    Assert.assertEquals(expect, actual);
+
+    conn.tableOperations().delete(tA);
+    conn.tableOperations().delete(tADeg);
+    conn.tableOperations().delete(tR);
+    conn.tableOperations().delete(tRT);
+  }
+
   /**
    * Send to client instead of a new table.
    *    ->vBig<-
@@ -1222,6 +1297,103 @@ public class BFSTest extends AccumuloTestBase {
 
 
 
+  @Test
+  public void testSingleBFSSkipVisited() throws TableExistsException, AccumuloSecurityException, AccumuloException, TableNotFoundException, IOException {
+    Connector conn = tester.getConnector();
+    final String tS, tR;
+    {
+      String[] names = getUniqueNames(2);
+      tS = names[0];
+      tR = names[1];
+    }
+    Map<Key, Value> expect = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ),
+        actual = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ);
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("v0|v1", "", "edge"), new Value("5".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1|v0", "", "edge"), new Value("5".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1|v2", "", "edge"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2|v1", "", "edge"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v0|vBig", "", "edge"), new Value("6".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1|vBig", "", "edge"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2|vBig", "", "edge"), new Value("8".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v9|vBig", "", "edge"), new Value("9".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig|v0", "", "edge"), new Value("6".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig|v1", "", "edge"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig|v2", "", "edge"), new Value("8".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig|v9", "", "edge"), new Value("9".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v0", "", "deg"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1", "", "deg"), new Value("3".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2", "", "deg"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v9", "", "deg"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("vBig", "", "deg"), new Value("4".getBytes(StandardCharsets.UTF_8)));
+
+      SortedSet<Text> splits = new TreeSet<>();
+      splits.add(new Text("v15"));
+      TestUtil.createTestTable(conn, tS, splits, input);
+
+      // step 1 expands v0; step 2 expands v1 (vBig is filtered by degree); step 3 expands v2 and reaches only visited nodes
+      expect.put(new Key("v0|v1", "", "edge"), new Value("10".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v1|v0", "", "edge"), new Value("10".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v1|v2", "", "edge"), new Value("4".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v2|v1", "", "edge"), new Value("4".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v0|vBig", "", "edge"), new Value("6".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v1|vBig", "", "edge"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("v2|vBig", "", "edge"), new Value("8".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("vBig|v0", "", "edge"), new Value("6".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("vBig|v1", "", "edge"), new Value("7".getBytes(StandardCharsets.UTF_8)));
+      expect.put(new Key("vBig|v2", "", "edge"), new Value("8".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    IteratorSetting sumSetting = new IteratorSetting(6, SummingCombiner.class);
+    LongCombiner.setEncodingType(sumSetting, LongCombiner.Type.STRING);
+    Combiner.setColumns(sumSetting, Collections.singletonList(new IteratorSetting.Column("", "edge")));
+
+    MutableLong numEntriesWritten = new MutableLong();
+    Graphulo graphulo = new Graphulo(conn, tester.getPassword());
+    String u3actual = graphulo.SingleBFS(tS, "edge", '|', "v0,", 3, tR,
+        tS, "deg", false, false, null, null, 1, 3, sumSetting, true, Authorizations.EMPTY,
+        numEntriesWritten, true);
+    Assert.assertEquals(14l, numEntriesWritten.longValue());
+    Assert.assertEquals(GraphuloUtil.d4mRowToTexts("v1,v2,vBig,"), GraphuloUtil.d4mRowToTexts(u3actual));
+
+    BatchScanner scanner = conn.createBatchScanner(tR, Authorizations.EMPTY, 2);
+    scanner.setRanges(Collections.singleton(new Range()));
+    for (Map.Entry<Key, Value> entry : scanner) {
+      actual.put(entry.getKey(), entry.getValue());
+    }
+    scanner.close();
+    Assert.assertEquals(expect, actual);
+
+    conn.tableOperations().delete(tR);
+    u3actual = graphulo.SingleBFS(tS, "edge", '|', "v0,", 2, tR,
+        tS, "deg", false, false, null, null, 1, 3, sumSetting, false, Authorizations.EMPTY,
+        null, true);
+    Assert.assertEquals(GraphuloUtil.d4mRowToTexts("v2,"), GraphuloUtil.d4mRowToTexts(u3actual));
+
+    // directed cycle v0 -> v1 -> v2 -> v0: the edge back to v0 at step 3 is past the frontiers sent to the servers
+    conn.tableOperations().delete(tS);
+    conn.tableOperations().delete(tR);
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("v0|v1", "", "edge"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v1|v2", "", "edge"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("v2|v0", "", "edge"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+      TestUtil.createTestTable(conn, tS, null, input);
+    }
+    u3actual = graphulo.SingleBFS(tS, "edge", '|', "v0,", 3, tR,
+        null, "deg", false, false, null, null, 1, Integer.MAX_VALUE, sumSetting, false, Authorizations.EMPTY,
+        null, true);
+    Assert.assertTrue(GraphuloUtil.d4mRowToTexts(u3actual).isEmpty());
+    u3actual = graphulo.SingleBFS(tS, "edge", '|', "v0,", 3, tR,
+        null, "deg", false, false, null, null, 1, Integer.MAX_VALUE, sumSetting, true, Authorizations.EMPTY,
+        null, true);
+    Assert.assertEquals(GraphuloUtil.d4mRowToTexts("v1,v2,"), GraphuloUtil.d4mRowToTexts(u3actual));
+
+    conn.tableOperations().delete(tS);
+    conn.tableOperations().delete(tR);
+  }
+
   @Test
   public void testGenerateDegreeTable() throws TableExistsException, AccumuloSecurityException, AccumuloException, TableNotFoundException, IOException {
     Connector conn = tester.getConnector();
@@ -0,0 +1,253 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.skvi.BroadcastTable;
+import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+import edu.mit.ll.graphulo.skvi.TwoTableIterator;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link BroadcastTable}.
+ */
+public class BroadcastTableTest {
+
+  private static BroadcastTable makeTable() throws IOException {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < 100; r += 2) {
+      map.put(new Key(String.format("v%03d", r), "deg", ""), new Value(Integer.toString(r % 7).getBytes(StandardCharsets.UTF_8)));
+      if (r % 10 == 0)
+        map.put(new Key(String.format("v%03d", r), "label", ""), new Value("x".getBytes(StandardCharsets.UTF_8)));
+    }
+    map.put(new Key("w", "deg", ""), new Value("abc".getBytes(StandardCharsets.UTF_8)));
+    return BroadcastTable.copyOf(new SortedMapIterator(map));
+  }
+
+  @Test
+  public void testLookup() throws IOException {
+    BroadcastTable t = makeTable();
+    Assert.assertEquals(51, t.numRows());
+    Assert.assertEquals(61, t.size());
+    for (int r = 0; r < 100; r++) {
+      Text row = new Text(String.format("v%03d", r));
+      if (r % 2 == 0) {
+        Assert.assertEquals(r / 2, t.rowIndex(row));
+        Assert.assertEquals(r % 7, t.getDouble(row), 0);
+      } else {
+        Assert.assertEquals(-1, t.rowIndex(row));
+        Assert.assertTrue(Double.isNaN(t.getDouble(row)));
+      }
+    }
+    Assert.assertTrue(Double.isNaN(t.getDouble(new Text("w"))));
+    Assert.assertEquals(50, t.rowIndex(new Text("w")));
+  }
+
+  @Test
+  public void testIterator() throws IOException {
+    BroadcastTable t = makeTable();
+    BroadcastTable.Iter it = t.iterator();
+    it.seek(new Range("v010", "v020"), Collections.<ByteSequence>emptySet(), false);
+    int n = 0;
+    for (; it.hasTop(); it.next())
+      n++;
+    Assert.assertEquals(6 + 2, n);
+
+    // only the deg family
+    it.seek(new Range(), Collections.<ByteSequence>singleton(new ArrayByteSequence("deg")), true);
+    Assert.assertEquals("v000", it.getTopKey().getRow().toString());
+    Assert.assertTrue(it.skipToRow(new ArrayByteSequence("v041")));
+    Assert.assertEquals("v042", it.getTopKey().getRow().toString());
+    Assert.assertTrue(it.skipToRow(new ArrayByteSequence("v050")));
+    Assert.assertEquals(new Key("v050", "deg", ""), it.getTopKey());
+    it.next();
+    Assert.assertEquals("v052", it.getTopKey().getRow().toString());
+    // never moves backward
+    Assert.assertTrue(it.skipToRow(new ArrayByteSequence("v010")));
+    Assert.assertEquals("v052", it.getTopKey().getRow().toString());
+    Assert.assertFalse(it.skipToRow(new ArrayByteSequence("x")));
+
+    // stops at the end of the seek range
+    it.seek(new Range("v000", true, "v004", false), Collections.<ByteSequence>emptySet(), false);
+    Assert.assertFalse(it.skipToRow(new ArrayByteSequence("v004")));
+  }
+
+  /** Loads a copy of a map and counts loads. */
+  private static class MapLoader implements BroadcastTable.Loader {
+    final SortedMap<Key,Value> map;
+    int loads = 0;
+    MapLoader(SortedMap<Key,Value> map) {
+      this.map = map;
+    }
+    @Override
+    public BroadcastTable load() throws IOException {
+      loads++;
+      return BroadcastTable.copyOf(new SortedMapIterator(map));
+    }
+  }
+
+  private static SortedMap<Key,Value> makeMap(String prefix, int n) {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int i = 0; i < n; i++)
+      map.put(new Key(prefix + i, "", "c"), new Value("1".getBytes(StandardCharsets.UTF_8)));
+    return map;
+  }
+
+  @Test
+  public void testCache() throws IOException, InterruptedException {
+    MapLoader a = new MapLoader(makeMap("a", 100)), b = new MapLoader(makeMap("b", 100)), c = new MapLoader(makeMap("c", 100));
+    long bytesA = a.load().estimatedBytes();
+    a.loads = 0;
+    // room for two copies
+    BroadcastTable.Cache cache = new BroadcastTable.Cache(bytesA * 5 / 2, 60000, 60000);
+
+    BroadcastTable.Handle ha = cache.acquire("a", a), ha2 = cache.acquire("a", a);
+    Assert.assertEquals(1, a.loads);
+    Assert.assertSame(ha.get(), ha2.get());
+    Assert.assertEquals(2, cache.references("a"));
+    BroadcastTable.Handle hb = cache.acquire("b", b);
+    Assert.assertEquals(2, cache.size());
+
+    // a and b are referenced, so c goes over budget without evicting them
+    BroadcastTable.Handle hc = cache.acquire("c", c);
+    Assert.assertEquals(3, cache.size());
+    hc.release();
+    Assert.assertEquals(2, cache.size()); // c evicted at release: least recently used with no references
+    hb.release();
+    Assert.assertEquals(2, cache.size()); // within budget: b lingers
+    Assert.assertEquals(0, cache.references("b"));
+
+    // a release is idempotent, and a released handle acquires the copy again
+    ha.release();
+    ha.release();
+    Assert.assertEquals(1, cache.references("a"));
+    Assert.assertEquals(100, ha.get().size());
+    Assert.assertEquals(1, a.loads);
+    Assert.assertEquals(2, cache.references("a"));
+    ha.close();
+    ha2.close();
+
+    // over budget evicts the least recently used copy with no references: b, not the recently acquired a
+    cache.acquire("c", c).release();
+    Assert.assertEquals(2, cache.size());
+    cache.acquire("a", a).release();
+    Assert.assertEquals(1, a.loads);
+    cache.acquire("b", b).release();
+    Assert.assertEquals(2, b.loads);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertTrue(cache.getBytes() <= bytesA * 5 / 2);
+
+    // copies with no references expire after the linger time; a referenced copy is kept until it expires
+    BroadcastTable.Cache lingering = new BroadcastTable.Cache(Long.MAX_VALUE, 0, 50);
+    lingering.acquire("a", a).release();
+    BroadcastTable.Handle held = lingering.acquire("b", b);
+    Thread.sleep(5);
+    lingering.acquire("c", c).release();
+    Assert.assertEquals(0, lingering.references("a"));
+    Assert.assertEquals(1, lingering.references("b"));
+    Assert.assertEquals(2, lingering.size()); // a evicted; c just released
+    Thread.sleep(60);
+    lingering.acquire("a", a).release();
+    Assert.assertEquals(1, lingering.size()); // b expired although referenced
+    Assert.assertEquals(100, held.get().size()); // still usable after eviction
+  }
+
+  @Test
+  public void testCacheKey() {
+    Map<String,String> opts = new HashMap<>();
+    opts.put(RemoteSourceIterator.TABLENAME, "deg");
+    opts.put(RemoteSourceIterator.USERNAME, "alice");
+    opts.put(RemoteSourceIterator.PASSWORD, "secret");
+    Assert.assertNull(BroadcastTable.cacheKey(opts));
+    opts.put(BroadcastTable.SNAPSHOT, "s1");
+    String key = BroadcastTable.cacheKey(opts);
+    Assert.assertFalse(key, key.contains("secret"));
+
+    Map<String,String> other = new HashMap<>(opts);
+    other.put(RemoteSourceIterator.PASSWORD, "guess");
+    Assert.assertNotEquals(key, BroadcastTable.cacheKey(other));
+    other = new HashMap<>(opts);
+    other.put(RemoteSourceIterator.USERNAME, "bob");
+    Assert.assertNotEquals(key, BroadcastTable.cacheKey(other));
+    other = new HashMap<>(opts);
+    other.put(RemoteSourceIterator.AUTHORIZATIONS, "x");
+    Assert.assertNotEquals(key, BroadcastTable.cacheKey(other));
+  }
+
+  /**
+   * TwoTableIterator in ROW mode with AT read from a broadcast copy and B from its source.
+   * AT and B share only some rows, so TwoTableIterator skips through AT by hash lookup.
+   */
+  @Test
+  public void testTwoTableIterator() throws IOException {
+    SortedMap<Key,Value> mapAT = new TreeMap<>(), mapB = new TreeMap<>();
+    for (int r = 0; r < 40; r++) {
+      String row = String.format("r%02d", r);
+      if (r % 2 == 0)
+        for (int c = 0; c < 3; c++)
+          mapAT.put(new Key(row, "", "a" + c), new Value(Integer.toString(r + c).getBytes(StandardCharsets.UTF_8)));
+      if (r % 3 == 0)
+        for (int c = 0; c < 2; c++)
+          mapB.put(new Key(row, "", "b" + c), new Value(Integer.toString(c + 1).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    Map<String,String> opts = new HashMap<>();
+    opts.put("dotmode", TwoTableIterator.DOTMODE.ROW.name());
+    Map<String,String> optAT = new HashMap<>();
+    optAT.put(RemoteSourceIterator.TABLENAME, "AT");
+    optAT.put(RemoteSourceIterator.ZOOKEEPERHOST, "localhost:2181");
+    optAT.put(RemoteSourceIterator.INSTANCENAME, "instance");
+    optAT.put(RemoteSourceIterator.USERNAME, "root");
+    optAT.put(RemoteSourceIterator.PASSWORD, "secret");
+    optAT.put(BroadcastTable.SNAPSHOT, BroadcastTable.newSnapshot());
+    for (Map.Entry<String, String> entry : optAT.entrySet())
+      opts.put("AT." + entry.getKey(), entry.getValue());
+    // put the copy of AT in the cache, as if another tablet had loaded it
+    String cacheKey = BroadcastTable.cacheKey(optAT);
+    BroadcastTable.Handle pin = BroadcastTable.CACHE.acquire(cacheKey, new MapLoader(mapAT));
+
+    try {
+      TwoTableIterator tti = new TwoTableIterator();
+      tti.init(new SortedMapIterator(mapB), opts, null);
+      Assert.assertEquals(2, BroadcastTable.CACHE.references(cacheKey));
+      for (Range range : new Range[]{new Range(), new Range("r10", "r30")}) {
+        tti.seek(range, Collections.<ByteSequence>emptySet(), false);
+        Map<String,BigDecimal> actual = new TreeMap<>();
+        for (; tti.hasTop(); tti.next())
+          add(actual, tti.getTopKey().getRow() + "," + tti.getTopKey().getColumnQualifier(),
+              new BigDecimal(tti.getTopValue().toString()));
+        Map<String,BigDecimal> expect = new TreeMap<>();
+        for (Map.Entry<Key, Value> at : mapAT.entrySet())
+          for (Map.Entry<Key, Value> b : mapB.entrySet())
+            if (at.getKey().getRow().equals(b.getKey().getRow()) && range.contains(b.getKey()))
+              add(expect, at.getKey().getColumnQualifier() + "," + b.getKey().getColumnQualifier(),
+                  new BigDecimal(at.getValue().toString()).multiply(new BigDecimal(b.getValue().toString())));
+        Assert.assertEquals(expect, actual);
+        // released when done with the seek range
+        Assert.assertEquals(1, BroadcastTable.CACHE.references(cacheKey));
+      }
+    } finally {
+      pin.release();
+    }
+  }
+
+  private static void add(Map<String,BigDecimal> map, String key, BigDecimal val) {
+    BigDecimal old = map.get(key);
+    map.put(key, old == null ? val : old.add(val));
+  }
+
+}
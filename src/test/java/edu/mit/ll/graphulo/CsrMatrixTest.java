@@ -0,0 +1,184 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.util.CsrMatrix;
+import edu.mit.ll.graphulo.util.EntrySink;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests for {@link CsrMatrix}, checked against dense arithmetic.
+ */
+public class CsrMatrixTest {
+
+  private static String label(int i) {
+    return String.format("v%04d", i);
+  }
+
+  /** Random sparse matrix; fills dense with the same entries. */
+  private static CsrMatrix random(Random rand, int n, int m, double density, double[][] dense) {
+    CsrMatrix.Builder b = new CsrMatrix.Builder(false, 0);
+    // an entry in every row and column so that the indexes match the dense matrix
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < m; j++)
+        if (i % m == j || j % n == i || rand.nextDouble() < density) {
+          double v = rand.nextInt(5) + 1;
+          dense[i][j] = v;
+          b.add(label(i), label(j), v);
+        }
+    CsrMatrix A = b.build();
+    Assert.assertEquals(n, A.numRows());
+    Assert.assertEquals(m, A.numCols());
+    return A;
+  }
+
+  private static void assertEqualsDense(double[][] expect, CsrMatrix actual) {
+    for (int i = 0; i < expect.length; i++)
+      for (int j = 0; j < expect[i].length; j++)
+        Assert.assertEquals("(" + i + "," + j + ")", expect[i][j], actual.get(i, j), 1e-9);
+  }
+
+  private static double[][] mult(double[][] A, double[][] B) {
+    double[][] C = new double[A.length][B[0].length];
+    for (int i = 0; i < A.length; i++)
+      for (int k = 0; k < B.length; k++)
+        for (int j = 0; j < B[0].length; j++)
+          C[i][j] += A[i][k] * B[k][j];
+    return C;
+  }
+
+  @Test
+  public void testBuilder() {
+    CsrMatrix.Builder b = new CsrMatrix.Builder(true, 0);
+    b.add("b", "a", 2);
+    b.add("a", "c", 1);
+    b.add("b", "a", 3); // duplicate sums
+    b.add("d", "c", 0); // zero dropped with its labels
+    CsrMatrix A = b.build();
+    Assert.assertArrayEquals(new String[] {"a", "b", "c"}, b.getRowLabels());
+    Assert.assertSame(b.getRowLabels(), b.getColLabels());
+    Assert.assertEquals(2, A.nnz());
+    Assert.assertEquals(5, A.get(1, 0), 0);
+    Assert.assertEquals(1, A.get(0, 2), 0);
+    Assert.assertEquals(0, A.get(2, 2), 0);
+
+    CsrMatrix AT = A.transpose();
+    Assert.assertEquals(5, AT.get(0, 1), 0);
+    Assert.assertEquals(1, AT.get(2, 0), 0);
+  }
+
+  @Test
+  public void testSink() {
+    CsrMatrix.Builder b = new CsrMatrix.Builder(false, 0);
+    EntrySink sink = b.asSink(true);
+    sink.put(new Key("a", "", "b"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+    sink.put(new Key("a", "", "c"), new Value("1.5".getBytes(StandardCharsets.UTF_8)));
+    CsrMatrix A = b.build();
+    Assert.assertArrayEquals(new String[] {"b", "c"}, b.getRowLabels());
+    Assert.assertArrayEquals(new String[] {"a"}, b.getColLabels());
+    Assert.assertEquals(2, A.get(0, 0), 0);
+    Assert.assertEquals(1.5, A.get(1, 0), 0);
+  }
+
+  @Test
+  public void testMultiply() {
+    Random rand = new Random(7);
+    int n = 700, m = 300;
+    double[][] dA = new double[n][m], dB = new double[m][m];
+    CsrMatrix A = random(rand, n, m, 0.02, dA);
+    CsrMatrix.Builder bb = new CsrMatrix.Builder(false, 0);
+    for (int i = 0; i < m; i++)
+      for (int j = 0; j < m; j++)
+        if (i == j || rand.nextDouble() < 0.03) {
+          dB[i][j] = rand.nextInt(3) + 1;
+          bb.add(label(i), label(j), dB[i][j]);
+        }
+    CsrMatrix B = bb.build();
+    double[][] expect = mult(dA, dB);
+    for (int threads : new int[] {1, 4}) {
+      CsrMatrix C = A.multiply(B, threads);
+      assertEqualsDense(expect, C);
+      for (int i = 0; i < n; i++)
+        for (int p = C.rowStart(i) + 1; p < C.rowEnd(i); p++)
+          Assert.assertTrue(C.colAt(p - 1) < C.colAt(p));
+    }
+
+    // leftMultiplyDense: D * A where D is 3 x n
+    double[][] D = new double[3][n];
+    for (double[] row : D)
+      for (int i = 0; i < n; i++)
+        row[i] = rand.nextDouble();
+    double[][] R = A.leftMultiplyDense(D, 2), expectR = mult(D, dA);
+    for (int k = 0; k < 3; k++)
+      Assert.assertArrayEquals(expectR[k], R[k], 1e-9);
+  }
+
+  @Test
+  public void testMultiplyMaskedAndFilter() {
+    Random rand = new Random(11);
+    int n = 600;
+    double[][] dA = new double[n][n];
+    CsrMatrix A = random(rand, n, n, 0.02, dA);
+    double[][] full = mult(dA, dA);
+    CsrMatrix S = A.multiplyMasked(A, A, 4);
+    Assert.assertEquals(A.nnz(), S.nnz());
+    for (int i = 0; i < n; i++)
+      for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+        Assert.assertEquals(A.colAt(p), S.colAt(p));
+        Assert.assertEquals(full[i][A.colAt(p)], S.valueAt(p), 1e-9);
+      }
+
+    CsrMatrix F = A.filterWhere(S, new CsrMatrix.EntryFilter() {
+      @Override
+      public boolean keep(int row, int col, double value) {
+        return value >= 2;
+      }
+    });
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        Assert.assertEquals(dA[i][j] != 0 && full[i][j] >= 2 ? dA[i][j] : 0, F.get(i, j), 0);
+  }
+
+  @Test
+  public void testEWise() {
+    Random rand = new Random(3);
+    int n = 50;
+    double[][] dA = new double[n][n], dB = new double[n][n];
+    CsrMatrix A = random(rand, n, n, 0.2, dA), B = random(rand, n, n, 0.2, dB);
+    double[][] times = new double[n][n], plus = new double[n][n];
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++) {
+        times[i][j] = dA[i][j] * dB[i][j];
+        plus[i][j] = dA[i][j] + dB[i][j];
+      }
+    assertEqualsDense(times, A.ewiseIntersect(B, CsrMatrix.TIMES));
+    assertEqualsDense(plus, A.ewiseUnion(B, CsrMatrix.PLUS));
+  }
+
+  /** 3-truss of a triangle with a pendant edge is the triangle. */
+  @Test
+  public void testTrussStep() {
+    CsrMatrix.Builder b = new CsrMatrix.Builder(true, 0);
+    String[][] edges = {{"a", "b"}, {"b", "c"}, {"a", "c"}, {"c", "d"}};
+    for (String[] e : edges) {
+      b.add(e[0], e[1], 1);
+      b.add(e[1], e[0], 1);
+    }
+    CsrMatrix A = b.build();
+    CsrMatrix S = A.multiplyMasked(A, A, 2);
+    A = A.filterWhere(S, new CsrMatrix.EntryFilter() {
+      @Override
+      public boolean keep(int row, int col, double value) {
+        return value >= 1;
+      }
+    });
+    Assert.assertEquals(6, A.nnz());
+    Assert.assertEquals(0, A.get(2, 3), 0);
+    Assert.assertEquals(1, A.get(0, 1), 0);
+  }
+
+}
@@ -0,0 +1,138 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.util.ExecutionPlanner;
+import edu.mit.ll.graphulo.util.ExecutionPlanner.Plan;
+import edu.mit.ll.graphulo.util.ExecutionPlanner.Strategy;
+import edu.mit.ll.graphulo.util.TableStats;
+import org.apache.hadoop.io.WritableUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests for the cost model of {@link ExecutionPlanner}.
+ */
+public class ExecutionPlannerTest {
+
+  private static byte[] b(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Stats of a table with n rows of degree d, whose columns are the first d rows. */
+  private static TableStats uniform(int n, int d) {
+    TableStats stats = new TableStats();
+    for (int r = 0; r < n; r++) {
+      for (int c = 0; c < d; c++) {
+        byte[] cq = b("v" + (r + c) % n);
+        stats.addEntry(cq, 0, cq.length);
+      }
+      byte[] row = b("v" + r);
+      stats.addRow(row, 0, row.length, d);
+    }
+    return stats;
+  }
+
+  /** Stats of a star: one hub adjacent to n leaves. */
+  private static TableStats star(int n) {
+    TableStats stats = new TableStats();
+    byte[] hub = b("hub");
+    for (int i = 0; i < n; i++) {
+      byte[] leaf = b("v" + i);
+      stats.addEntry(leaf, 0, leaf.length);
+      stats.addEntry(hub, 0, hub.length);
+      stats.addRow(leaf, 0, leaf.length, 1);
+    }
+    stats.addRow(hub, 0, hub.length, n);
+    return stats;
+  }
+
+  @Test
+  public void testEstimates() {
+    TableStats ones = uniform(100, 1);
+    Assert.assertEquals(100, ExecutionPlanner.estimatePartialProducts(ones), 0.0);
+    Assert.assertEquals(1, ExecutionPlanner.estimateMaxDegree(ones));
+    Assert.assertEquals(0, ExecutionPlanner.estimateMaxDegree(new TableStats()));
+
+    Assert.assertTrue(ExecutionPlanner.estimateSkew(uniform(1000, 50)) < 2);
+    Assert.assertTrue(ExecutionPlanner.estimateSkew(star(4000)) > 100);
+  }
+
+  @Test
+  public void testSmallGoesToClient() {
+    ExecutionPlanner planner = new ExecutionPlanner(4, 1L << 30);
+    TableStats A = uniform(20, 4);
+    Assert.assertEquals(Strategy.CLIENT_DENSE, planner.planJaccard(A).getStrategy());
+    Assert.assertEquals(Strategy.CLIENT_SPARSE, planner.planNMF(A, 3).getStrategy());
+    Strategy kt = planner.planKTrussAdj(A).getStrategy();
+    Assert.assertTrue(kt == Strategy.CLIENT_DENSE || kt == Strategy.CLIENT_SPARSE);
+  }
+
+  @Test
+  public void testLargeGoesToServerOrSparse() {
+    TableStats A = uniform(5000, 50);
+    ExecutionPlanner small = new ExecutionPlanner(8, 4L << 20);
+    Plan plan = small.planJaccard(A);
+    Assert.assertEquals(Strategy.ONE_TABLE, plan.getStrategy());
+    Assert.assertTrue(plan.getClientBytes(Strategy.CLIENT_DENSE) > 4L << 20);
+    Assert.assertTrue(plan.toString().contains("too big"));
+    Assert.assertEquals(Strategy.TWO_TABLE, small.planKTrussAdj(A).getStrategy());
+    Assert.assertEquals(Strategy.TWO_TABLE, small.planNMF(A, 10).getStrategy());
+
+    // enough memory for sparse but not dense matrices
+    ExecutionPlanner big = new ExecutionPlanner(8, 1L << 30);
+    Assert.assertEquals(Strategy.CLIENT_SPARSE, big.planKTrussAdj(A).getStrategy());
+    Assert.assertEquals(Strategy.CLIENT_SPARSE, big.planNMF(A, 10).getStrategy());
+    Assert.assertEquals(Strategy.ONE_TABLE, big.planJaccard(A).getStrategy());
+  }
+
+  /** Stats with about 8e11 distinct rows and columns, all of degree 1. */
+  private static TableStats huge() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    WritableUtils.writeVLong(out, 0);
+    WritableUtils.writeVLong(out, 800000000000L);
+    byte[] registers = new byte[1 << 12];
+    Arrays.fill(registers, (byte) 28);
+    out.write(registers);
+    out.write(registers);
+    WritableUtils.writeVLong(out, 800000000000L);
+    for (int i = 1; i < 64; i++)
+      WritableUtils.writeVLong(out, 0);
+    out.close();
+    return TableStats.decode(baos.toByteArray());
+  }
+
+  @Test
+  public void testHugeDoesNotOverflow() throws IOException {
+    TableStats A = huge();
+    Assert.assertTrue(A.getDistinctRows() > 1000000000L);
+    ExecutionPlanner planner = new ExecutionPlanner(8, 1L << 30);
+    Plan plan = planner.planJaccard(A);
+    Assert.assertEquals(Long.MAX_VALUE, plan.getClientBytes(Strategy.CLIENT_DENSE));
+    Assert.assertEquals(Strategy.ONE_TABLE, plan.getStrategy());
+    plan = planner.planKTrussAdj(A);
+    Assert.assertEquals(Long.MAX_VALUE, plan.getClientBytes(Strategy.CLIENT_DENSE));
+    Assert.assertTrue(plan.getClientBytes(Strategy.CLIENT_SPARSE) > 1L << 30);
+    Assert.assertEquals(Strategy.TWO_TABLE, plan.getStrategy());
+    plan = planner.planNMF(A, Integer.MAX_VALUE);
+    Assert.assertEquals(Long.MAX_VALUE, plan.getClientBytes(Strategy.CLIENT_SPARSE));
+    Assert.assertEquals(Strategy.TWO_TABLE, plan.getStrategy());
+  }
+
+  @Test
+  public void testSkewLimitsParallelism() {
+    ExecutionPlanner one = new ExecutionPlanner(1, 0).setServerSetupCost(0),
+        many = new ExecutionPlanner(16, 0).setServerSetupCost(0);
+    TableStats uni = uniform(2000, 20), skew = star(4000);
+    double uniSpeedup = one.planJaccard(uni).getCost() / many.planJaccard(uni).getCost();
+    double skewSpeedup = one.planJaccard(skew).getCost() / many.planJaccard(skew).getCost();
+    Assert.assertTrue("uniform speedup " + uniSpeedup, uniSpeedup > 8);
+    Assert.assertTrue("skewed speedup " + skewSpeedup, skewSpeedup < 2);
+  }
+
+}
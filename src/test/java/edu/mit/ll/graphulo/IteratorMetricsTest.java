@@ -0,0 +1,92 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.reducer.GatherReducer;
+import edu.mit.ll.graphulo.skvi.IteratorMetrics;
+import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+import edu.mit.ll.graphulo.skvi.RemoteWriteIterator;
+import edu.mit.ll.graphulo.skvi.TwoTableIterator;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link IteratorMetrics} and their transport in {@link RemoteWriteIterator} monitoring entries.
+ */
+public class IteratorMetricsTest {
+
+  @Test
+  public void testCountAndMerge() throws InterruptedException {
+    final IteratorMetrics m = new IteratorMetrics();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++)
+            m.stop(IteratorMetrics.Phase.Write, m.start(IteratorMetrics.Phase.Write));
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads)
+      t.join();
+    Assert.assertEquals(4000, m.getCount(IteratorMetrics.Phase.Write));
+    Assert.assertEquals(0, m.getCount(IteratorMetrics.Phase.ATnext));
+    Assert.assertTrue(m.getEstimatedMillis(IteratorMetrics.Phase.Write) >= 0);
+
+    IteratorMetrics total = new IteratorMetrics();
+    total.merge(m);
+    total.merge(m);
+    Assert.assertEquals(8000, total.getCount(IteratorMetrics.Phase.Write));
+    m.reset();
+    Assert.assertTrue(m.isEmpty());
+
+    IteratorMetrics.NONE.start(IteratorMetrics.Phase.Write);
+    Assert.assertTrue(IteratorMetrics.NONE.isEmpty());
+  }
+
+  /** RemoteWriteIterator over a TwoTableIterator that multiplies a table element-wise with itself. */
+  @Test
+  public void testMonitoringEntries() throws IOException {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < 30; r++)
+      for (int c = 0; c < 3; c++)
+        map.put(new Key(String.format("r%02d", r), "", "c" + c), new Value("1".getBytes(StandardCharsets.UTF_8)));
+
+    TwoTableIterator tti = new TwoTableIterator();
+    tti.init(new SortedMapIterator(map),
+        Collections.singletonMap("dotmode", TwoTableIterator.DOTMODE.EWISE.name()), null);
+
+    Map<String,String> opts = RemoteWriteIterator.optionMap(null, null, null, null, -1, null, null, "",
+        null, GatherReducer.class, GatherReducer.reducerOptions(GatherReducer.KeyPart.ROW), -1, -1);
+    opts.put(RemoteSourceIterator.PASSWORD, "");
+    RemoteWriteIterator rwi = new RemoteWriteIterator();
+    rwi.init(tti, opts, null);
+    rwi.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+
+    IteratorMetrics metrics = new IteratorMetrics();
+    long cnt = 0;
+    while (rwi.hasTop()) {
+      cnt += RemoteWriteIterator.decodeValue(rwi.getTopValue(), null, metrics);
+      rwi.next();
+    }
+    Assert.assertEquals(map.size(), cnt);
+    // every entry of A and B is read at least once, and all but the last entry are followed by a next()
+    Assert.assertTrue(metrics.toString(), metrics.getCount(IteratorMetrics.Phase.ATnext) >= map.size());
+    Assert.assertTrue(metrics.toString(), metrics.getCount(IteratorMetrics.Phase.Bnext) >= map.size());
+    Assert.assertTrue(metrics.toString(), metrics.getCount(IteratorMetrics.Phase.Multiply) >= map.size() - 1);
+    Assert.assertEquals(metrics.toString(), 0, metrics.getCount(IteratorMetrics.Phase.Write));
+  }
+
+}
@@ -0,0 +1,83 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.rowmult.NmfErrorRowMultiply;
+import edu.mit.ll.graphulo.skvi.BroadcastTable;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link NmfErrorRowMultiply}, which computes the error of an NMF without writing W*H.
+ */
+public class NmfErrorRowMultiplyTest {
+
+  private static void put(SortedMap<Key,Value> map, String row, String col, double v) {
+    map.put(new Key(row, "", col), new Value(Double.toString(v).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static SortedMapIterator seeked(SortedMap<Key,Value> map) throws IOException {
+    SortedMapIterator it = new SortedMapIterator(map);
+    it.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    return it;
+  }
+
+  private static double err(Iterator<Map.Entry<Key,Value>> it, String row) {
+    Map.Entry<Key,Value> entry = it.next();
+    Assert.assertFalse(it.hasNext());
+    Assert.assertEquals(row, entry.getKey().getRow().toString());
+    return Double.parseDouble(new String(entry.getValue().get(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRowError() throws IOException {
+    final SortedMap<Key,Value> h = new TreeMap<>();
+    put(h, "t1", "a", 1);
+    put(h, "t1", "b", 2);
+    put(h, "t2", "b", 1);
+    put(h, "t2", "c", 3);
+    BroadcastTable.Handle hTable = new BroadcastTable.Cache(1 << 20, BroadcastTable.LINGER_MILLIS, BroadcastTable.EXPIRE_MILLIS)
+        .acquire("H", new BroadcastTable.Loader() {
+          @Override
+          public BroadcastTable load() throws IOException {
+            return BroadcastTable.copyOf(new SortedMapIterator(h));
+          }
+        });
+    NmfErrorRowMultiply op = new NmfErrorRowMultiply(hTable);
+    op.init(Collections.<String,String>emptyMap(), null);
+
+    SortedMap<Key,Value> w = new TreeMap<>(), a = new TreeMap<>();
+    put(w, "d1", "t1", 1);
+    put(w, "d1", "t2", 2);
+    put(w, "d3", "t1", 1);
+    put(a, "d1", "a", 1);
+    put(a, "d1", "b", 3);
+    put(a, "d1", "z", 2);
+    put(a, "d2", "a", 2);
+    SortedMapIterator wIt = seeked(w), aIt = seeked(a);
+
+    // W*H row d1 is a:1 b:4 c:6
+    Assert.assertEquals(0 + 1 + 36 + 4, err(op.multiplyRow(wIt, aIt), "d1"), 1e-9);
+    Assert.assertEquals("d3", wIt.getTopKey().getRow().toString());
+    Assert.assertEquals("d2", aIt.getTopKey().getRow().toString());
+    // row only in A
+    Assert.assertEquals(4, err(op.multiplyRow(null, aIt), "d2"), 1e-9);
+    Assert.assertFalse(aIt.hasTop());
+    // row only in W, after releasing H
+    op.close();
+    Assert.assertEquals(1 + 4, err(op.multiplyRow(wIt, null), "d3"), 1e-9);
+    Assert.assertFalse(wIt.hasTop());
+  }
+
+}
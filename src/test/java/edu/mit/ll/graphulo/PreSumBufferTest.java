@@ -0,0 +1,112 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.simplemult.KeyTwoScalar;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.util.PreSumBuffer;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link PreSumBuffer}.
+ */
+public class PreSumBufferTest {
+
+  /** Sums the values of entries reaching the sink, ignoring timestamps. */
+  private static class SummingSink implements PreSumBuffer.Sink {
+    final SortedMap<Key,Long> sums = new TreeMap<>();
+    int count = 0;
+
+    @Override
+    public void write(Key k, Value v) {
+      count++;
+      Key kNoTs = new Key(k);
+      kNoTs.setTimestamp(0);
+      Long prev = sums.get(kNoTs);
+      long l = Long.parseLong(new String(v.get(), StandardCharsets.UTF_8));
+      sums.put(kNoTs, prev == null ? l : prev + l);
+    }
+  }
+
+  private static void checkSums(KeyTwoScalar combiner, long maxBytes, PreSumBuffer.FlushPolicy policy) {
+    Random rand = new Random(20);
+    SortedMap<Key,Long> expect = new TreeMap<>();
+    SummingSink sink = new SummingSink();
+    PreSumBuffer buf = new PreSumBuffer(combiner, maxBytes, 4, policy, sink);
+    int n = 2000;
+    for (int i = 0; i < n; i++) {
+      Key k = new Key("r" + rand.nextInt(20), "", "c" + rand.nextInt(10), "", i);
+      long l = rand.nextInt(100);
+      buf.add(k, new Value(Long.toString(l).getBytes(StandardCharsets.UTF_8)));
+      Key kNoTs = new Key(k);
+      kNoTs.setTimestamp(0);
+      Long prev = expect.get(kNoTs);
+      expect.put(kNoTs, prev == null ? l : prev + l);
+      Assert.assertTrue(buf.getBytes() <= maxBytes);
+    }
+    buf.flushAll();
+    Assert.assertTrue(buf.isEmpty());
+    Assert.assertEquals(n, buf.getNumIn());
+    Assert.assertEquals(sink.count, buf.getNumOut());
+    if (maxBytes > 1)
+      Assert.assertTrue(sink.count < n);
+    for (Map.Entry<Key, Long> entry : expect.entrySet())
+      if (entry.getValue() == 0) // zero sums may be dropped
+        if (!sink.sums.containsKey(entry.getKey()))
+          sink.sums.put(entry.getKey(), 0L);
+    Assert.assertEquals(expect, sink.sums);
+  }
+
+  @Test
+  public void testSums() throws IOException {
+    IteratorSetting itset = MathTwoScalar.combinerSetting(6, null, MathTwoScalar.ScalarOp.PLUS, MathTwoScalar.ScalarType.LONG, false);
+    for (PreSumBuffer.FlushPolicy policy : PreSumBuffer.FlushPolicy.values())
+      for (long maxBytes : new long[]{Long.MAX_VALUE, 4000, 1})
+        checkSums(PreSumBuffer.createCombiner(itset.getIteratorClass(), itset.getOptions()), maxBytes, policy);
+  }
+
+  @Test
+  public void testGenericCombiner() throws IOException {
+    IteratorSetting itset = new IteratorSetting(6, SummingCombiner.class);
+    LongCombiner.setEncodingType(itset, LongCombiner.Type.STRING);
+    checkSums(PreSumBuffer.createCombiner(itset.getIteratorClass(), itset.getOptions()), 4000, PreSumBuffer.FlushPolicy.COLDEST);
+  }
+
+  @Test
+  public void testSortedAndKeepsFirstTimestamp() throws IOException {
+    IteratorSetting itset = MathTwoScalar.combinerSetting(6, null, MathTwoScalar.ScalarOp.PLUS, MathTwoScalar.ScalarType.LONG, false);
+    final SortedMap<Key,Value> out = new TreeMap<>();
+    final Key[] last = new Key[1];
+    PreSumBuffer buf = new PreSumBuffer(PreSumBuffer.createCombiner(itset.getIteratorClass(), itset.getOptions()),
+        Long.MAX_VALUE, 1, PreSumBuffer.FlushPolicy.LARGEST, new PreSumBuffer.Sink() {
+      @Override
+      public void write(Key k, Value v) {
+        Assert.assertTrue(last[0] == null || last[0].compareTo(k) < 0);
+        last[0] = k;
+        out.put(k, v);
+      }
+    });
+    buf.add(new Key("b", "", "x", "vis", 5), new Value("2".getBytes(StandardCharsets.UTF_8)));
+    buf.add(new Key("a", "", "y", 3), new Value("1".getBytes(StandardCharsets.UTF_8)));
+    buf.add(new Key("b", "", "x", "vis", 9), new Value("4".getBytes(StandardCharsets.UTF_8)));
+    buf.add(new Key("ab", "", "x", 1), new Value("7".getBytes(StandardCharsets.UTF_8)));
+    buf.flushAll();
+    SortedMap<Key,Value> expect = new TreeMap<>();
+    expect.put(new Key("a", "", "y", 3), new Value("1".getBytes(StandardCharsets.UTF_8)));
+    expect.put(new Key("ab", "", "x", 1), new Value("7".getBytes(StandardCharsets.UTF_8)));
+    expect.put(new Key("b", "", "x", "vis", 5), new Value("6".getBytes(StandardCharsets.UTF_8)));
+    Assert.assertEquals(expect, out);
+  }
+
+}
@@ -0,0 +1,98 @@
+package edu.mit.ll.graphulo;
+
+import com.google.common.collect.Iterators;
+import edu.mit.ll.graphulo.util.PrefetchIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link PrefetchIterator}.
+ */
+public class PrefetchIteratorTest {
+
+  private static List<Integer> range(int n) {
+    List<Integer> list = new ArrayList<>(n);
+    for (int i = 0; i < n; i++)
+      list.add(i);
+    return list;
+  }
+
+  @Test
+  public void testOrder() {
+    for (int n : new int[] {0, 1, 7, 1000})
+      for (int depth : new int[] {1, 3})
+        for (int batchSize : new int[] {1, 4, 5000}) {
+          PrefetchIterator<Integer> it = new PrefetchIterator<>(range(n).iterator(), depth, batchSize);
+          List<Integer> actual = new ArrayList<>(n);
+          Iterators.addAll(actual, it);
+          Assert.assertEquals(range(n), actual);
+          Assert.assertFalse(it.hasNext());
+          Assert.assertNull(it.peek());
+          it.close();
+        }
+  }
+
+  @Test
+  public void testException() {
+    Iterator<Integer> bad = Iterators.concat(range(10).iterator(), new Iterator<Integer>() {
+      @Override
+      public boolean hasNext() {
+        throw new IllegalStateException("remote failure");
+      }
+      @Override
+      public Integer next() {
+        throw new AssertionError();
+      }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+    PrefetchIterator<Integer> it = new PrefetchIterator<>(bad, 2, 3);
+    for (int i = 0; i < 10; i++)
+      Assert.assertEquals(i, it.next().intValue());
+    try {
+      it.hasNext();
+      Assert.fail("expected the source's exception");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("remote failure", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseStopsFetcher() {
+    final AtomicInteger count = new AtomicInteger();
+    final AtomicBoolean closed = new AtomicBoolean();
+    Iterator<Integer> infinite = new Iterator<Integer>() {
+      @Override
+      public boolean hasNext() {
+        Assert.assertFalse("source used after close", closed.get());
+        return true;
+      }
+      @Override
+      public Integer next() {
+        return count.getAndIncrement();
+      }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+    PrefetchIterator<Integer> it = new PrefetchIterator<>(infinite, 2, 10);
+    Assert.assertEquals(0, it.next().intValue());
+    Assert.assertEquals(1, it.peek().intValue());
+    it.close();
+    closed.set(true);
+    // the queue bounds how far ahead the fetcher reads
+    Assert.assertTrue(count.get() <= 10 * (2 + 2));
+    Assert.assertFalse(it.hasNext());
+    it.close();
+  }
+
+}
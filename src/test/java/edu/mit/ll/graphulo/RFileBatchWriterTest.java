@@ -0,0 +1,111 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.util.RFileBatchWriter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.rfile.RFile;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link RFileBatchWriter}.
+ */
+public class RFileBatchWriterTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static Mutation mut(String row, String cq, String val) {
+    Mutation m = new Mutation(row);
+    m.put("", cq, val);
+    return m;
+  }
+
+  private static List<Map.Entry<Key,Value>> readAll(FileSystem fs, FileStatus[] files) throws Exception {
+    List<String> paths = new ArrayList<>();
+    for (FileStatus f : files)
+      paths.add(f.getPath().toString());
+    List<Map.Entry<Key,Value>> list = new ArrayList<>();
+    Scanner scanner = RFile.newScanner().from(paths.toArray(new String[paths.size()])).withFileSystem(fs).build();
+    try {
+      for (Map.Entry<Key, Value> entry : scanner)
+        list.add(entry);
+    } finally {
+      scanner.close();
+    }
+    return list;
+  }
+
+  @Test
+  public void testPartitionAndFlush() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Path base = new Path(tempFolder.getRoot().getAbsolutePath());
+    Path out = new Path(base, "out"), work = new Path(base, "work");
+    RFileBatchWriter w = new RFileBatchWriter(fs, out, work, Arrays.asList(new Text("c"), new Text("m")), -1);
+
+    w.addMutation(mut("z", "q", "1"));
+    w.addMutation(mut("a", "q", "2"));
+    w.addMutation(mut("c", "q", "3")); // end row of the first tablet
+    w.addMutation(mut("d", "q", "4"));
+    w.addMutation(mut("a", "q", "5")); // duplicate key
+    Assert.assertEquals(5, w.getNumBuffered());
+    Assert.assertFalse(fs.exists(out));
+
+    w.flush();
+    Assert.assertEquals(0, w.getNumBuffered());
+    FileStatus[] files = fs.listStatus(out);
+    Assert.assertEquals(3, files.length); // (-inf,c] (c,m] (m,+inf)
+    for (FileStatus f : files) {
+      List<Map.Entry<Key, Value>> entries = readAll(fs, new FileStatus[]{f});
+      Text first = entries.get(0).getKey().getRow(), last = entries.get(entries.size() - 1).getKey().getRow();
+      Assert.assertEquals(first.compareTo(new Text("c")) <= 0, last.compareTo(new Text("c")) <= 0);
+      Assert.assertEquals(first.compareTo(new Text("m")) <= 0, last.compareTo(new Text("m")) <= 0);
+    }
+
+    List<String> rowVals = new ArrayList<>();
+    for (Map.Entry<Key, Value> entry : readAll(fs, files))
+      rowVals.add(entry.getKey().getRow() + "=" + entry.getValue());
+    Collections.sort(rowVals);
+    Assert.assertEquals(Arrays.asList("a=2", "a=5", "c=3", "d=4", "z=1"), rowVals);
+
+    // entries not flushed are discarded at close
+    w.addMutation(mut("b", "q", "6"));
+    w.close();
+    Assert.assertEquals(3, fs.listStatus(out).length);
+    Assert.assertFalse(fs.exists(work));
+  }
+
+  @Test
+  public void testSpillOverBudget() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Path base = new Path(tempFolder.getRoot().getAbsolutePath());
+    Path out = new Path(base, "out"), work = new Path(base, "work");
+    RFileBatchWriter w = new RFileBatchWriter(fs, out, work, Collections.<Text>emptyList(), 1000);
+    int n = 100;
+    for (int i = 0; i < n; i++)
+      w.addMutation(mut(String.format("r%03d", n - i), "q", Integer.toString(i)));
+    Assert.assertTrue(w.getNumBuffered() < n);
+    Assert.assertFalse(fs.exists(out));
+    w.flush();
+    FileStatus[] files = fs.listStatus(out);
+    Assert.assertTrue(files.length > 1);
+    Assert.assertEquals(n, readAll(fs, files).size());
+    w.close();
+  }
+
+}
@@ -2,14 +2,20 @@ package edu.mit.ll.graphulo;
 
 import edu.mit.ll.graphulo.reducer.EdgeBFSReducer;
 import edu.mit.ll.graphulo.reducer.Reducer;
+import edu.mit.ll.graphulo.reducer.ReducerBinary;
 import edu.mit.ll.graphulo.reducer.SingleBFSReducer;
 import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.util.VertexSet;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.commons.lang.SerializationUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,13 +38,13 @@ public class ReducerTest {
     HashSet<String> e = new HashSet<>();
     e.add("v2");
     e.add("v3");
-    Assert.assertEquals(e, r.getSerializableForClient());
+    Assert.assertEquals(e, r.getStrings());
     EdgeBFSReducer r2 = new EdgeBFSReducer();
     r2.init(Collections.singletonMap(EdgeBFSReducer.IN_COLUMN_PREFIX, "in|,"), null);
     r.update(new Key("","","in|v5"), new Value());
-    r.combine(r2.getSerializableForClient());
+    r.combine(r2.getForClient());
     e.add("v5");
-    Assert.assertEquals(e, r.getSerializableForClient());
+    Assert.assertEquals(e, r.getStrings());
   }
 
   @Test
@@ -54,7 +60,7 @@ public class ReducerTest {
     e.add("v2");
     e.add("v3");
     e.add("v4");
-    Assert.assertEquals(e, r.getSerializableForClient());
+    Assert.assertEquals(e, r.getStrings());
     SingleBFSReducer r2 = new SingleBFSReducer();
     Map<String,String> map = new HashMap<>();
     map.put(SingleBFSReducer.EDGE_SEP, "|");
@@ -65,9 +71,58 @@ public class ReducerTest {
     r2.update(new Key("v1|v3", "", "", 2), new Value());
     r2.update(new Key("v2|v2", "", "", 2), new Value());
     r2.update(new Key("v8|v5", "", "", 2), new Value());
-    r.combine(r2.getSerializableForClient());
+    r.combine(r2.getForClient());
     e.add("v5");
-    Assert.assertEquals(e, r.getSerializableForClient());
+    Assert.assertEquals(e, r.getStrings());
+  }
+
+  @Test
+  public void testSingleBFSReducerVisited() {
+    SingleBFSReducer r = new SingleBFSReducer();
+    Map<String,String> map = new HashMap<>();
+    map.put(SingleBFSReducer.EDGE_SEP, "|");
+    map.put(SingleBFSReducer.VISITED, VertexSet.fromStrings(Arrays.asList("v1", "v3")).encodeBase64());
+    r.init(map, null);
+    r.update(new Key("v1|v2", "", "", 2), new Value());
+    r.update(new Key("v1|v3", "", "", 2), new Value());
+    r.update(new Key("v2|v1", "", "", 2), new Value());
+    r.update(new Key("v2|v4", "", "", 2), new Value());
+    Assert.assertEquals(new HashSet<>(Arrays.asList("v2", "v4")), r.getStrings());
+  }
+
+  /** Counts entries and gathers rows. */
+  private static class CountingRowReducer extends ReducerBinary {
+    CountingRowReducer() {
+      super(1);
+    }
+
+    @Override
+    public void init(Map<String, String> options, IteratorEnvironment env) {
+    }
+
+    @Override
+    public void update(Key k, Value v) {
+      add(k.getRowData());
+      addToSum(0, 1);
+    }
+  }
+
+  @Test
+  public void testReducerBinary() throws IOException {
+    CountingRowReducer r = new CountingRowReducer(), r2 = new CountingRowReducer();
+    HashSet<String> e = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      String row = String.format("vertex%05d", i * 7 % 1000);
+      (i % 2 == 0 ? r : r2).update(new Key(row), new Value());
+      e.add(row);
+    }
+    byte[] b = r2.getForClient();
+    Assert.assertTrue(b.length < SerializationUtils.serialize(r2.getStrings()).length / 4);
+    r.combine(b);
+    Assert.assertEquals(e, r.getStrings());
+    Assert.assertEquals(1000, r.getSum(0));
+    r.reset();
+    Assert.assertFalse(r.hasTopForClient());
   }
 
   @Test
@@ -107,7 +107,7 @@ public class RemoteIteratorTest extends AccumuloTestBase {
       RemoteWriteIterator.decodeValue(entry.getValue(), reducer);
 //      setUniqueColQsActual.addAll((HashSet<String>) SerializationUtil.deserialize(entry.getValue().get()));
     }
-    setUniqueColQsActual = reducer.getSerializableForClient();
+    setUniqueColQsActual = reducer.getStrings();
     Assert.assertEquals(setUniqueColQsExpect, setUniqueColQsActual);
     bs.close();
 
@@ -0,0 +1,223 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.reducer.GatherReducer;
+import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+import edu.mit.ll.graphulo.skvi.RemoteWriteIterator;
+import edu.mit.ll.graphulo.skvi.SaveStateIterator;
+import edu.mit.ll.graphulo.skvi.TableStatsIterator;
+import edu.mit.ll.graphulo.util.TableStats;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Unit tests for {@link RemoteWriteIterator} that do not write to a table; entries go to a Reducer only.
+ */
+public class RemoteWriteIteratorTest {
+
+  /**
+   * Emits entries from a map. Safe at the last entry of every row.
+   * Like TwoTableIterator, re-seeking exclusive of a row-only key resumes at the next row.
+   */
+  private static class RowSafeMapIterator implements SaveStateIterator {
+    private final SortedMap<Key,Value> map;
+    private Iterator<Map.Entry<Key,Value>> iter;
+    private Map.Entry<Key,Value> top;
+    private Range range;
+
+    RowSafeMapIterator(SortedMap<Key,Value> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Key safeState() {
+      SortedMap<Key,Value> tail = map.tailMap(top.getKey().followingKey(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME));
+      return tail.isEmpty() || !tail.firstKey().getRowData().equals(top.getKey().getRowData())
+          ? new Key(top.getKey().getRow()) : null;
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) {
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+      Key sk = range.getStartKey();
+      if (sk != null && !range.isStartKeyInclusive() && sk.getColumnFamilyData().length() == 0
+          && sk.getColumnQualifierData().length() == 0 && sk.getColumnVisibilityData().length() == 0)
+        range = new Range(sk.followingKey(PartialKey.ROW), true, range.getEndKey(), range.isEndKeyInclusive());
+      this.range = range;
+      iter = (range.isInfiniteStartKey() ? map : map.tailMap(range.getStartKey())).entrySet().iterator();
+      next();
+    }
+
+    @Override
+    public boolean hasTop() {
+      return top != null;
+    }
+
+    @Override
+    public void next() {
+      top = null;
+      while (iter.hasNext()) {
+        Map.Entry<Key,Value> e = iter.next();
+        if (range.afterEndKey(e.getKey()))
+          break;
+        if (range.contains(e.getKey())) {
+          top = e;
+          break;
+        }
+      }
+    }
+
+    @Override
+    public Key getTopKey() {
+      return top.getKey();
+    }
+
+    @Override
+    public Value getTopValue() {
+      return top.getValue();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+      return new RowSafeMapIterator(map);
+    }
+  }
+
+  private static SortedMap<Key,Value> makeTable() {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < 50; r++)
+      for (int c = 0; c <= r % 4; c++)
+        map.put(new Key(String.format("r%02d", r), "", "c" + c), new Value("1".getBytes(StandardCharsets.UTF_8)));
+    return map;
+  }
+
+  private static Map<String,String> options(int numEntriesCheckpoint) {
+    Map<String,String> opts = RemoteWriteIterator.optionMap(null, null, null, null, -1, null, null, "",
+        null, GatherReducer.class, GatherReducer.reducerOptions(GatherReducer.KeyPart.ROW), numEntriesCheckpoint, -1);
+    opts.put(RemoteSourceIterator.PASSWORD, "");
+    return opts;
+  }
+
+  /** Seek a new RemoteWriteIterator to range and read all its monitoring entries. */
+  private static long run(SortedMap<Key,Value> map, Map<String,String> opts, Range range,
+                          GatherReducer reducer, int maxEntries, Key[] lastTopKey) throws IOException {
+    RemoteWriteIterator rwi = new RemoteWriteIterator();
+    rwi.init(new RowSafeMapIterator(map), opts, null);
+    rwi.seek(range, Collections.<ByteSequence>emptySet(), false);
+    long cnt = 0;
+    for (int i = 0; i < maxEntries && rwi.hasTop(); i++) {
+      lastTopKey[0] = rwi.getTopKey();
+      cnt += RemoteWriteIterator.decodeValue(rwi.getTopValue(), reducer);
+      rwi.next();
+    }
+    return cnt;
+  }
+
+  private static GatherReducer newReducer() {
+    GatherReducer reducer = new GatherReducer();
+    reducer.init(GatherReducer.reducerOptions(GatherReducer.KeyPart.ROW), null);
+    return reducer;
+  }
+
+  /**
+   * A parallel TwoTable scans each sub-range of a tablet separately, so that each has its own RemoteWriteIterator.
+   * The per-range results should add up to one RemoteWriteIterator over the whole range.
+   */
+  @Test
+  public void testSubRangesMatchWhole() throws IOException {
+    SortedMap<Key,Value> map = makeTable();
+    Set<String> rows = new HashSet<>();
+    for (Key k : map.keySet())
+      rows.add(k.getRow().toString());
+    Key[] lastTopKey = new Key[1];
+    Range[] subRanges = {
+        new Range(null, false, new Text("r10"), true),
+        new Range(new Text("r10"), false, new Text("r25"), true),
+        new Range(new Text("r25"), false, new Text("r26"), true),
+        new Range(new Text("r26"), false, null, true)
+    };
+    for (int checkpoint : new int[] {-1, 7}) {
+      GatherReducer whole = newReducer();
+      long cnt = run(map, options(checkpoint), new Range(), whole, Integer.MAX_VALUE, lastTopKey);
+      Assert.assertEquals(map.size(), cnt);
+      Assert.assertEquals(rows, whole.getStrings());
+
+      GatherReducer parts = newReducer();
+      cnt = 0;
+      for (Range r : subRanges)
+        cnt += run(map, options(checkpoint), r, parts, Integer.MAX_VALUE, lastTopKey);
+      Assert.assertEquals("checkpoint " + checkpoint, map.size(), cnt);
+      Assert.assertEquals(rows, parts.getStrings());
+    }
+  }
+
+  @Test
+  public void testResume() throws IOException {
+    SortedMap<Key,Value> map = makeTable();
+    Map<String,String> opts = options(7);
+    Key[] lastTopKey = new Key[1];
+    GatherReducer reducer = newReducer();
+    // stop after the first monitoring entry, as if the iterator were torn down, and resume with a new one
+    long cnt = run(map, opts, new Range(), reducer, 1, lastTopKey);
+    Assert.assertTrue(cnt > 0 && cnt < map.size());
+    cnt += run(map, opts, new Range(lastTopKey[0], false, null, false), reducer, Integer.MAX_VALUE, lastTopKey);
+    Assert.assertEquals(map.size(), cnt);
+    Assert.assertEquals(50, reducer.getStrings().size());
+  }
+
+  /** The sketches sent with the monitoring entries merge to the statistics of all entries written. */
+  @Test
+  public void testStats() throws IOException {
+    SortedMap<Key,Value> map = makeTable();
+    TableStatsIterator tsi = new TableStatsIterator();
+    tsi.init(new RowSafeMapIterator(map), Collections.<String,String>emptyMap(), null);
+    tsi.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    TableStats expect = TableStats.decode(tsi.getTopValue().get());
+
+    RemoteWriteIterator rwi = new RemoteWriteIterator();
+    rwi.init(new RowSafeMapIterator(map), RemoteWriteIterator.statsOptionMap(options(7)), null);
+    rwi.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    TableStats actual = new TableStats();
+    int numMonitoring = 0;
+    long cnt = 0;
+    while (rwi.hasTop()) {
+      cnt += RemoteWriteIterator.decodeValue(rwi.getTopValue(), null, null, actual);
+      numMonitoring++;
+      rwi.next();
+    }
+    Assert.assertTrue(numMonitoring > 1);
+    Assert.assertEquals(map.size(), cnt);
+    Assert.assertEquals(map.size(), actual.getNumEntries());
+    Assert.assertEquals(expect.toString(), actual.toString());
+
+    // decoding without stats still reads the count and the reducer
+    rwi = new RemoteWriteIterator();
+    rwi.init(new RowSafeMapIterator(map), RemoteWriteIterator.statsOptionMap(options(7)), null);
+    rwi.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    GatherReducer reducer = newReducer();
+    Assert.assertTrue(RemoteWriteIterator.decodeValue(rwi.getTopValue(), reducer) > 0);
+    Assert.assertFalse(reducer.getStrings().isEmpty());
+  }
+
+}
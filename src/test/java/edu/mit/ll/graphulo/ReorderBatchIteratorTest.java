@@ -0,0 +1,115 @@
+package edu.mit.ll.graphulo;
+
+import com.google.common.collect.Iterators;
+import edu.mit.ll.graphulo.skvi.RemoteSourceIterator;
+import edu.mit.ll.graphulo.util.ReorderBatchIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link ReorderBatchIterator} and the scan mode choice of {@link RemoteSourceIterator}.
+ */
+public class ReorderBatchIteratorTest {
+
+  /** Fetches from a map, shuffling the unordered fetches. */
+  private static class MapReorderBatchIterator extends ReorderBatchIterator {
+    final SortedMap<Key,Value> map;
+    final Random rand = new Random(3);
+    int numUnordered = 0, numAborted = 0, numOrdered = 0;
+
+    MapReorderBatchIterator(SortedMap<Key,Value> map, List<Range> ranges, int windowSize, int maxBufferEntries) {
+      super(ranges, windowSize, maxBufferEntries);
+      this.map = map;
+    }
+
+    private List<Map.Entry<Key,Value>> inRange(Range range) {
+      List<Map.Entry<Key,Value>> list = new ArrayList<>();
+      for (Map.Entry<Key, Value> entry : map.entrySet())
+        if (range.contains(entry.getKey()))
+          list.add(entry);
+      return list;
+    }
+
+    @Override
+    protected Iterator<Map.Entry<Key, Value>> fetchUnordered(List<Range> ranges) {
+      numUnordered++;
+      List<Map.Entry<Key,Value>> list = new ArrayList<>();
+      for (Range range : ranges)
+        list.addAll(inRange(range));
+      Collections.shuffle(list, rand);
+      return list.iterator();
+    }
+
+    @Override
+    protected void abortUnordered() {
+      numAborted++;
+    }
+
+    @Override
+    protected Iterator<Map.Entry<Key, Value>> fetchOrdered(Range range) {
+      numOrdered++;
+      return inRange(range).iterator();
+    }
+  }
+
+  private static SortedMap<Key,Value> makeTable() {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < 40; r++)
+      for (int c = 0; c < r % 5; c++)
+        map.put(new Key(String.format("r%02d", r), "", "c" + c), new Value(Integer.toString(r).getBytes(StandardCharsets.UTF_8)));
+    return map;
+  }
+
+  @Test
+  public void testSorted() {
+    SortedMap<Key,Value> map = makeTable();
+    List<Range> ranges = new ArrayList<>();
+    for (int r = 0; r < 40; r += 3)
+      ranges.add(Range.exact(String.format("r%02d", r)));
+    List<Map.Entry<Key,Value>> expect = new ArrayList<>();
+    for (Map.Entry<Key, Value> entry : map.entrySet())
+      for (Range range : ranges)
+        if (range.contains(entry.getKey()))
+          expect.add(entry);
+
+    for (int windowSize : new int[] {1, 4, 100})
+      for (int maxBuffer : new int[] {3, 1000}) {
+        MapReorderBatchIterator it = new MapReorderBatchIterator(map, ranges, windowSize, maxBuffer);
+        List<Map.Entry<Key,Value>> actual = new ArrayList<>();
+        Iterators.addAll(actual, it);
+        Assert.assertEquals("windowSize " + windowSize + " maxBuffer " + maxBuffer, expect, actual);
+        if (windowSize == 1)
+          Assert.assertEquals(0, it.numUnordered);
+        if (windowSize == 100 && maxBuffer == 1000) {
+          Assert.assertEquals(1, it.numUnordered);
+          Assert.assertEquals(0, it.numOrdered);
+        }
+        if (maxBuffer == 3 && windowSize > 1)
+          Assert.assertTrue(it.numAborted > 0);
+      }
+  }
+
+  @Test
+  public void testChooseBatchScan() {
+    List<Range> few = Arrays.asList(Range.exact("a"), Range.exact("b"));
+    Assert.assertFalse(RemoteSourceIterator.chooseBatchScan(few, 16));
+    Assert.assertTrue(RemoteSourceIterator.chooseBatchScan(few, 2));
+    List<Range> unbounded = Arrays.asList(Range.exact("a"), new Range("b", null));
+    Assert.assertFalse(RemoteSourceIterator.chooseBatchScan(unbounded, 2));
+  }
+
+}
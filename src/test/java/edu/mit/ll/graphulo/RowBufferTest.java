@@ -0,0 +1,102 @@
+package edu.mit.ll.graphulo;
+
+import com.google.common.collect.Iterators;
+import edu.mit.ll.graphulo.rowmult.CartesianRowMultiply;
+import edu.mit.ll.graphulo.rowmult.RowBuffer;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.skvi.MapIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link RowBuffer} and the buffered path of {@link CartesianRowMultiply}.
+ */
+public class RowBufferTest {
+
+  private static SortedMap<Key,Value> makeTable(String prefix, int rows, int colsPerRow) {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < rows; r++)
+      for (int c = 0; c < colsPerRow + r; c++)
+        map.put(new Key("r" + r, "", prefix + c), new Value(Integer.toString(c + 1).getBytes(StandardCharsets.UTF_8)));
+    return map;
+  }
+
+  @Test
+  public void testFillAndCursor() throws IOException {
+    SortedMap<Key,Value> map = makeTable("c", 3, 4);
+    for (long spill : new long[] {-1, 1, 20}) {
+      SortedKeyValueIterator<Key,Value> skvi = new MapIterator(map);
+      skvi.seek(new Range(), Collections.<org.apache.accumulo.core.data.ByteSequence>emptySet(), false);
+      RowBuffer buf = new RowBuffer(spill, null);
+      SortedMap<Key,Value> actual = new TreeMap<>();
+      while (skvi.hasTop()) {
+        buf.fill(skvi);
+        // iterate twice to check that the cursor can reset, including from a spill file
+        for (int pass = 0; pass < 2; pass++) {
+          Iterator<Map.Entry<Key, Value>> it = buf.entryIterator();
+          while (it.hasNext()) {
+            Map.Entry<Key, Value> e = it.next();
+            actual.put(e.getKey(), e.getValue());
+          }
+        }
+        Assert.assertEquals(spill == 1, buf.isSpilled());
+      }
+      buf.clear();
+      Assert.assertFalse(buf.isSpilled());
+      Assert.assertEquals(map, actual);
+    }
+  }
+
+  private static List<Map.Entry<Key,Value>> multiply(SortedMap<Key,Value> A, SortedMap<Key,Value> B,
+                                                     CartesianRowMultiply.ROWMODE rowmode,
+                                                     boolean useRowBuffer, long spillBytes) throws IOException {
+    Map<String,String> opts = new HashMap<>();
+    opts.put("rowmode", rowmode.name());
+    opts.put("multiplyOp", MathTwoScalar.class.getName());
+    for (Map.Entry<String, String> entry : MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.TIMES, MathTwoScalar.ScalarType.LONG, "", false).entrySet())
+      opts.put("multiplyOp.opt." + entry.getKey(), entry.getValue());
+    opts.put(CartesianRowMultiply.ALSOEMITA, Boolean.toString(rowmode != CartesianRowMultiply.ROWMODE.ONEROWB));
+    opts.put(CartesianRowMultiply.ALSODOBB, Boolean.toString(rowmode != CartesianRowMultiply.ROWMODE.ONEROWA));
+    opts.put(CartesianRowMultiply.ROWBUFFER, Boolean.toString(useRowBuffer));
+    opts.put(CartesianRowMultiply.ROWBUFFER_SPILLBYTES, Long.toString(spillBytes));
+    CartesianRowMultiply rowMultiply = new CartesianRowMultiply();
+    rowMultiply.init(opts, null);
+
+    SortedKeyValueIterator<Key,Value> skviA = new MapIterator(A), skviB = new MapIterator(B);
+    skviA.seek(new Range(), Collections.<org.apache.accumulo.core.data.ByteSequence>emptySet(), false);
+    skviB.seek(new Range(), Collections.<org.apache.accumulo.core.data.ByteSequence>emptySet(), false);
+    List<Map.Entry<Key,Value>> result = new ArrayList<>();
+    while (skviA.hasTop() && skviB.hasTop()) {
+      Assert.assertEquals(skviA.getTopKey().getRow(), skviB.getTopKey().getRow());
+      Iterators.addAll(result, rowMultiply.multiplyRow(skviA, skviB));
+    }
+    return result;
+  }
+
+  @Test
+  public void testBufferedMatchesSortedMap() throws IOException {
+    SortedMap<Key,Value> A = makeTable("a", 5, 3), B = makeTable("b", 5, 4);
+    for (CartesianRowMultiply.ROWMODE rowmode : CartesianRowMultiply.ROWMODE.values()) {
+      List<Map.Entry<Key,Value>> expect = multiply(A, B, rowmode, false, -1);
+      Assert.assertFalse(expect.isEmpty());
+      Assert.assertEquals(rowmode.name(), expect, multiply(A, B, rowmode, true, -1));
+      Assert.assertEquals(rowmode.name() + " with spill", expect, multiply(A, B, rowmode, true, 8));
+    }
+  }
+
+}
@@ -0,0 +1,65 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.skvi.RowSampleIterator;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link RowSampleIterator}, which finds split points for {@link Graphulo#findEvenSplitsSampled}.
+ */
+public class RowSampleIteratorTest {
+
+  private static SortedMap<Key,Value> makeTable(int n) {
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int i = 0; i < n; i++)
+      map.put(new Key(String.format("r%04d", i / 3), "", "c" + (i % 3)), new Value());
+    return map;
+  }
+
+  private static long count(Value v) {
+    return Long.parseLong(new String(v.get(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSample() throws IOException {
+    SortedMap<Key,Value> map = makeTable(100);
+    List<Key> keys = new ArrayList<>(map.keySet());
+    RowSampleIterator it = new RowSampleIterator();
+    it.init(new SortedMapIterator(map), RowSampleIterator.iteratorSetting(1, 7).getOptions(), null);
+    it.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    long position = 0;
+    int emitted = 0;
+    while (it.hasTop()) {
+      position += count(it.getTopValue());
+      // each emitted key is at its exact position in the source
+      Assert.assertEquals(keys.get((int) position - 1), it.getTopKey());
+      emitted++;
+      it.next();
+    }
+    Assert.assertEquals(100, position);
+    Assert.assertEquals(15, emitted); // 14 full steps and the last entry
+
+    // re-seek after an emitted key continues from there
+    Key k = keys.get(13);
+    it.seek(new Range(k, false, null, true), Collections.<ByteSequence>emptySet(), false);
+    Assert.assertEquals(keys.get(20), it.getTopKey());
+    Assert.assertEquals(7, count(it.getTopValue()));
+
+    it.seek(new Range("zzz", null), Collections.<ByteSequence>emptySet(), false);
+    Assert.assertFalse(it.hasTop());
+  }
+
+}
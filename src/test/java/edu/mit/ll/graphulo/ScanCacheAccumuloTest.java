@@ -0,0 +1,158 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.util.AccumuloTestBase;
+import edu.mit.ll.graphulo.util.GraphuloUtil;
+import edu.mit.ll.graphulo.util.ScanCache;
+import edu.mit.ll.graphulo.util.TestUtil;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests that {@link ScanCache} rescans a table whenever what a scan returns may have changed,
+ * and does not cache a table with unflushed writes.
+ */
+public class ScanCacheAccumuloTest extends AccumuloTestBase {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static Value v(String s) {
+    return new Value(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The one cache file in dir. */
+  private static File cacheFile(File dir) {
+    File[] files = dir.listFiles();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(1, files.length);
+    return files[0];
+  }
+
+  private static SortedMap<Key, Value> scan(ScanCache cache, Connector conn, String table, Authorizations auths) {
+    SortedMap<Key, Value> actual = new TreeMap<>();
+    long n = cache.scan(conn, table, auths, null, null, GraphuloUtil.mapSink(actual));
+    Assert.assertEquals(actual.size(), n);
+    return actual;
+  }
+
+  private static void write(Connector conn, String table, String row, String cq, ColumnVisibility vis) throws Exception {
+    BatchWriter bw = conn.createBatchWriter(table, new BatchWriterConfig());
+    try {
+      Mutation m = new Mutation(row);
+      m.put("", cq, vis, v(row + cq));
+      bw.addMutation(m);
+    } finally {
+      bw.close();
+    }
+  }
+
+  @Test
+  public void testFingerprint() throws Exception {
+    Connector conn = tester.getConnector();
+    String table = getUniqueNames(1)[0];
+    Map<Key, Value> input = new TreeMap<>();
+    input.put(new Key("r1", "", "c1"), v("r1c1"));
+    input.put(new Key("r2", "", "c1"), v("r2c1"));
+    TestUtil.createTestTable(conn, table, null, input);
+    File dir = tempFolder.newFolder();
+    ScanCache cache = new ScanCache(dir);
+
+    // unflushed writes are not cached
+    Assert.assertEquals(-1, cache.scan(conn, table, Authorizations.EMPTY, null, null, GraphuloUtil.mapSink(new TreeMap<Key, Value>())));
+    Assert.assertEquals(0, dir.listFiles().length);
+
+    conn.tableOperations().flush(table, null, null, true);
+    Assert.assertEquals(2, scan(cache, conn, table, Authorizations.EMPTY).size());
+    File f1 = cacheFile(dir);
+    Assert.assertEquals(2, scan(cache, conn, table, Authorizations.EMPTY).size());
+    Assert.assertEquals("no change, no rescan", f1, cacheFile(dir));
+
+    // a write, unflushed then flushed
+    write(conn, table, "r3", "c1", new ColumnVisibility());
+    Assert.assertEquals(-1, cache.scan(conn, table, Authorizations.EMPTY, null, null, GraphuloUtil.mapSink(new TreeMap<Key, Value>())));
+    conn.tableOperations().flush(table, null, null, true);
+    Assert.assertEquals(3, scan(cache, conn, table, Authorizations.EMPTY).size());
+    File f2 = cacheFile(dir);
+    Assert.assertNotEquals(f1, f2);
+
+    // an iterator change
+    IteratorSetting itset = new IteratorSetting(25, RegExFilter.class);
+    RegExFilter.setRegexs(itset, "r1", null, null, null, false);
+    conn.tableOperations().attachIterator(table, itset, EnumSet.of(IteratorUtil.IteratorScope.scan));
+    scan(cache, conn, table, Authorizations.EMPTY);
+    File f3 = cacheFile(dir);
+    Assert.assertNotEquals(f2, f3);
+    conn.tableOperations().removeIterator(table, itset.getName(), EnumSet.of(IteratorUtil.IteratorScope.scan));
+    scan(cache, conn, table, Authorizations.EMPTY);
+    File f4 = cacheFile(dir);
+    Assert.assertNotEquals(f3, f4);
+
+    // different authorizations
+    Authorizations origAuths = conn.securityOperations().getUserAuthorizations(tester.getUsername());
+    conn.securityOperations().changeUserAuthorizations(tester.getUsername(), new Authorizations("A"));
+    try {
+      write(conn, table, "r4", "c1", new ColumnVisibility("A"));
+      conn.tableOperations().flush(table, null, null, true);
+      Assert.assertEquals(3, scan(cache, conn, table, Authorizations.EMPTY).size());
+      File f5 = cacheFile(dir);
+      Assert.assertEquals(4, scan(cache, conn, table, new Authorizations("A")).size());
+      Assert.assertNotEquals(f5, cacheFile(dir));
+    } finally {
+      conn.securityOperations().changeUserAuthorizations(tester.getUsername(), origAuths);
+    }
+
+    conn.tableOperations().delete(table);
+  }
+
+  @Test
+  public void testOwnerOnlyAndEviction() throws Exception {
+    Connector conn = tester.getConnector();
+    String[] names = getUniqueNames(2);
+    for (String table : names) {
+      Map<Key, Value> input = new TreeMap<>();
+      input.put(new Key("r1", "", "c1"), v("r1c1"));
+      TestUtil.createTestTable(conn, table, null, input);
+      conn.tableOperations().flush(table, null, null, true);
+    }
+    File dir = new File(tempFolder.getRoot(), "cache");
+    ScanCache cache = new ScanCache(dir, 1); // holds only the latest file
+
+    scan(cache, conn, names[0], Authorizations.EMPTY);
+    File f0 = cacheFile(dir);
+    scan(cache, conn, names[1], Authorizations.EMPTY);
+    File f1 = cacheFile(dir);
+    Assert.assertNotEquals(f0, f1);
+    Assert.assertFalse(f0.exists());
+
+    if (dir.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Assert.assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(dir.toPath()));
+      Assert.assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(f1.toPath()));
+    }
+
+    for (String table : names)
+      conn.tableOperations().delete(table);
+  }
+
+}
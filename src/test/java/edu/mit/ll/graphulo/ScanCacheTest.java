@@ -0,0 +1,93 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.util.GraphuloUtil;
+import edu.mit.ll.graphulo.util.ScanCache;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for the cache file format of {@link ScanCache}.
+ */
+public class ScanCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static Value v(String s) {
+    return new Value(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static SortedMap<Key, Value> makeTable() {
+    SortedMap<Key, Value> map = new TreeMap<>();
+    for (int r = 0; r < 30; r++)
+      for (int c = 0; c <= r % 4; c++)
+        map.put(new Key(String.format("r%02d", r), "", "c" + c), v(r + "." + c));
+    map.put(new Key("r05", "fam", "c0"), v("inFam"));
+    return map;
+  }
+
+  /** Entries of map, without timestamps, passing the filters. */
+  private static SortedMap<Key, Value> expect(SortedMap<Key, Value> map, String rowLo, String rowHi, String cq, boolean emptyFamOnly) {
+    SortedMap<Key, Value> out = new TreeMap<>();
+    for (Map.Entry<Key, Value> entry : map.entrySet()) {
+      Key k = entry.getKey();
+      String row = k.getRow().toString();
+      if (rowLo != null && (row.compareTo(rowLo) < 0 || row.compareTo(rowHi) > 0))
+        continue;
+      if (cq != null && !k.getColumnQualifier().toString().equals(cq))
+        continue;
+      if (emptyFamOnly && k.getColumnFamilyData().length() != 0)
+        continue;
+      out.put(new Key(k.getRow(), k.getColumnFamily(), k.getColumnQualifier()), entry.getValue());
+    }
+    return out;
+  }
+
+  private static SortedMap<Key, Value> read(File file, String rowFilter, String colFilter) throws IOException {
+    SortedMap<Key, Value> actual = new TreeMap<>();
+    long n = ScanCache.read(file, rowFilter, colFilter, GraphuloUtil.mapSink(actual));
+    Assert.assertEquals(actual.size(), n);
+    // compare without timestamps
+    SortedMap<Key, Value> out = new TreeMap<>();
+    for (Map.Entry<Key, Value> entry : actual.entrySet()) {
+      Key k = entry.getKey();
+      out.put(new Key(k.getRow(), k.getColumnFamily(), k.getColumnQualifier()), entry.getValue());
+    }
+    return out;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    SortedMap<Key, Value> map = makeTable();
+    File file = tempFolder.newFile("t.gsc");
+    Assert.assertEquals(map.size(), ScanCache.write(map.entrySet().iterator(), file));
+    Assert.assertEquals(1, tempFolder.getRoot().list().length); // section files removed
+
+    Assert.assertEquals(expect(map, null, null, null, false), read(file, null, null));
+    Assert.assertEquals(expect(map, "r03", "r07", null, false), read(file, "r03,:,r07,", null));
+    Assert.assertEquals(expect(map, "r05", "r05", null, false), read(file, "r05,", null));
+    // singleton column filters match the empty family only, as fetchColumn does
+    Assert.assertEquals(expect(map, null, null, "c0", true), read(file, null, "c0,"));
+    Assert.assertEquals(expect(map, null, null, "c0", false), read(file, null, "c0,:,c0,"));
+    Assert.assertEquals(expect(map, "r00", "r09", "c0", true), read(file, ":,r09,", "c0,"));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    File file = tempFolder.newFile("e.gsc");
+    Assert.assertEquals(0, ScanCache.write(new TreeMap<Key, Value>().entrySet().iterator(), file));
+    Assert.assertTrue(read(file, null, null).isEmpty());
+  }
+
+}
@@ -1,7 +1,11 @@
 package edu.mit.ll.graphulo;
 
+import edu.mit.ll.d4m.db.cloud.test.D4mDbQueryAccumuloTest;
+import edu.mit.ll.d4m.db.cloud.test.D4mResultPageTest;
+import edu.mit.ll.d4m.db.cloud.test.D4mTokenizerTest;
 import edu.mit.ll.graphulo.util.KnownBugSuite;
 import edu.mit.ll.graphulo_ocean.GenomicEncoderTest;
+import edu.mit.ll.graphulo_ocean.RollingKmerCounterTest;
 import edu.mit.ll.graphulo_ocean.OceanTest;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.commons.configuration.Configuration;
@@ -31,12 +35,32 @@ import java.io.IOException;
     BFSTest.class,
     CountTest.class,
     RowMultiplyTest.class,
+    NmfErrorRowMultiplyTest.class,
+    BroadcastTableTest.class,
+    RowBufferTest.class,
+    PreSumBufferTest.class,
+    RemoteWriteIteratorTest.class,
+    IteratorMetricsTest.class,
+    RowSampleIteratorTest.class,
+    TableStatsTest.class,
+    ExecutionPlannerTest.class,
+    CsrMatrixTest.class,
+    ScanCacheTest.class,
+    ScanCacheAccumuloTest.class,
+    D4mResultPageTest.class,
+    D4mTokenizerTest.class,
+    D4mDbQueryAccumuloTest.class,
+    RFileBatchWriterTest.class,
+    PrefetchIteratorTest.class,
+    ReorderBatchIteratorTest.class,
     ReducerTest.class,
+    VertexSetTest.class,
     EWiseTest.class,
     SCCTest.class,
     LineTest.class,
     AlgorithmTest.class,
     GenomicEncoderTest.class,
+    RollingKmerCounterTest.class,
     OceanTest.class
 })
 
@@ -45,6 +45,64 @@ import java.util.TreeSet;
 public class TableMultTest extends AccumuloTestBase {
   private static final Logger log = LogManager.getLogger(TableMultTest.class);
 
+  /**
+   * Same as {@link #test1()}, with AT loaded into a {@link edu.mit.ll.graphulo.skvi.BroadcastTable} on the tablet servers.
+   */
+  @Test
+  public void testBroadcastAT() throws TableExistsException, AccumuloSecurityException, AccumuloException, TableNotFoundException, IOException {
+    Connector conn = tester.getConnector();
+    final String tC, tAT, tB;
+    {
+      String[] names = getUniqueNames(3);
+      tAT = names[0];
+      tB = names[1];
+      tC = names[2];
+    }
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("A1", "", "C1"), new Value("5".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("A1", "", "C2"), new Value("2".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("A2", "", "C1"), new Value("4".getBytes(StandardCharsets.UTF_8)));
+      input = GraphuloUtil.transposeMap(input);
+      TestUtil.createTestTable(conn, tAT, null, input);
+    }
+    {
+      Map<Key, Value> input = new HashMap<>();
+      input.put(new Key("B1", "", "C2"), new Value("3".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("B1", "", "C3"), new Value("3".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("B2", "", "C1"), new Value("3".getBytes(StandardCharsets.UTF_8)));
+      input.put(new Key("B2", "", "C2"), new Value("3".getBytes(StandardCharsets.UTF_8)));
+      input = GraphuloUtil.transposeMap(input);
+      SortedSet<Text> splits = new TreeSet<>();
+      splits.add(new Text("C15"));
+      TestUtil.createTestTable(conn, tB, splits, input);
+    }
+    SortedMap<Key, Value> expect = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ);
+    expect.put(new Key("A1", "", "B1"), new Value("6".getBytes(StandardCharsets.UTF_8)));
+    expect.put(new Key("A1", "", "B2"), new Value("21".getBytes(StandardCharsets.UTF_8)));
+    expect.put(new Key("A2", "", "B2"), new Value("12".getBytes(StandardCharsets.UTF_8)));
+
+    Graphulo graphulo = new Graphulo(conn, tester.getPassword());
+    long numpp = graphulo.TableMult(tAT, tB, tC, null, -1,
+        MathTwoScalar.class, MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.TIMES, MathTwoScalar.ScalarType.BIGDECIMAL, "", false),
+        Graphulo.PLUS_ITERATOR_BIGDECIMAL,
+        null, null, null, false, false, false, false, null, null, null, null, null, -1, null, null,
+        TwoTableOptions.DEFAULT.withBroadcastAT(true));
+    Assert.assertEquals(4, numpp);
+
+    Scanner scanner = conn.createScanner(tC, Authorizations.EMPTY);
+    SortedMap<Key, Value> actual = new TreeMap<>(TestUtil.COMPARE_KEY_TO_COLQ); // only compare row, colF, colQ
+    for (Map.Entry<Key, Value> entry : scanner) {
+      actual.put(entry.getKey(), entry.getValue());
+    }
+    scanner.close();
+    Assert.assertEquals(expect, actual);
+
+    conn.tableOperations().delete(tAT);
+    conn.tableOperations().delete(tB);
+    conn.tableOperations().delete(tC);
+  }
+
   /**
    * <pre>
    *      C1 C2        C1 C2 C3          B1  B2
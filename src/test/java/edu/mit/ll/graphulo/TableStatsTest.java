@@ -0,0 +1,83 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.skvi.TableStatsIterator;
+import edu.mit.ll.graphulo.util.HyperLogLog;
+import edu.mit.ll.graphulo.util.TableStats;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link TableStats}, {@link HyperLogLog} and {@link TableStatsIterator}.
+ */
+public class TableStatsTest {
+
+  @Test
+  public void testHyperLogLog() {
+    HyperLogLog a = new HyperLogLog(), b = new HyperLogLog();
+    Assert.assertEquals(0, a.estimate());
+    for (int i = 0; i < 100000; i++)
+      (i % 2 == 0 ? a : b).add(Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+    for (int i = 0; i < 50000; i++) // duplicates
+      a.add(Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+    a.merge(b);
+    Assert.assertEquals(100000, a.estimate(), 100000 * 0.05);
+
+    HyperLogLog small = new HyperLogLog();
+    for (int i = 0; i < 100; i++)
+      small.add(("v" + i).getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(100, small.estimate(), 3);
+  }
+
+  @Test
+  public void testIterator() throws IOException {
+    // row ri has i+1 entries, in columns c0..ci
+    SortedMap<Key,Value> map = new TreeMap<>();
+    for (int r = 0; r < 10; r++)
+      for (int c = 0; c <= r; c++)
+        map.put(new Key("r" + r, "", "c" + c), new Value());
+    TableStatsIterator it = new TableStatsIterator();
+    it.init(new SortedMapIterator(map), Collections.<String,String>emptyMap(), null);
+    it.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+    Assert.assertTrue(it.hasTop());
+    Assert.assertEquals(map.lastKey(), it.getTopKey());
+    TableStats stats = TableStats.decode(it.getTopValue().get());
+    it.next();
+    Assert.assertFalse(it.hasTop());
+
+    Assert.assertEquals(55, stats.getNumEntries());
+    Assert.assertEquals(10, stats.getDistinctRows());
+    Assert.assertEquals(10, stats.getDistinctColumns());
+    long[] hist = stats.getDegreeHistogram();
+    Assert.assertEquals(1, hist[0]); // degree 1
+    Assert.assertEquals(2, hist[1]); // degrees 2-3
+    Assert.assertEquals(4, hist[2]); // degrees 4-7
+    Assert.assertEquals(3, hist[3]); // degrees 8-10
+
+    // a second tablet with overlapping columns
+    it.seek(new Range("r5", "r6"), Collections.<ByteSequence>emptySet(), false);
+    TableStats other = TableStats.decode(it.getTopValue().get());
+    Assert.assertEquals(13, other.getNumEntries());
+    other.setComputedMillis(5);
+    stats.setComputedMillis(7);
+    stats.merge(other);
+    Assert.assertEquals(68, stats.getNumEntries());
+    Assert.assertEquals(10, stats.getDistinctColumns());
+    Assert.assertEquals(5, stats.getComputedMillis());
+
+    TableStats copy = TableStats.decodeBase64(stats.encodeBase64());
+    Assert.assertEquals(stats.toString(), copy.toString());
+    Assert.assertEquals(5, copy.getComputedMillis());
+  }
+
+}
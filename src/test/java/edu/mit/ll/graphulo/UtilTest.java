@@ -3,6 +3,8 @@ package edu.mit.ll.graphulo;
 import com.google.common.collect.Iterators;
 import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
 import edu.mit.ll.graphulo.skvi.D4mRangeFilter;
+import edu.mit.ll.graphulo.skvi.DoubleCombiner;
+import edu.mit.ll.graphulo.skvi.IntCombiner;
 import edu.mit.ll.graphulo.skvi.MapIterator;
 import edu.mit.ll.graphulo.skvi.MinMaxFilter;
 import edu.mit.ll.graphulo.skvi.MultiKeyCombiner;
@@ -1095,4 +1097,62 @@ public class UtilTest {
     Assert.assertEquals(l, a);
   }
 
+
+  @Test
+  public void testMathTwoScalarFixedTypes() {
+    for (long l : new long[] {0, 1, -1, 42, Long.MIN_VALUE, Long.MAX_VALUE}) {
+      byte[] b = MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.FIXED_LONG, l);
+      Assert.assertArrayEquals(LongCombiner.FIXED_LEN_ENCODER.encode(l), b);
+      Assert.assertEquals(l, MathTwoScalar.decodeLong(MathTwoScalar.ScalarType.FIXED_LONG, b));
+    }
+    for (double d : new double[] {0.0, -0.0, 1.5, -3.25e100, Double.NaN}) {
+      byte[] b = MathTwoScalar.encodeDouble(MathTwoScalar.ScalarType.FIXED_DOUBLE, d);
+      Assert.assertArrayEquals(DoubleCombiner.FIXED_LEN_ENCODER.encode(d), b);
+      Assert.assertEquals(d, MathTwoScalar.decodeDouble(MathTwoScalar.ScalarType.FIXED_DOUBLE, b), 0.0);
+    }
+    for (int i : new int[] {0, -1, 7, Integer.MIN_VALUE, Integer.MAX_VALUE})
+      Assert.assertEquals(i, IntCombiner.FIXED_LEN_ENCODER.decode(IntCombiner.FIXED_LEN_ENCODER.encode(i)).intValue());
+
+    // binary types compute the same results as string types
+    for (MathTwoScalar.ScalarOp op : new MathTwoScalar.ScalarOp[] {MathTwoScalar.ScalarOp.PLUS, MathTwoScalar.ScalarOp.TIMES,
+        MathTwoScalar.ScalarOp.MINUS, MathTwoScalar.ScalarOp.MAX}) {
+      MathTwoScalar strL = new MathTwoScalar(), fixL = new MathTwoScalar(), lexL = new MathTwoScalar(),
+          strD = new MathTwoScalar(), fixD = new MathTwoScalar();
+      strL.init(MathTwoScalar.optionMap(op, MathTwoScalar.ScalarType.LONG, null, false), null);
+      fixL.init(MathTwoScalar.optionMap(op, MathTwoScalar.ScalarType.FIXED_LONG, null, false), null);
+      lexL.init(MathTwoScalar.optionMap(op, MathTwoScalar.ScalarType.LEX_LONG, null, false), null);
+      strD.init(MathTwoScalar.optionMap(op, MathTwoScalar.ScalarType.DOUBLE, null, false), null);
+      fixD.init(MathTwoScalar.optionMap(op, MathTwoScalar.ScalarType.FIXED_DOUBLE, null, false), null);
+      long a = 6, b = -3;
+      long expect = Long.parseLong(strL.multiply(new Value("6".getBytes(UTF_8)), new Value("-3".getBytes(UTF_8))).toString());
+      Assert.assertEquals(expect, MathTwoScalar.decodeLong(MathTwoScalar.ScalarType.FIXED_LONG, fixL.multiply(
+          new Value(MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.FIXED_LONG, a)),
+          new Value(MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.FIXED_LONG, b))).get()));
+      Assert.assertEquals(expect, MathTwoScalar.decodeLong(MathTwoScalar.ScalarType.LEX_LONG, lexL.multiply(
+          new Value(MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.LEX_LONG, a)),
+          new Value(MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.LEX_LONG, b))).get()));
+      double expectD = Double.parseDouble(strD.multiply(new Value("2.5".getBytes(UTF_8)), new Value("-0.5".getBytes(UTF_8))).toString());
+      Assert.assertEquals(expectD, MathTwoScalar.decodeDouble(MathTwoScalar.ScalarType.FIXED_DOUBLE, fixD.multiply(
+          new Value(MathTwoScalar.encodeDouble(MathTwoScalar.ScalarType.FIXED_DOUBLE, 2.5)),
+          new Value(MathTwoScalar.encodeDouble(MathTwoScalar.ScalarType.FIXED_DOUBLE, -0.5))).get()), 0.0);
+    }
+    // zero results are dropped unless keepZero
+    MathTwoScalar minus = new MathTwoScalar();
+    minus.init(MathTwoScalar.optionMap(MathTwoScalar.ScalarOp.MINUS, MathTwoScalar.ScalarType.FIXED_LONG, null, false), null);
+    Value five = new Value(MathTwoScalar.encodeLong(MathTwoScalar.ScalarType.FIXED_LONG, 5));
+    Assert.assertNull(minus.multiply(five, five));
+  }
+
+  @Test
+  public void testFindScalarType() {
+    Assert.assertNull(GraphuloUtil.findScalarType(null));
+    Assert.assertNull(GraphuloUtil.findScalarType(Collections.singletonMap("AT.tableName", "t")));
+    Assert.assertEquals(MathTwoScalar.ScalarType.FIXED_LONG, GraphuloUtil.findScalarType(
+        Collections.singletonMap("rowMultiplyOp.opt.multiplyOp.opt.scalarType", "FIXED_LONG")));
+    Assert.assertEquals(MathTwoScalar.ScalarType.FIXED_DOUBLE,
+        GraphuloUtil.findScalarType(Graphulo.PLUS_ITERATOR_FIXED_DOUBLE.getOptions()));
+    Assert.assertTrue(MathTwoScalar.ScalarType.LEX_LONG.isBinary());
+    Assert.assertFalse(MathTwoScalar.ScalarType.LONG_OR_DOUBLE.isBinary());
+  }
+
 }
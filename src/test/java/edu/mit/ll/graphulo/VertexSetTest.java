@@ -0,0 +1,87 @@
+package edu.mit.ll.graphulo;
+
+import edu.mit.ll.graphulo.reducer.GatherReducer;
+import edu.mit.ll.graphulo.reducer.ReducerBinary;
+import edu.mit.ll.graphulo.util.VertexSet;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link VertexSet} and {@link GatherReducer} with a {@link ReducerBinary.Listener}.
+ */
+public class VertexSetTest {
+
+  @Test
+  public void testEncode() {
+    VertexSet vs = VertexSet.fromStrings(Arrays.asList("v10", "v1", "v2", "vBig", "", "v1"));
+    Assert.assertEquals(Arrays.asList("", "v1", "v10", "v2", "vBig"), vs.toStrings());
+    VertexSet vs2 = VertexSet.decode(vs.encode());
+    Assert.assertEquals(vs.toStrings(), vs2.toStrings());
+    Assert.assertEquals(vs.toStrings(), VertexSet.decodeBase64(vs.encodeBase64()).toStrings());
+    Assert.assertTrue(VertexSet.decode(new VertexSet().encode()).isEmpty());
+
+    List<Range> ranges = vs.toRanges();
+    Assert.assertEquals(5, ranges.size());
+    Assert.assertEquals(Range.exact("v10"), ranges.get(2));
+
+    // front coding shares the common prefix of neighbours
+    VertexSet many = new VertexSet();
+    for (int i = 0; i < 1000; i++)
+      many.add(String.format("vertex%06d", i).getBytes());
+    Assert.assertTrue(many.encode().length < 1000 * 5);
+    Assert.assertEquals(many.toStrings(), VertexSet.decode(many.encode()).toStrings());
+  }
+
+  @Test
+  public void testSingleTableRanges() {
+    VertexSet vs = VertexSet.fromStrings(Arrays.asList("v1", "v10"));
+    List<Range> ranges = new ArrayList<>(vs.toRanges("|".getBytes(StandardCharsets.UTF_8)));
+    Assert.assertEquals(Arrays.asList(Range.exact("v1"), Range.exact("v10"), Range.prefix("v10|"), Range.prefix("v1|")), ranges);
+    Key edge = new Key("v1|v2");
+    Assert.assertTrue(ranges.get(3).contains(edge));
+    Assert.assertFalse(ranges.get(2).contains(edge));
+  }
+
+  @Test
+  public void testReducer() throws IOException {
+    GatherReducer server = new GatherReducer();
+    server.init(GatherReducer.reducerOptions(GatherReducer.KeyPart.COLQ), null);
+    Assert.assertFalse(server.hasTopForClient());
+    server.update(new Key("v0", "", "v1"), new Value());
+    server.update(new Key("v0", "", "v2"), new Value());
+    server.update(new Key("v3", "", "v1"), new Value());
+    Assert.assertTrue(server.hasTopForClient());
+    byte[] bytes = server.getForClient();
+
+    GatherReducer client = new GatherReducer();
+    client.init(GatherReducer.reducerOptions(GatherReducer.KeyPart.COLQ), null);
+    client.combine(bytes);
+    client.combine(bytes);
+    Assert.assertEquals(Arrays.asList("v1", "v2"), client.getSet().toStrings());
+
+    final List<VertexSet> heard = new ArrayList<>();
+    client.reset();
+    client.setListener(new ReducerBinary.Listener() {
+      @Override
+      public void vertices(VertexSet vertices) {
+        heard.add(vertices);
+      }
+    });
+    client.combine(bytes);
+    Assert.assertTrue(client.getSet().isEmpty());
+    Assert.assertEquals(1, heard.size());
+    Assert.assertEquals(Arrays.asList("v1", "v2"), heard.get(0).toStrings());
+    Assert.assertEquals(Collections.<String>emptyList(), new VertexSet().toStrings());
+  }
+
+}
@@ -0,0 +1,87 @@
+package edu.mit.ll.graphulo.perf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Graph500 Kronecker graph generator. Writes an undirected graph without self-loops or duplicate edges
+ * to a pair of row and column files in the comma-delimited format of the files in src/test/resources/data,
+ * listing each edge in both directions.
+ * Vertices are numbered from 1 and randomly permuted, as in the Graph500 reference generator.
+ */
+public final class KroneckerGraph {
+  /** Graph500 initiator probabilities. D = 1-A-B-C. */
+  private static final double A = 0.57, B = 0.19, C = 0.19;
+  /** Graph500 default ratio of generated edges to vertices. */
+  public static final int DEFAULT_EDGE_FACTOR = 16;
+
+  public final int scale;
+  public final File rowFile, colFile;
+  /** Number of entries in the files: twice the number of distinct undirected edges. */
+  public final long numEntries;
+
+  private KroneckerGraph(int scale, File rowFile, File colFile, long numEntries) {
+    this.scale = scale;
+    this.rowFile = rowFile;
+    this.colFile = colFile;
+    this.numEntries = numEntries;
+  }
+
+  /**
+   * Generate a graph with 2^scale vertices and about edgeFactor * 2^scale edges, before removing duplicates and self-loops.
+   * @param dir Directory to write the files <tt>&lt;scale&gt;Kr.txt</tt> and <tt>&lt;scale&gt;Kc.txt</tt> into.
+   */
+  public static KroneckerGraph generate(int scale, int edgeFactor, long seed, File dir) throws IOException {
+    if (scale < 1 || scale > 30)
+      throw new IllegalArgumentException("scale must be in [1,30]: " + scale);
+    int n = 1 << scale;
+    long m = (long) edgeFactor * n;
+    Random rand = new Random(seed);
+
+    int[] perm = new int[n];
+    for (int i = 0; i < n; i++)
+      perm[i] = i;
+    for (int i = n - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1), t = perm[i];
+      perm[i] = perm[j];
+      perm[j] = t;
+    }
+
+    double ab = A + B, cNorm = C / (1 - ab), aNorm = A / ab;
+    Set<Long> edges = new HashSet<>();
+    for (long e = 0; e < m; e++) {
+      int u = 0, v = 0;
+      for (int bit = 0; bit < scale; bit++) {
+        boolean uBit = rand.nextDouble() > ab;
+        boolean vBit = rand.nextDouble() > (uBit ? cNorm : aNorm);
+        u |= (uBit ? 1 : 0) << bit;
+        v |= (vBit ? 1 : 0) << bit;
+      }
+      u = perm[u];
+      v = perm[v];
+      if (u != v)
+        edges.add(Math.min(u, v) * (long) n + Math.max(u, v));
+    }
+
+    File rowFile = new File(dir, scale + "Kr.txt"), colFile = new File(dir, scale + "Kc.txt");
+    try (Writer rw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rowFile), StandardCharsets.UTF_8));
+         Writer cw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(colFile), StandardCharsets.UTF_8))) {
+      for (long edge : edges) {
+        String u = Long.toString(edge / n + 1), v = Long.toString(edge % n + 1);
+        rw.write(u); rw.write(',');
+        cw.write(v); cw.write(',');
+        rw.write(v); rw.write(',');
+        cw.write(u); cw.write(',');
+      }
+    }
+    return new KroneckerGraph(scale, rowFile, colFile, 2L * edges.size());
+  }
+}
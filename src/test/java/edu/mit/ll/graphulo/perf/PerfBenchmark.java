@@ -0,0 +1,185 @@
+package edu.mit.ll.graphulo.perf;
+
+import edu.mit.ll.graphulo.Graphulo;
+import edu.mit.ll.graphulo.simplemult.MathTwoScalar;
+import edu.mit.ll.graphulo.skvi.Watch;
+import edu.mit.ll.graphulo.tricount.TriangleIngestor;
+import edu.mit.ll.graphulo.util.AccumuloTestBase;
+import edu.mit.ll.graphulo.util.GraphuloUtil;
+import edu.mit.ll.graphulo.util.TripleFileWriter;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * End-to-end benchmark of the Graphulo algorithms on Graph500 Kronecker graphs of increasing SCALE,
+ * run against the Accumulo instance given by TEST_CONFIG. Not part of the regular test suite. Run with
+ * <pre>
+ * mvn test -Dtest=PerfBenchmark -Dperf.scales=8,10,12 -Dperf.label=mybranch
+ * </pre>
+ * Options, as system properties:
+ * <ul>
+ *   <li><tt>perf.scales</tt> Comma-separated graph SCALEs. Default 8,10.</li>
+ *   <li><tt>perf.algorithms</tt> Comma-separated subset of
+ *   TableMult, AdjBFS, EdgeBFS, kTrussAdj, triCount, Jaccard, NMF. Default all.</li>
+ *   <li><tt>perf.label</tt> Name of the report files target/perf/&lt;label&gt;.csv and .txt. Default "perf".</li>
+ *   <li><tt>perf.baseline</tt> CSV report from an earlier run. If given, the test fails when
+ *   throughput at any algorithm and SCALE falls more than <tt>perf.threshold</tt> below the baseline.</li>
+ *   <li><tt>perf.threshold</tt> Allowed fractional drop in throughput. Default 0.25.</li>
+ * </ul>
+ * Throughput is input entries per second of wall time. Tablet server CPU time is read from /proc and is -1
+ * when no tablet server runs on this machine.
+ */
+public class PerfBenchmark extends AccumuloTestBase {
+  private static final Logger log = LogManager.getLogger(PerfBenchmark.class);
+
+  static final List<String> ALGORITHMS = Arrays.asList("TableMult", "AdjBFS", "EdgeBFS", "kTrussAdj", "triCount", "Jaccard", "NMF");
+  private static final long SEED = 20160101L;
+
+  private enum Phase { INGEST, RUN }
+
+  private static List<String> listProperty(String name, String def) {
+    return Arrays.asList(System.getProperty(name, def).split(","));
+  }
+
+  @Test
+  public void benchmark() throws IOException {
+    List<String> algorithms = System.getProperty("perf.algorithms") == null
+        ? ALGORITHMS : listProperty("perf.algorithms", "");
+    for (String alg : algorithms)
+      if (!ALGORITHMS.contains(alg))
+        throw new IllegalArgumentException("unknown algorithm " + alg + "; choose from " + ALGORITHMS);
+    String label = System.getProperty("perf.label", "perf");
+    String baselineFile = System.getProperty("perf.baseline");
+    double threshold = Double.parseDouble(System.getProperty("perf.threshold", "0.25"));
+
+    Connector conn = tester.getConnector();
+    Graphulo graphulo = new Graphulo(conn, tester.getPassword());
+    File dataDir = Files.createTempDirectory("graphulo-perf").toFile();
+    boolean oldTrace = Watch.enableTrace;
+    Watch.enableTrace = true;
+    Watch<Phase> watch = new Watch<>(Phase.class);
+    PerfReport report = new PerfReport();
+    try {
+      for (String s : listProperty("perf.scales", "8,10")) {
+        int scale = Integer.parseInt(s.trim());
+        KroneckerGraph g = KroneckerGraph.generate(scale, KroneckerGraph.DEFAULT_EDGE_FACTOR, SEED, dataDir);
+        String base = "perf" + scale;
+        watch.start(Phase.INGEST);
+        ingest(conn, g, base, algorithms);
+        watch.stop(Phase.INGEST);
+        for (String alg : algorithms) {
+          long cpu0 = TserverCpu.millis(), t0 = System.currentTimeMillis();
+          watch.start(Phase.RUN);
+          String[] outputs = run(graphulo, conn, alg, base);
+          watch.stop(Phase.RUN);
+          long wall = System.currentTimeMillis() - t0, cpu1 = TserverCpu.millis();
+          long written = 0;
+          for (String out : outputs)
+            written += graphulo.countEntries(out);
+          PerfReport.Result r = new PerfReport.Result(alg, scale, g.numEntries, wall, written,
+              cpu0 < 0 || cpu1 < 0 ? -1 : cpu1 - cpu0);
+          log.info("SCALE " + scale + " " + alg + ": " + wall + " ms, " + written + " entries written");
+          report.add(r);
+          GraphuloUtil.deleteTables(conn, outputs);
+        }
+      }
+    } finally {
+      for (File f : dataDir.listFiles())
+        f.delete();
+      dataDir.delete();
+    }
+
+    Watch.Stats ingest = watch.get(Phase.INGEST), runs = watch.get(Phase.RUN);
+    StringBuilder text = new StringBuilder(report.chart());
+    text.append(String.format("ingest: %,d ms total over %d graphs; algorithms: %,d ms total, %,d ms max%n",
+        ingest.total, ingest.count, runs.total, runs.max));
+    Watch.enableTrace = oldTrace;
+
+    File outDir = new File("target", "perf");
+    report.writeCsv(new File(outDir, label + ".csv"));
+    Files.write(new File(outDir, label + ".txt").toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    System.out.print(text);
+
+    if (baselineFile != null) {
+      List<String> regressions = report.regressions(PerfReport.readCsv(new File(baselineFile)), threshold);
+      for (String reg : regressions)
+        log.warn("REGRESSION " + reg);
+      Assert.assertTrue("throughput regressions against " + baselineFile + ": " + regressions, regressions.isEmpty());
+    }
+  }
+
+  /** Ingest the tables the chosen algorithms read: adjacency, incidence, and upper-triangle adjacency. */
+  private static void ingest(Connector conn, KroneckerGraph g, String base, List<String> algorithms) {
+    TripleFileWriter tfw = new TripleFileWriter(conn);
+    tfw.writeTripleFile_Adjacency(g.rowFile, g.colFile, null, ",", base + "A", true, false);
+    if (algorithms.contains("EdgeBFS") || algorithms.contains("NMF"))
+      tfw.writeTripleFile_Incidence(g.rowFile, g.colFile, null, ",", base + "A", true, false, g.numEntries);
+    if (algorithms.contains("triCount")) {
+      GraphuloUtil.deleteTables(conn, base + "AUpper");
+      new TriangleIngestor(conn).ingestFile(g.rowFile, g.colFile, base + "AUpper", null, true, true);
+    }
+  }
+
+  /** Run one algorithm. Returns the tables it wrote. */
+  private static String[] run(Graphulo graphulo, Connector conn, String alg, String base) {
+    String A = base + "A", AT = base + "AT", ADeg = base + "ADeg", E = base + "AEdge", EDegT = base + "AEdgeDegT";
+    String v0 = "1,2,3,4,5,";
+    String[] outputs;
+    switch (alg) {
+      case "TableMult":
+        outputs = new String[] {base + "C"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.TableMult(AT, A, outputs[0], null, MathTwoScalar.class, Graphulo.PLUS_ITERATOR_BIGDECIMAL);
+        break;
+      case "AdjBFS":
+        outputs = new String[] {base + "AdjBFS"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.AdjBFS(A, v0, 3, outputs[0], null, null, -1, ADeg, "out", false, 1, Integer.MAX_VALUE,
+            Graphulo.PLUS_ITERATOR_LONG, Authorizations.EMPTY, Authorizations.EMPTY, true, new MutableLong());
+        break;
+      case "EdgeBFS":
+        outputs = new String[] {base + "EdgeBFS"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.EdgeBFS(E, v0, 3, outputs[0], null, "out|,", "in|,", EDegT, "out", false, 1, Integer.MAX_VALUE,
+            Graphulo.PLUS_ITERATOR_LONG, -1, Authorizations.EMPTY, Authorizations.EMPTY, "", true, true, new MutableLong());
+        break;
+      case "kTrussAdj":
+        outputs = new String[] {base + "Truss3"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.kTrussAdj(A, outputs[0], 3, null, true, Authorizations.EMPTY, null);
+        break;
+      case "triCount":
+        // triCount writes no output table; it leaves a temporary table
+        outputs = new String[0];
+        GraphuloUtil.deleteTables(conn, base + "AUpper" + Graphulo.TRICOUNT_TEMP_TABLE_SUFFIX);
+        graphulo.triCount(base + "AUpper", null, null, null);
+        break;
+      case "Jaccard":
+        outputs = new String[] {base + "Jaccard"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.Jaccard(A, ADeg, outputs[0], null, Authorizations.EMPTY, null);
+        break;
+      case "NMF":
+        outputs = new String[] {base + "NMF_WT", base + "NMF_H"};
+        GraphuloUtil.deleteTables(conn, outputs);
+        graphulo.NMF_Client(E, false, outputs[0], true, outputs[1], false, 3, 5, 0.0, 10);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown algorithm " + alg);
+    }
+    return outputs;
+  }
+}
@@ -0,0 +1,140 @@
+package edu.mit.ll.graphulo.perf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of {@link PerfBenchmark}: one row per algorithm and scale.
+ * Saved as CSV so that runs from different commits can be compared, and charted as text.
+ */
+public class PerfReport {
+  private static final String HEADER = "algorithm,scale,inputEntries,wallMillis,entriesWritten,tserverCpuMillis";
+  private static final int CHART_WIDTH = 50;
+
+  public static class Result {
+    public final String algorithm;
+    public final int scale;
+    public final long inputEntries, wallMillis, entriesWritten, tserverCpuMillis;
+
+    public Result(String algorithm, int scale, long inputEntries, long wallMillis, long entriesWritten, long tserverCpuMillis) {
+      this.algorithm = algorithm;
+      this.scale = scale;
+      this.inputEntries = inputEntries;
+      this.wallMillis = wallMillis;
+      this.entriesWritten = entriesWritten;
+      this.tserverCpuMillis = tserverCpuMillis;
+    }
+
+    /** Input entries processed per second. */
+    public double throughput() {
+      return inputEntries * 1000.0 / Math.max(1, wallMillis);
+    }
+
+    String key() {
+      return algorithm + '@' + scale;
+    }
+
+    @Override
+    public String toString() {
+      return algorithm + ',' + scale + ',' + inputEntries + ',' + wallMillis + ',' + entriesWritten + ',' + tserverCpuMillis;
+    }
+  }
+
+  private final List<Result> results = new ArrayList<>();
+
+  public void add(Result r) {
+    results.add(r);
+  }
+
+  public List<Result> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  public void writeCsv(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs())
+      throw new IOException("cannot create directory " + parent);
+    try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      pw.println(HEADER);
+      for (Result r : results)
+        pw.println(r);
+    }
+  }
+
+  public static PerfReport readCsv(File file) throws IOException {
+    PerfReport report = new PerfReport();
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line = br.readLine();
+      if (!HEADER.equals(line))
+        throw new IOException("not a benchmark report: " + file);
+      while ((line = br.readLine()) != null) {
+        if (line.isEmpty())
+          continue;
+        String[] p = line.split(",");
+        report.add(new Result(p[0], Integer.parseInt(p[1]), Long.parseLong(p[2]),
+            Long.parseLong(p[3]), Long.parseLong(p[4]), Long.parseLong(p[5])));
+      }
+    }
+    return report;
+  }
+
+  /** A text chart of throughput versus scale, one block per algorithm. Bars are scaled to the largest throughput of each algorithm. */
+  public String chart() {
+    Map<String, List<Result>> byAlg = new LinkedHashMap<>();
+    for (Result r : results) {
+      if (!byAlg.containsKey(r.algorithm))
+        byAlg.put(r.algorithm, new ArrayList<Result>());
+      byAlg.get(r.algorithm).add(r);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, List<Result>> entry : byAlg.entrySet()) {
+      double max = 0;
+      for (Result r : entry.getValue())
+        max = Math.max(max, r.throughput());
+      sb.append(entry.getKey()).append(" (input entries/sec)\n");
+      for (Result r : entry.getValue()) {
+        int len = max == 0 ? 0 : (int) Math.round(CHART_WIDTH * r.throughput() / max);
+        sb.append(String.format("  SCALE %2d |", r.scale));
+        for (int i = 0; i < len; i++)
+          sb.append('#');
+        sb.append(String.format(" %,.0f  (%,d ms, %,d written, %,d ms tserver cpu)%n",
+            r.throughput(), r.wallMillis, r.entriesWritten, r.tserverCpuMillis));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Compare to a baseline. Returns a description of every algorithm and scale present in both
+   * whose throughput fell by more than threshold, a fraction of the baseline's throughput.
+   */
+  public List<String> regressions(PerfReport baseline, double threshold) {
+    Map<String, Result> base = new HashMap<>();
+    for (Result r : baseline.results)
+      base.put(r.key(), r);
+    List<String> out = new ArrayList<>();
+    for (Result r : results) {
+      Result b = base.get(r.key());
+      if (b == null)
+        continue;
+      double ratio = r.throughput() / b.throughput();
+      if (ratio < 1 - threshold)
+        out.add(String.format("%s at SCALE %d: %,.0f entries/sec vs baseline %,.0f (%.0f%%)",
+            r.algorithm, r.scale, r.throughput(), b.throughput(), 100 * ratio));
+    }
+    return out;
+  }
+}
@@ -0,0 +1,43 @@
+package edu.mit.ll.graphulo.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Reads the total CPU time used by tablet server processes on this machine from /proc.
+ * Covers MiniAccumulo and a standalone instance running locally. Linux only.
+ */
+final class TserverCpu {
+  private TserverCpu() {}
+
+  /** Assumed clock ticks per second for /proc/[pid]/stat; the usual value on Linux. */
+  private static final long CLOCK_TICKS = 100;
+
+  /** Total user+system CPU milliseconds of local tablet servers, or -1 if unavailable. */
+  static long millis() {
+    File[] procs = new File("/proc").listFiles();
+    if (procs == null)
+      return -1;
+    long ticks = 0;
+    boolean found = false;
+    for (File proc : procs) {
+      if (!proc.getName().matches("\\d+"))
+        continue;
+      try {
+        String cmdline = new String(Files.readAllBytes(new File(proc, "cmdline").toPath()), StandardCharsets.UTF_8);
+        if (!cmdline.contains("org.apache.accumulo.tserver.TabletServer") && !cmdline.contains("org.apache.accumulo.start.Main\0tserver"))
+          continue;
+        String stat = new String(Files.readAllBytes(new File(proc, "stat").toPath()), StandardCharsets.UTF_8);
+        // fields after the parenthesized command name; utime and stime are fields 14 and 15
+        String[] f = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        ticks += Long.parseLong(f[11]) + Long.parseLong(f[12]);
+        found = true;
+      } catch (IOException | RuntimeException ignored) {
+        // process exited or is not readable
+      }
+    }
+    return found ? ticks * 1000 / CLOCK_TICKS : -1;
+  }
+}
@@ -0,0 +1,119 @@
+package edu.mit.ll.graphulo_ocean;
+
+import edu.mit.ll.graphulo.examples.ExampleUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+import static edu.mit.ll.graphulo_ocean.GenomicEncoder.bytesToInt;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Test that rolling k-mer counting from raw bytes matches encoding each k-mer with {@link GenomicEncoder}.
+ */
+public class RollingKmerCounterTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testCount() {
+    int K = 3;
+    GenomicEncoder G = new GenomicEncoder(K);
+    RollingKmerCounter counter = new RollingKmerCounter(K);
+    String seq = "ACGTTNGCANNAGCTACGG";
+    ByteBuffer buf = ByteBuffer.wrap(("xx" + seq + "yy").getBytes(UTF_8));
+
+    for (boolean reverse : new boolean[]{false, true}) {
+      int[] expect = new int[1 << 2 * K], actual = new int[1 << 2 * K];
+      long num = 0;
+      for (int i = 0; i < seq.length() - K; i++) { // last k-mer excluded
+        String mer = seq.substring(i, i + K);
+        if (mer.indexOf('N') != -1)
+          continue;
+        byte[] e = G.encode(mer.toCharArray());
+        if (reverse)
+          G.reverseComplement(e);
+        expect[Integer.reverse(bytesToInt(e))]++;
+        num++;
+      }
+      Assert.assertEquals(num, counter.count(buf, 2, 2 + seq.length(), reverse, actual));
+      Assert.assertArrayEquals(expect, actual);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadBase() {
+    new RollingKmerCounter(2).count(ByteBuffer.wrap("ACXGT".getBytes(UTF_8)), 0, 5, false, new int[16]);
+  }
+
+  private static class CaptureVariable implements CSVIngesterKmer.KmerAction<SortedMap<CSVIngesterKmer.ArrayHolder, Integer>> {
+    int[] counts;
+    final int K;
+    CaptureVariable(int K) {
+      this.K = K;
+    }
+    @Override
+    public void run(String sampleid, SortedMap<CSVIngesterKmer.ArrayHolder, Integer> map) {
+      counts = new int[1 << 2 * K];
+      for (Map.Entry<CSVIngesterKmer.ArrayHolder, Integer> entry : map.entrySet())
+        counts[Integer.reverse(bytesToInt(entry.getKey().b))] = entry.getValue();
+    }
+  }
+
+  private static class CaptureInteger implements CSVIngesterKmer.KmerAction<int[]> {
+    int[] counts;
+    @Override
+    public void run(String sampleid, int[] map) {
+      counts = Arrays.copyOf(map, map.length);
+    }
+  }
+
+  /** IntegerMap reads files memory-mapped with the rolling counter; VariableMap reads lines and encodes each k-mer. */
+  private static void checkSameCounts(File file, int K, int everyXLines, int startOffset) throws Exception {
+    CaptureVariable cv = new CaptureVariable(K);
+    CaptureInteger ci = new CaptureInteger();
+    new CSVIngesterKmer.VariableMap(K, cv).ingestFile(file, everyXLines, startOffset);
+    new CSVIngesterKmer.IntegerMap(K, ci).ingestFile(file, everyXLines, startOffset);
+    Assert.assertArrayEquals(cv.counts, ci.counts);
+  }
+
+  @Test
+  public void testIngestFileData() throws Exception {
+    File file = ExampleUtil.getDataFile("S0001_n1000.csv");
+    checkSameCounts(file, 5, 1, 0);
+    checkSameCounts(file, 11, 3, 7);
+  }
+
+  @Test
+  public void testIngestFileSynthetic() throws Exception {
+    Random rand = new Random(42);
+    File file = tempFolder.newFile("synthetic.csv");
+    try (Writer w = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+      w.write("id,seq\n");
+      for (int l = 0; l < 200; l++) {
+        w.write("seq" + l + (rand.nextBoolean() ? "/2_joint," : "/1_joint,"));
+        int len = 20 + rand.nextInt(80);
+        for (int i = 0; i < len; i++)
+          w.write(rand.nextInt(10) == 0 ? 'N' : "ACGT".charAt(rand.nextInt(4)));
+        w.write(l % 7 == 0 ? "\r\n" : "\n");
+        if (l % 13 == 0)
+          w.write("\n");
+      }
+    }
+    checkSameCounts(file, 4, 1, 0);
+    checkSameCounts(file, 7, 2, 3);
+  }
+
+}